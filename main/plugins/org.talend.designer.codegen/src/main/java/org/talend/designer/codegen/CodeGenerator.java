@@ -18,6 +18,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -59,6 +65,7 @@ import org.talend.designer.codegen.config.JetBean;
 import org.talend.designer.codegen.config.NodesSubTree;
 import org.talend.designer.codegen.config.NodesTree;
 import org.talend.designer.codegen.config.SubTreeArgument;
+import org.talend.designer.codegen.config.SubTreeCodeCache;
 import org.talend.designer.codegen.config.TemplateUtil;
 import org.talend.designer.codegen.exception.CodeGeneratorException;
 import org.talend.designer.codegen.i18n.Messages;
@@ -113,6 +120,10 @@ public class CodeGenerator implements ICodeGenerator {
 
     private static final boolean DEBUG = false;
 
+    private static final int NODE_SIZE_ESTIMATE = 8 * 1024;
+
+    private static final int FOOTER_SIZE_ESTIMATE = 64 * 1024;
+
     /**
      * Constructor : use the process and laguage to initialize internal components.
      *
@@ -198,7 +209,7 @@ public class CodeGenerator implements ICodeGenerator {
     public String generateProcessCode() throws CodeGeneratorException {
         // Parse Process, generate Code for Individual Components
         // generate Assembly Code for individual Components
-        StringBuffer componentsCode = new StringBuffer();
+        StringBuilder componentsCode = new StringBuilder();
 
         long startTimer = System.currentTimeMillis();
         long endTimer = startTimer;
@@ -228,47 +239,15 @@ public class CodeGenerator implements ICodeGenerator {
                 boolean displayMethodSize = isMethodSizeNeeded();
                 for (NodesSubTree subTree : processTree.getSubTrees()) {
                     subTree.setMethodSizeNeeded(displayMethodSize);
-                    if (!subTree.isMergeSubTree()) {
-                        componentsCode.append(generateTypedComponentCode(EInternalTemplate.SUBPROCESS_HEADER, subTree));
-                        componentsCode.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.BEGIN, null));
-                        componentsCode.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.MAIN, null));
-                        componentsCode.append(generateTypedComponentCode(EInternalTemplate.PART_ENDMAIN, subTree.getRootNode()));
-                        componentsCode.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.END, null));
-                        StringBuffer finallyPart = new StringBuffer();
-                        finallyPart.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.FINALLY, null));
-                        Vector subprocess_footerArgument = new Vector(2);
-                        subprocess_footerArgument.add(subTree);
-                        subprocess_footerArgument.add(finallyPart.toString());
-                        componentsCode.append(
-                                generateTypedComponentCode(EInternalTemplate.SUBPROCESS_FOOTER, subprocess_footerArgument));
-                    } else {
-                        StringBuffer finallyPart = new StringBuffer();
-                        componentsCode.append(generateTypedComponentCode(EInternalTemplate.SUBPROCESS_HEADER, subTree));
-                        for (INode mergeNode : subTree.getMergeNodes()) {
-                            componentsCode.append(generateComponentsCode(subTree, mergeNode, ECodePart.BEGIN, null));
-                        }
-                        List<INode> sortedMergeBranchStarts = subTree.getSortedMergeBranchStarts();
-                        for (INode startNode : sortedMergeBranchStarts) {
-                            componentsCode.append(generateComponentsCode(subTree, startNode, ECodePart.BEGIN, null));
-                            componentsCode.append(generateComponentsCode(subTree, startNode, ECodePart.MAIN, null));
-
-                            componentsCode
-                                    .append(generateTypedComponentCode(EInternalTemplate.PART_ENDMAIN, subTree.getRootNode()));
-
-                            componentsCode.append(generateComponentsCode(subTree, startNode, ECodePart.END, null));
-                            finallyPart.append(generateComponentsCode(subTree, startNode, ECodePart.FINALLY, null));
-                        }
-
-                        for (INode mergeNode : subTree.getMergeNodes()) {
-                            componentsCode.append(generateComponentsCode(subTree, mergeNode, ECodePart.END, null));
-                            finallyPart.append(generateComponentsCode(subTree, mergeNode, ECodePart.FINALLY, null));
-                        }
-                        Vector subprocess_footerArgument = new Vector(2);
-                        subprocess_footerArgument.add(subTree);
-                        subprocess_footerArgument.add(finallyPart.toString());
-                        componentsCode.append(
-                                generateTypedComponentCode(EInternalTemplate.SUBPROCESS_FOOTER, subprocess_footerArgument));
-                    }
+                }
+                List<String> subTreesCode = generateSubTreesCode(processTree.getSubTrees());
+                int subTreesLength = 0;
+                for (String subTreeCode : subTreesCode) {
+                    subTreesLength += subTreeCode.length();
+                }
+                componentsCode.ensureCapacity(componentsCode.length() + subTreesLength + FOOTER_SIZE_ESTIMATE);
+                for (String subTreeCode : subTreesCode) {
+                    componentsCode.append(subTreeCode);
                 }
             }
             // ####0005204: Cannot Call SubJob with RunJob Component
@@ -283,6 +262,155 @@ public class CodeGenerator implements ICodeGenerator {
         }
     }
 
+    /**
+     * Generates the code of the subjobs, on several threads with the "codegen_threads" property. The code of a subjob
+     * is kept in the {@link SubTreeCodeCache} with the "codegen_cache" property.
+     *
+     * @param subTrees the subjobs
+     * @return the code of the subjobs, in their order
+     * @throws CodeGeneratorException if an error occurs during Code Generation
+     */
+    private List<String> generateSubTreesCode(List<NodesSubTree> subTrees) throws CodeGeneratorException {
+        String[] codes = new String[subTrees.size()];
+        String[] keys = new String[subTrees.size()];
+        List<Integer> toGenerate = new ArrayList<Integer>();
+        if (Boolean.getBoolean("codegen_cache")) { //$NON-NLS-1$
+            String generationSettings = getGenerationSettings();
+            for (int i = 0; i < subTrees.size(); i++) {
+                keys[i] = SubTreeCodeCache.computeKey(generationSettings, process, subTrees.get(i));
+                codes[i] = SubTreeCodeCache.get(keys[i]);
+                if (codes[i] == null) {
+                    toGenerate.add(i);
+                }
+            }
+        } else {
+            for (int i = 0; i < subTrees.size(); i++) {
+                toGenerate.add(i);
+            }
+        }
+
+        int threads = Math.min(toGenerate.size(), Integer.getInteger("codegen_threads", 1)); //$NON-NLS-1$
+        if (threads <= 1) {
+            for (int i : toGenerate) {
+                codes[i] = generateSubTreeCode(subTrees.get(i));
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, Messages.getString("CodeGenerator.workerThread")); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try {
+                List<Future<String>> results = new ArrayList<Future<String>>();
+                for (int i : toGenerate) {
+                    final NodesSubTree subTree = subTrees.get(i);
+                    results.add(executor.submit(new Callable<String>() {
+
+                        @Override
+                        public String call() throws CodeGeneratorException {
+                            return generateSubTreeCode(subTree);
+                        }
+                    }));
+                }
+                for (int i = 0; i < toGenerate.size(); i++) {
+                    codes[toGenerate.get(i)] = results.get(i).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CodeGeneratorException(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CodeGeneratorException) {
+                    throw (CodeGeneratorException) e.getCause();
+                }
+                log.error(e.getCause().getMessage(), e.getCause());
+                throw new CodeGeneratorException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        List<String> subTreesCode = new ArrayList<String>(codes.length);
+        for (int i = 0; i < codes.length; i++) {
+            if (keys[i] != null) {
+                SubTreeCodeCache.put(keys[i], codes[i]);
+            }
+            subTreesCode.add(codes[i]);
+        }
+        return subTreesCode;
+    }
+
+    /**
+     * Generate the code of a subjob, from its header to its footer.
+     *
+     * @param subTree the subjob
+     * @return the generated code
+     * @throws CodeGeneratorException if an error occurs during Code Generation
+     */
+    @SuppressWarnings("unchecked")
+    private String generateSubTreeCode(NodesSubTree subTree) throws CodeGeneratorException {
+        StringBuilder componentsCode = new StringBuilder(subTree.getNodes().size() * NODE_SIZE_ESTIMATE);
+        if (!subTree.isMergeSubTree()) {
+            componentsCode.append(generateTypedComponentCode(EInternalTemplate.SUBPROCESS_HEADER, subTree));
+            componentsCode.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.BEGIN, null));
+            componentsCode.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.MAIN, null));
+            componentsCode.append(generateTypedComponentCode(EInternalTemplate.PART_ENDMAIN, subTree.getRootNode()));
+            componentsCode.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.END, null));
+            StringBuilder finallyPart = new StringBuilder();
+            finallyPart.append(generateComponentsCode(subTree, subTree.getRootNode(), ECodePart.FINALLY, null));
+            Vector subprocess_footerArgument = new Vector(2);
+            subprocess_footerArgument.add(subTree);
+            subprocess_footerArgument.add(finallyPart.toString());
+            componentsCode.append(
+                    generateTypedComponentCode(EInternalTemplate.SUBPROCESS_FOOTER, subprocess_footerArgument));
+        } else {
+            StringBuilder finallyPart = new StringBuilder();
+            componentsCode.append(generateTypedComponentCode(EInternalTemplate.SUBPROCESS_HEADER, subTree));
+            for (INode mergeNode : subTree.getMergeNodes()) {
+                componentsCode.append(generateComponentsCode(subTree, mergeNode, ECodePart.BEGIN, null));
+            }
+            List<INode> sortedMergeBranchStarts = subTree.getSortedMergeBranchStarts();
+            for (INode startNode : sortedMergeBranchStarts) {
+                componentsCode.append(generateComponentsCode(subTree, startNode, ECodePart.BEGIN, null));
+                componentsCode.append(generateComponentsCode(subTree, startNode, ECodePart.MAIN, null));
+
+                componentsCode
+                        .append(generateTypedComponentCode(EInternalTemplate.PART_ENDMAIN, subTree.getRootNode()));
+
+                componentsCode.append(generateComponentsCode(subTree, startNode, ECodePart.END, null));
+                finallyPart.append(generateComponentsCode(subTree, startNode, ECodePart.FINALLY, null));
+            }
+
+            for (INode mergeNode : subTree.getMergeNodes()) {
+                componentsCode.append(generateComponentsCode(subTree, mergeNode, ECodePart.END, null));
+                finallyPart.append(generateComponentsCode(subTree, mergeNode, ECodePart.FINALLY, null));
+            }
+            Vector subprocess_footerArgument = new Vector(2);
+            subprocess_footerArgument.add(subTree);
+            subprocess_footerArgument.add(finallyPart.toString());
+            componentsCode.append(
+                    generateTypedComponentCode(EInternalTemplate.SUBPROCESS_FOOTER, subprocess_footerArgument));
+        }
+        return componentsCode.toString();
+    }
+
+    /**
+     * @return the settings of this generator which change the code of the subjobs
+     */
+    private String getGenerationSettings() {
+        StringBuilder settings = new StringBuilder();
+        settings.append(process.getId()).append('|').append(statistics).append('|').append(trace).append('|')
+                .append(interpreterPath).append('|').append(libPath).append('|').append(runtimeFilePath).append('|')
+                .append(currentProjectName).append('|').append(contextName).append('|').append(jobName).append('|')
+                .append(jobVersion).append('|').append(checkingSyntax).append('|').append(getRunInMultiThread()).append('|')
+                .append(CorePlugin.getDefault().getRunProcessService().getPauseTime()).append('|')
+                .append(VersionUtils.getVersion());
+        return settings.toString();
+    }
+
     /**
      * get the incomingName matching with inputId. Purpose: It will generate different parts for the merge node
      * according the different incomingName.
@@ -389,7 +517,7 @@ public class CodeGenerator implements ICodeGenerator {
                 codeGenArgument.setPauseTime(CorePlugin.getDefault().getRunProcessService().getPauseTime());
 
                 JetBean jetBean = initializeJetBean(codeGenArgument);
-                StringBuffer content = new StringBuffer();
+                StringBuilder content = new StringBuilder();
                 for (TemplateUtil template : CodeGeneratorInternalTemplatesFactoryProvider.getInstance().getTemplatesFromType(EInternalTemplate.CONTEXT)) {
                     jetBean.setJetPluginRepository(template.getJetPluginRepository());
                     jetBean.setTemplateRelativeUri(template.getTemplateRelativeUri());
@@ -409,7 +537,7 @@ public class CodeGenerator implements ICodeGenerator {
      * @return the generated code
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
-    private StringBuffer generateTypedComponentCode(EInternalTemplate type, Object argument) throws CodeGeneratorException {
+    private StringBuilder generateTypedComponentCode(EInternalTemplate type, Object argument) throws CodeGeneratorException {
         return generateTypedComponentCode(type, argument, null);
     }
 
@@ -422,7 +550,7 @@ public class CodeGenerator implements ICodeGenerator {
      * @return the genrated code
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
-    private StringBuffer generateTypedComponentCode(EInternalTemplate type, Object argument, ECodePart part)
+    private StringBuilder generateTypedComponentCode(EInternalTemplate type, Object argument, ECodePart part)
             throws CodeGeneratorException {
         return generateTypedComponentCode(type, argument, part, null, null);
     }
@@ -437,7 +565,7 @@ public class CodeGenerator implements ICodeGenerator {
      * @return the genrated code
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
-    private StringBuffer generateTypedComponentCode(EInternalTemplate type, Object argument, ECodePart part, String incomingName,
+    private StringBuilder generateTypedComponentCode(EInternalTemplate type, Object argument, ECodePart part, String incomingName,
             NodesSubTree subProcess) throws CodeGeneratorException {
         CodeGeneratorArgument codeGenArgument = new CodeGeneratorArgument();
         codeGenArgument.setNode(argument);
@@ -463,7 +591,7 @@ public class CodeGenerator implements ICodeGenerator {
         codeGenArgument.setPauseTime(CorePlugin.getDefault().getRunProcessService().getPauseTime());
         JetBean jetBean = initializeJetBean(codeGenArgument);
 
-        StringBuffer content = new StringBuffer();
+        StringBuilder content = new StringBuilder();
         for (TemplateUtil template : CodeGeneratorInternalTemplatesFactoryProvider.getInstance().getTemplatesFromType(type)) {
             jetBean.setJetPluginRepository(template.getJetPluginRepository());
             jetBean.setTemplateRelativeUri(template.getTemplateRelativeUri());
@@ -472,9 +600,9 @@ public class CodeGenerator implements ICodeGenerator {
         return content;
     }
 
-    private StringBuffer instantiateJetProxy(JetBean jetBean) throws CodeGeneratorException {
+    private StringBuilder instantiateJetProxy(JetBean jetBean) throws CodeGeneratorException {
         JetProxy proxy = new JetProxy(jetBean);
-        StringBuffer content = new StringBuffer();
+        StringBuilder content = new StringBuilder();
         try {
             content.append(proxy.generate());
         } catch (JETException e) {
@@ -512,7 +640,7 @@ public class CodeGenerator implements ICodeGenerator {
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
 
-    private StringBuffer generateComponentsCode(NodesSubTree subProcess, INode node, ECodePart part, String incomingName)
+    private StringBuilder generateComponentsCode(NodesSubTree subProcess, INode node, ECodePart part, String incomingName)
             throws CodeGeneratorException {
         return generateComponentsCode(subProcess, node, part, incomingName, ETypeGen.ETL);
     }
@@ -527,9 +655,9 @@ public class CodeGenerator implements ICodeGenerator {
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
 
-    private StringBuffer generateComponentsCode(NodesSubTree subProcess, INode node, ECodePart part, String incomingName,
+    private StringBuilder generateComponentsCode(NodesSubTree subProcess, INode node, ECodePart part, String incomingName,
             ETypeGen typeGen) throws CodeGeneratorException {
-        StringBuffer codeComponent = new StringBuffer();
+        StringBuilder codeComponent = new StringBuilder();
         Boolean isMarked = subProcess.isMarkedNode(node, part);
         boolean isIterate = isSpecifyInputNode(node, incomingName, EConnectionType.ITERATE);
         boolean isOnRowsEnd = isSpecifyInputNode(node, incomingName, EConnectionType.ON_ROWS_END);
@@ -562,7 +690,7 @@ public class CodeGenerator implements ICodeGenerator {
                     codeComponent.append(generateComponentCode(subProcess, node, ECodePart.END, incomingName, typeGen));
                     codeComponent.append(generatesTreeCode(subProcess, node, ECodePart.END, typeGen));
 
-                    StringBuffer finallyPart = new StringBuffer();
+                    StringBuilder finallyPart = new StringBuilder();
                     // if iterate with parallel
                     finallyPart.append(generateComponentsCode(subProcess, node, ECodePart.FINALLY, incomingName, typeGen));
                     Vector iterate_Argument = new Vector(2);
@@ -664,9 +792,9 @@ public class CodeGenerator implements ICodeGenerator {
                 && (!NodeUtil.getIncomingConnections(node, IConnectionCategory.DATA).isEmpty() || TACOKIT_PROCESSOR_CODE_DIR.equals(node.getComponent().getTemplateFolder()));
     }
     
-    private StringBuffer generateSeperateEndCode(NodesSubTree subProcess, INode node, String incomingName, ETypeGen typeGen)
+    private StringBuilder generateSeperateEndCode(NodesSubTree subProcess, INode node, String incomingName, ETypeGen typeGen)
             throws CodeGeneratorException {
-        StringBuffer codeComponent = new StringBuffer();
+        StringBuilder codeComponent = new StringBuilder();
         boolean needSeperateEnd = false;
         IComponent component = node.getComponent();
         if (component != null) {
@@ -726,7 +854,7 @@ public class CodeGenerator implements ICodeGenerator {
      * @return the generated code
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
-    private StringBuffer generatesTreeCode(NodesSubTree subProcess, INode node, ECodePart part) throws CodeGeneratorException {
+    private StringBuilder generatesTreeCode(NodesSubTree subProcess, INode node, ECodePart part) throws CodeGeneratorException {
         return generatesTreeCode(subProcess, node, part, ETypeGen.ETL);
     }
 
@@ -739,9 +867,9 @@ public class CodeGenerator implements ICodeGenerator {
      * @return the generated code
      * @throws CodeGeneratorException if an error occurs during Code Generation
      */
-    private StringBuffer generatesTreeCode(NodesSubTree subProcess, INode node, ECodePart part, ETypeGen typeGen)
+    private StringBuilder generatesTreeCode(NodesSubTree subProcess, INode node, ECodePart part, ETypeGen typeGen)
             throws CodeGeneratorException {
-        StringBuffer code = new StringBuffer();
+        StringBuilder code = new StringBuilder();
         if (node != null) {
             SubTreeArgument subTreeArgument = new SubTreeArgument();
 
@@ -841,7 +969,7 @@ public class CodeGenerator implements ICodeGenerator {
 
         JetBean jetBean = initializeJetBean(argument);
 
-        StringBuffer content = new StringBuffer();
+        StringBuilder content = new StringBuilder();
         try {
             if (typeGen == ETypeGen.ETL) {
                 content.append(generateTypedComponentCode(EInternalTemplate.PART_HEADER, node, part, incomingName, subProcess));
@@ -934,7 +1062,7 @@ public class CodeGenerator implements ICodeGenerator {
         argument.setPauseTime(CorePlugin.getDefault().getRunProcessService().getPauseTime());
         JetBean jetBean = initializeJetBean(argument);
 
-        StringBuffer content = new StringBuffer();
+        StringBuilder content = new StringBuilder();
         try {
             content.append(generateTypedComponentCode(EInternalTemplate.PART_HEADER, node, part));
 
@@ -999,7 +1127,7 @@ public class CodeGenerator implements ICodeGenerator {
      */
     @Override
     public String generateComponentCodeWithRows(String nodeName, IAloneProcessNodeConfigurer nodeConfigurer) {
-        StringBuffer componentsCode = new StringBuffer();
+        StringBuilder componentsCode = new StringBuilder();
 
         if (process == null) {
             throw new NullPointerException();
@@ -1028,7 +1156,7 @@ public class CodeGenerator implements ICodeGenerator {
                         // nodeConfigurer.configure(subTreeNode);
                         // }
                         componentsCode.append(generateTypedComponentCode(EInternalTemplate.SUBPROCESS_HEADER, subTree));
-                        StringBuffer finallyPart = new StringBuffer();
+                        StringBuilder finallyPart = new StringBuilder();
                         if (subTreeNode != null) {
 
                             if (!subTree.isMergeSubTree()) {
@@ -1096,7 +1224,7 @@ public class CodeGenerator implements ICodeGenerator {
                 } catch (CodeGeneratorException ce) {
                     // ce.printStackTrace();
                     ExceptionHandler.process(ce);
-                    componentsCode = new StringBuffer();
+                    componentsCode = new StringBuilder();
                 }
             } else {
                 throw new TypeNotPresentException(Messages.getString("CodeGenerator.Node.NotFound"), null); //$NON-NLS-1$
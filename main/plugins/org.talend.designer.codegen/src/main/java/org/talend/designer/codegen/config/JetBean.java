@@ -14,6 +14,7 @@ package org.talend.designer.codegen.config;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.Platform;
 import org.talend.commons.exception.ExceptionHandler;
@@ -52,7 +53,7 @@ public class JetBean {
 
     private String generationError;
 
-    private static Map<String, String> pluginIdToBundle = new HashMap<String, String>();
+    private static Map<String, String> pluginIdToBundle = new ConcurrentHashMap<String, String>();
 
     private long crc = 0;
 
@@ -0,0 +1,193 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.codegen.config;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.talend.core.model.metadata.IMetadataColumn;
+import org.talend.core.model.metadata.IMetadataTable;
+import org.talend.core.model.process.EParameterFieldType;
+import org.talend.core.model.process.IConnection;
+import org.talend.core.model.process.IElement;
+import org.talend.core.model.process.IElementParameter;
+import org.talend.core.model.process.INode;
+import org.talend.core.model.process.IProcess;
+
+/**
+ * Code generated for the subjobs, by a digest of everything the templates read from the subjob: the parameters,
+ * schemas and connections of its nodes, and of the nodes they reference by their name.
+ *
+ * The digest doesn't see the templates, the cache is cleared when the emitters are initialized again.
+ */
+public final class SubTreeCodeCache {
+
+    private static final long MAX_CACHED_CHARS = 32L * 1024 * 1024;
+
+    private static final Map<String, String> CACHE = new LinkedHashMap<String, String>(16, 0.75f, true);
+
+    private static long cachedChars = 0;
+
+    private SubTreeCodeCache() {
+    }
+
+    public static synchronized String get(String key) {
+        return CACHE.get(key);
+    }
+
+    public static synchronized void put(String key, String code) {
+        if (code.length() > MAX_CACHED_CHARS / 4) {
+            return;
+        }
+        String previous = CACHE.put(key, code);
+        if (previous != null) {
+            cachedChars -= previous.length();
+        }
+        cachedChars += code.length();
+        Iterator<String> eldest = CACHE.values().iterator();
+        while (cachedChars > MAX_CACHED_CHARS && eldest.hasNext()) {
+            cachedChars -= eldest.next().length();
+            eldest.remove();
+        }
+    }
+
+    public static synchronized void clear() {
+        CACHE.clear();
+        cachedChars = 0;
+    }
+
+    /**
+     * @param generationSettings the settings of the generation which are not in the process, as the statistics
+     * @param process the process of the subjob
+     * @param subTree the subjob
+     * @return the key of the code of the subjob
+     */
+    public static String computeKey(String generationSettings, IProcess process, NodesSubTree subTree) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder description = new StringBuilder(4096);
+        description.append(generationSettings).append('\n');
+        appendParameters(description, process);
+        description.append(subTree.getName()).append('|').append(subTree.isMergeSubTree()).append('|')
+                .append(subTree.isRefSubTree()).append('|').append(subTree.isMethodSizeNeeded()).append('\n');
+        update(digest, description);
+
+        Set<String> described = new HashSet<String>();
+        appendNode(digest, description, subTree.getRootNode(), process, described, true);
+        for (INode node : subTree.getNodes()) {
+            appendNode(digest, description, node, process, described, true);
+        }
+        if (subTree.getRefNodes() != null) {
+            for (INode node : subTree.getRefNodes()) {
+                appendNode(digest, description, node, process, described, true);
+            }
+        }
+
+        StringBuilder key = new StringBuilder(32);
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    private static void appendNode(MessageDigest digest, StringBuilder description, INode node, IProcess process,
+            Set<String> described, boolean withReferences) {
+        if (node == null || !described.add(node.getUniqueName())) {
+            return;
+        }
+        description.append("node ").append(node.getUniqueName()).append('|').append(node.getComponent().getName()) //$NON-NLS-1$
+                .append('|').append(node.getComponent().getVersion()).append('|').append(node.isActivate()).append('|')
+                .append(node.isStart()).append('|').append(node.isSubProcessStart()).append('|')
+                .append(node.isVirtualGenerateNode()).append('\n');
+        appendParameters(description, node);
+        appendTables(description, node.getMetadataList());
+        appendConnections(description, node.getIncomingConnections());
+        appendConnections(description, node.getOutgoingConnections());
+        update(digest, description);
+
+        if (withReferences && process != null) {
+            // the templates can read the nodes selected in their component lists
+            for (IElementParameter parameter : node.getElementParameters()) {
+                if (parameter.getFieldType() == EParameterFieldType.COMPONENT_LIST && parameter.getValue() instanceof String) {
+                    for (INode other : process.getGeneratingNodes()) {
+                        if (parameter.getValue().equals(other.getUniqueName())) {
+                            appendNode(digest, description, other, process, described, false);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void appendParameters(StringBuilder description, IElement element) {
+        if (element == null || element.getElementParameters() == null) {
+            return;
+        }
+        for (IElementParameter parameter : element.getElementParameters()) {
+            description.append(parameter.getName()).append('=').append(parameter.getValue()).append('\n');
+        }
+    }
+
+    private static void appendTables(StringBuilder description, List<IMetadataTable> tables) {
+        if (tables == null) {
+            return;
+        }
+        for (IMetadataTable table : tables) {
+            appendTable(description, table);
+        }
+    }
+
+    private static void appendTable(StringBuilder description, IMetadataTable table) {
+        if (table == null) {
+            return;
+        }
+        description.append("table ").append(table.getTableName()).append('|').append(table.getLabel()).append('\n'); //$NON-NLS-1$
+        for (IMetadataColumn column : table.getListColumns()) {
+            description.append(column.getLabel()).append('|').append(column.getOriginalDbColumnName()).append('|')
+                    .append(column.getTalendType()).append('|').append(column.getType()).append('|')
+                    .append(column.getLength()).append('|').append(column.getPrecision()).append('|')
+                    .append(column.isNullable()).append('|').append(column.isKey()).append('|').append(column.getPattern())
+                    .append('|').append(column.getDefault()).append('\n');
+        }
+    }
+
+    private static void appendConnections(StringBuilder description, List<? extends IConnection> connections) {
+        if (connections == null) {
+            return;
+        }
+        for (IConnection connection : connections) {
+            description.append("connection ").append(connection.getUniqueName()).append('|') //$NON-NLS-1$
+                    .append(connection.getLineStyle()).append('|').append(connection.getConnectorName()).append('|')
+                    .append(connection.isActivate()).append('|').append(connection.getSource().getUniqueName())
+                    .append('|').append(connection.getTarget().getUniqueName()).append('\n');
+            appendParameters(description, connection);
+            appendTable(description, connection.getMetadataTable());
+        }
+    }
+
+    private static void update(MessageDigest digest, StringBuilder description) {
+        digest.update(description.toString().getBytes(StandardCharsets.UTF_8));
+        description.setLength(0);
+    }
+}
@@ -134,6 +134,10 @@ public class TalendJetEmitter extends JETEmitter {
         this.talendEclipseHelper = teh;
     }
 
+    public JetBean getJetBean() {
+        return this.jetbean;
+    }
+
     public TalendEclipseHelper getTalendEclipseHelper() {
         return this.talendEclipseHelper;
     }
@@ -182,7 +186,8 @@ public class TalendJetEmitter extends JETEmitter {
 
         IProject project;
 
-        JetBean helperJetBean;
+        // the subjobs can be generated on several threads with the same helper
+        ThreadLocal<JetBean> helperJetBean = new ThreadLocal<JetBean>();
 
         public TalendEclipseHelper(IProgressMonitor progressMonitor, TalendJetEmitter jetEmitter, boolean rebuild)
                 throws JETException {
@@ -306,7 +311,10 @@ public class TalendJetEmitter extends JETEmitter {
                         try {
                             sourceContainer.create(true, true, new SubProgressMonitor(subProgressMonitor, 1));
                         } catch (Exception e) {
-                            ExceptionHandler.process(e);
+                            // the emitters of a family can be initialized at the same time
+                            if (!sourceContainer.exists()) {
+                                ExceptionHandler.process(e);
+                            }
                         }
                     }
                 }
@@ -362,13 +370,13 @@ public class TalendJetEmitter extends JETEmitter {
                     boolean errors = false;
                     if (!output.isEmpty()) {
                         errors = true;
-                        if (this.helperJetBean != null) {
-                            this.helperJetBean.setGenerationError(output);
+                        if (this.helperJetBean.get() != null) {
+                            this.helperJetBean.get().setGenerationError(output);
                         }
                         log.error(output);
                         setClassAvailable(false);
-                    } else if (this.helperJetBean != null) {
-                        this.helperJetBean.setGenerationError(null);
+                    } else if (this.helperJetBean.get() != null) {
+                        this.helperJetBean.get().setGenerationError(null);
                     }
 
                     if (!errors) {
@@ -419,11 +427,11 @@ public class TalendJetEmitter extends JETEmitter {
         }
 
         public JetBean getHelperJetBean() {
-            return helperJetBean;
+            return helperJetBean.get();
         }
 
         public void setHelperJetBean(JetBean helperJetBean) {
-            this.helperJetBean = helperJetBean;
+            this.helperJetBean.set(helperJetBean);
         }
     }
 
@@ -590,11 +598,14 @@ public class TalendJetEmitter extends JETEmitter {
      * @see org.eclipse.emf.codegen.jet.JETEmitter#getMethod()
      */
     @Override
-    public Method getMethod() {
+    public synchronized Method getMethod() {
         Method localMethod = super.getMethod();
         if (localMethod == null) {
             try {
-                localMethod = loadMethod();
+                // the class loader is shared by the emitters
+                synchronized (TalendJetEmitter.class) {
+                    localMethod = loadMethod();
+                }
             } catch (Exception e) {
                 // nothing since if got exception here, the method will be reloaded bellow. (normal case)
                 // real error should be logged if the initialize fail.
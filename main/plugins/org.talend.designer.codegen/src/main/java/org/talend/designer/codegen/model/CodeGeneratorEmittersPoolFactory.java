@@ -23,6 +23,12 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
 import org.eclipse.core.resources.IFile;
@@ -44,15 +50,12 @@ import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.emf.codegen.CodeGenPlugin;
 import org.eclipse.emf.codegen.jet.JETEmitter;
 import org.eclipse.emf.codegen.jet.JETException;
-import org.eclipse.emf.common.CommonPlugin;
-import org.eclipse.emf.common.util.URI;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.widgets.Display;
 import org.talend.commons.CommonsPlugin;
 import org.talend.commons.exception.BusinessException;
 import org.talend.commons.exception.ExceptionHandler;
 import org.talend.commons.runtime.model.components.IComponentConstants;
-import org.talend.commons.runtime.utils.io.IOUtils;
 import org.talend.commons.ui.runtime.CommonUIPlugin;
 import org.talend.commons.utils.StringUtils;
 import org.talend.commons.utils.time.TimeMeasure;
@@ -76,6 +79,7 @@ import org.talend.designer.codegen.ICodeGeneratorService;
 import org.talend.designer.codegen.config.EInternalTemplate;
 import org.talend.designer.codegen.config.JetBean;
 import org.talend.designer.codegen.config.LightJetBean;
+import org.talend.designer.codegen.config.SubTreeCodeCache;
 import org.talend.designer.codegen.config.TalendJetEmitter;
 import org.talend.designer.codegen.config.TemplateUtil;
 import org.talend.designer.codegen.i18n.Messages;
@@ -104,6 +108,8 @@ public final class CodeGeneratorEmittersPoolFactory {
 
     public static final String JET_PROJECT = ".JETEmitters"; //$NON-NLS-1$
 
+    private static final int MAX_WORKER_THREADS = 8;
+
     /**
      * Default Constructor. Must not be used.
      */
@@ -248,6 +254,8 @@ public final class CodeGeneratorEmittersPoolFactory {
                 }
                 log.debug(Messages.getString("CodeGeneratorEmittersPoolFactory.componentCompiled", //$NON-NLS-1$
                         (System.currentTimeMillis() - startTime)));
+                // the code kept for the subjobs may come from the previous templates
+                SubTreeCodeCache.clear();
                 initialized = true;
 
                 ComponentCompilations.addMarkers();
@@ -607,9 +615,9 @@ public final class CodeGeneratorEmittersPoolFactory {
         HashMap<String, String> globalClasspath = new HashMap<String, String>();
         for (JetBean jetBean : components) {
             globalClasspath.putAll(jetBean.getClassPath());
-            // compute the CRC
-            jetBean.setCrc(extractTemplateHashCode(jetBean));
         }
+        // compute the CRC of the templates with their includes and skeletons
+        computeTemplateHashCodes(components);
 
         emitterPool = new HashMap<JetBean, JETEmitter>();
         List<JetBean> alreadyCompiledEmitters = new ArrayList<JetBean>();
@@ -622,29 +630,27 @@ public final class CodeGeneratorEmittersPoolFactory {
             log.error(Messages.getString("CodeGeneratorEmittersPoolFactory.jetEmitterInitialException") + e.getMessage(), e); //$NON-NLS-1$
         }
 
-        boolean isSkeletonChanged = JetSkeletonManager.updateSkeletonPersistenceData();
-        // if there is one skeleton changed, there need generate all jet--->java again. so, it won't load the
-        // JetPersistenceJAVA
+        // the skeletons are a part of the CRC of the templates using them, so only these templates will be generated
+        // again, but the persistent data must not be matched on the template names only.
+        if (JetSkeletonManager.updateSkeletonPersistenceData()) {
+            ComponentCompilations.deleteMarkers();
+        }
 
-        if (!isSkeletonChanged) {
-            try {
-                alreadyCompiledEmitters = loadEmfPersistentData(
-                        EmfEmittersPersistenceFactory.getInstance(codeLanguage).loadEmittersPool(), components, monitorWrap);
-                for (JetBean jetBean : alreadyCompiledEmitters) {
-                    TalendJetEmitter emitter = new TalendJetEmitter(jetBean, dummyEmitter.getTalendEclipseHelper());
-                    emitterPool.put(jetBean, emitter);
-                    monitorBuffer++;
-                    if (monitorBuffer % 100 == 0) {
-                        monitorWrap.worked(100);
-                        monitorBuffer = 0;
-                    }
+        try {
+            alreadyCompiledEmitters = loadEmfPersistentData(
+                    EmfEmittersPersistenceFactory.getInstance(codeLanguage).loadEmittersPool(), components, monitorWrap);
+            for (JetBean jetBean : alreadyCompiledEmitters) {
+                TalendJetEmitter emitter = new TalendJetEmitter(jetBean, dummyEmitter.getTalendEclipseHelper());
+                emitterPool.put(jetBean, emitter);
+                monitorBuffer++;
+                if (monitorBuffer % 100 == 0) {
+                    monitorWrap.worked(100);
+                    monitorBuffer = 0;
                 }
-            } catch (BusinessException e) {
-                // error already loggued
-                emitterPool = new HashMap<JetBean, JETEmitter>();
             }
-        } else {
-            ComponentCompilations.deleteMarkers();
+        } catch (BusinessException e) {
+            // error already loggued
+            emitterPool = new HashMap<JetBean, JETEmitter>();
         }
 
         synchronizedComponent(components, sub, alreadyCompiledEmitters, dummyEmitter, monitorBuffer, monitorWrap);
@@ -658,9 +664,15 @@ public final class CodeGeneratorEmittersPoolFactory {
         }
     }
 
+    /**
+     * Creates the emitters of the templates which are not in the persistent data. Their classes are generated and
+     * compiled on their first use, or here on the worker pool with the "force_full_codegen" property.
+     */
     private static void synchronizedComponent(List<JetBean> components, IProgressMonitor sub,
             List<JetBean> alreadyCompiledEmitters, TalendJetEmitter dummyEmitter, int monitorBuffer,
-            IProgressMonitor monitorWrap) {
+            final IProgressMonitor monitorWrap) {
+        boolean fullCodegen = Boolean.getBoolean("force_full_codegen"); //$NON-NLS-1$
+        List<TalendJetEmitter> newEmitters = new ArrayList<TalendJetEmitter>();
         for (JetBean jetBean : components) {
             if (!emitterPool.containsKey(jetBean)) {
                 ComponentCompilations.deleteMarkers();
@@ -669,43 +681,141 @@ public final class CodeGeneratorEmittersPoolFactory {
                 TalendJetEmitter emitter = new TalendJetEmitter(jetBean, dummyEmitter.getTalendEclipseHelper());
                 // wzhang modified to fix bug 11439
                 if (monitorWrap.isCanceled()) {
-                    if (!CommonUIPlugin.isFullyHeadless()) {
-                        Display.getDefault().syncExec(new Runnable() {
+                    showCanceledDialog();
+                    return;
+                }
+                newEmitters.add(emitter);
+            }
+        }
 
-                            @Override
-                            public void run() {
-                                MessageDialog.openError(Display.getDefault().getActiveShell(),
-                                        Messages.getString("CodeGeneratorEmittersPoolFactory.operationCanceled"), //$NON-NLS-1$
-                                        Messages.getString("CodeGeneratorEmittersPoolFactory.dialogContent")); //$NON-NLS-1$
+        if (fullCodegen && !newEmitters.isEmpty()) {
+            newEmitters = compileEmitters(newEmitters, monitorWrap);
+            if (monitorWrap.isCanceled()) {
+                showCanceledDialog();
+                return;
+            }
+        }
 
-                            }
-                        });
+        for (TalendJetEmitter emitter : newEmitters) {
+            JetBean jetBean = emitter.getJetBean();
+            if (emitter.isClassAvailable()) {
+                alreadyCompiledEmitters.add(jetBean);
+            } else {
+                jetFilesCompileFail.add(jetBean);
+            }
+            emitterPool.put(jetBean, emitter);
+            monitorBuffer++;
+            if (monitorBuffer % 100 == 0) {
+                monitorWrap.worked(100);
+                monitorBuffer = 0;
+            }
+        }
+    }
+
+    /**
+     * Generates and compiles the classes of the emitters on the worker pool.
+     *
+     * @return the emitters initialized without exception
+     */
+    private static List<TalendJetEmitter> compileEmitters(List<TalendJetEmitter> emitters, final IProgressMonitor monitorWrap) {
+        List<TalendJetEmitter> initialized = new ArrayList<TalendJetEmitter>();
+        ExecutorService executor = createWorkerPool();
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (final TalendJetEmitter emitter : emitters) {
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() {
+                        if (monitorWrap.isCanceled()) {
+                            return Boolean.FALSE;
+                        }
+                        try {
+                            emitter.initialize(new NullProgressMonitor());
+                            return Boolean.TRUE;
+                        } catch (JETException e) {
+                            log.error(Messages.getString("CodeGeneratorEmittersPoolFactory.jetEmitterInitialException") //$NON-NLS-1$
+                                    + e.getMessage(), e);
+                            return Boolean.FALSE;
+                        }
                     }
-                    return;
+                }));
+            }
+            for (int i = 0; i < emitters.size(); i++) {
+                if (getResult(results.get(i))) {
+                    initialized.add(emitters.get(i));
                 }
-                if (Boolean.getBoolean("force_full_codegen")) { //$NON-NLS-1$
-                    try {
-                        emitter.initialize(sub);
-                    } catch (JETException e) {
-                        log.error(
-                                Messages.getString("CodeGeneratorEmittersPoolFactory.jetEmitterInitialException") //$NON-NLS-1$
-                                        + e.getMessage(), e);
-                        continue;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return initialized;
+    }
+
+    /**
+     * Computes the CRC of the templates on the worker pool, the included files are read once for all the templates.
+     */
+    private static void computeTemplateHashCodes(List<JetBean> components) {
+        final TemplateContentHash contentHash = new TemplateContentHash();
+        ExecutorService executor = createWorkerPool();
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (final JetBean jetBean : components) {
+                results.add(executor.submit(new Callable<Boolean>() {
+
+                    @Override
+                    public Boolean call() {
+                        jetBean.setCrc(extractTemplateHashCode(jetBean, contentHash));
+                        return Boolean.TRUE;
                     }
-                }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                getResult(result);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                if (emitter.isClassAvailable()) {
-                    alreadyCompiledEmitters.add(jetBean);
-                } else {
-                    jetFilesCompileFail.add(jetBean);
-                }
-                emitterPool.put(jetBean, emitter);
-                monitorBuffer++;
-                if (monitorBuffer % 100 == 0) {
-                    monitorWrap.worked(100);
-                    monitorBuffer = 0;
-                }
+    private static boolean getResult(Future<Boolean> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error(Messages.getString("CodeGeneratorEmittersPoolFactory.jetEmitterInitialException") //$NON-NLS-1$
+                    + e.getCause().getMessage(), e.getCause());
+            return false;
+        }
+    }
+
+    private static ExecutorService createWorkerPool() {
+        int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_WORKER_THREADS));
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, Messages.getString("CodeGeneratorEmittersPoolFactory.workerThread")); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
             }
+        });
+    }
+
+    private static void showCanceledDialog() {
+        if (!CommonUIPlugin.isFullyHeadless()) {
+            Display.getDefault().syncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    MessageDialog.openError(Display.getDefault().getActiveShell(),
+                            Messages.getString("CodeGeneratorEmittersPoolFactory.operationCanceled"), //$NON-NLS-1$
+                            Messages.getString("CodeGeneratorEmittersPoolFactory.dialogContent")); //$NON-NLS-1$
+
+                }
+            });
         }
     }
 
@@ -730,24 +840,16 @@ public final class CodeGeneratorEmittersPoolFactory {
      * DOC mhirt Comment method "extractTemplateHashCode".
      *
      * @param unit
-     * @return
-     * @throws MalformedURLException
-     * @throws IOException
+     * @param contentHash the hash of the files already read
+     * @return the CRC of the template, of its includes and of its skeleton
      */
-    private static long extractTemplateHashCode(JetBean unit) {
-        long unitCRC = 0;
-
-        URI uri = URI.createURI(unit.getTemplateFullUri());
-        uri = CommonPlugin.resolve(uri);
-        URL url;
+    private static long extractTemplateHashCode(JetBean unit, TemplateContentHash contentHash) {
         try {
-            url = new URL(uri.toString());
-            unitCRC = IOUtils.computeCRC(url.openStream());
+            return contentHash.computeHash(unit.getTemplateFullUri());
         } catch (Exception e) {
             // ignore me even if i'm null
+            return 0;
         }
-
-        return unitCRC;
     }
 
     private static List<JetBean> loadEmfPersistentData(List<LightJetBean> datas, List<JetBean> completeJetBeanList,
@@ -0,0 +1,180 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.codegen.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.eclipse.emf.common.CommonPlugin;
+import org.eclipse.emf.common.util.URI;
+import org.talend.designer.codegen.config.TemplateUtil;
+
+/**
+ * Computes the hash of a template with the content of the files it includes and of its skeleton, so a template is
+ * generated again when one of them changes.
+ *
+ * The files are read once for all the templates hashed with the same instance, an instance can be used by several
+ * threads.
+ */
+final class TemplateContentHash {
+
+    private static final Pattern DIRECTIVE_PATTERN = Pattern.compile("<%@\\s*(include|jet)\\b(.*?)%>", Pattern.DOTALL); //$NON-NLS-1$
+
+    private static final Pattern REFERENCE_PATTERN = Pattern.compile("\\b(?:file|skeleton)\\s*=\\s*\"([^\"]*)\""); //$NON-NLS-1$
+
+    private static final Pattern PLUGIN_VAR_PATTERN = Pattern.compile("^@\\{(.*?)\\}"); //$NON-NLS-1$
+
+    private final ConcurrentHashMap<String, FileEntry> files = new ConcurrentHashMap<String, FileEntry>();
+
+    /**
+     * @param templateFullUri the full uri of the template
+     * @return the hash of the template and of the files it references, 0 if the template can't be read
+     */
+    public long computeHash(String templateFullUri) {
+        URL url;
+        try {
+            url = toURL(templateFullUri);
+        } catch (IOException e) {
+            return 0;
+        }
+        FileEntry entry = getEntry(url);
+        if (entry == null) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        update(crc, url, entry, new HashSet<String>());
+        return crc.getValue();
+    }
+
+    private void update(CRC32 crc, URL url, FileEntry entry, Set<String> visited) {
+        if (!visited.add(url.toString())) {
+            return;
+        }
+        long fileCrc = entry == null ? 0 : entry.crc;
+        for (int i = 0; i < 8; i++) {
+            crc.update((int) (fileCrc >>> (i * 8)));
+        }
+        if (entry == null) {
+            return;
+        }
+        for (URL reference : entry.references) {
+            update(crc, reference, getEntry(reference), visited);
+        }
+    }
+
+    private FileEntry getEntry(URL url) {
+        String key = url.toString();
+        FileEntry entry = files.get(key);
+        if (entry == null) {
+            try {
+                entry = readEntry(url);
+            } catch (IOException e) {
+                // a missing include will fail at the generation of the template
+                return null;
+            }
+            FileEntry previous = files.putIfAbsent(key, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        return entry;
+    }
+
+    private static FileEntry readEntry(URL url) throws IOException {
+        byte[] content;
+        InputStream stream = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            content = out.toByteArray();
+        } finally {
+            stream.close();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+
+        // the directives are ascii, ISO-8859-1 keeps one char per byte whatever the encoding of the template
+        String text = new String(content, "ISO-8859-1"); //$NON-NLS-1$
+        List<URL> references = new ArrayList<URL>();
+        Matcher directive = DIRECTIVE_PATTERN.matcher(text);
+        while (directive.find()) {
+            Matcher reference = REFERENCE_PATTERN.matcher(directive.group(2));
+            while (reference.find()) {
+                URL referenceUrl = resolve(url, reference.group(1));
+                if (referenceUrl != null) {
+                    references.add(referenceUrl);
+                }
+            }
+        }
+        return new FileEntry(crc.getValue(), references.isEmpty() ? Collections.<URL> emptyList() : references);
+    }
+
+    /**
+     * Resolves the reference as {@link org.talend.designer.codegen.config.TalendJETCompiler} does.
+     */
+    private static URL resolve(URL base, String reference) {
+        try {
+            Matcher matcher = PLUGIN_VAR_PATTERN.matcher(reference);
+            if (matcher.find()) {
+                String pluginUrl = TemplateUtil.getPlatformUrlOfBundle(matcher.group(1));
+                if (pluginUrl == null) {
+                    return null;
+                }
+                return toURL(pluginUrl + reference.substring(matcher.end()));
+            }
+            return new URL(base, reference);
+        } catch (Throwable e) {
+            // the reference is reported by the JET compiler
+            return null;
+        }
+    }
+
+    private static URL toURL(String location) throws IOException {
+        URI uri = URI.createURI(location);
+        if (uri.scheme() == null) {
+            // the shared custom components are given by their path
+            uri = URI.createFileURI(location);
+        }
+        return new URL(CommonPlugin.resolve(uri).toString());
+    }
+
+    /**
+     * Hash of a single file and the files it references.
+     */
+    private static final class FileEntry {
+
+        private final long crc;
+
+        private final List<URL> references;
+
+        FileEntry(long crc, List<URL> references) {
+            this.crc = crc;
+            this.references = references;
+        }
+    }
+}
@@ -12,27 +12,33 @@
 // ============================================================================
 package org.talend.xml.sax.simpleparser;
 
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
- * DOC Administrator class global comment. Detailled comment
+ * Rows parsed by the SAX thread, read by the thread of the component. <br/>
+ *
+ * The rows are given through a ring buffer of bufferSize * bufferNum rows, the maps of the rows already read are given
+ * back to the SAX thread by {@link #newRow()}: a row returned by {@link #readData()} can't be used after the next call of
+ * readData.
  */
 public class DataBufferCache {
 
     // private static DataBufferCache instance = new DataBufferCache();
 
-    private long bufferSize = 5000;
+    private static final int RECYCLED_ROWS = 1024;
 
-    private boolean isEnd = false;
+    private long bufferSize = 5000;
 
     private int bufferNum = 10;
 
-    private LinkedList<Buffer> buffers = new LinkedList<Buffer>();
+    private RowRingBuffer<Map<String, String>> rows = new RowRingBuffer<Map<String, String>>(bufferSize * bufferNum);
 
-    private Buffer currentReadBuff = null;
+    private final RowRingBuffer<Map<String, String>> recycledRows = new RowRingBuffer<Map<String, String>>(RECYCLED_ROWS);
 
-    private Buffer currentWriteBuff = null;
+    private Map<String, String> nextRow = null;
+
+    private Map<String, String> currentRow = null;
 
     private DataBufferCache() {
     }
@@ -42,138 +48,63 @@ public class DataBufferCache {
     }
 
     public void setIsEnd() {
-        synchronized (buffers) {
-        	try {
-	            if (!isEnd && currentWriteBuff != null) {
-	                buffers.add(currentWriteBuff);
-	            }
-	            this.isEnd = true;
-        	} finally {
-        		this.buffers.notifyAll();
-        	}
-        }
+        rows.close();
     }
 
+    /**
+     * To call before the parsing.
+     */
     public void setBufferNum(int num) {
         if (num <= 0)
             return;
         this.bufferNum = num;
+        this.rows = new RowRingBuffer<Map<String, String>>(bufferSize * bufferNum);
     }
 
+    /**
+     * To call before the parsing.
+     */
     public void setBufferSize(long size) {
         if (size <= 0)
             return;
         this.bufferSize = size;
+        this.rows = new RowRingBuffer<Map<String, String>>(bufferSize * bufferNum);
     }
 
     public boolean hasData() {
-        getCurrReadBuffer();
-        if (currentReadBuff == null) {
-            return false;
+        if (nextRow == null) {
+            nextRow = rows.take();
         }
-        return this.currentReadBuff.hasNext();
+        return nextRow != null;
     }
 
     public Map<String, String> readData() {
-        return this.currentReadBuff.Next();
+        if (currentRow != null) {
+            recycledRows.offer(currentRow);
+        }
+        hasData();
+        currentRow = nextRow;
+        nextRow = null;
+        return currentRow;
     }
 
-    private void getCurrReadBuffer() {
-        if (currentReadBuff != null && currentReadBuff.hasNext())
-            return;
-        synchronized (this.buffers) {
-        	try {
-		        while (!this.isEnd && buffers.size() < 1) {
-		            try {
-		                buffers.wait();
-		            } catch (InterruptedException ex) {
-		                System.err.println(ex.getMessage());
-		            }
-		        }
-		        if (buffers.size() > 0) {
-		            currentReadBuff = buffers.remove();
-		        }
-        	} finally {
-        		this.buffers.notifyAll();
-        	}
+    /**
+     * @return an empty map for the next row, called by the SAX thread
+     */
+    public Map<String, String> newRow() {
+        Map<String, String> row = recycledRows.poll();
+        if (row == null) {
+            return new HashMap<String, String>();
         }
+        row.clear();
+        return row;
     }
 
     public void writeData(Map<String, String> map) {
-        if (currentWriteBuff == null) {
-            currentWriteBuff = new Buffer();
-        }
-        if (currentWriteBuff.size() < this.bufferSize) {
-            currentWriteBuff.add(map);
-        } else {
-            currentWriteBuff.add(map);
-            synchronized (buffers) {
-            	try {
-	                while (buffers.size() > bufferNum) {
-	                    try {
-	                        buffers.wait();
-	                    } catch (InterruptedException ex) {
-	                        System.err.println(ex.getMessage());
-	                    }
-	                }
-	                if (currentWriteBuff.size() > 0) {
-	                    this.buffers.add(currentWriteBuff);
-	                }
-	                currentWriteBuff = null;
-            	} finally {
-            		this.buffers.notifyAll();
-            	}
-            }
-
-        }
-
+        rows.put(map);
     }
 
     public void notifyErrorOccurred() {
     	setIsEnd();
     }
-
-    class Buffer {
-
-        private LinkedList<Map<String, String>> buffer = null;
-
-        private boolean isForRead = false; // false for write, true for read
-
-        public Buffer() {
-            buffer = createNewBuffer();
-        }
-
-        public void setIsForRead(boolean isForRead) {
-            this.isForRead = isForRead;
-        }
-
-        public boolean isForRead() {
-            return this.isForRead;
-        }
-
-        public boolean hasNext() {
-            return buffer.size() > 0;
-        }
-
-        public Map<String, String> Next() {
-            return buffer.remove();
-        }
-
-        public void add(Map<String, String> o) {
-            this.buffer.add(o);
-        }
-
-        public int size() {
-            return this.buffer.size();
-        }
-
-        public void clear() {
-            this.buffer.clear();
-            buffer = null;
-        }
-
-        private LinkedList<Map<String, String>> createNewBuffer() {
-            return new LinkedList<Map<String, String>>();
-        }
-    }
 }
@@ -12,27 +12,41 @@
 // ============================================================================
 package org.talend.xml.sax.simpleparser;
 
-import java.util.LinkedList;
+import java.util.ArrayDeque;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
- * DOC Administrator class global comment. Detailled comment
+ * Rows of several loops parsed by the SAX thread, read by the thread of the component. <br/>
+ *
+ * The rows are given through a ring buffer of bufferSize * bufferNum rows, the maps of the rows already read are given
+ * back to the SAX thread by {@link #newRow()} and {@link #newValues()}: a row returned by {@link #readData()} can't be
+ * used after the next call of readData.
  */
 public class DataBufferCache2 {
 
     // private static DataBufferCache instance = new DataBufferCache();
 
-    private long bufferSize = 5000;
+    private static final int RECYCLED_ROWS = 1024;
 
-    private boolean isEnd = false;
+    private long bufferSize = 5000;
 
     private int bufferNum = 10;
 
-    private LinkedList<Buffer> buffers = new LinkedList<Buffer>();
+    private RowRingBuffer<Map<String, Map<String, String>>> rows = new RowRingBuffer<Map<String, Map<String, String>>>(
+            bufferSize * bufferNum);
+
+    private final RowRingBuffer<Map<String, Map<String, String>>> recycledRows = new RowRingBuffer<Map<String, Map<String, String>>>(
+            RECYCLED_ROWS);
+
+    // only used by the SAX thread
+    private final ArrayDeque<Map<String, Map<String, String>>> freeRows = new ArrayDeque<Map<String, Map<String, String>>>();
+
+    private final ArrayDeque<Map<String, String>> freeValues = new ArrayDeque<Map<String, String>>();
 
-    private Buffer currentReadBuff = null;
+    private Map<String, Map<String, String>> nextRow = null;
 
-    private Buffer currentWriteBuff = null;
+    private Map<String, Map<String, String>> currentRow = null;
 
     private DataBufferCache2() {
     }
@@ -42,138 +56,90 @@ public class DataBufferCache2 {
     }
 
     public void setIsEnd() {
-        synchronized (buffers) {
-        	try {
-	            if (!isEnd && currentWriteBuff != null) {
-	                buffers.add(currentWriteBuff);
-	            }
-	            this.isEnd = true;
-        	} finally {
-        		this.buffers.notifyAll();
-        	}
-        }
+        rows.close();
     }
 
+    /**
+     * To call before the parsing.
+     */
     public void setBufferNum(int num) {
         if (num <= 0)
             return;
         this.bufferNum = num;
+        this.rows = new RowRingBuffer<Map<String, Map<String, String>>>(bufferSize * bufferNum);
     }
 
+    /**
+     * To call before the parsing.
+     */
     public void setBufferSize(long size) {
         if (size <= 0)
             return;
         this.bufferSize = size;
+        this.rows = new RowRingBuffer<Map<String, Map<String, String>>>(bufferSize * bufferNum);
     }
 
     public boolean hasData() {
-        getCurrReadBuffer();
-        if (currentReadBuff == null) {
-            return false;
+        if (nextRow == null) {
+            nextRow = rows.take();
         }
-        return this.currentReadBuff.hasNext();
+        return nextRow != null;
     }
 
     public Map<String,Map<String,String>> readData() {
-        return this.currentReadBuff.Next();
-    }
-
-    private void getCurrReadBuffer() {
-        if (currentReadBuff != null && currentReadBuff.hasNext())
-            return;
-        synchronized (this.buffers) {
-        	try {
-		        while (!this.isEnd && buffers.size() < 1) {
-		            try {
-		                buffers.wait();
-		            } catch (InterruptedException ex) {
-		                System.err.println(ex.getMessage());
-		            }
-		        }
-		        if (buffers.size() > 0) {
-		            currentReadBuff = buffers.remove();
-		        }
-        	} finally {
-        		this.buffers.notifyAll();
-        	}
+        if (currentRow != null) {
+            recycledRows.offer(currentRow);
         }
+        hasData();
+        currentRow = nextRow;
+        nextRow = null;
+        return currentRow;
     }
 
-    public void writeData(Map<String,Map<String,String>> map) {
-        if (currentWriteBuff == null) {
-            currentWriteBuff = new Buffer();
-        }
-        if (currentWriteBuff.size() < this.bufferSize) {
-            currentWriteBuff.add(map);
-        } else {
-            currentWriteBuff.add(map);
-            synchronized (buffers) {
-            	try {
-	                while (buffers.size() > bufferNum) {
-	                    try {
-	                        buffers.wait();
-	                    } catch (InterruptedException ex) {
-	                        System.err.println(ex.getMessage());
-	                    }
-	                }
-	                if (currentWriteBuff.size() > 0) {
-	                    this.buffers.add(currentWriteBuff);
-	                }
-	                currentWriteBuff = null;
-            	} finally {
-            		this.buffers.notifyAll();
-            	}
-            }
-
+    /**
+     * @return an empty map for the next row, called by the SAX thread
+     */
+    public Map<String, Map<String, String>> newRow() {
+        if (freeRows.isEmpty()) {
+            recycle();
         }
-
-    }
-
-    public void notifyErrorOccurred() {
-    	setIsEnd();
+        Map<String, Map<String, String>> row = freeRows.poll();
+        return row == null ? new HashMap<String, Map<String, String>>(2) : row;
     }
 
-    class Buffer {
-
-        private LinkedList<Map<String,Map<String,String>>> buffer = null;
-
-        private boolean isForRead = false; // false for write, true for read
-
-        public Buffer() {
-            buffer = createNewBuffer();
-        }
-
-        public void setIsForRead(boolean isForRead) {
-            this.isForRead = isForRead;
-        }
-
-        public boolean isForRead() {
-            return this.isForRead;
-        }
-
-        public boolean hasNext() {
-            return buffer.size() > 0;
+    /**
+     * @return an empty map for the values of a loop of the next row, called by the SAX thread
+     */
+    public Map<String, String> newValues() {
+        if (freeValues.isEmpty()) {
+            recycle();
         }
+        Map<String, String> values = freeValues.poll();
+        return values == null ? new HashMap<String, String>() : values;
+    }
 
-        public Map<String,Map<String,String>> Next() {
-            return buffer.remove();
+    private void recycle() {
+        Map<String, Map<String, String>> row = recycledRows.poll();
+        if (row == null) {
+            return;
         }
-
-        public void add(Map<String,Map<String,String>> o) {
-            this.buffer.add(o);
+        for (Map<String, String> values : row.values()) {
+            if (freeValues.size() < RECYCLED_ROWS) {
+                values.clear();
+                freeValues.add(values);
+            }
         }
-
-        public int size() {
-            return this.buffer.size();
+        if (freeRows.size() < RECYCLED_ROWS) {
+            row.clear();
+            freeRows.add(row);
         }
+    }
 
-        public void clear() {
-            this.buffer.clear();
-            buffer = null;
-        }
+    public void writeData(Map<String,Map<String,String>> map) {
+        rows.put(map);
+    }
 
-        private LinkedList<Map<String,Map<String,String>>> createNewBuffer() {
-            return new LinkedList<Map<String,Map<String,String>>>();
-        }
+    public void notifyErrorOccurred() {
+    	setIsEnd();
     }
 }
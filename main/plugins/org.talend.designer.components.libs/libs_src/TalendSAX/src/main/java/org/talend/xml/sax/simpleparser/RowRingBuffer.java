@@ -0,0 +1,186 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.xml.sax.simpleparser;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer between one producer thread and one consumer thread, without lock. <br/>
+ *
+ * The blocking methods spin, then yield, then park until the other thread moves. A thread which parks is unparked by
+ * the other one, the park is also limited in time so a missed unpark only delays it.
+ */
+final class RowRingBuffer<T> {
+
+    private static final int SPINS = 100;
+
+    private static final int YIELDS = 100;
+
+    private static final long PARK_NANOS = 500000L;
+
+    private final Object[] rows;
+
+    private final int mask;
+
+    // next slot to read, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    // next slot to write, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // last head seen by the producer
+    private long producerHead;
+
+    // last tail seen by the consumer
+    private long consumerTail;
+
+    private volatile boolean end = false;
+
+    private volatile Thread parkedProducer;
+
+    private volatile Thread parkedConsumer;
+
+    RowRingBuffer(long capacity) {
+        int size = 2;
+        while (size < capacity && size < (1 << 20)) {
+            size <<= 1;
+        }
+        rows = new Object[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds the row, waits while the buffer is full.
+     */
+    void put(T row) {
+        long t = tail.get();
+        int idle = 0;
+        while (t - producerHead >= rows.length) {
+            producerHead = head.get();
+            if (t - producerHead >= rows.length) {
+                idle = idle(idle, true);
+            }
+        }
+        publish(t, row);
+    }
+
+    /**
+     * Adds the row if the buffer is not full.
+     *
+     * @return false if the buffer is full
+     */
+    boolean offer(T row) {
+        long t = tail.get();
+        if (t - producerHead >= rows.length) {
+            producerHead = head.get();
+            if (t - producerHead >= rows.length) {
+                return false;
+            }
+        }
+        publish(t, row);
+        return true;
+    }
+
+    /**
+     * Takes the next row, waits while the buffer is empty.
+     *
+     * @return null when the buffer is empty and closed
+     */
+    T take() {
+        long h = head.get();
+        int idle = 0;
+        while (h >= consumerTail) {
+            boolean closed = end;
+            consumerTail = tail.get();
+            if (h < consumerTail) {
+                break;
+            }
+            if (closed) {
+                return null;
+            }
+            idle = idle(idle, false);
+        }
+        return consume(h);
+    }
+
+    /**
+     * @return the next row, null if the buffer is empty
+     */
+    T poll() {
+        long h = head.get();
+        if (h >= consumerTail) {
+            consumerTail = tail.get();
+            if (h >= consumerTail) {
+                return null;
+            }
+        }
+        return consume(h);
+    }
+
+    /**
+     * No row is added after, the consumer takes the remaining rows then gets null.
+     */
+    void close() {
+        end = true;
+        unpark(parkedConsumer);
+    }
+
+    private void publish(long t, T row) {
+        rows[(int) t & mask] = row;
+        tail.lazySet(t + 1);
+        unpark(parkedConsumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T consume(long h) {
+        int index = (int) h & mask;
+        T row = (T) rows[index];
+        rows[index] = null;
+        head.lazySet(h + 1);
+        unpark(parkedProducer);
+        return row;
+    }
+
+    private int idle(int idle, boolean producer) {
+        if (idle < SPINS) {
+            // busy spin, the other thread is usually a few rows behind
+        } else if (idle < SPINS + YIELDS) {
+            Thread.yield();
+        } else {
+            Thread current = Thread.currentThread();
+            if (producer) {
+                parkedProducer = current;
+                if (tail.get() - head.get() >= rows.length) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parkedProducer = null;
+            } else {
+                parkedConsumer = current;
+                if (!end && head.get() >= tail.get()) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                parkedConsumer = null;
+            }
+            // as the wait of the previous buffers, an interruption doesn't stop the wait
+            Thread.interrupted();
+        }
+        return idle + 1;
+    }
+
+    private static void unpark(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
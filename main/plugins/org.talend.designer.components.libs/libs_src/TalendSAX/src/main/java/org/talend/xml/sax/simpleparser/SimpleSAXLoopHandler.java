@@ -13,7 +13,6 @@
 package org.talend.xml.sax.simpleparser;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.talend.xml.sax.EscapeEntityHelper;
@@ -193,12 +192,12 @@ public class SimpleSAXLoopHandler extends DefaultHandler2 {
         }
         if (this.currentPath.equals(nodes.getLoopPath())) {
             if (isNotNull(nodes.getNodesCollection(), nodes.size())) {
-                Map<String, String> map = new HashMap<String, String>();
+                Map<String, String> map = multiCache != null ? multiCache.newValues() : bufferCache.newRow();
                 for (XMLNode node : nodes.getNodesCollection()) {
                     map.put(node.originPath, node.getTextValue());
                 }
                 if(multiCache!=null) {
-                    HashMap<String, Map<String, String>> row = new HashMap<String, Map<String, String>>(1);
+                    Map<String, Map<String, String>> row = multiCache.newRow();
                     row.put(nodes.getOriginalLoopPath(), map);
                     multiCache.writeData(row);
                 } else {
@@ -0,0 +1,125 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.xml.sax.simpleparser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class RowRingBufferTest {
+
+    @Test
+    public void testCapacityIsPowerOfTwo() {
+        RowRingBuffer<Integer> buffer = new RowRingBuffer<Integer>(5);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testWrapAround() {
+        RowRingBuffer<Integer> buffer = new RowRingBuffer<Integer>(4);
+        int next = 0;
+        int expected = 0;
+        assertTrue(buffer.offer(next++));
+        // the buffer is filled and the slots are used again many times, from a different position each time
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(buffer.offer(next++));
+            }
+            assertFalse(buffer.offer(next));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Integer.valueOf(expected++), buffer.poll());
+            }
+        }
+        while (expected < next) {
+            assertEquals(Integer.valueOf(expected++), buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testTakeAfterClose() {
+        RowRingBuffer<String> buffer = new RowRingBuffer<String>(4);
+        buffer.put("a");
+        buffer.put("b");
+        buffer.close();
+        // the rows added before the close are still taken
+        assertEquals("a", buffer.take());
+        assertEquals("b", buffer.take());
+        assertNull(buffer.take());
+        assertNull(buffer.take());
+    }
+
+    @Test(timeout = 60000)
+    public void testProducerAndConsumerThreads() throws InterruptedException {
+        final int count = 1000000;
+        // a small buffer, so both threads wait and the slots wrap around
+        final RowRingBuffer<Integer> buffer = new RowRingBuffer<Integer>(4);
+        Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    buffer.put(i);
+                }
+                buffer.close();
+            }
+        };
+        producer.start();
+        int expected = 0;
+        for (Integer row = buffer.take(); row != null; row = buffer.take()) {
+            assertEquals(expected++, row.intValue());
+        }
+        assertEquals(count, expected);
+        producer.join();
+    }
+
+    @Test(timeout = 60000)
+    public void testPutWaitsForTake() throws InterruptedException {
+        final RowRingBuffer<Integer> buffer = new RowRingBuffer<Integer>(2);
+        buffer.put(0);
+        buffer.put(1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    buffer.put(2);
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        };
+        producer.start();
+        producer.join(200);
+        // the buffer is full
+        assertTrue(producer.isAlive());
+        assertEquals(Integer.valueOf(0), buffer.take());
+        producer.join();
+        assertNull(error.get());
+        assertEquals(Integer.valueOf(1), buffer.take());
+        assertEquals(Integer.valueOf(2), buffer.take());
+    }
+}
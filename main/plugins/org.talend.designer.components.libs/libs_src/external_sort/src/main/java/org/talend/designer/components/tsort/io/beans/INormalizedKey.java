@@ -0,0 +1,31 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.beans;
+
+import org.talend.designer.components.tsort.io.util.NormalizedKeyBuilder;
+
+/**
+ *
+ * Bean able to write its sort criteria as a normalized binary key.
+ *
+ * The unsigned lexicographic order of the keys must be the order of <code>compareTo</code>, so the runs of the external
+ * sort are sorted and merged by comparing bytes, without loading the beans.
+ */
+public interface INormalizedKey {
+
+    /**
+     * @param key the builder to write the criteria to, already reset
+     */
+    public void writeNormalizedKey(NormalizedKeyBuilder key);
+
+}
@@ -0,0 +1,715 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.sortimpl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.talend.designer.components.lookup.persistent.MemoryBudget;
+import org.talend.designer.components.tsort.io.IMapHashFile;
+import org.talend.designer.components.tsort.io.beans.ILightSerializable;
+import org.talend.designer.components.tsort.io.beans.INormalizedKey;
+import org.talend.designer.components.tsort.io.util.DeleteFileOnExitUtil;
+import org.talend.designer.components.tsort.io.util.NormalizedKeyBuilder;
+
+/**
+ *
+ * DOC amaumont class global comment. Detailled comment <br/>
+ *
+ * With the parallel sort, a full buffer is sorted with all the cores and written by a background thread while the next
+ * buffer is filled, each buffer having half of the memory budget. When the beans implement {@link INormalizedKey},
+ * the runs are sorted and merged by comparing their binary keys and the beans are only loaded when they are returned.
+ * The memory budget is the one of the lookup buffers of tMap, without a budget a run has the size of the buffer.
+ *
+ * @param <V> object value to sort
+ */
+public class FlowSorterIterator<V extends ILightSerializable> implements IMapHashFile<V>, Iterator<V> {
+
+    public static final int DEFAULT_READ_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MIN_READ_BUFFER_SIZE = 64 * 1024;
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private static final Comparator<KeyedItem> KEY_COMPARATOR = new Comparator<KeyedItem>() {
+
+        public int compare(KeyedItem item1, KeyedItem item2) {
+            return NormalizedKeyBuilder.compare(item1.key, item1.key.length, item2.key, item2.key.length);
+        }
+    };
+
+    /**
+     * DOC amaumont SortedMultipleHashFile constructor comment.
+     */
+    public FlowSorterIterator() {
+        super();
+    }
+
+    int[] bwPositionArray = null;
+
+    boolean readonly;
+
+    RandomAccessFile[] raArray = null;
+
+    Object[] lastRetrievedObjectArray = null;
+
+    long[] lastRetrievedCursorPositionArray = null;
+
+    int countUniqueGet;
+
+    // ////////////////////////
+    // private int bufferSize = 5000000;
+    // private int bufferSize = 8000000;
+    // private int bufferSize = 9000000;
+    // private int bufferSize = 9200000;
+    private int bufferSize = 10000000;
+
+    private int itemCountInBuffer = 0;
+
+    private ILightSerializable[] buffer;
+
+    private String container = null;
+
+    ILightSerializable iLightSerializable = null;// Change this based on the
+
+    // Bean class;
+
+    private int beansCount;
+
+    private ArrayList<File> files = new ArrayList<File>();
+
+    public String workDirectory = "/home/amaumont/hash_benchs/external_sort/";
+
+    // public String workDirectory = "/home/amaumont/abc/c/";
+
+    public int count = 0;
+
+    private boolean haveDataWrote = false;
+
+    private boolean isFirstNext = true;
+
+    private long memoryBudgetBytes;
+
+    private MemoryBudget memoryBudget;
+
+    private boolean parallelSort;
+
+    private int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+
+    private ExecutorService sortExecutor;
+
+    /** the run being sorted and written in background, gives back its cleared buffer */
+    private Future<ILightSerializable[]> pendingRun;
+
+    /** true if the runs are written with normalized keys, decided with the first run */
+    private Boolean normalizedKeys;
+
+    /** the run readers of the merge, as a binary heap on their current record */
+    private RunReader[] heap;
+
+    private int heapSize;
+
+    // ///////////////////////
+
+    public void initPut(String container) throws IOException {
+        // System.out.println("bufferSize=" + bufferSize + " objects");
+        this.container = container;
+        buffer = new ILightSerializable[bufferSize];
+        // two buffers are in memory at the same time with the parallel sort
+        memoryBudget = new MemoryBudget(parallelSort && memoryBudgetBytes > 0 ? Math.max(1L, memoryBudgetBytes / 2)
+                : memoryBudgetBytes);
+    }
+
+    public long put(String container, V bean) throws IOException {
+        ILightSerializable item = (ILightSerializable) bean;
+
+        if (!haveDataWrote) {
+            haveDataWrote = true;
+        }
+
+        if (itemCountInBuffer >= bufferSize) {// buffer is full do sort and
+            // write.
+            spill();
+        }
+        buffer[itemCountInBuffer++] = item;
+        if (memoryBudget.isSamplingRow()) {
+            memoryBudget.addSample(item.toByteArray().length);
+        }
+
+        if (itemCountInBuffer < bufferSize && memoryBudget.isExceeded(itemCountInBuffer)) {
+            // the buffer reached its memory budget before being full
+            spill();
+        }
+
+        beansCount++;
+
+        return -1;
+
+    }
+
+    /**
+     * Writes the buffer as a sorted run, in background with the parallel sort.
+     */
+    private void spill() throws IOException {
+        if (parallelSort) {
+            ILightSerializable[] freeBuffer = waitPendingRun();
+            final ILightSerializable[] list = buffer;
+            final int length = itemCountInBuffer;
+            final File file = nextRunFile(list[0]);
+            if (sortExecutor == null) {
+                sortExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "external sort " + workDirectory); //$NON-NLS-1$
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            pendingRun = sortExecutor.submit(new Callable<ILightSerializable[]>() {
+
+                public ILightSerializable[] call() throws IOException {
+                    writeRun(list, length, file);
+                    Arrays.fill(list, 0, length, null);
+                    return list;
+                }
+            });
+            buffer = freeBuffer != null ? freeBuffer : new ILightSerializable[bufferSize];
+        } else {
+            writeBuffer(buffer, itemCountInBuffer);
+            Arrays.fill(buffer, 0, itemCountInBuffer, null);
+        }
+        memoryBudget.spilled();
+        itemCountInBuffer = 0;
+    }
+
+    /**
+     * @return the buffer of the run written in background, null if there was no run
+     */
+    private ILightSerializable[] waitPendingRun() throws IOException {
+        if (pendingRun == null) {
+            return null;
+        }
+        try {
+            return pendingRun.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pendingRun = null;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.talend.designer.components.thash.io.IMapHashFile#endPut()
+     */
+    public void endPut() throws IOException {
+        writeRemainingData();
+    }
+
+    /**
+     * DOC amaumont Comment method "writeRemainingData".
+     *
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    private void writeRemainingData() throws FileNotFoundException, IOException {
+        try {
+            if (itemCountInBuffer > 0) {
+                writeBuffer(buffer, itemCountInBuffer);
+            }
+            waitPendingRun();
+        } finally {
+            if (sortExecutor != null) {
+                sortExecutor.shutdown();
+                sortExecutor = null;
+            }
+            buffer = null;
+        }
+    }
+
+    public void initGet(String container) throws FileNotFoundException {
+        throw new UnsupportedOperationException();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.talend.designer.components.thash.io.MapHashFile#getTotalSize()
+     */
+    public long getTotalSize() {
+        // TODO Auto-generated method stub
+        return 0;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * set the memory budget of the buffer before initPut, 0 to write a run only when the buffer is full.
+     *
+     * @param memoryBudgetBytes
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public boolean isParallelSort() {
+        return parallelSort;
+    }
+
+    /**
+     * set before initPut to sort the buffers with all the cores while the next buffer is filled.
+     *
+     * @param parallelSort
+     */
+    public void setParallelSort(boolean parallelSort) {
+        this.parallelSort = parallelSort;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    /**
+     * set the size of the read block of each run during the merge.
+     *
+     * @param readBufferSize
+     */
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = readBufferSize;
+    }
+
+    /**
+     * get number of buffers written to disk during the puts.
+     *
+     * @return
+     */
+    public int getSpillCount() {
+        return memoryBudget != null ? memoryBudget.getSpillCount() : 0;
+    }
+
+    public void setILightSerializable(ILightSerializable ils) {
+        this.iLightSerializable = ils;
+    }
+
+    /**
+     * get number of objects already put.
+     *
+     * @return
+     */
+    public int getObjectsCount() {
+        return beansCount;
+    }
+
+    // /////////////
+    // tips for use//
+    // /////////////
+
+    // ///before put//////
+    // SortedMultipleHashFile smh = SortedMultipleHashFile.getInstance();
+    // smh.setBufferSize(10000000);//setBufferSize
+    // smh.setILightSerializable(new Bean());//set an Instance of proccessed
+    // Bean;
+    // String container = "D:/temp/test";
+    // smh.initPut(container);
+
+    // ////do put//////
+    // smh.put(container, data);
+
+    // ////endput to merge files and gain the map//////
+    // smh.endPut();
+
+    // ////get the result map, it is a THashMap instance.//////
+    // Map map = smh.getMap();
+
+    // ////the get proccess will be the same as other IMapHashFile.//////
+    // ......
+
+    /**
+     * sort list and then use light serialization to store Data
+     *
+     * @param list
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public void writeBuffer(ILightSerializable[] list, int length) throws FileNotFoundException, IOException {
+        waitPendingRun();
+        writeRun(list, length, nextRunFile(list[0]));
+    }
+
+    private File nextRunFile(ILightSerializable firstItem) {
+        if (normalizedKeys == null) {
+            normalizedKeys = firstItem instanceof INormalizedKey;
+        }
+        File file = new File(workDirectory + "TEMP_" + count);
+        file.deleteOnExit();
+        count++;
+        files.add(file);
+        return file;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeRun(ILightSerializable[] list, int length, File file) throws IOException {
+        DataOutputStream rw = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), WRITE_BUFFER_SIZE));
+        try {
+            byte[] bytes = null;
+            if (normalizedKeys) {
+                KeyedItem[] items = new KeyedItem[length];
+                NormalizedKeyBuilder keyBuilder = new NormalizedKeyBuilder();
+                for (int i = 0; i < length; i++) {
+                    ((INormalizedKey) list[i]).writeNormalizedKey(keyBuilder.reset());
+                    items[i] = new KeyedItem(keyBuilder.toByteArray(), list[i]);
+                }
+                if (parallelSort) {
+                    Arrays.parallelSort(items, KEY_COMPARATOR);
+                } else {
+                    Arrays.sort(items, KEY_COMPARATOR);
+                }
+                for (int i = 0; i < length; i++) {
+                    rw.writeInt(items[i].key.length);
+                    rw.write(items[i].key);
+                    bytes = items[i].item.toByteArray();
+                    rw.writeInt(bytes.length);
+                    rw.write(bytes);
+                    items[i] = null;
+                }
+            } else {
+                if (parallelSort) {
+                    Arrays.parallelSort((Comparable[]) list, 0, length);
+                } else {
+                    Arrays.sort(list, 0, length);
+                }
+                for (int i = 0; i < length; i++) {
+                    bytes = list[i].toByteArray();
+                    rw.writeInt(bytes.length);
+                    rw.write(bytes);
+                }
+            }
+        } finally {
+            rw.close();
+        }
+    }
+
+    /**
+     * @param args
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    // public static void main(String[] args) throws IOException,
+    // ClassNotFoundException {
+    // ExternalSortIterator esort = new ExternalSortIterator();
+    //
+    // NumberFormat numberFormat = NumberFormat.getInstance();
+    //
+    // // int nbItems = 60000000;
+    // // int bufferSize = 2000000;
+    // // int nbItems = 60000000;
+    // // int bufferSize = 4000000;
+    // // int nbItems = 60000000;
+    // // int bufferSize = 10000000;
+    // // int nbItems = 10000000;
+    // // int bufferSize = 1000000;
+    // // int nbItems = 1000000;
+    // // int bufferSize = 100000;
+    // // int nbItems = 20;
+    // // int bufferSize = 2;
+    // int nbItems = 100;
+    // int bufferSize = 20;
+    //
+    // Random rand = new Random(System.currentTimeMillis());
+    //
+    // long start = System.currentTimeMillis();
+    //
+    // Data[] arrayData = new Data[bufferSize];
+    //
+    // int nbItemsProcessed = 0;
+    //
+    // for (int i = 0; nbItemsProcessed < nbItems; i++) {
+    // int v = rand.nextInt(nbItems);
+    //
+    // arrayData[i] = new Data("test" + v, v, 0);
+    //
+    // if (i == bufferSize - 1) {
+    //
+    // // esort.writeBuffer(arrayData);
+    // esort.writeBuffer(arrayData);
+    //
+    // long time1 = System.currentTimeMillis();
+    //
+    // Arrays.fill(arrayData, null);
+    //
+    // long time2 = System.currentTimeMillis();
+    // long deltaTimeNull = (time2 - time1);
+    // System.out.println(deltaTimeNull + " milliseconds for "
+    // + bufferSize + " objects to set buffer as null. ");
+    //
+    // nbItemsProcessed += i + 1;
+    // System.out.println(numberFormat.format(nbItemsProcessed)
+    // + " / " + numberFormat.format(nbItems) + " processed.");
+    // i = -1;
+    // }
+    //
+    // }
+    // System.out.println("Final process : merging file...");
+    // long time1 = System.currentTimeMillis();
+    //
+    // // esort.sort();
+    // // esort.mergeFiles();
+    // // esort.mergeFiles2();
+    // // esort.eMergeFiles2();
+    //
+    // for (; esort.hasNext();) {
+    // System.out.println(esort.next());
+    // ;
+    // }
+    //
+    // long time2 = System.currentTimeMillis();
+    // long deltaTimeMerge = (time2 - time1);
+    // int itemsPerSecMerge = (int) ((float) nbItems / (float) deltaTimeMerge *
+    // 1000f);
+    // System.out.println(deltaTimeMerge + " milliseconds for " + nbItems
+    // + " ordered objects to merge. " + itemsPerSecMerge
+    // + "  items/s ");
+    //
+    // long end = System.currentTimeMillis();
+    //
+    // long deltaTime = (end - start);
+    //
+    // int itemsPerSec = (int) ((float) nbItems / (float) deltaTime * 1000f);
+    //
+    // System.out.println(deltaTime + " milliseconds for " + nbItems
+    // + " objects all sort process. " + itemsPerSec + "  items/s ");
+    //
+    // }
+    public boolean hasNext() {
+        if (!haveDataWrote) {
+            return false;
+        }
+        if (isFirstNext) {
+            try {
+                beforeLoopFind();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            isFirstNext = false;
+        }
+        return heapSize > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        RunReader min = heap[0];
+        V objectToReturn = (V) (min.object != null ? min.object : iLightSerializable.createInstance(min.data));
+
+        try {
+            findNextData(min);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return objectToReturn;
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * DOC amaumont Comment method "beforeLoopFind".
+     *
+     * @throws IOException
+     */
+    private void beforeLoopFind() throws IOException {
+        int numFiles = files.size();
+        heap = new RunReader[numFiles];
+        heapSize = 0;
+        // the read blocks of all the runs share the memory budget
+        long budgetBytes = memoryBudget != null && memoryBudget.getBudgetBytes() > 0 ? memoryBudget.getBudgetBytes()
+                : readBufferSize;
+        int blockSize = (int) Math.max(MIN_READ_BUFFER_SIZE, Math.min(readBufferSize, budgetBytes / Math.max(1, numFiles)));
+
+        for (int i = 0; i < numFiles; i++) {
+            RunReader reader = new RunReader(files.get(i), i, normalizedKeys, blockSize);
+            DeleteFileOnExitUtil.add(files.get(i).getAbsolutePath(), reader);
+            if (readRecord(reader)) {
+                heap[heapSize++] = reader;
+                siftUp(heapSize - 1);
+            } else {
+                reader.close();
+            }
+        }
+        if (heapSize == 0) {
+            afterLoopFind();
+        }
+    }
+
+    /**
+     * Reads the next record of the run of the returned object and restores the heap.
+     *
+     * @throws IOException
+     */
+    private void findNextData(RunReader min) throws IOException {
+        if (!readRecord(min)) {
+            min.close();
+            heap[0] = heap[--heapSize];
+            heap[heapSize] = null;
+            if (heapSize == 0) {
+                // delete temp files
+                afterLoopFind();
+                return;
+            }
+        }
+        siftDown(0);
+    }
+
+    private boolean readRecord(RunReader reader) throws IOException {
+        if (!reader.next()) {
+            return false;
+        }
+        if (!normalizedKeys) {
+            // the beans are compared, they have to be loaded
+            reader.object = iLightSerializable.createInstance(reader.data);
+            reader.data = null;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(RunReader reader1, RunReader reader2) {
+        int result;
+        if (normalizedKeys) {
+            result = NormalizedKeyBuilder.compare(reader1.key, reader1.keyLength, reader2.key, reader2.keyLength);
+        } else {
+            result = ((Comparable) reader1.object).compareTo(reader2.object);
+        }
+        // equal rows are returned in the order of the runs, as they were put
+        return result != 0 ? result : reader1.index - reader2.index;
+    }
+
+    private void siftUp(int index) {
+        RunReader reader = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(heap[parent], reader) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = reader;
+    }
+
+    private void siftDown(int index) {
+        RunReader reader = heap[index];
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(reader, heap[child]) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = reader;
+    }
+
+    /**
+     * DOC amaumont Comment method "afterLoopFind".
+     *
+     * @throws IOException
+     */
+    private void afterLoopFind() throws IOException {
+        // close all the streams
+        for (int i = 0; i < heapSize; i++) {
+            heap[i].close();
+        }
+        heapSize = 0;
+        // delete files
+        for (int i = 0; i < files.size(); i++) {
+            files.get(i).delete();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.talend.designer.components.thash.io.IMapHashFile#endGet(java.lang .String)
+     */
+    public void endGet(String container) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.talend.designer.components.thash.io.IMapHashFile#get(java.lang.String , long, int)
+     */
+    public V get(String container, long cursorPosition, int hashcode) throws Exception {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * A bean of a run with its normalized key.
+     */
+    private static class KeyedItem {
+
+        final byte[] key;
+
+        final ILightSerializable item;
+
+        KeyedItem(byte[] key, ILightSerializable item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+
+}
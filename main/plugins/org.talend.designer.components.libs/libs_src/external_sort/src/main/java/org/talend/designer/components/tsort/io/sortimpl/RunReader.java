@@ -0,0 +1,128 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.sortimpl;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * Sequential reader of a sorted run, the file is read by large blocks through a file channel.
+ *
+ * A record is <code>[key length, key]</code> when the run has normalized keys, followed by
+ * <code>[data length, data]</code>. The key is kept in a reused array, the data is only copied when it is needed.
+ */
+class RunReader implements Closeable {
+
+    final int index;
+
+    private final boolean withKeys;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private boolean endOfFile;
+
+    byte[] key = new byte[64];
+
+    int keyLength;
+
+    byte[] data;
+
+    Object object;
+
+    RunReader(File file, int index, boolean withKeys, int readBufferSize) throws IOException {
+        this.index = index;
+        this.withKeys = withKeys;
+        this.channel = new FileInputStream(file).getChannel();
+        this.buffer = ByteBuffer.allocateDirect(readBufferSize);
+        buffer.flip();
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return false at the end of the run
+     */
+    boolean next() throws IOException {
+        object = null;
+        if (!fill(4)) {
+            data = null;
+            return false;
+        }
+        if (withKeys) {
+            keyLength = buffer.getInt();
+            if (key.length < keyLength) {
+                key = new byte[Math.max(keyLength, key.length * 2)];
+            }
+            read(key, keyLength);
+            requireFill(4);
+        }
+        data = new byte[buffer.getInt()];
+        read(data, data.length);
+        return true;
+    }
+
+    private void read(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                requireFill(1);
+            }
+            int size = Math.min(length - offset, buffer.remaining());
+            buffer.get(bytes, offset, size);
+            offset += size;
+        }
+    }
+
+    private void requireFill(int size) throws IOException {
+        if (!fill(size)) {
+            throw new EOFException("Truncated sort run"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * @return true if at least size bytes can be read from the buffer
+     */
+    private boolean fill(int size) throws IOException {
+        if (buffer.remaining() >= size) {
+            return true;
+        }
+        boolean empty = !buffer.hasRemaining();
+        buffer.compact();
+        // read a whole block, not only the missing bytes
+        while (!endOfFile && buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+        }
+        buffer.flip();
+        if (empty && buffer.remaining() == 0) {
+            return false;
+        }
+        if (buffer.remaining() < size) {
+            throw new EOFException("Truncated sort run"); //$NON-NLS-1$
+        }
+        return true;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+}
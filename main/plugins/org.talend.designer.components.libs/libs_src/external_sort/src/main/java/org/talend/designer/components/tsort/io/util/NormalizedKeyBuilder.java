@@ -0,0 +1,153 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.util;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Writes sort criteria as a binary key whose unsigned lexicographic order is the order of the criteria.
+ *
+ * The numbers are written big endian with the sign bit flipped, the floating numbers with all the bits flipped when
+ * negative, so that they are ordered as <code>compareTo</code>. The characters of the strings are written as
+ * <code>char + 1</code> on 1 to 3 bytes followed by a 0 terminator, so that a string is before the strings it is a
+ * prefix of, as <code>String.compareTo</code>. The bytes of a descending criteria are complemented.
+ */
+public class NormalizedKeyBuilder {
+
+    private byte[] bytes = new byte[64];
+
+    private int length;
+
+    public NormalizedKeyBuilder reset() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Writes the null flag of a nullable criteria, null is before any value.
+     *
+     * @param isNull true if the value is null
+     * @param descending true for a descending criteria
+     * @return true if the value has to be written
+     */
+    public boolean putNull(boolean isNull, boolean descending) {
+        put(isNull ? 0 : 1, descending);
+        return !isNull;
+    }
+
+    public void putBoolean(boolean value, boolean descending) {
+        put(value ? 1 : 0, descending);
+    }
+
+    public void putByte(byte value, boolean descending) {
+        put(value ^ 0x80, descending);
+    }
+
+    public void putShort(short value, boolean descending) {
+        putBigEndian((value ^ 0x8000) & 0xFFFFL, 2, descending);
+    }
+
+    public void putChar(char value, boolean descending) {
+        putBigEndian(value, 2, descending);
+    }
+
+    public void putInt(int value, boolean descending) {
+        putBigEndian((value ^ 0x80000000) & 0xFFFFFFFFL, 4, descending);
+    }
+
+    public void putLong(long value, boolean descending) {
+        putBigEndian(value ^ 0x8000000000000000L, 8, descending);
+    }
+
+    public void putFloat(float value, boolean descending) {
+        int bits = Float.floatToIntBits(value);
+        bits ^= (bits >> 31) | 0x80000000;
+        putBigEndian(bits & 0xFFFFFFFFL, 4, descending);
+    }
+
+    public void putDouble(double value, boolean descending) {
+        long bits = Double.doubleToLongBits(value);
+        bits ^= (bits >> 63) | 0x8000000000000000L;
+        putBigEndian(bits, 8, descending);
+    }
+
+    /**
+     * @param value a not null string
+     * @param descending true for a descending criteria
+     */
+    public void putString(String value, boolean descending) {
+        int mask = descending ? 0xFF : 0;
+        ensureCapacity(3 * value.length() + 1);
+        for (int i = 0; i < value.length(); i++) {
+            int v = value.charAt(i) + 1;
+            if (v < 0x80) {
+                bytes[length++] = (byte) (v ^ mask);
+            } else if (v < 0x4080) {
+                v -= 0x80;
+                bytes[length++] = (byte) ((0x80 | v >>> 8) ^ mask);
+                bytes[length++] = (byte) (v ^ mask);
+            } else {
+                v -= 0x4080;
+                bytes[length++] = (byte) (0xC0 ^ mask);
+                bytes[length++] = (byte) ((v >>> 8) ^ mask);
+                bytes[length++] = (byte) (v ^ mask);
+            }
+        }
+        bytes[length++] = (byte) mask;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Compares two keys as unsigned bytes.
+     */
+    public static int compare(byte[] key1, int length1, byte[] key2, int length2) {
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; i++) {
+            int b1 = key1[i] & 0xFF;
+            int b2 = key2[i] & 0xFF;
+            if (b1 != b2) {
+                return b1 - b2;
+            }
+        }
+        return length1 - length2;
+    }
+
+    private void put(int value, boolean descending) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) (descending ? ~value : value);
+    }
+
+    private void putBigEndian(long value, int size, boolean descending) {
+        ensureCapacity(size);
+        if (descending) {
+            value = ~value;
+        }
+        for (int shift = 8 * (size - 1); shift >= 0; shift -= 8) {
+            bytes[length++] = (byte) (value >>> shift);
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (length + size > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + size));
+        }
+    }
+}
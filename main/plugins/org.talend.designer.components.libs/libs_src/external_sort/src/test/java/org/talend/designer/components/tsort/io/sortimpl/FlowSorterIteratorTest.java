@@ -0,0 +1,170 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.sortimpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlowSorterIteratorTest {
+
+    /** Names with common prefixes, the rows with the same name are ordered by their id. */
+    private static final String[] NAMES = { null, "", "a", "ab", "abc", "abd", "ab\u0000", "b", "\u007f", "\u0080",
+            "é", "中", "䁿", "䂀", "￿", "😀" };
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("FlowSorterIteratorTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static List<SortTestRow> rows(int count, boolean normalizedKeys, long seed) {
+        Random random = new Random(seed);
+        List<SortTestRow> rows = new ArrayList<SortTestRow>();
+        for (int i = 0; i < count; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            // few ids, the rows with the same criteria keep the order of their puts
+            int id = random.nextInt(7) - 3;
+            if (random.nextInt(50) == 0) {
+                id = random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            }
+            String payload = "payload" + random.nextInt(1000000);
+            rows.add(normalizedKeys ? NormalizedSortTestRow.row(name, id, i, payload) : SortTestRow.row(name, id, i,
+                    payload));
+        }
+        return rows;
+    }
+
+    private FlowSorterIterator<SortTestRow> newSorter(int bufferSize, boolean parallelSort) throws IOException {
+        FlowSorterIterator<SortTestRow> sorter = new FlowSorterIterator<SortTestRow>();
+        sorter.setBufferSize(bufferSize);
+        sorter.setParallelSort(parallelSort);
+        sorter.setILightSerializable(new SortTestRow());
+        sorter.workDirectory = folder.getPath() + "/sort_";
+        sorter.initPut(sorter.workDirectory);
+        return sorter;
+    }
+
+    private static List<String> sort(FlowSorterIterator<SortTestRow> sorter, List<SortTestRow> rows)
+            throws IOException {
+        for (SortTestRow row : rows) {
+            sorter.put(null, row);
+        }
+        sorter.endPut();
+        List<String> sorted = new ArrayList<String>();
+        while (sorter.hasNext()) {
+            sorted.add(sorter.next().toString());
+        }
+        return sorted;
+    }
+
+    private static List<String> expected(List<SortTestRow> rows) {
+        List<SortTestRow> sorted = new ArrayList<SortTestRow>(rows);
+        // stable, the equal rows keep the order of their puts
+        Collections.sort(sorted);
+        List<String> strings = new ArrayList<String>();
+        for (SortTestRow row : sorted) {
+            strings.add(row.toString());
+        }
+        return strings;
+    }
+
+    private void assertSorted(boolean normalizedKeys, boolean parallelSort) throws IOException {
+        List<SortTestRow> rows = rows(20000, normalizedKeys, 42);
+        FlowSorterIterator<SortTestRow> sorter = newSorter(1500, parallelSort);
+        assertEquals(expected(rows), sort(sorter, rows));
+        // 14 runs, the last one is written by endPut
+        assertEquals(13, sorter.getSpillCount());
+        assertEquals(0, folder.listFiles().length);
+    }
+
+    @Test
+    public void testRunsMerged() throws IOException {
+        assertSorted(false, false);
+    }
+
+    @Test
+    public void testRunsMergedWithParallelSort() throws IOException {
+        assertSorted(false, true);
+    }
+
+    @Test
+    public void testRunsMergedOnNormalizedKeys() throws IOException {
+        assertSorted(true, false);
+    }
+
+    @Test
+    public void testRunsMergedOnNormalizedKeysWithParallelSort() throws IOException {
+        assertSorted(true, true);
+    }
+
+    @Test
+    public void testSingleRun() throws IOException {
+        for (boolean normalizedKeys : new boolean[] { false, true }) {
+            List<SortTestRow> rows = rows(100, normalizedKeys, 7);
+            FlowSorterIterator<SortTestRow> sorter = newSorter(1000, false);
+            assertEquals(expected(rows), sort(sorter, rows));
+            assertEquals(0, sorter.getSpillCount());
+        }
+    }
+
+    @Test
+    public void testNoRow() throws IOException {
+        FlowSorterIterator<SortTestRow> sorter = newSorter(1000, true);
+        sorter.endPut();
+        assertFalse(sorter.hasNext());
+        assertEquals(0, folder.listFiles().length);
+    }
+
+    @Test
+    public void testMemoryBudget() throws IOException {
+        for (boolean parallelSort : new boolean[] { false, true }) {
+            List<SortTestRow> rows = rows(20000, true, 11);
+            FlowSorterIterator<SortTestRow> sorter = new FlowSorterIterator<SortTestRow>();
+            sorter.setBufferSize(10000);
+            sorter.setMemoryBudgetBytes(100000);
+            sorter.setParallelSort(parallelSort);
+            sorter.setILightSerializable(new SortTestRow());
+            sorter.workDirectory = folder.getPath() + "/sort_";
+            sorter.initPut(sorter.workDirectory);
+            assertEquals(expected(rows), sort(sorter, rows));
+            // the runs are written before the buffer is full
+            assertTrue("spills: " + sorter.getSpillCount(), sorter.getSpillCount() > 20);
+        }
+    }
+}
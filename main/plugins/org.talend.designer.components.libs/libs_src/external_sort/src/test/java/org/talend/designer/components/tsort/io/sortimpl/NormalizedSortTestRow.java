@@ -0,0 +1,38 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.sortimpl;
+
+import org.talend.designer.components.tsort.io.beans.INormalizedKey;
+import org.talend.designer.components.tsort.io.util.NormalizedKeyBuilder;
+
+/**
+ * {@link SortTestRow} writing its criteria as a normalized key.
+ */
+public class NormalizedSortTestRow extends SortTestRow implements INormalizedKey {
+
+    public static NormalizedSortTestRow row(String name, int id, int sequence, String payload) {
+        return init(new NormalizedSortTestRow(), name, id, sequence, payload);
+    }
+
+    public void writeNormalizedKey(NormalizedKeyBuilder key) {
+        if (key.putNull(name == null, false)) {
+            key.putString(name, false);
+        }
+        key.putInt(id, true);
+    }
+
+    @Override
+    public SortTestRow createInstance(byte[] byteArray) {
+        return read(new NormalizedSortTestRow(), byteArray);
+    }
+}
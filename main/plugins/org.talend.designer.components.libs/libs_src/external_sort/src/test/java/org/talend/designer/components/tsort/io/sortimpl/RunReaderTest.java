@@ -0,0 +1,147 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.sortimpl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RunReaderTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("RunReaderTest", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes the records as FlowSorterIterator, then checks them with several sizes of the read block.
+     */
+    private void assertRoundTrip(boolean withKeys, byte[][] keys, byte[][] data) throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            for (int i = 0; i < data.length; i++) {
+                if (withKeys) {
+                    out.writeInt(keys[i].length);
+                    out.write(keys[i]);
+                }
+                out.writeInt(data[i].length);
+                out.write(data[i]);
+            }
+        } finally {
+            out.close();
+        }
+        for (int readBufferSize : new int[] { 8, 13, 100, 64 * 1024 }) {
+            RunReader reader = new RunReader(file, 3, withKeys, readBufferSize);
+            try {
+                assertEquals(3, reader.index);
+                for (int i = 0; i < data.length; i++) {
+                    assertTrue(reader.next());
+                    if (withKeys) {
+                        assertEquals(keys[i].length, reader.keyLength);
+                        assertArrayEquals(keys[i], Arrays.copyOf(reader.key, reader.keyLength));
+                    }
+                    assertArrayEquals(data[i], reader.data);
+                    assertNull(reader.object);
+                }
+                assertFalse(reader.next());
+                assertNull(reader.data);
+                assertFalse(reader.next());
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsWithKeys() throws IOException {
+        Random random = new Random(42);
+        int count = 500;
+        byte[][] keys = new byte[count][];
+        byte[][] data = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            // empty records, records across the blocks and larger than the blocks, keys larger than the key array
+            keys[i] = bytes(random, i % 10 == 0 ? 0 : random.nextInt(i % 50 == 1 ? 300 : 20));
+            data[i] = bytes(random, i % 7 == 0 ? 0 : random.nextInt(i % 30 == 1 ? 5000 : 40));
+        }
+        assertRoundTrip(true, keys, data);
+    }
+
+    @Test
+    public void testRecordsWithoutKeys() throws IOException {
+        Random random = new Random(7);
+        int count = 500;
+        byte[][] data = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            data[i] = bytes(random, i % 7 == 0 ? 0 : random.nextInt(i % 30 == 1 ? 5000 : 40));
+        }
+        assertRoundTrip(false, null, data);
+    }
+
+    @Test
+    public void testEmptyRun() throws IOException {
+        assertRoundTrip(true, new byte[0][], new byte[0][]);
+    }
+
+    @Test
+    public void testTruncatedRun() throws IOException {
+        // the length of the data without the data, then a part of a length
+        for (byte[] content : new byte[][] { { 0, 0, 0, 5, 1, 2 }, { 0, 0, 0, 1, 9, 0, 0 } }) {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            RunReader reader = new RunReader(file, 0, false, 8);
+            try {
+                if (content.length == 7) {
+                    assertTrue(reader.next());
+                }
+                reader.next();
+                fail("The run is truncated");
+            } catch (EOFException e) {
+                // expected
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
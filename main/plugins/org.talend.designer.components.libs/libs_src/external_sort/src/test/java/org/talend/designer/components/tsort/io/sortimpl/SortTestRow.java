@@ -0,0 +1,102 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.sortimpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.talend.designer.components.tsort.io.beans.ILightSerializable;
+
+/**
+ * Row sorted on its name ascending with the null names first, then on its id descending, written as a generated row
+ * struct of tSortRow. The sequence is not a criteria, it shows the order of the equal rows.
+ */
+public class SortTestRow implements ILightSerializable<SortTestRow> {
+
+    public String name;
+
+    public int id;
+
+    public int sequence;
+
+    public String payload;
+
+    public static SortTestRow row(String name, int id, int sequence, String payload) {
+        return init(new SortTestRow(), name, id, sequence, payload);
+    }
+
+    protected static <R extends SortTestRow> R init(R row, String name, int id, int sequence, String payload) {
+        row.name = name;
+        row.id = id;
+        row.sequence = sequence;
+        row.payload = payload;
+        return row;
+    }
+
+    public int compareTo(SortTestRow other) {
+        if (name == null || other.name == null) {
+            if (name != other.name) {
+                return name == null ? -1 : 1;
+            }
+        } else {
+            int result = name.compareTo(other.name);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return other.id < id ? -1 : other.id == id ? 0 : 1;
+    }
+
+    public SortTestRow createInstance(byte[] byteArray) {
+        return read(new SortTestRow(), byteArray);
+    }
+
+    protected static <R extends SortTestRow> R read(R row, byte[] byteArray) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(byteArray));
+            row.name = in.readBoolean() ? in.readUTF() : null;
+            row.id = in.readInt();
+            row.sequence = in.readInt();
+            row.payload = in.readUTF();
+            return row;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeBoolean(name != null);
+            if (name != null) {
+                out.writeUTF(name);
+            }
+            out.writeInt(id);
+            out.writeInt(sequence);
+            out.writeUTF(payload);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "|" + id + "|" + sequence;
+    }
+}
@@ -0,0 +1,251 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.tsort.io.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NormalizedKeyBuilderTest {
+
+    /**
+     * Writes the key of a value.
+     */
+    private interface KeyWriter<T> {
+
+        void write(NormalizedKeyBuilder key, T value, boolean descending);
+    }
+
+    private static <T extends Comparable<T>> void assertOrder(List<T> values, KeyWriter<T> writer) {
+        NormalizedKeyBuilder builder = new NormalizedKeyBuilder();
+        for (boolean descending : new boolean[] { false, true }) {
+            for (T value1 : values) {
+                writer.write(builder.reset(), value1, descending);
+                byte[] key1 = builder.toByteArray();
+                for (T value2 : values) {
+                    writer.write(builder.reset(), value2, descending);
+                    byte[] key2 = builder.toByteArray();
+                    int expected = Integer.signum(value1.compareTo(value2)) * (descending ? -1 : 1);
+                    assertEquals(value1 + " / " + value2 + (descending ? " desc" : ""), expected,
+                            Integer.signum(NormalizedKeyBuilder.compare(key1, key1.length, key2, key2.length)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInts() {
+        List<Integer> values = new ArrayList<Integer>();
+        Random random = new Random(42);
+        for (int value : new int[] { Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -256, -1, 0, 1, 255, 256,
+                Integer.MAX_VALUE }) {
+            values.add(value);
+        }
+        for (int i = 0; i < 40; i++) {
+            values.add(random.nextInt());
+        }
+        assertOrder(values, new KeyWriter<Integer>() {
+
+            public void write(NormalizedKeyBuilder key, Integer value, boolean descending) {
+                key.putInt(value, descending);
+            }
+        });
+    }
+
+    @Test
+    public void testLongs() {
+        List<Long> values = new ArrayList<Long>();
+        Random random = new Random(42);
+        for (long value : new long[] { Long.MIN_VALUE, -1L << 32, -1, 0, 1, 1L << 32, Long.MAX_VALUE }) {
+            values.add(value);
+        }
+        for (int i = 0; i < 40; i++) {
+            values.add(random.nextLong());
+        }
+        assertOrder(values, new KeyWriter<Long>() {
+
+            public void write(NormalizedKeyBuilder key, Long value, boolean descending) {
+                key.putLong(value, descending);
+            }
+        });
+    }
+
+    @Test
+    public void testSmallNumbers() {
+        List<Short> shorts = new ArrayList<Short>();
+        List<Byte> bytes = new ArrayList<Byte>();
+        List<Character> chars = new ArrayList<Character>();
+        for (int value : new int[] { -32768, -129, -128, -1, 0, 1, 127, 128, 255, 32767 }) {
+            shorts.add((short) value);
+            bytes.add((byte) value);
+            chars.add((char) value);
+        }
+        assertOrder(shorts, new KeyWriter<Short>() {
+
+            public void write(NormalizedKeyBuilder key, Short value, boolean descending) {
+                key.putShort(value, descending);
+            }
+        });
+        assertOrder(bytes, new KeyWriter<Byte>() {
+
+            public void write(NormalizedKeyBuilder key, Byte value, boolean descending) {
+                key.putByte(value, descending);
+            }
+        });
+        assertOrder(chars, new KeyWriter<Character>() {
+
+            public void write(NormalizedKeyBuilder key, Character value, boolean descending) {
+                key.putChar(value, descending);
+            }
+        });
+    }
+
+    @Test
+    public void testBooleans() {
+        List<Boolean> values = new ArrayList<Boolean>();
+        values.add(true);
+        values.add(false);
+        assertOrder(values, new KeyWriter<Boolean>() {
+
+            public void write(NormalizedKeyBuilder key, Boolean value, boolean descending) {
+                key.putBoolean(value, descending);
+            }
+        });
+    }
+
+    @Test
+    public void testFloatingNumbers() {
+        // in the order of Double.compareTo, -0.0 before 0.0 and NaN last
+        List<Double> doubles = new ArrayList<Double>();
+        List<Float> floats = new ArrayList<Float>();
+        Random random = new Random(42);
+        for (double value : new double[] { Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1.5, -Double.MIN_VALUE, -0.0,
+                0.0, Double.MIN_VALUE, 1.5, Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN }) {
+            doubles.add(value);
+            floats.add((float) value);
+        }
+        for (int i = 0; i < 20; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+            doubles.add(value);
+            floats.add((float) value);
+        }
+        assertOrder(doubles, new KeyWriter<Double>() {
+
+            public void write(NormalizedKeyBuilder key, Double value, boolean descending) {
+                key.putDouble(value, descending);
+            }
+        });
+        assertOrder(floats, new KeyWriter<Float>() {
+
+            public void write(NormalizedKeyBuilder key, Float value, boolean descending) {
+                key.putFloat(value, descending);
+            }
+        });
+    }
+
+    @Test
+    public void testStrings() {
+        List<String> values = new ArrayList<String>();
+        // the prefixes, the limits of the 1, 2 and 3 bytes characters, and the surrogates
+        for (String value : new String[] { "", "a", "ab", "abc", "abd", "ab\u0000", "ab\u0000c", "\u0000", "~",
+                "\u007f", "\u0080", "é", "䁿", "䂀", "中", "😀", "￿", "￿￿" }) {
+            values.add(value);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 40; i++) {
+            char[] chars = new char[random.nextInt(4)];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = (char) random.nextInt(random.nextBoolean() ? 0x100 : 0x10000);
+            }
+            values.add(new String(chars));
+        }
+        assertOrder(values, new KeyWriter<String>() {
+
+            public void write(NormalizedKeyBuilder key, String value, boolean descending) {
+                key.putString(value, descending);
+            }
+        });
+    }
+
+    /**
+     * Row with a nullable name and an id, as the criteria of a tSortRow.
+     */
+    private static class Criteria implements Comparable<Criteria> {
+
+        final String name;
+
+        final int id;
+
+        Criteria(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        public int compareTo(Criteria other) {
+            if (name != other.name && (name == null || other.name == null)) {
+                return name == null ? -1 : 1;
+            }
+            int result = name == null ? 0 : name.compareTo(other.name);
+            return result != 0 ? result : id < other.id ? -1 : id == other.id ? 0 : 1;
+        }
+
+        @Override
+        public String toString() {
+            return name + "|" + id;
+        }
+    }
+
+    @Test
+    public void testNullsAndSeveralCriteria() {
+        List<Criteria> values = new ArrayList<Criteria>();
+        // the same prefix with different second criteria
+        for (String name : new String[] { null, "", "a", "ab", "b" }) {
+            for (int id : new int[] { Integer.MIN_VALUE, -1, 0, 1, Integer.MAX_VALUE }) {
+                values.add(new Criteria(name, id));
+            }
+        }
+        assertOrder(values, new KeyWriter<Criteria>() {
+
+            public void write(NormalizedKeyBuilder key, Criteria value, boolean descending) {
+                if (key.putNull(value.name == null, descending)) {
+                    key.putString(value.name, descending);
+                }
+                key.putInt(value.id, descending);
+            }
+        });
+    }
+
+    @Test
+    public void testGrowAndReset() {
+        NormalizedKeyBuilder builder = new NormalizedKeyBuilder();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+        builder.putString(value.toString(), false);
+        builder.putLong(1, false);
+        assertEquals(1000 + 1 + 8, builder.getLength());
+        byte[] key = builder.toByteArray();
+        assertEquals(1009, key.length);
+        assertEquals('a' + 1, key[0]);
+        assertEquals(0, key[1000]);
+
+        builder.reset().putInt(0, false);
+        assertArrayEquals(new byte[] { (byte) 0x80, 0, 0, 0 }, builder.toByteArray());
+    }
+}
@@ -0,0 +1,763 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a delimited file on its bytes, as {@link TOSDelimitedReader} reads it on its chars.
+ *
+ * The delimiters are searched in the bytes of the file and only the offsets of the columns of the current record are
+ * kept, a column is decoded when it is asked: {@link #get(int)} decodes it to a String, {@link #getInt(int, boolean)},
+ * {@link #getLong(int, boolean)}, {@link #getBigDecimal(int, boolean)} and {@link #getDate(int, String)} parse it from
+ * its bytes. The columns which are never asked are never decoded.
+ *
+ * The bytes can only be searched for the delimiters in UTF-8 and in the single byte encodings which extend ASCII, see
+ * {@link #isSupported(String, String, String, String)}.
+ */
+public class ByteDelimitedReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int INITIAL_COLUMN_COUNT = 10;
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private InputStream inputStream;
+
+    private Charset charset;
+
+    private final String fieldDelimiterString;
+
+    private final String recordDelimiterString;
+
+    private byte[] fieldDelimiter;
+
+    private byte[] recordDelimiter;
+
+    /** "\n" as record delimiter is any of "\r\n", "\r" and "\n". */
+    private final boolean lineFeedAll;
+
+    /** Bytes which must be in the buffer after the current position to match a delimiter. */
+    private int maxLimit;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int count = 0;
+
+    private int position = 0;
+
+    private boolean streamEnd = false;
+
+    private boolean bomChecked = false;
+
+    private int recordStart = 0;
+
+    private int columnStart = 0;
+
+    private int[] starts = new int[INITIAL_COLUMN_COUNT];
+
+    private int[] ends = new int[INITIAL_COLUMN_COUNT];
+
+    private int columnsCount = 0;
+
+    private long currentRecord = 0;
+
+    private int header = 0;
+
+    private boolean skipEmptyRecord = false;
+
+    private boolean splitRecord = false;
+
+    private boolean hasReadRecord = false;
+
+    private boolean closed = false;
+
+    private Calendar calendar;
+
+    private Map<String, Object> datePatterns;
+
+    public ByteDelimitedReader(String fileName, String encoding, String fieldDelimiter, String recordDelimiter,
+            boolean needSkipEmptyRecord) throws IOException {
+        this(new FileInputStream(checkNotNull(fileName)), encoding, fieldDelimiter, recordDelimiter, needSkipEmptyRecord);
+    }
+
+    public ByteDelimitedReader(InputStream is, String encoding, String fieldDelimiter, String recordDelimiter,
+            boolean needSkipEmptyRecord) throws IOException {
+        if (is == null || fieldDelimiter == null || recordDelimiter == null) {
+            throw new IllegalArgumentException("Parameter can't be null.");
+        }
+        this.charset = charsetOf(encoding);
+        if (!isSupported(charset, fieldDelimiter, recordDelimiter)) {
+            is.close();
+            throw new IllegalArgumentException("The encoding " + charset.name() + " can't be read on its bytes.");
+        }
+        this.inputStream = is;
+        this.lineFeedAll = recordDelimiter.equals("\n");
+        this.fieldDelimiterString = fieldDelimiter;
+        this.recordDelimiterString = recordDelimiter;
+        encodeDelimiters();
+        this.skipEmptyRecord = needSkipEmptyRecord;
+    }
+
+    private void encodeDelimiters() {
+        fieldDelimiter = fieldDelimiterString.getBytes(charset);
+        recordDelimiter = lineFeedAll ? new byte[] { CR, LF } : recordDelimiterString.getBytes(charset);
+        maxLimit = Math.max(1, Math.max(fieldDelimiter.length, recordDelimiter.length));
+    }
+
+    private static String checkNotNull(String fileName) {
+        if (fileName == null) {
+            throw new IllegalArgumentException("Parameter can't be null.");
+        }
+        return fileName;
+    }
+
+    private static Charset charsetOf(String encoding) {
+        return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
+
+    /**
+     * @return true if the file can be read on its bytes: its encoding is UTF-8 or a single byte encoding which extends
+     * ASCII, it has no UTF-16 or UTF-32 BOM, and the delimiters can be encoded
+     */
+    public static boolean isSupported(String fileName, String encoding, String fieldDelimiter, String recordDelimiter)
+            throws IOException {
+        if (fileName == null || fieldDelimiter == null || recordDelimiter == null) {
+            return false;
+        }
+        FileInputStream stream = new FileInputStream(fileName);
+        try {
+            byte[] bom = new byte[4];
+            int n = stream.read(bom);
+            if (n >= 3 && bom[0] == UTF8_BOM[0] && bom[1] == UTF8_BOM[1] && bom[2] == UTF8_BOM[2]) {
+                return isSupported(Charset.forName("UTF-8"), fieldDelimiter, recordDelimiter);
+            }
+            if (n >= 2 && (bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF || bom[0] == (byte) 0xFF && bom[1] == (byte) 0xFE)
+                    || n >= 4 && bom[0] == 0 && bom[1] == 0 && bom[2] == (byte) 0xFE && bom[3] == (byte) 0xFF) {
+                // UTF-16 and UTF-32 BOM
+                return false;
+            }
+        } finally {
+            stream.close();
+        }
+        return isSupported(charsetOf(encoding), fieldDelimiter, recordDelimiter);
+    }
+
+    private static boolean isSupported(Charset charset, String fieldDelimiter, String recordDelimiter) {
+        if (!charset.name().equals("UTF-8")) {
+            if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1f) {
+                return false;
+            }
+            // the delimiters and the blanks are the same bytes as in ASCII
+            byte[] ascii = new byte[128];
+            for (int i = 0; i < ascii.length; i++) {
+                ascii[i] = (byte) i;
+            }
+            String decoded = new String(ascii, charset);
+            for (int i = 0; i < ascii.length; i++) {
+                if (decoded.charAt(i) != i) {
+                    return false;
+                }
+            }
+        }
+        return new String(fieldDelimiter.getBytes(charset), charset).equals(fieldDelimiter)
+                && new String(recordDelimiter.getBytes(charset), charset).equals(recordDelimiter);
+    }
+
+    public boolean readRecord() throws IOException {
+        checkClosed();
+
+        boolean in = false;
+
+        hasReadRecord = false;
+
+        columnsCount = 0;
+        recordStart = position;
+        columnStart = position;
+
+        while (!hasReadRecord) {
+            if (count - position < maxLimit && !streamEnd) {
+                fill();
+                continue;
+            }
+            if (position >= count) {
+                break;
+            }
+            in = true;
+
+            byte b = buffer[position];
+            int length;
+            if (splitRecord) {
+                if ((length = recordDelimiterLength(b)) > 0) {
+                    endColumn();
+                    position += length;
+                    endRecord();
+                } else if (isFieldDelimiter(b)) {
+                    endColumn();
+                    position += fieldDelimiter.length;
+                    columnStart = position;
+                } else {
+                    position++;
+                }
+            } else {
+                if (isFieldDelimiter(b)) {
+                    endColumn();
+                    position += fieldDelimiter.length;
+                    columnStart = position;
+                } else if ((length = recordDelimiterLength(b)) > 0) {
+                    endColumn();
+                    position += length;
+                    endRecord();
+                } else {
+                    position++;
+                }
+            }
+        }
+
+        // the end of the file ends the last record, but a record delimiter at the end of the file is not followed by an
+        // empty record
+        if (!hasReadRecord && in) {
+            endColumn();
+            endRecord();
+        }
+
+        return hasReadRecord;
+    }
+
+    private boolean isFieldDelimiter(byte b) {
+        int length = fieldDelimiter.length;
+        if (length == 0 || b != fieldDelimiter[0] || count - position < length) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if (buffer[position + i] != fieldDelimiter[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the length of the record delimiter at the current position, or 0
+     */
+    private int recordDelimiterLength(byte b) {
+        if (lineFeedAll) {
+            if (b == LF) {
+                return 1;
+            } else if (b == CR) {
+                return position + 1 < count && buffer[position + 1] == LF ? 2 : 1;
+            }
+            return 0;
+        }
+        int length = recordDelimiter.length;
+        if (length == 0 || b != recordDelimiter[0] || count - position < length) {
+            return 0;
+        }
+        for (int i = 1; i < length; i++) {
+            if (buffer[position + i] != recordDelimiter[i]) {
+                return 0;
+            }
+        }
+        return length;
+    }
+
+    private void endColumn() {
+        if (columnsCount == starts.length) {
+            starts = Arrays.copyOf(starts, starts.length * 2);
+            ends = Arrays.copyOf(ends, ends.length * 2);
+        }
+        starts[columnsCount] = columnStart;
+        ends[columnsCount] = position;
+        columnsCount++;
+    }
+
+    private void endRecord() {
+        if (header > 0) {
+            header--;
+        } else if (skipEmptyRecord && (columnsCount == 0 || columnsCount == 1 && starts[0] == ends[0])) {
+            columnsCount = 0;
+            recordStart = position;
+            columnStart = position;
+            return;
+        }
+        hasReadRecord = true;
+        currentRecord++;
+    }
+
+    /**
+     * Moves the current record to the head of the buffer, grows the buffer when the record fills it, and reads the next
+     * bytes.
+     */
+    private void fill() throws IOException {
+        if (recordStart > 0) {
+            int shift = recordStart;
+            System.arraycopy(buffer, shift, buffer, 0, count - shift);
+            count -= shift;
+            position -= shift;
+            columnStart -= shift;
+            recordStart = 0;
+            for (int i = 0; i < columnsCount; i++) {
+                starts[i] -= shift;
+                ends[i] -= shift;
+            }
+        } else if (count == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read;
+        do {
+            try {
+                read = inputStream.read(buffer, count, buffer.length - count);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            if (read < 0) {
+                streamEnd = true;
+            } else {
+                count += read;
+            }
+            // the BOM is only looked for once its bytes are read
+        } while (!bomChecked && !streamEnd && count < UTF8_BOM.length);
+        if (!bomChecked) {
+            bomChecked = true;
+            if (count >= UTF8_BOM.length && buffer[0] == UTF8_BOM[0] && buffer[1] == UTF8_BOM[1]
+                    && buffer[2] == UTF8_BOM[2]) {
+                // as UnicodeReader, the BOM overrides the encoding
+                charset = Charset.forName("UTF-8");
+                encodeDelimiters();
+                position = UTF8_BOM.length;
+                recordStart = position;
+                columnStart = position;
+            }
+        }
+    }
+
+    /**
+     * when read a new record or get content of the column, there should check the stream first.
+     */
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("This instance of the ByteDelimitedReader class has already been closed.");
+        }
+    }
+
+    /**
+     * get one column value with a given column index for the current record.
+     */
+    public String get(int columnIndex) throws IOException {
+        checkClosed();
+        if (columnIndex > -1 && columnIndex < columnsCount) {
+            return new String(buffer, starts[columnIndex], ends[columnIndex] - starts[columnIndex], charset);
+        }
+        return "";
+    }
+
+    /**
+     * get a copy of the column values of the current record, it is kept when the next records are read.
+     */
+    public String[] getValues() throws IOException {
+        String[] values = new String[columnsCount];
+        for (int i = 0; i < columnsCount; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    /**
+     * @return the first byte of the column, without the blanks when trim, the blanks are the same as for
+     * {@link String#trim()}
+     */
+    private int start(int columnIndex, boolean trim) {
+        int start = starts[columnIndex];
+        if (trim) {
+            int end = ends[columnIndex];
+            while (start < end && (buffer[start] & 0xFF) <= ' ') {
+                start++;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * @return the byte after the column, without the blanks when trim
+     */
+    private int end(int columnIndex, boolean trim) {
+        int end = ends[columnIndex];
+        if (trim) {
+            int start = starts[columnIndex];
+            while (end > start && (buffer[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return true if the column is empty, or only has blanks when trim
+     */
+    public boolean isEmpty(int columnIndex, boolean trim) throws IOException {
+        checkClosed();
+        if (columnIndex > -1 && columnIndex < columnsCount) {
+            return start(columnIndex, trim) >= end(columnIndex, trim);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of digits of a column which is only an optional minus sign followed by digits, and an optional
+     * point followed by digits when decimal is true, or -1
+     */
+    private int plainDigits(int columnIndex, boolean trim, boolean decimal) {
+        if (columnIndex < 0 || columnIndex >= columnsCount) {
+            return -1;
+        }
+        int start = start(columnIndex, trim);
+        int end = end(columnIndex, trim);
+        if (start < end && buffer[start] == '-') {
+            start++;
+        }
+        int digits = 0;
+        boolean point = false;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b >= '0' && b <= '9') {
+                digits++;
+            } else if (decimal && b == '.' && !point && i > start && i < end - 1) {
+                point = true;
+            } else {
+                return -1;
+            }
+        }
+        return digits == 0 ? -1 : digits;
+    }
+
+    /**
+     * @return true if the column is an int which can be parsed from its bytes
+     */
+    public boolean isPlainInt(int columnIndex, boolean trim) {
+        int digits = plainDigits(columnIndex, trim, false);
+        return digits > 0 && digits <= 9;
+    }
+
+    /**
+     * @return true if the column is a long which can be parsed from its bytes
+     */
+    public boolean isPlainLong(int columnIndex, boolean trim) {
+        int digits = plainDigits(columnIndex, trim, false);
+        return digits > 0 && digits <= 18;
+    }
+
+    /**
+     * @return true if the column is a decimal number which can be parsed from its bytes
+     */
+    public boolean isPlainDecimal(int columnIndex, boolean trim) {
+        int digits = plainDigits(columnIndex, trim, true);
+        return digits > 0 && digits <= 18;
+    }
+
+    /**
+     * Parses the digits of a plain number, the point is skipped.
+     */
+    private long parseUnscaled(int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b != '.') {
+                value = value * 10 + (b - '0');
+            }
+        }
+        return value;
+    }
+
+    /**
+     * As Integer.parseInt(get(columnIndex)), with the column trimmed when trim.
+     */
+    public int getInt(int columnIndex, boolean trim) throws IOException {
+        if (isPlainInt(columnIndex, trim)) {
+            return (int) getLong(columnIndex, trim);
+        }
+        return Integer.parseInt(trim ? get(columnIndex).trim() : get(columnIndex));
+    }
+
+    /**
+     * As Long.parseLong(get(columnIndex)), with the column trimmed when trim.
+     */
+    public long getLong(int columnIndex, boolean trim) throws IOException {
+        checkClosed();
+        if (isPlainLong(columnIndex, trim)) {
+            int start = start(columnIndex, trim);
+            int end = end(columnIndex, trim);
+            if (buffer[start] == '-') {
+                return -parseUnscaled(start + 1, end);
+            }
+            return parseUnscaled(start, end);
+        }
+        return Long.parseLong(trim ? get(columnIndex).trim() : get(columnIndex));
+    }
+
+    /**
+     * As new BigDecimal(get(columnIndex)), with the column trimmed when trim.
+     */
+    public BigDecimal getBigDecimal(int columnIndex, boolean trim) throws IOException {
+        checkClosed();
+        if (isPlainDecimal(columnIndex, trim)) {
+            int start = start(columnIndex, trim);
+            int end = end(columnIndex, trim);
+            boolean negative = buffer[start] == '-';
+            int scale = 0;
+            for (int i = end - 1; i > start; i--) {
+                if (buffer[i] == '.') {
+                    scale = end - 1 - i;
+                    break;
+                }
+            }
+            long unscaled = parseUnscaled(negative ? start + 1 : start, end);
+            return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+        }
+        return new BigDecimal(trim ? get(columnIndex).trim() : get(columnIndex));
+    }
+
+    /**
+     * Parses a date with the pattern, as a SimpleDateFormat which is not lenient and which must parse the whole column.
+     * The patterns which only have numeric fields are parsed from the bytes of the column when each field has as many
+     * digits as the pattern.
+     *
+     * @return the date, or null when the column is empty
+     */
+    public Date getDate(int columnIndex, String pattern) throws IOException, ParseException {
+        checkClosed();
+        if (isEmpty(columnIndex, false)) {
+            return null;
+        }
+        if (datePatterns == null) {
+            datePatterns = new HashMap<String, Object>();
+            calendar = new GregorianCalendar();
+            calendar.setLenient(false);
+        }
+        Object parsed = datePatterns.get(pattern);
+        if (parsed == null) {
+            parsed = NumericDatePattern.compile(pattern);
+            if (parsed == null) {
+                SimpleDateFormat format = new SimpleDateFormat(pattern);
+                format.setLenient(false);
+                parsed = format;
+            }
+            datePatterns.put(pattern, parsed);
+        }
+        if (parsed instanceof NumericDatePattern) {
+            NumericDatePattern numeric = (NumericDatePattern) parsed;
+            if (numeric.parse(buffer, starts[columnIndex], ends[columnIndex], calendar)) {
+                try {
+                    return calendar.getTime();
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException("Unparseable date: \"" + get(columnIndex) + "\"", 0);
+                }
+            }
+            parsed = numeric.getFormat();
+        }
+        String value = get(columnIndex);
+        ParsePosition parsePosition = new ParsePosition(0);
+        Date date = ((SimpleDateFormat) parsed).parse(value, parsePosition);
+        if (date == null || parsePosition.getIndex() != value.length()) {
+            throw new ParseException("Unparseable date: \"" + value + "\"", parsePosition.getErrorIndex());
+        }
+        return date;
+    }
+
+    public int getAvailableColumnsCount() {
+        return columnsCount;
+    }
+
+    /**
+     * get the result how many records have been read.
+     */
+    public long getProcessedRecordCount() {
+        return currentRecord;
+    }
+
+    /**
+     * skip the some records of the beginning in the file, and set the "currentRecord = 0"
+     */
+    public void skipHeaders(int header) throws IOException {
+        this.header = header;
+        checkClosed();
+        if (header <= 0) {
+            return;
+        }
+        for (int i = 0; i < header; i++) {
+            readRecord();
+        }
+        currentRecord = 0;
+    }
+
+    /**
+     * See {@link TOSDelimitedReader#setSplitRecord(boolean)}.
+     */
+    public void setSplitRecord(boolean splitRecord) {
+        this.splitRecord = splitRecord;
+    }
+
+    /**
+     * Closes and releases all related resources.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            buffer = null;
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                // just ignore the exception
+            }
+            inputStream = null;
+        }
+    }
+
+    /**
+     * A date pattern which only has numeric fields of years, months, days, hours, minutes, seconds and milliseconds, and
+     * quoted or not letters between them.
+     */
+    private static class NumericDatePattern {
+
+        private static final String FIELDS = "yMdHmsS";
+
+        private static final int[] CALENDAR_FIELDS = { Calendar.YEAR, Calendar.MONTH, Calendar.DAY_OF_MONTH,
+                Calendar.HOUR_OF_DAY, Calendar.MINUTE, Calendar.SECOND, Calendar.MILLISECOND };
+
+        /** Calendar field of each byte of the pattern, or -1 for a literal byte. */
+        private final int[] fields;
+
+        private final byte[] literals;
+
+        private final String pattern;
+
+        private SimpleDateFormat format;
+
+        private NumericDatePattern(String pattern, int[] fields, byte[] literals) {
+            this.pattern = pattern;
+            this.fields = fields;
+            this.literals = literals;
+        }
+
+        static NumericDatePattern compile(String pattern) {
+            int[] fields = new int[pattern.length()];
+            StringBuilder literals = new StringBuilder();
+            boolean quoted = false;
+            int length = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                        fields[length++] = -1;
+                        literals.append(c);
+                        i++;
+                    } else {
+                        quoted = !quoted;
+                    }
+                    continue;
+                }
+                int field = quoted ? -1 : FIELDS.indexOf(c);
+                if (field < 0 && !quoted && (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+                    // the other fields are not numeric
+                    return null;
+                }
+                if (field == 0 && (i + 2 >= pattern.length() || pattern.charAt(i + 1) != 'y' || pattern.charAt(i + 2) != 'y')
+                        && (i == 0 || pattern.charAt(i - 1) != 'y')) {
+                    // "y" and "yy" are years of two digits in the current century
+                    return null;
+                }
+                if (field < 0 && (c == '-' || c == '+' || c >= '0' && c <= '9' || c > 127)) {
+                    // a literal which could be a part of a number, or which is not a single byte
+                    return null;
+                }
+                fields[length++] = field;
+                literals.append(field < 0 ? c : ' ');
+            }
+            if (quoted || length == 0) {
+                return null;
+            }
+            return new NumericDatePattern(pattern, Arrays.copyOf(fields, length), literals.toString().getBytes(
+                    Charset.forName("US-ASCII")));
+        }
+
+        /**
+         * Sets the fields of the calendar from the bytes.
+         *
+         * @return false if the bytes do not match the pattern
+         */
+        boolean parse(byte[] bytes, int start, int end, Calendar calendar) {
+            if (end - start != fields.length) {
+                return false;
+            }
+            calendar.clear();
+            int i = 0;
+            while (i < fields.length) {
+                int field = fields[i];
+                if (field < 0) {
+                    if (bytes[start + i] != literals[i]) {
+                        return false;
+                    }
+                    i++;
+                    continue;
+                }
+                int value = 0;
+                int first = i;
+                while (i < fields.length && fields[i] == field && i - first < 9) {
+                    byte b = bytes[start + i];
+                    if (b < '0' || b > '9') {
+                        return false;
+                    }
+                    value = value * 10 + (b - '0');
+                    i++;
+                }
+                calendar.set(CALENDAR_FIELDS[field], CALENDAR_FIELDS[field] == Calendar.MONTH ? value - 1 : value);
+            }
+            return true;
+        }
+
+        SimpleDateFormat getFormat() {
+            if (format == null) {
+                format = new SimpleDateFormat(pattern);
+                format.setLenient(false);
+            }
+            return format;
+        }
+    }
+}
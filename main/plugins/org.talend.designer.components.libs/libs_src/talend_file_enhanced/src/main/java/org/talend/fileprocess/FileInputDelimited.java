@@ -23,31 +23,52 @@ package org.talend.fileprocess;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Random;
-import java.util.Set;
 
 /**
  * FileInputDelimited is dedicated to Talend's tFileInputDelimited component. It wraps all parameters in
  * tFileInputDelimted, so it makes the generated code much easier and cleaner. This class is not recommended to use in
  * other circumstance.<br/>
  *
+ * The file is read only once: the footer rows are found by reading the rows ahead in a ring buffer of footer rows, and
+ * the random rows are sampled with a reservoir while the file is read.
+ *
  * @author gke
  */
 public class FileInputDelimited {
 
     private TOSDelimitedReader delimitedDataReader = null;
 
-    Iterator<Integer> random = null;
+    /** Reader of the file with several threads, null when the file is read by delimitedDataReader. */
+    private ParallelDelimitedReader parallelReader = null;
 
-    private long loopCount = 0;
+    /** Reader of the bytes of the file, null when the file is read by another reader. */
+    private ByteDelimitedReader byteReader = null;
 
-    private boolean randomSwitch = false;
+    private long loopCount = 0;
 
-    private int current = 0;
+    private long current = 0;
 
     private boolean countNeedAdjust = false;
 
+    /** True when the rows are read ahead to skip the footer and are returned as they are read. */
+    private boolean lookAhead = false;
+
+    private boolean endOfFile = false;
+
+    /** Ring buffer of the rows read ahead, the last ones are the footer at the end of the file. */
+    private String[][] footerBuffer = null;
+
+    private int footerStart = 0;
+
+    /** Sampled rows, in the order of the file. */
+    private String[][] samples = null;
+
+    /** Values of the current row when it does not come directly from the reader. */
+    private String[] currentValues = null;
+
     /**
      * This constructor is only for compatibility with the old usecase.(Before add the function support split Record.)
      *
@@ -83,55 +104,10 @@ public class FileInputDelimited {
      */
     public FileInputDelimited(java.io.InputStream is, String encoding, String fieldSeparator, String rowSeparator,
             boolean skipEmptyRow, int header, int footer, int limit, int random, boolean splitRecord) throws IOException {
-        if (header < 0) {
-            header = 0;
-        }
-        if (footer < 0) {
-            footer = 0;
-        }
         if (random != 0 && limit != 0) {
             this.delimitedDataReader = new TOSDelimitedReader(is, encoding, fieldSeparator, rowSeparator, skipEmptyRow);
             this.delimitedDataReader.setSplitRecord(splitRecord);
-
-            this.delimitedDataReader.skipHeaders(header);
-            if (random < 0 && footer == 0) {
-                if (limit > 0) {
-                    this.loopCount = limit;
-                } else {
-                    this.loopCount = -1;
-                }
-                this.countNeedAdjust = true;
-            } else {
-                // for stream,not support the footer
-                int count = (int) this.delimitedDataReader.getAvailableRowCount(footer);
-                this.delimitedDataReader.close();
-                this.delimitedDataReader = new TOSDelimitedReader(is, encoding, fieldSeparator, rowSeparator, skipEmptyRow);
-                this.delimitedDataReader.setSplitRecord(splitRecord);
-
-                this.delimitedDataReader.skipHeaders(header);
-                if (limit > 0 && random < 0) {
-                    this.loopCount = limit < count ? limit : count;
-                } else if (limit < 0 && random > 0) {
-                    if (random >= count) {
-                        this.loopCount = count;
-                    } else {
-                        setRandoms(random, count);
-                        this.loopCount = random;
-                    }
-                } else if (limit > 0 && random > 0) {
-                    if (random >= limit) {
-                        random = limit;
-                    }
-                    if (random >= count) {
-                        this.loopCount = count;
-                    } else {
-                        setRandoms(random, count);
-                        this.loopCount = random;
-                    }
-                } else {
-                    this.loopCount = count;
-                }
-            }
+            init(header, footer, limit, random);
         } else {
             loopCount = 0;
         }
@@ -154,54 +130,50 @@ public class FileInputDelimited {
      */
     public FileInputDelimited(String file, String encoding, String fieldSeparator, String rowSeparator, boolean skipEmptyRow,
             int header, int footer, int limit, int random, boolean splitRecord) throws IOException {
-        if (header < 0) {
-            header = 0;
-        }
-        if (footer < 0) {
-            footer = 0;
-        }
-        if (random != 0 && limit != 0) {
+        this(file, encoding, fieldSeparator, rowSeparator, skipEmptyRow, header, footer, limit, random, splitRecord, 1);
+    }
+
+    /**
+     * The file is read by several threads when threads is greater than 1, there is no footer and no random rows, and
+     * the file can be split on its record delimiters, see {@link ParallelDelimitedReader#isSupported}. Otherwise it is
+     * read as with the other constructors.
+     *
+     * @param threads the number of threads parsing the file
+     */
+    public FileInputDelimited(String file, String encoding, String fieldSeparator, String rowSeparator, boolean skipEmptyRow,
+            int header, int footer, int limit, int random, boolean splitRecord, int threads) throws IOException {
+        this(file, encoding, fieldSeparator, rowSeparator, skipEmptyRow, header, footer, limit, random, splitRecord, threads,
+                false);
+    }
+
+    /**
+     * The file is read on its bytes when byteParser is true, it is read by a single thread, there is no footer and no
+     * random rows, and its encoding can be read on its bytes, see {@link ByteDelimitedReader#isSupported}. The columns
+     * are then only decoded when they are asked.
+     *
+     * @param threads the number of threads parsing the file
+     * @param byteParser true to read the file on its bytes
+     */
+    public FileInputDelimited(String file, String encoding, String fieldSeparator, String rowSeparator, boolean skipEmptyRow,
+            int header, int footer, int limit, int random, boolean splitRecord, int threads, boolean byteParser)
+            throws IOException {
+        if (threads > 1 && footer <= 0 && random < 0 && limit != 0
+                && ParallelDelimitedReader.isSupported(file, encoding, fieldSeparator, rowSeparator)) {
+            this.parallelReader = new ParallelDelimitedReader(file, encoding, fieldSeparator, rowSeparator, skipEmptyRow,
+                    header < 0 ? 0 : header, splitRecord, threads);
+            this.loopCount = limit > 0 ? limit : -1;
+            this.countNeedAdjust = true;
+        } else if (byteParser && footer <= 0 && random < 0 && limit != 0
+                && ByteDelimitedReader.isSupported(file, encoding, fieldSeparator, rowSeparator)) {
+            this.byteReader = new ByteDelimitedReader(file, encoding, fieldSeparator, rowSeparator, skipEmptyRow);
+            this.byteReader.setSplitRecord(splitRecord);
+            this.byteReader.skipHeaders(header < 0 ? 0 : header);
+            this.loopCount = limit > 0 ? limit : -1;
+            this.countNeedAdjust = true;
+        } else if (random != 0 && limit != 0) {
             this.delimitedDataReader = new TOSDelimitedReader(file, encoding, fieldSeparator, rowSeparator, skipEmptyRow);
             this.delimitedDataReader.setSplitRecord(splitRecord);
-
-            this.delimitedDataReader.skipHeaders(header);
-            if (random < 0 && footer == 0) {
-                if (limit > 0) {
-                    this.loopCount = limit;
-                } else {
-                    this.loopCount = -1;
-                }
-                this.countNeedAdjust = true;
-            } else {
-                int count = (int) this.delimitedDataReader.getAvailableRowCount(footer);
-                this.delimitedDataReader.close();
-                this.delimitedDataReader = new TOSDelimitedReader(file, encoding, fieldSeparator, rowSeparator, skipEmptyRow);
-                this.delimitedDataReader.setSplitRecord(splitRecord);
-
-                this.delimitedDataReader.skipHeaders(header);
-                if (limit > 0 && random < 0) {
-                    this.loopCount = limit < count ? limit : count;
-                } else if (limit < 0 && random > 0) {
-                    if (random >= count) {
-                        this.loopCount = count;
-                    } else {
-                        setRandoms(random, count);
-                        this.loopCount = random;
-                    }
-                } else if (limit > 0 && random > 0) {
-                    if (random >= limit) {
-                        random = limit;
-                    }
-                    if (random >= count) {
-                        this.loopCount = count;
-                    } else {
-                        setRandoms(random, count);
-                        this.loopCount = random;
-                    }
-                } else {
-                    this.loopCount = count;
-                }
-            }
+            init(header, footer, limit, random);
         } else {
             loopCount = 0;
         }
@@ -222,69 +194,114 @@ public class FileInputDelimited {
      */
     public FileInputDelimited(String content, String fieldSeparator, String rowSeparator, boolean skipEmptyRow, int header,
             int footer, int limit, int random, boolean splitRecord) throws IOException {
+        if (random != 0 && limit != 0) {
+            this.delimitedDataReader = new TOSDelimitedReader(new StringReader(content), fieldSeparator, rowSeparator,
+                    skipEmptyRow);
+            this.delimitedDataReader.setSplitRecord(splitRecord);
+            init(header, footer, limit, random);
+        } else {
+            loopCount = 0;
+        }
+    }
+
+    private void init(int header, int footer, int limit, int random) throws IOException {
         if (header < 0) {
             header = 0;
         }
         if (footer < 0) {
             footer = 0;
         }
-        if (random != 0 && limit != 0) {
-            StringReader stringReaderOne = new StringReader(content);
-            this.delimitedDataReader = new TOSDelimitedReader(stringReaderOne, fieldSeparator, rowSeparator, skipEmptyRow);
-            this.delimitedDataReader.setSplitRecord(splitRecord);
-
-            this.delimitedDataReader.skipHeaders(header);
-            if (random < 0 && footer == 0) {
-                if (limit > 0) {
-                    this.loopCount = limit;
-                } else {
-                    this.loopCount = -1;
-                }
-                this.countNeedAdjust = true;
+        this.delimitedDataReader.skipHeaders(header);
+        if (random < 0 && footer == 0) {
+            if (limit > 0) {
+                this.loopCount = limit;
             } else {
-                int count = (int) this.delimitedDataReader.getAvailableRowCount(footer);
-                this.delimitedDataReader.close();
-                StringReader stringReaderTwo = new StringReader(content);
-                this.delimitedDataReader = new TOSDelimitedReader(stringReaderTwo, fieldSeparator, rowSeparator, skipEmptyRow);
-                this.delimitedDataReader.setSplitRecord(splitRecord);
-
-                this.delimitedDataReader.skipHeaders(header);
-                if (limit > 0 && random < 0) {
-                    this.loopCount = limit < count ? limit : count;
-                } else if (limit < 0 && random > 0) {
-                    if (random >= count) {
-                        this.loopCount = count;
-                    } else {
-                        setRandoms(random, count);
-                        this.loopCount = random;
-                    }
-                } else if (limit > 0 && random > 0) {
-                    if (random >= limit) {
-                        random = limit;
-                    }
-                    if (random >= count) {
-                        this.loopCount = count;
-                    } else {
-                        setRandoms(random, count);
-                        this.loopCount = random;
-                    }
-                } else {
-                    this.loopCount = count;
+                this.loopCount = -1;
+            }
+            this.countNeedAdjust = true;
+            return;
+        }
+        if (footer > 0) {
+            this.footerBuffer = new String[footer][];
+            for (int i = 0; i < footer; i++) {
+                if (!this.delimitedDataReader.readRecord()) {
+                    // less rows than the footer, no row is returned
+                    this.endOfFile = true;
+                    break;
                 }
+                this.footerBuffer[i] = this.delimitedDataReader.getValues();
             }
+        }
+        if (random > 0) {
+            if (limit > 0 && random >= limit) {
+                random = limit;
+            }
+            sample(random);
         } else {
-            loopCount = 0;
+            this.lookAhead = true;
+            this.loopCount = limit > 0 ? limit : -1;
+        }
+    }
+
+    /**
+     * Reads the next row which is not in the footer.
+     *
+     * @return the values of the row, null at the end of the rows
+     */
+    private String[] readRow() throws IOException {
+        if (endOfFile || !this.delimitedDataReader.readRecord()) {
+            endOfFile = true;
+            return null;
+        }
+        String[] values = this.delimitedDataReader.getValues();
+        if (footerBuffer == null) {
+            return values;
         }
+        // the oldest row read ahead is not in the footer any more
+        String[] row = footerBuffer[footerStart];
+        footerBuffer[footerStart] = values;
+        footerStart = (footerStart + 1) % footerBuffer.length;
+        return row;
     }
 
-    private void setRandoms(int random, int count) {
-        this.randomSwitch = true;
-        Set<Integer> ranSet = new java.util.TreeSet<Integer>();
-        Random ran = new java.util.Random();
-        while (ranSet.size() < random) {
-            ranSet.add(ran.nextInt(count));
+    /**
+     * Samples the rows with a reservoir of the size rows, all the rows are read once.
+     */
+    private void sample(int size) throws IOException {
+        String[][] reservoir = new String[size][];
+        final long[] indexes = new long[size];
+        Random ran = new Random();
+        long seen = 0;
+        String[] row;
+        while ((row = readRow()) != null) {
+            if (seen < size) {
+                reservoir[(int) seen] = row;
+                indexes[(int) seen] = seen;
+            } else {
+                long index = (long) (ran.nextDouble() * (seen + 1));
+                if (index < size) {
+                    reservoir[(int) index] = row;
+                    indexes[(int) index] = seen;
+                }
+            }
+            seen++;
+        }
+        int count = (int) Math.min(seen, size);
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(indexes[o1], indexes[o2]);
+            }
+        });
+        this.samples = new String[count][];
+        for (int i = 0; i < count; i++) {
+            this.samples[i] = reservoir[order[i]];
         }
-        this.random = ranSet.iterator();
+        this.loopCount = count;
     }
 
     /**
@@ -295,28 +312,40 @@ public class FileInputDelimited {
      */
     public boolean nextRecord() throws IOException {
         if (this.countNeedAdjust) {
+            if (this.parallelReader != null) {
+                if (this.parallelReader.getProcessedRecordCount() == loopCount) {
+                    return false;
+                }
+                return this.parallelReader.readRecord();
+            }
+            if (this.byteReader != null) {
+                if (this.byteReader.getProcessedRecordCount() == loopCount) {
+                    return false;
+                }
+                return this.byteReader.readRecord();
+            }
             if (this.delimitedDataReader.getProcessedRecordCount() == loopCount) {
                 return false;
             }
             return this.delimitedDataReader.readRecord();
-        } else {
-            if (++current > loopCount) {
+        } else if (this.lookAhead) {
+            if (loopCount >= 0 && current >= loopCount) {
                 return false;
             }
-            if (randomSwitch) {
-                if (!this.random.hasNext()) {
-                    return false;
-                }
-                int index = this.random.next();
-                do {
-                    if (!this.delimitedDataReader.readRecord()) {
-                        return false;
-                    }
-                } while (this.delimitedDataReader.getProcessedRecordCount() <= index);
-                return true;
-            } else {
-                return this.delimitedDataReader.readRecord();
+            this.currentValues = readRow();
+            if (this.currentValues == null) {
+                return false;
             }
+            current++;
+            return true;
+        } else {
+            if (current >= loopCount) {
+                return false;
+            }
+            this.currentValues = this.samples[(int) current];
+            this.samples[(int) current] = null;
+            current++;
+            return true;
         }
     }
 
@@ -328,9 +357,64 @@ public class FileInputDelimited {
      * @throws IOException
      */
     public String get(int columnIndex) throws IOException {
+        if (this.currentValues != null) {
+            if (columnIndex > -1 && columnIndex < this.currentValues.length) {
+                return this.currentValues[columnIndex];
+            }
+            return "";
+        }
+        if (this.parallelReader != null) {
+            return this.parallelReader.get(columnIndex);
+        }
+        if (this.byteReader != null) {
+            return this.byteReader.get(columnIndex);
+        }
         return this.delimitedDataReader.get(columnIndex);
     }
 
+    /**
+     * @return true if the column is an int which is parsed from the bytes of the file by {@link #getInt(int, boolean)}
+     */
+    public boolean isPlainInt(int columnIndex, boolean trim) {
+        return this.byteReader != null && this.byteReader.isPlainInt(columnIndex, trim);
+    }
+
+    /**
+     * @return true if the column is a long which is parsed from the bytes of the file by {@link #getLong(int, boolean)}
+     */
+    public boolean isPlainLong(int columnIndex, boolean trim) {
+        return this.byteReader != null && this.byteReader.isPlainLong(columnIndex, trim);
+    }
+
+    /**
+     * @return true if the column is a decimal number which is parsed from the bytes of the file by
+     * {@link #getBigDecimal(int, boolean)}
+     */
+    public boolean isPlainDecimal(int columnIndex, boolean trim) {
+        return this.byteReader != null && this.byteReader.isPlainDecimal(columnIndex, trim);
+    }
+
+    public int getInt(int columnIndex, boolean trim) throws IOException {
+        if (this.byteReader != null) {
+            return this.byteReader.getInt(columnIndex, trim);
+        }
+        return Integer.parseInt(trim ? get(columnIndex).trim() : get(columnIndex));
+    }
+
+    public long getLong(int columnIndex, boolean trim) throws IOException {
+        if (this.byteReader != null) {
+            return this.byteReader.getLong(columnIndex, trim);
+        }
+        return Long.parseLong(trim ? get(columnIndex).trim() : get(columnIndex));
+    }
+
+    public java.math.BigDecimal getBigDecimal(int columnIndex, boolean trim) throws IOException {
+        if (this.byteReader != null) {
+            return this.byteReader.getBigDecimal(columnIndex, trim);
+        }
+        return new java.math.BigDecimal(trim ? get(columnIndex).trim() : get(columnIndex));
+    }
+
     /**
      * Close the delimitedDataReader if delimitedDataReader is not null.
      */
@@ -338,6 +422,12 @@ public class FileInputDelimited {
         if (this.delimitedDataReader != null) {
             this.delimitedDataReader.close();
         }
+        if (this.parallelReader != null) {
+            this.parallelReader.close();
+        }
+        if (this.byteReader != null) {
+            this.byteReader.close();
+        }
     }
 
     /**
@@ -347,22 +437,43 @@ public class FileInputDelimited {
      */
     @Deprecated
     public int getRowNumber() {
-        if (this.countNeedAdjust) {
+        if (this.parallelReader != null) {
+            return (int) this.parallelReader.getProcessedRecordCount();
+        } else if (this.byteReader != null) {
+            return (int) this.byteReader.getProcessedRecordCount();
+        } else if (this.countNeedAdjust) {
             return (int) this.delimitedDataReader.getProcessedRecordCount();
+        } else if (this.lookAhead) {
+            return (int) this.current;
         } else {
             return (int) this.loopCount;
         }
     }
 
     public long getLongRowNumber() {
-        if (this.countNeedAdjust) {
+        if (this.parallelReader != null) {
+            return this.parallelReader.getProcessedRecordCount();
+        } else if (this.byteReader != null) {
+            return this.byteReader.getProcessedRecordCount();
+        } else if (this.countNeedAdjust) {
             return this.delimitedDataReader.getProcessedRecordCount();
+        } else if (this.lookAhead) {
+            return this.current;
         } else {
             return this.loopCount;
         }
     }
 
     public int getColumnsCountOfCurrentRow() throws IOException {
+        if (this.currentValues != null) {
+            return this.currentValues.length;
+        }
+        if (this.parallelReader != null) {
+            return this.parallelReader.getAvailableColumnsCount();
+        }
+        if (this.byteReader != null) {
+            return this.byteReader.getAvailableColumnsCount();
+        }
         return this.delimitedDataReader.getAvailableColumnsCount();
     }
 
@@ -0,0 +1,360 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads a delimited file with several threads.
+ *
+ * The file is split in chunks of bytes which start after a record delimiter, each chunk is parsed by a
+ * {@link TOSDelimitedReader} on a worker thread, and the records are returned in the order of the file. A bounded
+ * number of chunks is parsed ahead of the returned records.
+ *
+ * The chunks can only be split on the bytes of the record delimiter when it is a single character, which is a single
+ * byte in the encoding and which is not in the field delimiter, see {@link #isSupported(String, String, String, String)}.
+ * The records must not contain the record delimiter, as a record with a text enclosure on several lines.
+ */
+public class ParallelDelimitedReader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    private static final byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private final FileChannel channel;
+
+    private final long size;
+
+    private final Charset charset;
+
+    private final byte delimiter;
+
+    private final byte carriageReturn;
+
+    private final boolean lineFeedAll;
+
+    private final String fieldDelimiter;
+
+    private final String recordDelimiter;
+
+    private final boolean skipEmptyRecord;
+
+    private final boolean splitRecord;
+
+    private final int chunkSize;
+
+    private final int maxPendingChunks;
+
+    private final ExecutorService executor;
+
+    private final ArrayDeque<Future<List<String[]>>> pendingChunks = new ArrayDeque<Future<List<String[]>>>();
+
+    /** Start of the records after the BOM and the headers. */
+    private final long dataStart;
+
+    private long nextChunkStart;
+
+    private List<String[]> rows;
+
+    private int rowIndex;
+
+    private String[] values;
+
+    private long currentRecord = 0;
+
+    private boolean closed = false;
+
+    public ParallelDelimitedReader(String fileName, String encoding, String fieldDelimiter, String recordDelimiter,
+            boolean needSkipEmptyRecord, int header, boolean splitRecord, int threads) throws IOException {
+        this(fileName, encoding, fieldDelimiter, recordDelimiter, needSkipEmptyRecord, header, splitRecord, threads,
+                DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelDelimitedReader(String fileName, String encoding, String fieldDelimiter, String recordDelimiter,
+            boolean needSkipEmptyRecord, int header, boolean splitRecord, int threads, int chunkSize) throws IOException {
+        if (!isSupported(fileName, encoding, fieldDelimiter, recordDelimiter)) {
+            throw new IllegalArgumentException("The file " + fileName + " can't be read in parallel.");
+        }
+        this.fieldDelimiter = fieldDelimiter;
+        this.recordDelimiter = recordDelimiter;
+        this.skipEmptyRecord = needSkipEmptyRecord;
+        this.splitRecord = splitRecord;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxPendingChunks = 2 * threads;
+        this.lineFeedAll = recordDelimiter.equals("\n");
+
+        this.channel = new FileInputStream(fileName).getChannel();
+        this.size = channel.size();
+        long start = 0;
+        if (startsWithUtf8Bom(channel)) {
+            // as UnicodeReader, the BOM overrides the encoding
+            this.charset = Charset.forName("UTF-8");
+            start = UTF8_BOM.length;
+        } else {
+            this.charset = charsetOf(encoding);
+        }
+        this.delimiter = recordDelimiter.getBytes(charset)[0];
+        this.carriageReturn = "\r".getBytes(charset)[0];
+        this.dataStart = skipHeaders(start, header);
+        this.nextChunkStart = dataStart;
+
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "parallel delimited reader"); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return true if the file can be split on its record delimiters and read in parallel
+     */
+    public static boolean isSupported(String fileName, String encoding, String fieldDelimiter, String recordDelimiter)
+            throws IOException {
+        if (fileName == null || fieldDelimiter == null || recordDelimiter == null || recordDelimiter.length() != 1) {
+            return false;
+        }
+        // "\n" is any of "\r\n", "\r" and "\n"
+        if (recordDelimiter.equals("\n") ? fieldDelimiter.indexOf('\n') >= 0 || fieldDelimiter.indexOf('\r') >= 0
+                : fieldDelimiter.indexOf(recordDelimiter.charAt(0)) >= 0) {
+            return false;
+        }
+        Charset charset;
+        FileInputStream stream = new FileInputStream(fileName);
+        try {
+            byte[] bom = new byte[4];
+            int n = stream.read(bom);
+            if (n >= 3 && bom[0] == UTF8_BOM[0] && bom[1] == UTF8_BOM[1] && bom[2] == UTF8_BOM[2]) {
+                charset = Charset.forName("UTF-8");
+            } else if (n >= 2 && (bom[0] == (byte) 0xFE && bom[1] == (byte) 0xFF || bom[0] == (byte) 0xFF
+                    && bom[1] == (byte) 0xFE)) {
+                // UTF-16 and UTF-32 BOM
+                return false;
+            } else if (n >= 4 && bom[0] == 0 && bom[1] == 0 && bom[2] == (byte) 0xFE && bom[3] == (byte) 0xFF) {
+                return false;
+            } else {
+                charset = charsetOf(encoding);
+            }
+        } finally {
+            stream.close();
+        }
+        // the delimiter byte must not be a part of another character
+        if (!charset.name().equals("UTF-8") && charset.newEncoder().maxBytesPerChar() != 1f) {
+            return false;
+        }
+        if (recordDelimiter.equals("\n") && "\r".getBytes(charset).length != 1) {
+            return false;
+        }
+        return recordDelimiter.getBytes(charset).length == 1;
+    }
+
+    private static Charset charsetOf(String encoding) {
+        return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
+
+    private static boolean startsWithUtf8Bom(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(UTF8_BOM.length);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+        }
+        return !buffer.hasRemaining() && buffer.get(0) == UTF8_BOM[0] && buffer.get(1) == UTF8_BOM[1]
+                && buffer.get(2) == UTF8_BOM[2];
+    }
+
+    /**
+     * Skips the headers records, the empty records are headers too as with {@link TOSDelimitedReader#skipHeaders(int)}.
+     *
+     * @return the position of the first record after the headers
+     */
+    private long skipHeaders(long start, int header) throws IOException {
+        long position = start;
+        for (int i = 0; i < header && position < size; i++) {
+            position = nextRecordStart(position + 1, lineFeedAll);
+        }
+        return position;
+    }
+
+    /**
+     * @param from the position to start from
+     * @param withCarriageReturn true if a "\r" alone is a record delimiter too
+     * @return the first position from the given one which follows a record delimiter, or the size of the file
+     */
+    private long nextRecordStart(long from, boolean withCarriageReturn) throws IOException {
+        long position = from - 1;
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (position < size) {
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            if (count <= 0) {
+                break;
+            }
+            for (int i = 0; i < count; i++) {
+                byte b = buffer.get(i);
+                if (b == delimiter) {
+                    return position + i + 1;
+                } else if (withCarriageReturn && b == carriageReturn) {
+                    // "\r\n" is a single delimiter
+                    if (i + 1 < count) {
+                        return buffer.get(i + 1) == delimiter ? position + i + 2 : position + i + 1;
+                    }
+                    ByteBuffer next = ByteBuffer.allocate(1);
+                    if (channel.read(next, position + i + 1) == 1 && next.get(0) == delimiter) {
+                        return position + i + 2;
+                    }
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+        return size;
+    }
+
+    private List<String[]> parseChunk(long nominalStart, long nominalEnd) throws IOException {
+        long start = nominalStart == dataStart ? dataStart : nextRecordStart(nominalStart, false);
+        long end = nominalEnd >= size ? size : nextRecordStart(nominalEnd, false);
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new EOFException("The file has been truncated while it was read.");
+            }
+        }
+        TOSDelimitedReader reader = new TOSDelimitedReader(new InputStreamReader(new ByteArrayInputStream(
+                buffer.array()), charset), fieldDelimiter, recordDelimiter, skipEmptyRecord);
+        reader.setSplitRecord(splitRecord);
+        List<String[]> records = new ArrayList<String[]>();
+        while (reader.readRecord()) {
+            records.add(reader.getValues());
+        }
+        reader.close();
+        return records;
+    }
+
+    private void submitChunks() {
+        while (pendingChunks.size() < maxPendingChunks && nextChunkStart < size) {
+            final long start = nextChunkStart;
+            final long end = Math.min(size, start + chunkSize);
+            pendingChunks.add(executor.submit(new Callable<List<String[]>>() {
+
+                public List<String[]> call() throws IOException {
+                    return parseChunk(start, end);
+                }
+            }));
+            nextChunkStart = end;
+        }
+    }
+
+    public boolean readRecord() throws IOException {
+        checkClosed();
+        while (rows == null || rowIndex >= rows.size()) {
+            submitChunks();
+            Future<List<String[]>> chunk = pendingChunks.poll();
+            if (chunk == null) {
+                values = null;
+                return false;
+            }
+            try {
+                rows = chunk.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            rowIndex = 0;
+        }
+        values = rows.get(rowIndex);
+        rows.set(rowIndex++, null);
+        currentRecord++;
+        return true;
+    }
+
+    /**
+     * get one column value with a given column index for the current record.
+     */
+    public String get(int columnIndex) throws IOException {
+        checkClosed();
+        if (values != null && columnIndex > -1 && columnIndex < values.length) {
+            return values[columnIndex];
+        }
+        return "";
+    }
+
+    public int getAvailableColumnsCount() {
+        return values == null ? 0 : values.length;
+    }
+
+    /**
+     * get the result how many records have been read.
+     */
+    public long getProcessedRecordCount() {
+        return currentRecord;
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("This instance of the ParallelDelimitedReader class has already been closed.");
+        }
+    }
+
+    /**
+     * Stops the workers and closes the file.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            executor.shutdownNow();
+            pendingChunks.clear();
+            rows = null;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // just ignore the exception
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a zip file of a single entry, the entry is deflated by several threads.
+ *
+ * The bytes are cut in blocks which are deflated in parallel, each block with the end of the previous one as
+ * dictionary so the compression is close to the one of a single deflater. The deflated blocks are written in order,
+ * only a bounded number of blocks is deflated ahead of the written ones.
+ *
+ * As with {@link java.util.zip.ZipOutputStream}, {@link #flush()} does not end the current block, it only writes the
+ * blocks which are already deflated.
+ */
+public class ParallelZipOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    private static final long ZIP64_MAGICVAL = 0xFFFFFFFFL;
+
+    private final OutputStream out;
+
+    private final byte[] name;
+
+    private final int blockSize;
+
+    private final int maxPendingBlocks;
+
+    private final ExecutorService executor;
+
+    private final BlockingQueue<Deflater> deflaters;
+
+    private final ArrayDeque<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+
+    private final CRC32 crc = new CRC32();
+
+    private final long time;
+
+    private byte[] block;
+
+    private int blockLength = 0;
+
+    private byte[] previousBlock = null;
+
+    private long size = 0;
+
+    private long compressedSize = 0;
+
+    /** Bytes written to the output, the central directory starts there. */
+    private long written = 0;
+
+    private boolean closed = false;
+
+    public ParallelZipOutputStream(OutputStream out, String entryName, int threads) throws IOException {
+        this(out, entryName, threads, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelZipOutputStream(OutputStream out, String entryName, int threads, int blockSize, int level)
+            throws IOException {
+        if (out == null || entryName == null) {
+            throw new IllegalArgumentException("Parameter can't be null.");
+        }
+        threads = Math.max(1, threads);
+        this.out = out;
+        this.name = entryName.getBytes("UTF-8");
+        this.blockSize = Math.max(DICTIONARY_SIZE, blockSize);
+        this.maxPendingBlocks = 2 * threads;
+        this.block = new byte[this.blockSize];
+        this.time = System.currentTimeMillis();
+        this.deflaters = new ArrayBlockingQueue<Deflater>(threads);
+        for (int i = 0; i < threads; i++) {
+            deflaters.add(new Deflater(level, true));
+        }
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "parallel zip output"); //$NON-NLS-1$
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        writeLocalHeader();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkClosed();
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        while (len > 0) {
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the blocks which are already deflated and flushes the output.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkClosed();
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone()) {
+            writeBlock(pendingBlocks.poll());
+        }
+        out.flush();
+    }
+
+    /**
+     * Deflates the last block, writes the end of the zip file and closes the output.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.poll());
+            }
+            writeEnd();
+            out.flush();
+        } finally {
+            closed = true;
+            release();
+            out.close();
+        }
+    }
+
+    private void release() {
+        executor.shutdownNow();
+        pendingBlocks.clear();
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    private void checkClosed() throws IOException {
+        if (closed) {
+            throw new IOException("This instance of the ParallelZipOutputStream class has already been closed.");
+        }
+    }
+
+    private void submitBlock(final boolean last) throws IOException {
+        final byte[] input = block;
+        final int length = blockLength;
+        final byte[] dictionary = previousBlock;
+        crc.update(input, 0, length);
+        size += length;
+        pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+
+            public byte[] call() throws InterruptedException {
+                Deflater deflater = deflaters.take();
+                try {
+                    return deflate(deflater, input, length, dictionary, last);
+                } finally {
+                    deflaters.add(deflater);
+                }
+            }
+        }));
+        // the block is the dictionary of the next one, it is not reused
+        previousBlock = length >= DICTIONARY_SIZE ? input : null;
+        block = new byte[blockSize];
+        blockLength = 0;
+        while (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock(pendingBlocks.poll());
+        }
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] input, int length, byte[] dictionary, boolean last) {
+        deflater.reset();
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+        }
+        deflater.setInput(input, 0, length);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+        byte[] buffer = new byte[16 * 1024];
+        if (last) {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+        } else {
+            // the block ends on a byte boundary, so the blocks are one deflate stream once written in order
+            int n;
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                compressed.write(buffer, 0, n);
+            } while (n == buffer.length);
+        }
+        return compressed.toByteArray();
+    }
+
+    private void writeBlock(Future<byte[]> pending) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pending.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        writeBytes(compressed, compressed.length);
+        compressedSize += compressed.length;
+    }
+
+    private void writeLocalHeader() throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, 0x04034b50L);
+        writeShort(header, 20); // version needed to extract
+        writeShort(header, 0x0808); // data descriptor and UTF-8 name
+        writeShort(header, Deflater.DEFLATED);
+        writeInt(header, dosTime(time));
+        writeInt(header, 0); // crc and sizes are in the data descriptor
+        writeInt(header, 0);
+        writeInt(header, 0);
+        writeShort(header, name.length);
+        writeShort(header, 0);
+        header.write(name);
+        writeBytes(header.toByteArray(), header.size());
+    }
+
+    /**
+     * Writes the data descriptor, the central directory and its end, as {@link java.util.zip.ZipOutputStream}.
+     */
+    private void writeEnd() throws IOException {
+        boolean zip64 = size >= ZIP64_MAGICVAL || compressedSize >= ZIP64_MAGICVAL;
+        ByteArrayOutputStream end = new ByteArrayOutputStream();
+        // data descriptor
+        writeInt(end, 0x08074b50L);
+        writeInt(end, crc.getValue());
+        if (zip64) {
+            writeLong(end, compressedSize);
+            writeLong(end, size);
+        } else {
+            writeInt(end, compressedSize);
+            writeInt(end, size);
+        }
+        long centralStart = written + end.size();
+        // central directory
+        writeInt(end, 0x02014b50L);
+        writeShort(end, zip64 ? 45 : 20); // version made by
+        writeShort(end, zip64 ? 45 : 20); // version needed to extract
+        writeShort(end, 0x0808);
+        writeShort(end, Deflater.DEFLATED);
+        writeInt(end, dosTime(time));
+        writeInt(end, crc.getValue());
+        writeInt(end, zip64 ? ZIP64_MAGICVAL : compressedSize);
+        writeInt(end, zip64 ? ZIP64_MAGICVAL : size);
+        writeShort(end, name.length);
+        writeShort(end, zip64 ? 20 : 0); // extra field length
+        writeShort(end, 0); // comment length
+        writeShort(end, 0); // disk number
+        writeShort(end, 0); // internal attributes
+        writeInt(end, 0); // external attributes
+        writeInt(end, 0); // offset of the local header
+        end.write(name);
+        if (zip64) {
+            writeShort(end, 0x0001);
+            writeShort(end, 16);
+            writeLong(end, size);
+            writeLong(end, compressedSize);
+        }
+        long centralEnd = written + end.size();
+        long centralSize = centralEnd - centralStart;
+        if (centralStart >= ZIP64_MAGICVAL) {
+            // zip64 end of central directory and its locator
+            writeInt(end, 0x06064b50L);
+            writeLong(end, 44);
+            writeShort(end, 45);
+            writeShort(end, 45);
+            writeInt(end, 0);
+            writeInt(end, 0);
+            writeLong(end, 1);
+            writeLong(end, 1);
+            writeLong(end, centralSize);
+            writeLong(end, centralStart);
+            writeInt(end, 0x07064b50L);
+            writeInt(end, 0);
+            writeLong(end, centralEnd);
+            writeInt(end, 1);
+        }
+        writeInt(end, 0x06054b50L);
+        writeShort(end, 0);
+        writeShort(end, 0);
+        writeShort(end, 1);
+        writeShort(end, 1);
+        writeInt(end, centralSize);
+        writeInt(end, Math.min(centralStart, ZIP64_MAGICVAL));
+        writeShort(end, 0);
+        writeBytes(end.toByteArray(), end.size());
+    }
+
+    private void writeBytes(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        written += length;
+    }
+
+    private static long dosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int v) {
+        out.write(v & 0xff);
+        out.write((v >>> 8) & 0xff);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long v) {
+        out.write((int) (v & 0xff));
+        out.write((int) ((v >>> 8) & 0xff));
+        out.write((int) ((v >>> 16) & 0xff));
+        out.write((int) ((v >>> 24) & 0xff));
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long v) {
+        writeInt(out, v);
+        writeInt(out, v >>> 32);
+    }
+}
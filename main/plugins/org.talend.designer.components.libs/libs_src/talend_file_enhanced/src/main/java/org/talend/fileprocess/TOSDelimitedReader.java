@@ -381,6 +381,15 @@ public class TOSDelimitedReader {
         return sb.toString();
     }
 
+    /**
+     * get a copy of the column values of the current record, it is kept when the next records are read.
+     */
+    public String[] getValues() {
+        String[] copy = new String[columnsCount];
+        System.arraycopy(values, 0, copy, 0, columnsCount);
+        return copy;
+    }
+
     /**
      * get the result how many records have been read.
      */
@@ -0,0 +1,202 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ByteDelimitedReaderTest {
+
+    private static ByteDelimitedReader reader(String content, String encoding, String fieldDelimiter,
+            String recordDelimiter, boolean skipEmptyRecord) throws IOException {
+        return new ByteDelimitedReader(new ByteArrayInputStream(content.getBytes(encoding)), encoding, fieldDelimiter,
+                recordDelimiter, skipEmptyRecord);
+    }
+
+    private static List<String> readBytes(String content, String encoding, String fieldDelimiter,
+            String recordDelimiter, boolean skipEmptyRecord, boolean splitRecord) throws IOException {
+        ByteDelimitedReader reader = reader(content, encoding, fieldDelimiter, recordDelimiter, skipEmptyRecord);
+        reader.setSplitRecord(splitRecord);
+        List<String> records = new ArrayList<String>();
+        while (reader.readRecord()) {
+            assertEquals(reader.getValues().length, reader.getAvailableColumnsCount());
+            records.add(Arrays.asList(reader.getValues()).toString());
+        }
+        assertEquals(records.size(), reader.getProcessedRecordCount());
+        reader.close();
+        return records;
+    }
+
+    private static List<String> readChars(String content, String encoding, String fieldDelimiter,
+            String recordDelimiter, boolean skipEmptyRecord, boolean splitRecord) throws IOException {
+        TOSDelimitedReader reader = new TOSDelimitedReader(new ByteArrayInputStream(content.getBytes(encoding)),
+                encoding, fieldDelimiter, recordDelimiter, skipEmptyRecord);
+        reader.setSplitRecord(splitRecord);
+        List<String> records = new ArrayList<String>();
+        while (reader.readRecord()) {
+            records.add(Arrays.asList(reader.getValues()).toString());
+        }
+        reader.close();
+        return records;
+    }
+
+    private static void assertSameAsCharReader(String content, String encoding, String fieldDelimiter,
+            String recordDelimiter) throws IOException {
+        for (boolean skipEmptyRecord : new boolean[] { true, false }) {
+            for (boolean splitRecord : new boolean[] { true, false }) {
+                assertEquals("skip empty " + skipEmptyRecord + ", split record " + splitRecord,
+                        readChars(content, encoding, fieldDelimiter, recordDelimiter, skipEmptyRecord, splitRecord),
+                        readBytes(content, encoding, fieldDelimiter, recordDelimiter, skipEmptyRecord, splitRecord));
+            }
+        }
+    }
+
+    @Test
+    public void testSameRecordsAsCharReader() throws IOException {
+        assertSameAsCharReader("a;b;c\r\nd;;f\n\ng;h\r;\n;i\nlast", "UTF-8", ";", "\n");
+        assertSameAsCharReader("é;中文;€\nü;ß\n", "UTF-8", ";", "\n");
+        assertSameAsCharReader("é;à\nç;è\n", "ISO-8859-1", ";", "\n");
+        // delimiters of several characters
+        assertSameAsCharReader("111;;222;;#aaa;;bbb;;#;;#ccc", "UTF-8", ";;", ";;#");
+        assertSameAsCharReader("a||b<>c||d<><>e", "UTF-8", "||", "<>");
+    }
+
+    @Test
+    public void testRecordsLargerThanBuffer() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 100 * i; j++) {
+                content.append("column").append(j).append(';');
+            }
+            content.append("end").append(i).append('\n');
+        }
+        assertSameAsCharReader(content.toString(), "UTF-8", ";", "\n");
+    }
+
+    @Test
+    public void testSkipHeaders() throws IOException {
+        ByteDelimitedReader reader = reader("h1;h2\nh3;h4\na;b\n", "UTF-8", ";", "\n", true);
+        reader.skipHeaders(2);
+        assertTrue(reader.readRecord());
+        assertEquals("a", reader.get(0));
+        assertEquals("b", reader.get(1));
+        // the columns out of the record are empty
+        assertEquals("", reader.get(2));
+        assertEquals(1, reader.getProcessedRecordCount());
+        assertFalse(reader.readRecord());
+        reader.close();
+    }
+
+    @Test
+    public void testNumbers() throws IOException {
+        ByteDelimitedReader reader = reader("42; -7 ;123456789012;-0.50;+5;1e3;2147483647\n", "UTF-8", ";", "\n", true);
+        assertTrue(reader.readRecord());
+        assertEquals(42, reader.getInt(0, false));
+        assertEquals(-7, reader.getInt(1, true));
+        assertFalse(reader.isPlainInt(1, false));
+        assertEquals(123456789012L, reader.getLong(2, false));
+        assertFalse(reader.isPlainInt(2, false));
+        assertEquals(new BigDecimal("-0.50"), reader.getBigDecimal(3, false));
+        assertEquals(2, reader.getBigDecimal(3, false).scale());
+        // the other forms are parsed from the String
+        assertFalse(reader.isPlainInt(4, false));
+        assertEquals(5, reader.getInt(4, false));
+        assertEquals(new BigDecimal("1e3"), reader.getBigDecimal(5, false));
+        assertEquals(Integer.MAX_VALUE, reader.getInt(6, false));
+        try {
+            reader.getInt(1, false);
+            fail("\" -7 \" is not an int when it is not trimmed");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        assertTrue(reader.isEmpty(7, false));
+        reader.close();
+    }
+
+    @Test
+    public void testDates() throws IOException, ParseException {
+        ByteDelimitedReader reader = reader("2021-03-04 05:06:07;04/03/2021;;2021-02-30 00:00:00;4 mars 2021\n",
+                "UTF-8", ";", "\n", true);
+        assertTrue(reader.readRecord());
+        String pattern = "yyyy-MM-dd HH:mm:ss";
+        assertEquals(new SimpleDateFormat(pattern).parse("2021-03-04 05:06:07"), reader.getDate(0, pattern));
+        assertEquals(new SimpleDateFormat("dd/MM/yyyy").parse("04/03/2021"), reader.getDate(1, "dd/MM/yyyy"));
+        assertNull(reader.getDate(2, pattern));
+        try {
+            // the dates are not lenient
+            reader.getDate(3, pattern);
+            fail("2021-02-30 is not a date");
+        } catch (ParseException e) {
+            // expected
+        }
+        try {
+            reader.getDate(4, pattern);
+            fail("the column doesn't match the pattern");
+        } catch (ParseException e) {
+            // expected
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testIsSupported() throws IOException {
+        try {
+            reader("a;b", "UTF-16", ";", "\n", true);
+            fail("UTF-16 can't be read on its bytes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            reader("a;b", "Shift_JIS", ";", "\n", true);
+            fail("Shift_JIS can't be read on its bytes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        ByteDelimitedReader reader = reader("a;b\n", "UTF-8", ";", "\n", true);
+        reader.close();
+        try {
+            reader.readRecord();
+            fail("The reader is closed");
+        } catch (IOException e) {
+            // expected
+        }
+        reader.close();
+    }
+}
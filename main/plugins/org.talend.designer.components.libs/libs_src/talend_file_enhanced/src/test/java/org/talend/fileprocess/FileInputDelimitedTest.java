@@ -0,0 +1,227 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileInputDelimitedTest {
+
+    private static final String ENCODING = "UTF-8";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("FileInputDelimitedTest", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * A header row, then the rows "i;name i".
+     */
+    private static String content(int rows) {
+        StringBuilder content = new StringBuilder("id;name\n");
+        for (int i = 0; i < rows; i++) {
+            content.append(i).append(";name ").append(i).append('\n');
+        }
+        return content.toString();
+    }
+
+    private void write(int rows) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content(rows).getBytes(ENCODING));
+        } finally {
+            output.close();
+        }
+    }
+
+    private FileInputDelimited open(int footer, int limit, int random) throws IOException {
+        return new FileInputDelimited(file.getPath(), ENCODING, ";", "\n", true, 1, footer, limit, random);
+    }
+
+    /**
+     * @return the ids of the rows, checking the row number while the rows are read
+     */
+    private static List<Integer> read(FileInputDelimited input, boolean rowNumberOfReturnedRows) throws IOException {
+        List<Integer> ids = new ArrayList<Integer>();
+        try {
+            while (input.nextRecord()) {
+                int id = Integer.parseInt(input.get(0));
+                assertEquals("name " + id, input.get(1));
+                assertEquals("", input.get(2));
+                assertEquals(2, input.getColumnsCountOfCurrentRow());
+                ids.add(id);
+                if (rowNumberOfReturnedRows) {
+                    assertEquals(ids.size(), input.getRowNumber());
+                    assertEquals(ids.size(), input.getLongRowNumber());
+                }
+            }
+            assertFalse(input.nextRecord());
+        } finally {
+            input.close();
+        }
+        return ids;
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testFooter() throws IOException {
+        write(10);
+        // smaller than the rows, equal to the rows and larger than the rows
+        assertEquals(range(7), read(open(3, -1, -1), true));
+        assertEquals(range(9), read(open(1, -1, -1), true));
+        assertEquals(range(0), read(open(10, -1, -1), true));
+        assertEquals(range(0), read(open(11, -1, -1), true));
+        assertEquals(range(0), read(open(1000, -1, -1), true));
+        // no footer
+        assertEquals(range(10), read(open(0, -1, -1), true));
+    }
+
+    @Test
+    public void testFooterWithLimit() throws IOException {
+        write(10);
+        assertEquals(range(4), read(open(3, 4, -1), true));
+        assertEquals(range(7), read(open(3, 7, -1), true));
+        assertEquals(range(7), read(open(3, 8, -1), true));
+        assertEquals(range(0), read(open(3, 0, -1), true));
+        assertEquals(range(0), read(open(12, 5, -1), true));
+    }
+
+    @Test
+    public void testRowNumberWithFooter() throws IOException {
+        write(10);
+        FileInputDelimited input = open(4, -1, -1);
+        assertEquals(0, input.getRowNumber());
+        assertTrue(input.nextRecord());
+        assertTrue(input.nextRecord());
+        // the rows returned so far, not the rows read ahead
+        assertEquals(2, input.getRowNumber());
+        assertEquals(range(6).subList(2, 6), read(input, false));
+
+        // the file is shorter than the footer
+        input = open(20, -1, -1);
+        assertFalse(input.nextRecord());
+        assertEquals(0, input.getRowNumber());
+        assertEquals(0, input.getLongRowNumber());
+        input.close();
+    }
+
+    /**
+     * Checks that the random rows are distinct rows of the file, returned in the order of the file.
+     */
+    private static void assertRandomRows(List<Integer> ids, int expectedCount, int rowsCount) {
+        assertEquals(ids.toString(), expectedCount, ids.size());
+        Set<Integer> distinct = new HashSet<Integer>(ids);
+        assertEquals(ids.size(), distinct.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue(ids.get(i) >= 0 && ids.get(i) < rowsCount);
+            if (i > 0) {
+                assertTrue(ids.toString(), ids.get(i - 1) < ids.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testRandom() throws IOException {
+        write(100);
+        for (int i = 0; i < 20; i++) {
+            assertRandomRows(read(open(0, -1, 10), false), 10, 100);
+        }
+        // more random rows than rows
+        assertEquals(range(100), read(open(0, -1, 150), false));
+        // the rows are not always the same
+        Set<List<Integer>> samples = new HashSet<List<Integer>>();
+        for (int i = 0; i < 20; i++) {
+            samples.add(read(open(0, -1, 5), false));
+        }
+        assertTrue(samples.size() > 1);
+    }
+
+    @Test
+    public void testRandomWithLimit() throws IOException {
+        write(100);
+        // the count is capped by the limit
+        for (int i = 0; i < 20; i++) {
+            assertRandomRows(read(open(0, 4, 10), false), 4, 100);
+        }
+        assertRandomRows(read(open(0, 10, 4), false), 4, 100);
+        assertEquals(range(0), read(open(0, 0, 10), false));
+        assertEquals(range(0), read(open(0, 10, 0), false));
+    }
+
+    @Test
+    public void testRandomWithFooter() throws IOException {
+        write(100);
+        for (int i = 0; i < 20; i++) {
+            // the footer rows are never sampled
+            assertRandomRows(read(open(30, -1, 10), false), 10, 70);
+        }
+        assertEquals(range(70), read(open(30, -1, 80), false));
+        assertEquals(range(0), read(open(100, -1, 10), false));
+
+        FileInputDelimited input = open(95, 3, 10);
+        // the number of sampled rows
+        assertEquals(3, input.getRowNumber());
+        assertRandomRows(read(input, false), 3, 5);
+    }
+
+    @Test
+    public void testInputStream() throws IOException {
+        byte[] bytes = content(10).getBytes(ENCODING);
+        assertEquals(range(10), read(new FileInputDelimited(new ByteArrayInputStream(bytes), ENCODING, ";", "\n", true, 1,
+                0, -1, -1), true));
+        assertEquals(range(6), read(new FileInputDelimited(new ByteArrayInputStream(bytes), ENCODING, ";", "\n", true, 1,
+                4, -1, -1), true));
+        assertEquals(range(0), read(new FileInputDelimited(new ByteArrayInputStream(bytes), ENCODING, ";", "\n", true, 1,
+                10, -1, -1), true));
+        assertRandomRows(read(new FileInputDelimited(new ByteArrayInputStream(bytes), ENCODING, ";", "\n", true, 1, 2, -1,
+                3), false), 3, 8);
+    }
+}
@@ -0,0 +1,189 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelDelimitedReaderTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ParallelDelimitedReaderTest", ".csv");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void write(byte[]... parts) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            for (byte[] part : parts) {
+                output.write(part);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private void write(String content, String encoding) throws IOException {
+        write(content.getBytes(encoding));
+    }
+
+    /**
+     * Records with "\r\n" and "\n" line ends, empty records and columns of different sizes.
+     */
+    private static String records(int count) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            content.append(i).append(';').append("name").append(i % 17);
+            for (int j = 0; j < i % 5; j++) {
+                content.append(";value").append(j);
+            }
+            content.append(i % 3 == 0 ? "\r\n" : "\n");
+            if (i % 50 == 0) {
+                content.append('\n');
+            }
+        }
+        return content.toString();
+    }
+
+    private static List<String> readSequential(String fileName, String encoding, String fieldDelimiter,
+            String recordDelimiter, boolean skipEmptyRecord, int header) throws IOException {
+        TOSDelimitedReader reader = new TOSDelimitedReader(fileName, encoding, fieldDelimiter, recordDelimiter,
+                skipEmptyRecord);
+        reader.skipHeaders(header);
+        List<String> records = new ArrayList<String>();
+        while (reader.readRecord()) {
+            records.add(Arrays.asList(reader.getValues()).toString());
+        }
+        reader.close();
+        return records;
+    }
+
+    private static List<String> readParallel(String fileName, String encoding, String fieldDelimiter,
+            String recordDelimiter, boolean skipEmptyRecord, int header, int chunkSize) throws IOException {
+        ParallelDelimitedReader reader = new ParallelDelimitedReader(fileName, encoding, fieldDelimiter,
+                recordDelimiter, skipEmptyRecord, header, false, 3, chunkSize);
+        List<String> records = new ArrayList<String>();
+        while (reader.readRecord()) {
+            String[] values = new String[reader.getAvailableColumnsCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = reader.get(i);
+            }
+            records.add(Arrays.asList(values).toString());
+        }
+        assertEquals(records.size(), reader.getProcessedRecordCount());
+        reader.close();
+        return records;
+    }
+
+    @Test
+    public void testSameRecordsAsSequentialReader() throws IOException {
+        write(records(2000), "UTF-8");
+        for (boolean skipEmptyRecord : new boolean[] { true, false }) {
+            List<String> expected = readSequential(file.getPath(), "UTF-8", ";", "\n", skipEmptyRecord, 2);
+            // chunks smaller than a record, of a few records and of the whole file
+            for (int chunkSize : new int[] { 7, 100, 4096, ParallelDelimitedReader.DEFAULT_CHUNK_SIZE }) {
+                assertEquals("chunk size " + chunkSize, expected,
+                        readParallel(file.getPath(), "UTF-8", ";", "\n", skipEmptyRecord, 2, chunkSize));
+            }
+        }
+    }
+
+    @Test
+    public void testOtherRecordDelimiter() throws IOException {
+        write("a,b|c,d||e,f|g", "ISO-8859-1");
+        List<String> expected = readSequential(file.getPath(), "ISO-8859-1", ",", "|", false, 0);
+        assertEquals(expected, readParallel(file.getPath(), "ISO-8859-1", ",", "|", false, 0, 3));
+        assertEquals(5, expected.size());
+    }
+
+    @Test
+    public void testUtf8BomAndMultiByteCharacters() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            content.append("héllo").append(i).append(";中文;€").append(i).append('\n');
+        }
+        write(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF }, content.toString().getBytes("UTF-8"));
+        // the BOM is not a part of the first record, whatever the encoding
+        List<String> expected = readSequential(file.getPath(), "UTF-8", ";", "\n", true, 1);
+        assertEquals(expected, readParallel(file.getPath(), "ISO-8859-1", ";", "\n", true, 1, 50));
+        assertEquals("[héllo1, 中文, €1]", expected.get(0));
+    }
+
+    @Test
+    public void testHeadersLongerThanFile() throws IOException {
+        write("a;b\nc;d\n", "UTF-8");
+        assertEquals(0, readParallel(file.getPath(), "UTF-8", ";", "\n", true, 5, 100).size());
+    }
+
+    @Test
+    public void testIsSupported() throws IOException {
+        write("a;b\n", "UTF-8");
+        assertTrue(ParallelDelimitedReader.isSupported(file.getPath(), "UTF-8", ";", "\n"));
+        assertTrue(ParallelDelimitedReader.isSupported(file.getPath(), "ISO-8859-15", ";", "\n"));
+        // the records can't be split on a delimiter of several characters, or which is in the field delimiter
+        assertFalse(ParallelDelimitedReader.isSupported(file.getPath(), "UTF-8", ";", "\r\n"));
+        assertFalse(ParallelDelimitedReader.isSupported(file.getPath(), "UTF-8", ";\r", "\n"));
+        assertFalse(ParallelDelimitedReader.isSupported(file.getPath(), "UTF-8", "|;", "|"));
+        // a delimiter byte can be a part of another character
+        assertFalse(ParallelDelimitedReader.isSupported(file.getPath(), "UTF-16", ";", "\n"));
+        assertFalse(ParallelDelimitedReader.isSupported(file.getPath(), "Shift_JIS", ";", "\n"));
+        write("a;b\n", "UTF-16");
+        assertFalse(ParallelDelimitedReader.isSupported(file.getPath(), "UTF-8", ";", "\n"));
+    }
+
+    @Test
+    public void testClose() throws IOException {
+        write(records(100), "UTF-8");
+        ParallelDelimitedReader reader = new ParallelDelimitedReader(file.getPath(), "UTF-8", ";", "\n", true, 0,
+                false, 2, 64);
+        assertTrue(reader.readRecord());
+        reader.close();
+        try {
+            reader.readRecord();
+            fail("The reader is closed");
+        } catch (IOException e) {
+            // expected
+        }
+        reader.close();
+    }
+}
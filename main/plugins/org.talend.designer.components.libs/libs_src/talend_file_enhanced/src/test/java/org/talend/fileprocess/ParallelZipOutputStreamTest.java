@@ -0,0 +1,225 @@
+// ============================================================================
+//
+// Talend Community Edition
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+//
+// ============================================================================
+package org.talend.fileprocess;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelZipOutputStreamTest {
+
+    private static final String ENTRY_NAME = "out.csv";
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ParallelZipOutputStreamTest", ".zip");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Rows of a delimited file with some random bytes, so the blocks are not all deflated the same way.
+     */
+    private static byte[] data(int length, long seed) {
+        Random random = new Random(seed);
+        ByteArrayOutputStream data = new ByteArrayOutputStream(length + 100);
+        int row = 0;
+        while (data.size() < length) {
+            if (random.nextInt(20) == 0) {
+                byte[] bytes = new byte[random.nextInt(2000)];
+                random.nextBytes(bytes);
+                data.write(bytes, 0, bytes.length);
+            } else {
+                byte[] bytes = (row++ + ";name " + random.nextInt(1000) + ";" + random.nextDouble() + "\n").getBytes();
+                data.write(bytes, 0, bytes.length);
+            }
+        }
+        byte[] bytes = data.toByteArray();
+        byte[] result = new byte[length];
+        System.arraycopy(bytes, 0, result, 0, length);
+        return result;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the zip file with the central directory and as a stream, and checks the entry.
+     */
+    private void assertEntry(byte[] data) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            ZipEntry entry = entries.nextElement();
+            assertFalse(entries.hasMoreElements());
+            assertEquals(ENTRY_NAME, entry.getName());
+            assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            assertEquals(crc.getValue(), entry.getCrc());
+            assertEquals(data.length, entry.getSize());
+            assertTrue(entry.getCompressedSize() > 0);
+            InputStream in = zipFile.getInputStream(entry);
+            try {
+                assertArrayEquals(data, readAll(in));
+            } finally {
+                in.close();
+            }
+        } finally {
+            zipFile.close();
+        }
+
+        ZipInputStream zipIn = new ZipInputStream(new FileInputStream(file));
+        try {
+            ZipEntry entry = zipIn.getNextEntry();
+            assertNotNull(entry);
+            assertEquals(ENTRY_NAME, entry.getName());
+            assertArrayEquals(data, readAll(zipIn));
+            // the data descriptor is read at the end of the entry
+            assertEquals(crc.getValue(), entry.getCrc());
+            assertEquals(data.length, entry.getSize());
+            assertNull(zipIn.getNextEntry());
+        } finally {
+            zipIn.close();
+        }
+    }
+
+    private void assertRoundTrip(byte[] data, int threads) throws IOException {
+        ParallelZipOutputStream out = new ParallelZipOutputStream(new FileOutputStream(file), ENTRY_NAME, threads);
+        try {
+            // several write sizes, across the ends of the blocks
+            Random random = new Random(threads);
+            int off = 0;
+            while (off < data.length) {
+                if (random.nextInt(10) == 0) {
+                    out.write(data[off++]);
+                } else {
+                    int len = Math.min(data.length - off, random.nextInt(100000));
+                    out.write(data, off, len);
+                    off += len;
+                }
+            }
+        } finally {
+            out.close();
+        }
+        assertEntry(data);
+    }
+
+    @Test
+    public void testSeveralBlocksWithOneThread() throws IOException {
+        assertRoundTrip(data(5 * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE + 12345, 42), 1);
+    }
+
+    @Test
+    public void testSeveralBlocksWithThreads() throws IOException {
+        byte[] data = data(9 * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE + 7, 42);
+        for (int threads : new int[] { 2, 4, 8 }) {
+            assertRoundTrip(data, threads);
+        }
+    }
+
+    @Test
+    public void testBlockSizes() throws IOException {
+        byte[] data = data(3 * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE, 7);
+        // exactly full blocks, a block smaller than the dictionary, and one block
+        assertRoundTrip(data, 3);
+        assertRoundTrip(data(ParallelZipOutputStream.DEFAULT_BLOCK_SIZE + 100, 7), 3);
+        assertRoundTrip(data(1000, 7), 3);
+    }
+
+    @Test
+    public void testEmptyEntry() throws IOException {
+        for (int threads : new int[] { 1, 4 }) {
+            new ParallelZipOutputStream(new FileOutputStream(file), ENTRY_NAME, threads).close();
+            assertEntry(new byte[0]);
+        }
+    }
+
+    @Test
+    public void testFlushBeforeClose() throws IOException {
+        byte[] data = data(4 * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE + 99, 11);
+        ParallelZipOutputStream out = new ParallelZipOutputStream(new FileOutputStream(file), ENTRY_NAME, 4);
+        try {
+            out.flush();
+            out.write(data, 0, 1000);
+            out.flush();
+            out.write(data, 1000, 2 * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE);
+            out.flush();
+            out.write(data, 1000 + 2 * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE, data.length - 1000 - 2
+                    * ParallelZipOutputStream.DEFAULT_BLOCK_SIZE);
+            out.flush();
+        } finally {
+            out.close();
+        }
+        assertEntry(data);
+    }
+
+    @Test
+    public void testWriteAfterClose() throws IOException {
+        ParallelZipOutputStream out = new ParallelZipOutputStream(new FileOutputStream(file), ENTRY_NAME, 2);
+        out.write(1);
+        out.close();
+        // closed twice, nothing is written
+        out.close();
+        assertEntry(new byte[] { 1 });
+        try {
+            out.write(2);
+            fail("The stream is closed");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
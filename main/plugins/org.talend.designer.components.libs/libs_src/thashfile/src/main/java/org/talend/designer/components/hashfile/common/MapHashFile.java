@@ -46,7 +46,7 @@ public class MapHashFile {
 		// if present AdvancedMemoryHashFile is null get the AdvancedMemoryHashFile
 		// before present.
 		int size = keyMap.size();
-		while (amhf == null && (size--) > 0) {
+		while (amhf == null && prekey != null && (size--) > 0) {
 			amhf = resourceMap.get(prekey);
 			prekey = keyMap.get(prekey);
 		}
@@ -12,31 +12,27 @@
 // ============================================================================
 package org.talend.designer.components.hashfile.memory;
 
-import java.util.Collections;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
 
 import org.talend.designer.components.hashfile.common.MATCHING_MODE;
 
+/**
+ * The records of a tHashOutput. The records are put one at a time, they can be read at the same time by several
+ * iterators without lock, in the order they are stored.
+ */
 public class AdvancedMemoryHashFile<V> {
 
-    // it is for the MATCHING_MODE.KEEP_FIRST or MATCHING_MODE.KEEP_LAST
-    private Map<V, V> firstOrLastHash;
+    private final ChunkedRowStore<V> rows = new ChunkedRowStore<V>();
 
-    // it is for the MATCHING_MODE.KEEP_ALL
-    private List<V> allList;
+    // it is for the MATCHING_MODE.KEEP_FIRST or MATCHING_MODE.KEEP_LAST
+    private RowKeyTable<V> firstOrLastKeys;
 
     private MATCHING_MODE matchingMode;
 
     public AdvancedMemoryHashFile(MATCHING_MODE matchingMode) {
         this.matchingMode = matchingMode;
-        if (matchingMode == MATCHING_MODE.KEEP_ALL) {
-            allList = Collections.synchronizedList(new ArrayList<V>());
-        } else {
-            firstOrLastHash = Collections.synchronizedMap(new HashMap<V, V>());
+        if (matchingMode != MATCHING_MODE.KEEP_ALL) {
+            firstOrLastKeys = new RowKeyTable<V>(rows);
         }
     }
 
@@ -45,27 +41,28 @@ public class AdvancedMemoryHashFile<V> {
      * <ul>
      * <li> MATCHING_MODE.KEEP_ALL: all records are stored</li>
      * <li> MATCHING_MODE.KEEP_FIRST: if several records have the same key, then only first record is stored</li>
-     * <li> MATCHING_MODE.KEEP_LAST: if several records have the same key, then only last record is stored</li>
+     * <li> MATCHING_MODE.KEEP_LAST: if several records have the same key, then only last record is stored, at the
+     * place of the first one</li>
      * </ul>
      *
      * @param value to be stored in Cache.
      * @return stored value or null if value shouldn't be placed in Cache.
      */
-    public V put(V value) {
+    public synchronized V put(V value) {
         if (value == null) {
             return null;
         }
 
         if (matchingMode == MATCHING_MODE.KEEP_ALL) {
-            allList.add(value);
+            rows.add(value);
             return value;
         }
-        if (matchingMode == MATCHING_MODE.KEEP_LAST) {
-            firstOrLastHash.put(value, value);
+        int index = firstOrLastKeys.putIfAbsent(value);
+        if (index < 0) {
             return value;
         }
-        if (!firstOrLastHash.containsKey(value)) {
-            firstOrLastHash.put(value, value);
+        if (matchingMode == MATCHING_MODE.KEEP_LAST) {
+            rows.set(index, value);
             return value;
         }
 
@@ -73,10 +70,7 @@ public class AdvancedMemoryHashFile<V> {
     }
 
     public Iterator<V> iterator() {
-        if (matchingMode == MATCHING_MODE.KEEP_ALL) {
-            return allList.iterator();
-        }
-        return firstOrLastHash.values().iterator();
+        return rows.iterator();
     }
 
 }
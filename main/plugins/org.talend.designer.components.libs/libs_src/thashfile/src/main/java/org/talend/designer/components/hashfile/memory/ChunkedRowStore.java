@@ -0,0 +1,111 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.hashfile.memory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Rows stored in chunks of fixed size, the rows are only appended or replaced. <br/>
+ *
+ * The writers are called one at a time, the readers don't lock: a row is readable once the size is written after it,
+ * and the chunks are never moved, only the array of the chunks is copied when it grows.
+ */
+final class ChunkedRowStore<V> {
+
+    private static final int CHUNK_SHIFT = 10;
+
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<V>[] chunks = newChunks(16);
+
+    // number of readable rows, written after the row
+    private volatile int size = 0;
+
+    /**
+     * Called by the writer.
+     *
+     * @return the index of the row
+     */
+    int add(V row) {
+        int index = size;
+        if (index == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many rows in the hash");
+        }
+        int chunk = index >>> CHUNK_SHIFT;
+        AtomicReferenceArray<V>[] current = chunks;
+        if (chunk == current.length) {
+            AtomicReferenceArray<V>[] grown = newChunks(current.length * 2);
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+            chunks = grown;
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new AtomicReferenceArray<V>(CHUNK_SIZE);
+        }
+        current[chunk].lazySet(index & CHUNK_MASK, row);
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Called by the writer, the readers see either the previous row or the new one.
+     */
+    void set(int index, V row) {
+        chunks[index >>> CHUNK_SHIFT].set(index & CHUNK_MASK, row);
+    }
+
+    /**
+     * @param index an index lower than a size already read
+     */
+    V get(int index) {
+        return chunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * The iterator also returns the rows added while it is used.
+     */
+    Iterator<V> iterator() {
+        return new Iterator<V>() {
+
+            private int next = 0;
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            public V next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <V> AtomicReferenceArray<V>[] newChunks(int length) {
+        return new AtomicReferenceArray[length];
+    }
+}
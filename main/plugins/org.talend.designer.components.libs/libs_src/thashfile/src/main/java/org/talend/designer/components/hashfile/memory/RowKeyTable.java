@@ -0,0 +1,83 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.hashfile.memory;
+
+/**
+ * Open addressing table of the rows of a {@link ChunkedRowStore} by their key, as given by their equals and hashCode.
+ * <br/>
+ *
+ * The table only keeps the indexes of the rows in the store and their hash, it is only used by the writer: the readers
+ * iterate on the store.
+ */
+final class RowKeyTable<V> {
+
+    private final ChunkedRowStore<V> rows;
+
+    // index of the row + 1, 0 for an empty slot
+    private int[] indexes = new int[64];
+
+    private int[] hashes = new int[64];
+
+    private int count = 0;
+
+    RowKeyTable(ChunkedRowStore<V> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Adds the row to the store if no row has the same key.
+     *
+     * @return the index of the row with the same key, -1 if the row is added
+     */
+    int putIfAbsent(V row) {
+        int hash = spread(row.hashCode());
+        int mask = indexes.length - 1;
+        int slot = hash & mask;
+        while (indexes[slot] != 0) {
+            int index = indexes[slot] - 1;
+            if (hashes[slot] == hash && row.equals(rows.get(index))) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        indexes[slot] = rows.add(row) + 1;
+        hashes[slot] = hash;
+        if (++count * 2 > indexes.length) {
+            grow();
+        }
+        return -1;
+    }
+
+    private void grow() {
+        int[] oldIndexes = indexes;
+        int[] oldHashes = hashes;
+        indexes = new int[oldIndexes.length * 2];
+        hashes = new int[oldIndexes.length * 2];
+        int mask = indexes.length - 1;
+        for (int i = 0; i < oldIndexes.length; i++) {
+            if (oldIndexes[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (indexes[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                indexes[slot] = oldIndexes[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,127 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.hashfile.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.talend.designer.components.hashfile.common.MATCHING_MODE;
+
+public class AdvancedMemoryHashFileTest {
+
+    /**
+     * A row whose key is the first letter of its value.
+     */
+    private static class Row {
+
+        private final String value;
+
+        Row(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value.charAt(0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Row && ((Row) obj).value.charAt(0) == value.charAt(0);
+        }
+    }
+
+    private static List<String> put(MATCHING_MODE matchingMode, String... values) {
+        AdvancedMemoryHashFile<Row> hashFile = new AdvancedMemoryHashFile<Row>(matchingMode);
+        for (String value : values) {
+            hashFile.put(new Row(value));
+        }
+        List<String> stored = new ArrayList<String>();
+        for (Iterator<Row> iterator = hashFile.iterator(); iterator.hasNext();) {
+            stored.add(iterator.next().value);
+        }
+        return stored;
+    }
+
+    @Test
+    public void testKeepAll() {
+        assertEquals(Arrays.asList("a1", "b1", "a2", "c1", "b2"),
+                put(MATCHING_MODE.KEEP_ALL, "a1", "b1", "a2", "c1", "b2"));
+    }
+
+    @Test
+    public void testKeepFirst() {
+        assertEquals(Arrays.asList("a1", "b1", "c1"), put(MATCHING_MODE.KEEP_FIRST, "a1", "b1", "a2", "c1", "b2"));
+    }
+
+    @Test
+    public void testKeepLast() {
+        // the last row of a key is at the place of the first one
+        assertEquals(Arrays.asList("a3", "b2", "c1"),
+                put(MATCHING_MODE.KEEP_LAST, "a1", "b1", "a2", "c1", "b2", "a3"));
+    }
+
+    @Test
+    public void testPutReturnsStoredRow() {
+        AdvancedMemoryHashFile<Row> keepFirst = new AdvancedMemoryHashFile<Row>(MATCHING_MODE.KEEP_FIRST);
+        Row first = new Row("a1");
+        assertSame(first, keepFirst.put(first));
+        assertNull(keepFirst.put(new Row("a2")));
+        assertNull(keepFirst.put(null));
+
+        AdvancedMemoryHashFile<Row> keepLast = new AdvancedMemoryHashFile<Row>(MATCHING_MODE.KEEP_LAST);
+        keepLast.put(new Row("a1"));
+        Row last = new Row("a2");
+        assertSame(last, keepLast.put(last));
+    }
+
+    @Test(timeout = 60000)
+    public void testIterateWhilePutting() throws InterruptedException {
+        final int count = 200000;
+        final AdvancedMemoryHashFile<Integer> hashFile = new AdvancedMemoryHashFile<Integer>(MATCHING_MODE.KEEP_FIRST);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread reader = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Iterator<Integer> iterator = hashFile.iterator();
+                    int index = 0;
+                    while (index < count) {
+                        if (iterator.hasNext()) {
+                            assertEquals(Integer.valueOf(index++), iterator.next());
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        };
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            hashFile.put(i);
+            // the same key again, it is not stored
+            hashFile.put(i);
+        }
+        reader.join();
+        assertNull(error.get());
+    }
+}
@@ -0,0 +1,116 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.hashfile.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ChunkedRowStoreTest {
+
+    @Test
+    public void testAddAndGet() {
+        ChunkedRowStore<Integer> rows = new ChunkedRowStore<Integer>();
+        assertEquals(0, rows.size());
+        // more chunks than the initial array of the chunks
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, rows.add(i));
+        }
+        assertEquals(count, rows.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(Integer.valueOf(i), rows.get(i));
+        }
+    }
+
+    @Test
+    public void testSet() {
+        ChunkedRowStore<String> rows = new ChunkedRowStore<String>();
+        for (int i = 0; i < 2000; i++) {
+            rows.add("row" + i);
+        }
+        rows.set(1500, "replaced");
+        assertEquals(2000, rows.size());
+        assertEquals("row1499", rows.get(1499));
+        assertEquals("replaced", rows.get(1500));
+        assertEquals("row1501", rows.get(1501));
+    }
+
+    @Test
+    public void testIterator() {
+        ChunkedRowStore<String> rows = new ChunkedRowStore<String>();
+        Iterator<String> iterator = rows.iterator();
+        assertFalse(iterator.hasNext());
+        rows.add("a");
+        // the rows added after the iterator is created are returned
+        assertTrue(iterator.hasNext());
+        assertEquals("a", iterator.next());
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            fail("No more rows");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+        try {
+            iterator.remove();
+            fail("The rows are not removed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testIterateWhileAdding() throws InterruptedException {
+        final int count = 1000000;
+        final ChunkedRowStore<Integer> rows = new ChunkedRowStore<Integer>();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        Iterator<Integer> iterator = rows.iterator();
+                        int index = 0;
+                        // the readers see the rows in order, without a missing row, while the chunks grow
+                        while (index < count) {
+                            if (iterator.hasNext()) {
+                                assertEquals(Integer.valueOf(index++), iterator.next());
+                            }
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            };
+            readers[r].start();
+        }
+        for (int i = 0; i < count; i++) {
+            rows.add(i);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(error.get());
+    }
+}
@@ -0,0 +1,77 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.hashfile.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RowKeyTableTest {
+
+    /**
+     * A row whose key is its id, with a hash shared by many keys.
+     */
+    private static class Row {
+
+        private final int id;
+
+        private final String value;
+
+        Row(int id, String value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return id % 7;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Row && ((Row) obj).id == id;
+        }
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        ChunkedRowStore<Row> rows = new ChunkedRowStore<Row>();
+        RowKeyTable<Row> keys = new RowKeyTable<Row>(rows);
+        assertEquals(-1, keys.putIfAbsent(new Row(1, "a")));
+        assertEquals(-1, keys.putIfAbsent(new Row(8, "b")));
+        // same key, the row is not added
+        assertEquals(0, keys.putIfAbsent(new Row(1, "c")));
+        assertEquals(1, keys.putIfAbsent(new Row(8, "d")));
+        assertEquals(2, rows.size());
+        assertEquals("a", rows.get(0).value);
+        assertEquals("b", rows.get(1).value);
+    }
+
+    @Test
+    public void testGrowWithCollisions() {
+        ChunkedRowStore<Row> rows = new ChunkedRowStore<Row>();
+        RowKeyTable<Row> keys = new RowKeyTable<Row>(rows);
+        int count = 5000;
+        // the table grows many times, with only 7 different hashes
+        for (int i = 0; i < count; i++) {
+            assertEquals(-1, keys.putIfAbsent(new Row(i, "first" + i)));
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            assertEquals(i, keys.putIfAbsent(new Row(i, "second" + i)));
+        }
+        assertEquals(count, rows.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals("first" + i, rows.get(i).value);
+        }
+    }
+}
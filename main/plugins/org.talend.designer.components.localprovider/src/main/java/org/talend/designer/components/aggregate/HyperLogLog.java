@@ -0,0 +1,293 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.aggregate;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ *
+ * Fixed size sketch of the distinct values of a group, used by the approximate count distinct function.
+ *
+ * The values are hashed on 64 bits and counted with 2^precision registers, the standard error is about
+ * <code>1.04 / sqrt(2^precision)</code>, 0.8% with the default precision. As HyperLogLog++, the registers are first
+ * kept in a sparse form so that the small groups stay small, and the small cardinalities are counted exactly from the
+ * registers. The cardinality is then estimated with the improved estimator of O. Ertl, which needs no empirical bias
+ * tables.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 14;
+
+    public static final int MIN_PRECISION = 4;
+
+    public static final int MAX_PRECISION = 18;
+
+    private static final long NULL_HASH = 0x9E3779B97F4A7C15L;
+
+    private static final int RANK_BITS = 6;
+
+    private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+    private final int precision;
+
+    private final int registersCount;
+
+    /** Dense registers, null while the sketch is sparse. */
+    private byte[] registers;
+
+    /** Sparse registers, open addressing set of <code>(index + 1) << RANK_BITS | rank</code>. */
+    private int[] sparseRegisters;
+
+    private int sparseSize;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision the number of bits of the register index, between {@link #MIN_PRECISION} and
+     * {@link #MAX_PRECISION}
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("The precision of the approximate count distinct must be between " //$NON-NLS-1$
+                    + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        this.precision = precision;
+        this.registersCount = 1 << precision;
+        this.sparseRegisters = new int[16];
+    }
+
+    /**
+     * Adds a value, null is counted as one distinct value.
+     *
+     * @param value the value to count
+     */
+    public void offer(Object value) {
+        offerHash(hash(value));
+    }
+
+    public void offer(long value) {
+        offerHash(mix(value));
+    }
+
+    public void offer(double value) {
+        offerHash(mix(Double.doubleToLongBits(value == 0d ? 0d : value)));
+    }
+
+    public void offer(boolean value) {
+        offerHash(mix(value ? 1L : 0L));
+    }
+
+    /**
+     * Estimates the number of distinct values.
+     *
+     * @return the estimated cardinality
+     */
+    public long cardinality() {
+        int maxRank = 64 - precision + 1;
+        int[] histogram = new int[maxRank + 1];
+        if (registers != null) {
+            for (byte rank : registers) {
+                histogram[rank]++;
+            }
+        } else {
+            histogram[0] = registersCount - sparseSize;
+            for (int entry : sparseRegisters) {
+                if (entry != 0) {
+                    histogram[entry & RANK_MASK]++;
+                }
+            }
+        }
+        if (histogram[0] == registersCount) {
+            return 0L;
+        }
+        double m = registersCount;
+        double z = m * tau(1d - histogram[maxRank] / m);
+        for (int k = maxRank - 1; k >= 1; k--) {
+            z = 0.5d * (z + histogram[k]);
+        }
+        z += m * sigma(histogram[0] / m);
+        return Math.round(m * m / (2d * Math.log(2d)) / z);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Clears the sketch to reuse it for an other group.
+     */
+    public void clear() {
+        registers = null;
+        sparseRegisters = new int[16];
+        sparseSize = 0;
+    }
+
+    private void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the remaining bits, with a stop bit for the all zeros case
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        updateRegister(index, Long.numberOfLeadingZeros(remaining) + 1);
+    }
+
+    private void updateRegister(int index, int rank) {
+        if (registers != null) {
+            if (registers[index] < rank) {
+                registers[index] = (byte) rank;
+            }
+            return;
+        }
+        int mask = sparseRegisters.length - 1;
+        int slot = (index * 0x9E3779B9) >>> 1 & mask;
+        while (true) {
+            int entry = sparseRegisters[slot];
+            if (entry == 0) {
+                sparseRegisters[slot] = (index + 1) << RANK_BITS | rank;
+                sparseSize++;
+                if (sparseSize * 2 > sparseRegisters.length) {
+                    growSparse();
+                }
+                return;
+            }
+            if ((entry >>> RANK_BITS) - 1 == index) {
+                if ((entry & RANK_MASK) < rank) {
+                    sparseRegisters[slot] = (index + 1) << RANK_BITS | rank;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void growSparse() {
+        int[] entries = sparseRegisters;
+        // the sparse form is kept while it is smaller than the dense one
+        if (entries.length * 2 * 4 > registersCount) {
+            registers = new byte[registersCount];
+            for (int entry : entries) {
+                if (entry != 0) {
+                    registers[(entry >>> RANK_BITS) - 1] = (byte) (entry & RANK_MASK);
+                }
+            }
+            sparseRegisters = null;
+            sparseSize = 0;
+            return;
+        }
+        sparseRegisters = new int[entries.length * 2];
+        sparseSize = 0;
+        for (int entry : entries) {
+            if (entry != 0) {
+                updateRegister((entry >>> RANK_BITS) - 1, entry & RANK_MASK);
+            }
+        }
+    }
+
+    private static double sigma(double x) {
+        if (x == 1d) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1d;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (previous != z);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0d || x == 1d) {
+            return 0d;
+        }
+        double y = 1d;
+        double z = 1d - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5d;
+            z -= (1d - x) * (1d - x) * y;
+        } while (previous != z);
+        return z / 3d;
+    }
+
+    /**
+     * The values which are equal for the aggregation must have the same hash, so the numbers are hashed from their
+     * value and the strings from their characters.
+     */
+    private static long hash(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        }
+        if (value instanceof String) {
+            return hash(((String) value).getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return mix(((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double doubleValue = ((Number) value).doubleValue();
+            return mix(Double.doubleToLongBits(doubleValue == 0d ? 0d : doubleValue));
+        }
+        if (value instanceof Character) {
+            return mix((Character) value);
+        }
+        if (value instanceof Boolean) {
+            return mix(((Boolean) value) ? 1L : 0L);
+        }
+        if (value instanceof Date) {
+            return mix(((Date) value).getTime());
+        }
+        if (value instanceof BigDecimal) {
+            return hash(((BigDecimal) value).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (value instanceof byte[]) {
+            return hash((byte[]) value);
+        }
+        if (value instanceof Object[]) {
+            return mix(Arrays.deepHashCode((Object[]) value));
+        }
+        return mix(value.hashCode());
+    }
+
+    private static long hash(byte[] bytes) {
+        // FNV-1a, then mixed
+        long h = 0xCBF29CE484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001B3L;
+        }
+        return mix(h ^ bytes.length);
+    }
+
+    /**
+     * Finalizer of MurmurHash3 on a shifted value (0 is its fixed point), spreads all the bits of the value.
+     */
+    private static long mix(long value) {
+        long h = value ^ 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
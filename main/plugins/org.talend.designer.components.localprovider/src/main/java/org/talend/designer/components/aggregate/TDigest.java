@@ -0,0 +1,277 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.aggregate;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Fixed size sketch of the distribution of a group, used by the approximate percentile and median functions.
+ *
+ * This is the merging t-digest of T. Dunning: the values are buffered, then sorted and merged with the centroids. A
+ * centroid may only grow while it covers less than one unit of the <code>k = compression / 2PI * asin(2q - 1)</code>
+ * scale, so the centroids are small near the extreme quantiles, where the estimation is the most accurate, and the
+ * digest keeps less than <code>compression</code> centroids.
+ */
+public class TDigest {
+
+    public static final double DEFAULT_COMPRESSION = 100d;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final double compression;
+
+    private double[] means;
+
+    private double[] weights;
+
+    private int centroidsCount;
+
+    private double[] bufferMeans;
+
+    private double[] bufferWeights;
+
+    private final int bufferCapacity;
+
+    private int bufferCount;
+
+    private double totalWeight;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression the accuracy of the digest, at least 10
+     */
+    public TDigest(double compression) {
+        if (!(compression >= 10d)) {
+            throw new IllegalArgumentException("The compression of the approximate percentile must be at least 10: " //$NON-NLS-1$
+                    + compression);
+        }
+        this.compression = compression;
+        // the arrays grow with the group, a digest of a small group stays small
+        this.bufferCapacity = 5 * ((int) Math.ceil(compression) + 10);
+        this.means = new double[INITIAL_CAPACITY];
+        this.weights = new double[INITIAL_CAPACITY];
+        this.bufferMeans = new double[INITIAL_CAPACITY];
+        this.bufferWeights = new double[INITIAL_CAPACITY];
+    }
+
+    public void add(double value) {
+        add(value, 1d);
+    }
+
+    /**
+     * Adds a value, null and NaN are ignored.
+     *
+     * @param value the value
+     */
+    public void add(Number value) {
+        if (value != null) {
+            add(value.doubleValue(), 1d);
+        }
+    }
+
+    private void add(double value, double weight) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (bufferCount == bufferMeans.length) {
+            if (bufferCount < bufferCapacity) {
+                int length = Math.min(bufferCapacity, bufferCount * 2);
+                bufferMeans = Arrays.copyOf(bufferMeans, length);
+                bufferWeights = Arrays.copyOf(bufferWeights, length);
+            } else {
+                compress();
+            }
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Estimates a quantile.
+     *
+     * @param q the quantile, between 0 and 1
+     * @return the estimated value, NaN if no value was added
+     */
+    public double quantile(double q) {
+        if (q < 0d || q > 1d) {
+            throw new IllegalArgumentException("The quantile must be between 0 and 1: " + q); //$NON-NLS-1$
+        }
+        compress();
+        if (centroidsCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidsCount == 1) {
+            return means[0];
+        }
+        double index = q * totalWeight;
+        if (index <= weights[0] / 2d) {
+            // between the min and the center of the first centroid
+            return min + 2d * index / weights[0] * (means[0] - min);
+        }
+        double cumulated = weights[0] / 2d;
+        for (int i = 0; i < centroidsCount - 1; i++) {
+            double delta = (weights[i] + weights[i + 1]) / 2d;
+            if (cumulated + delta > index) {
+                double ratio = (index - cumulated) / delta;
+                return means[i] + ratio * (means[i + 1] - means[i]);
+            }
+            cumulated += delta;
+        }
+        double lastWeight = weights[centroidsCount - 1];
+        double ratio = Math.min(1d, (index - cumulated) / (lastWeight / 2d));
+        return means[centroidsCount - 1] + ratio * (max - means[centroidsCount - 1]);
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    /**
+     * @return the number of added values
+     */
+    public long size() {
+        return (long) totalWeight;
+    }
+
+    /**
+     * Clears the digest to reuse it for an other group.
+     */
+    public void clear() {
+        centroidsCount = 0;
+        bufferCount = 0;
+        totalWeight = 0d;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Merges the buffered values with the centroids, both sorted by mean.
+     */
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+        sort(bufferMeans, bufferWeights, 0, bufferCount - 1);
+        double[] previousMeans = means;
+        double[] previousWeights = weights;
+        int previousCount = centroidsCount;
+        means = new double[Math.max(INITIAL_CAPACITY, Math.min(previousCount + bufferCount, previousMeans.length))];
+        weights = new double[means.length];
+        centroidsCount = 0;
+
+        double merged = 0d;
+        double kLimit = k(0d) + 1d;
+        double mean = 0d;
+        double weight = 0d;
+        int i = 0;
+        int j = 0;
+        while (i < previousCount || j < bufferCount) {
+            double nextMean;
+            double nextWeight;
+            if (j == bufferCount || i < previousCount && previousMeans[i] <= bufferMeans[j]) {
+                nextMean = previousMeans[i];
+                nextWeight = previousWeights[i++];
+            } else {
+                nextMean = bufferMeans[j];
+                nextWeight = bufferWeights[j++];
+            }
+            if (weight == 0d) {
+                mean = nextMean;
+                weight = nextWeight;
+            } else if (k((merged + weight + nextWeight) / totalWeight) <= kLimit) {
+                weight += nextWeight;
+                mean += (nextMean - mean) * nextWeight / weight;
+            } else {
+                merged += weight;
+                addCentroid(mean, weight);
+                kLimit = k(merged / totalWeight) + 1d;
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        addCentroid(mean, weight);
+        bufferCount = 0;
+    }
+
+    private void addCentroid(double mean, double weight) {
+        if (centroidsCount == means.length) {
+            means = Arrays.copyOf(means, centroidsCount * 2);
+            weights = Arrays.copyOf(weights, centroidsCount * 2);
+        }
+        means[centroidsCount] = mean;
+        weights[centroidsCount] = weight;
+        centroidsCount++;
+    }
+
+    private static void sort(double[] values, double[] weights, int from, int to) {
+        while (to - from > 16) {
+            double pivot = values[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, weights, i++, j--);
+                }
+            }
+            // recursion on the smallest part only
+            if (j - from < to - i) {
+                sort(values, weights, from, j);
+                from = i;
+            } else {
+                sort(values, weights, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && values[j - 1] > values[j]; j--) {
+                swap(values, weights, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(double[] values, double[] weights, int i, int j) {
+        double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        double weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+    }
+
+    private double k(double q) {
+        return compression / (2d * Math.PI) * Math.asin(2d * Math.min(1d, q) - 1d);
+    }
+
+}
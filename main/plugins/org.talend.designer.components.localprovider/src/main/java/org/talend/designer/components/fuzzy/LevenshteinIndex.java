@@ -0,0 +1,492 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.fuzzy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ *
+ * Index of the lookup values of tFuzzyMatch, to find the values whose Levenshtein distance to a searched value is
+ * between a min and a max distance without computing the distance to every value.
+ *
+ * The values are kept in a BK-tree, where the triangle inequality prunes the subtrees which can not be at the max
+ * distance. When a q-gram size is set, the values sharing too few q-grams with the searched value are also filtered
+ * out before their distance is computed. The values are split in as many shards as search threads, the shards are
+ * built and searched in parallel.
+ *
+ * The matches are returned in the order the values were added, so the results are the same as a scan of all the
+ * values.
+ */
+public class LevenshteinIndex {
+
+    private final List<String> keys = new ArrayList<String>();
+
+    private final List<String> values = new ArrayList<String>();
+
+    private int threads = 1;
+
+    private int qGramSize;
+
+    private Shard[] shards;
+
+    private ExecutorService executor;
+
+    private final Matches matches = new Matches();
+
+    /**
+     * @param threads the number of threads searching the index, 1 by default
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param qGramSize the size of the q-grams of the candidate filter, 0 to only use the BK-tree
+     */
+    public void setQGramSize(int qGramSize) {
+        this.qGramSize = Math.max(0, qGramSize);
+    }
+
+    /**
+     * Adds a lookup value, before {@link #build()}.
+     *
+     * @param key the value the distance is computed on, lower cased when the matching is not case sensitive
+     * @param value the value returned as matching value
+     */
+    public void add(String key, String value) {
+        keys.add(key);
+        values.add(value);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public void build() throws InterruptedException {
+        int shardsCount = Math.max(1, Math.min(threads, keys.size()));
+        shards = new Shard[shardsCount];
+        for (int i = 0; i < shardsCount; i++) {
+            shards[i] = new Shard(i, shardsCount);
+        }
+        if (shardsCount > 1) {
+            executor = Executors.newFixedThreadPool(shardsCount - 1, new ThreadFactory() {
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "fuzzy match index"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        runOnShards(new ShardTask() {
+
+            public void run(Shard shard) {
+                shard.build();
+            }
+        });
+    }
+
+    /**
+     * Searches the values at a distance between min and max of the searched value.
+     *
+     * @param key the searched value, lower cased when the matching is not case sensitive
+     * @param min the min distance
+     * @param max the max distance
+     * @param closestOnly true to only get the closest value, the first added one when several values are at the same
+     * distance
+     * @return the matches in the order of the values, the instance is reused by the next search
+     */
+    public Matches search(final String key, final int min, final int max, final boolean closestOnly)
+            throws InterruptedException {
+        matches.size = 0;
+        if (max < 0 || max < min || shards.length == 0) {
+            return matches;
+        }
+        runOnShards(new ShardTask() {
+
+            public void run(Shard shard) {
+                shard.search(key, min, max, closestOnly);
+            }
+        });
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.hitsCount;
+        }
+        long[] hits = matches.ensureCapacity(count);
+        int size = 0;
+        for (Shard shard : shards) {
+            System.arraycopy(shard.hits, 0, hits, size, shard.hitsCount);
+            size += shard.hitsCount;
+        }
+        // ordinal in the high bits, so the hits are sorted in the order of the values
+        Arrays.sort(hits, 0, size);
+        if (closestOnly && size > 1) {
+            int best = 0;
+            for (int i = 1; i < size; i++) {
+                if ((int) hits[i] < (int) hits[best]) {
+                    best = i;
+                }
+            }
+            hits[0] = hits[best];
+            size = 1;
+        }
+        matches.size = size;
+        return matches;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void runOnShards(final ShardTask task) throws InterruptedException {
+        if (executor == null) {
+            for (Shard shard : shards) {
+                task.run(shard);
+            }
+            return;
+        }
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            final Shard shard = shards[i];
+            futures.add(executor.submit(new Callable<Object>() {
+
+                public Object call() {
+                    task.run(shard);
+                    return null;
+                }
+            }));
+        }
+        task.run(shards[0]);
+        for (Future<Object> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+
+    private interface ShardTask {
+
+        public void run(Shard shard);
+    }
+
+    /**
+     * Values found by a search.
+     */
+    public class Matches {
+
+        private long[] hits = new long[16];
+
+        private int size;
+
+        public int size() {
+            return size;
+        }
+
+        public int getDistance(int i) {
+            return (int) hits[i];
+        }
+
+        public String getValue(int i) {
+            return values.get((int) (hits[i] >>> 32));
+        }
+
+        private long[] ensureCapacity(int capacity) {
+            if (hits.length < capacity) {
+                hits = new long[Math.max(capacity, hits.length * 2)];
+            }
+            return hits;
+        }
+    }
+
+    /**
+     * BK-tree and q-gram index of the values whose ordinal modulo the shards count is the shard index.
+     */
+    private class Shard {
+
+        private final String[] shardKeys;
+
+        private final int[] ordinals;
+
+        /** Distance of each node to its parent. */
+        private final int[] edges;
+
+        private final int[] firstChildren;
+
+        private final int[] nextSiblings;
+
+        /** q-gram hash to the pairs (node, q-gram count in the node). */
+        private Map<Integer, int[]> postings;
+
+        private int[] gramCounts;
+
+        private int[] touched;
+
+        private int[] stack = new int[64];
+
+        private int[] previousRow = new int[32];
+
+        private int[] currentRow = new int[32];
+
+        private long[] hits = new long[16];
+
+        private int hitsCount;
+
+        Shard(int index, int shardsCount) {
+            int size = (keys.size() - index + shardsCount - 1) / shardsCount;
+            shardKeys = new String[size];
+            ordinals = new int[size];
+            for (int i = 0; i < size; i++) {
+                ordinals[i] = index + i * shardsCount;
+                shardKeys[i] = keys.get(ordinals[i]);
+            }
+            edges = new int[size];
+            firstChildren = new int[size];
+            nextSiblings = new int[size];
+        }
+
+        void build() {
+            Arrays.fill(firstChildren, -1);
+            Arrays.fill(nextSiblings, -1);
+            for (int node = 1; node < shardKeys.length; node++) {
+                insert(node);
+            }
+            if (qGramSize > 0) {
+                buildPostings();
+            }
+        }
+
+        private void insert(int node) {
+            int parent = 0;
+            while (true) {
+                int distance = distance(shardKeys[node], shardKeys[parent], Integer.MAX_VALUE);
+                int child = firstChildren[parent];
+                while (child != -1 && edges[child] != distance) {
+                    child = nextSiblings[child];
+                }
+                if (child == -1) {
+                    edges[node] = distance;
+                    nextSiblings[node] = firstChildren[parent];
+                    firstChildren[parent] = node;
+                    return;
+                }
+                parent = child;
+            }
+        }
+
+        private void buildPostings() {
+            Map<Integer, int[]> lists = new HashMap<Integer, int[]>();
+            for (int node = 0; node < shardKeys.length; node++) {
+                int[] grams = grams(shardKeys[node]);
+                for (int i = 0; i < grams.length;) {
+                    int count = 1;
+                    while (i + count < grams.length && grams[i + count] == grams[i]) {
+                        count++;
+                    }
+                    int[] list = lists.get(grams[i]);
+                    if (list == null) {
+                        // the size is kept in the first element
+                        list = new int[5];
+                        lists.put(grams[i], list);
+                    } else if (list[0] + 3 > list.length) {
+                        list = Arrays.copyOf(list, list.length * 2);
+                        lists.put(grams[i], list);
+                    }
+                    list[++list[0]] = node;
+                    list[++list[0]] = count;
+                    i += count;
+                }
+            }
+            postings = lists;
+            gramCounts = new int[shardKeys.length];
+            touched = new int[16];
+        }
+
+        void search(String key, int min, int max, boolean closestOnly) {
+            hitsCount = 0;
+            if (shardKeys.length == 0) {
+                return;
+            }
+            // with a short searched value, a candidate may share no q-gram at all
+            if (postings != null && key.length() - qGramSize + 1 - max * qGramSize > 0) {
+                searchQGrams(key, min, max, closestOnly);
+            } else {
+                searchTree(key, min, max, closestOnly);
+            }
+        }
+
+        private void searchTree(String key, int min, int max, boolean closestOnly) {
+            int radius = max;
+            int stackSize = 0;
+            stack[stackSize++] = 0;
+            while (stackSize > 0) {
+                int node = stack[--stackSize];
+                int distance = distance(key, shardKeys[node], Integer.MAX_VALUE);
+                if (min <= distance && distance <= radius) {
+                    if (!closestOnly) {
+                        addHit(node, distance);
+                    } else if (hitsCount == 0 || distance < (int) hits[0]
+                            || (distance == (int) hits[0] && ordinals[node] < (int) (hits[0] >>> 32))) {
+                        hitsCount = 0;
+                        addHit(node, distance);
+                        radius = distance;
+                    }
+                }
+                for (int child = firstChildren[node]; child != -1; child = nextSiblings[child]) {
+                    if (Math.abs(edges[child] - distance) <= radius) {
+                        if (stackSize == stack.length) {
+                            stack = Arrays.copyOf(stack, stackSize * 2);
+                        }
+                        stack[stackSize++] = child;
+                    }
+                }
+            }
+        }
+
+        private void searchQGrams(String key, int min, int max, boolean closestOnly) {
+            int[] grams = grams(key);
+            int touchedCount = 0;
+            for (int i = 0; i < grams.length;) {
+                int count = 1;
+                while (i + count < grams.length && grams[i + count] == grams[i]) {
+                    count++;
+                }
+                int[] list = postings.get(grams[i]);
+                if (list != null) {
+                    for (int j = 1; j < list[0]; j += 2) {
+                        int node = list[j];
+                        if (gramCounts[node] == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = node;
+                        }
+                        gramCounts[node] += Math.min(count, list[j + 1]);
+                    }
+                }
+                i += count;
+            }
+            int radius = max;
+            for (int i = 0; i < touchedCount; i++) {
+                int node = touched[i];
+                int common = gramCounts[node];
+                gramCounts[node] = 0;
+                String candidate = shardKeys[node];
+                // q-gram lemma: a value at distance k shares at least max(length) - q + 1 - k * q q-grams
+                if (Math.abs(candidate.length() - key.length()) > radius
+                        || common < Math.max(candidate.length(), key.length()) - qGramSize + 1 - radius * qGramSize) {
+                    continue;
+                }
+                int distance = distance(key, candidate, radius);
+                if (min <= distance && distance <= radius) {
+                    if (!closestOnly) {
+                        addHit(node, distance);
+                    } else if (hitsCount == 0 || distance < (int) hits[0]
+                            || (distance == (int) hits[0] && ordinals[node] < (int) (hits[0] >>> 32))) {
+                        hitsCount = 0;
+                        addHit(node, distance);
+                        radius = distance;
+                    }
+                }
+            }
+        }
+
+        private void addHit(int node, int distance) {
+            if (hitsCount == hits.length) {
+                hits = Arrays.copyOf(hits, hitsCount * 2);
+            }
+            hits[hitsCount++] = ((long) ordinals[node] << 32) | distance;
+        }
+
+        /**
+         * @return the sorted hashes of the q-grams of the value
+         */
+        private int[] grams(String value) {
+            int count = value.length() - qGramSize + 1;
+            if (count <= 0) {
+                return new int[0];
+            }
+            int[] grams = new int[count];
+            for (int i = 0; i < count; i++) {
+                int hash = 0;
+                for (int j = i; j < i + qGramSize; j++) {
+                    hash = 31 * hash + value.charAt(j);
+                }
+                grams[i] = hash;
+            }
+            Arrays.sort(grams);
+            return grams;
+        }
+
+        /**
+         * @return the Levenshtein distance of the two values, or any value greater than bound when the distance is
+         * greater than bound
+         */
+        private int distance(String s, String t, int bound) {
+            int n = s.length();
+            int m = t.length();
+            if (n == 0) {
+                return m;
+            }
+            if (m == 0) {
+                return n;
+            }
+            if (previousRow.length <= m) {
+                previousRow = new int[m + 1];
+                currentRow = new int[m + 1];
+            }
+            int[] previous = previousRow;
+            int[] current = currentRow;
+            for (int j = 0; j <= m; j++) {
+                previous[j] = j;
+            }
+            for (int i = 1; i <= n; i++) {
+                char c = s.charAt(i - 1);
+                current[0] = i;
+                int rowMin = i;
+                for (int j = 1; j <= m; j++) {
+                    int cost = c == t.charAt(j - 1) ? 0 : 1;
+                    int value = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                    current[j] = value;
+                    if (value < rowMin) {
+                        rowMin = value;
+                    }
+                }
+                if (rowMin > bound) {
+                    return rowMin;
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[m];
+        }
+    }
+}
@@ -0,0 +1,678 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.memory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.talend.designer.components.persistent.IRowCreator;
+import org.talend.designer.components.persistent.utils.CompactObjectInputStream;
+import org.talend.designer.components.persistent.utils.CompactObjectOutputStream;
+
+import routines.system.IPersistableComparableLookupRow;
+
+/**
+ * In memory lookup which keeps the rows serialized outside of the Java heap.
+ *
+ * Each row is serialized with its own <code>writeKeysData</code>/<code>writeValuesData</code> methods into direct
+ * <code>ByteBuffer</code> slabs, and an open addressing index made of primitive arrays maps the hash of the keys to
+ * the address of the stored records, so no object is retained per row between the put and the get phases. Rows with
+ * the same keys are chained in insertion order, which gives the same results as {@link AdvancedMemoryLookup} for the
+ * UNIQUE_MATCH, FIRST_MATCH, LAST_MATCH, ALL_MATCHES and ALL_ROWS matching modes.
+ *
+ * Slabs are allocated with <code>ByteBuffer.allocateDirect()</code>, so the job has to be started with a
+ * <code>-XX:MaxDirectMemorySize</code> large enough for the lookup data.
+ *
+ * @param <V> value
+ */
+public class OffHeapMemoryLookup<V extends IPersistableComparableLookupRow<V>> extends AdvancedMemoryLookup<V> implements
+        IMemoryLookup<V, V>, Cloneable {
+
+    public static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final float MAX_LOAD_FACTOR = 0.7f;
+
+    private static final long NULL_ADDRESS = -1L;
+
+    /**
+     * next record address (long) + keys length (int) + values length (int).
+     */
+    private static final int RECORD_HEADER_SIZE = 16;
+
+    private static final int KEYS_LENGTH_OFFSET = 8;
+
+    private static final int VALUES_LENGTH_OFFSET = 12;
+
+    private static final int ZERO = 0;
+
+    private static final int ONE = 1;
+
+    private MATCHING_MODE matchingMode;
+
+    private IRowCreator<V> rowCreator;
+
+    private int slabSize;
+
+    private List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+
+    private ByteBuffer writeSlab;
+
+    private int[] slotHashes;
+
+    private long[] slotHeads;
+
+    private long[] slotTails;
+
+    private int[] slotCounts;
+
+    private int mask;
+
+    private int usedSlots;
+
+    private long firstAddress = NULL_ADDRESS;
+
+    private long lastAddress = NULL_ADDRESS;
+
+    private long size;
+
+    private long usedBytes;
+
+    private long wastedBytes;
+
+    private byte[] streamHeader;
+
+    private ExposedByteArrayOutputStream keysBuffer;
+
+    private ObjectOutputStream keysObjectOutStream;
+
+    private ExposedByteArrayOutputStream valuesBuffer;
+
+    private DataOutputStream valuesDataOutStream;
+
+    private ObjectOutputStream valuesObjectOutStream;
+
+    // read side, never shared between clones
+    private ByteBuffer[] slabViews;
+
+    private byte[] readBuffer;
+
+    private V keysInstance;
+
+    private long cursor = NULL_ADDRESS;
+
+    private boolean hasResult;
+
+    // rows read by lookup(), instead of the cursor
+    private List<V> listResult;
+
+    private int listIndex;
+
+    /**
+     * @param slabSize the size of the slabs in bytes, at most Integer.MAX_VALUE as the offsets in a slab are int
+     */
+    public OffHeapMemoryLookup(MATCHING_MODE matchingMode, IRowCreator<V> rowCreator, long slabSize) {
+        super();
+        this.matchingMode = matchingMode == null ? MATCHING_MODE.UNIQUE_MATCH : matchingMode;
+        this.rowCreator = rowCreator;
+        this.slabSize = slabSize > RECORD_HEADER_SIZE ? (int) Math.min(slabSize, Integer.MAX_VALUE) : DEFAULT_SLAB_SIZE;
+        if (this.matchingMode != MATCHING_MODE.ALL_ROWS) {
+            allocateIndex(INITIAL_CAPACITY);
+        }
+    }
+
+    public static <V extends IPersistableComparableLookupRow<V>> OffHeapMemoryLookup<V> getLookup(MATCHING_MODE matchingMode,
+            IRowCreator<V> rowCreator, long slabSize) {
+        return new OffHeapMemoryLookup<V>(matchingMode, rowCreator, slabSize);
+    }
+
+    @Override
+    public void initPut() {
+        try {
+            keysBuffer = new ExposedByteArrayOutputStream();
+            // each record is written with a reset stream and repeats its class descriptors, only their name is kept
+            keysObjectOutStream = new CompactObjectOutputStream(keysBuffer);
+            keysObjectOutStream.flush();
+            streamHeader = keysBuffer.toByteArray();
+            keysBuffer.reset();
+
+            valuesBuffer = new ExposedByteArrayOutputStream();
+            valuesDataOutStream = new DataOutputStream(valuesBuffer);
+            valuesObjectOutStream = new CompactObjectOutputStream(valuesDataOutStream);
+            valuesObjectOutStream.flush();
+            valuesBuffer.reset();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public V put(V value) {
+        if (value == null) {
+            return null;
+        }
+        if (keysObjectOutStream == null) {
+            initPut();
+        }
+        if (matchingMode == MATCHING_MODE.ALL_ROWS) {
+            long address = writeRecord(value);
+            if (lastAddress == NULL_ADDRESS) {
+                firstAddress = address;
+            } else {
+                setNextAddress(lastAddress, address);
+            }
+            lastAddress = address;
+            size++;
+            return null;
+        }
+
+        int hash = value.hashCode();
+        int slot = findSlot(value, hash);
+        if (slotHeads[slot] == NULL_ADDRESS) {
+            long address = writeRecord(value);
+            slotHashes[slot] = hash;
+            slotHeads[slot] = address;
+            slotTails[slot] = address;
+            slotCounts[slot] = ONE;
+            size++;
+            if (++usedSlots > MAX_LOAD_FACTOR * slotHeads.length) {
+                rehash(slotHeads.length << 1);
+            }
+            return null;
+        }
+
+        long address;
+        switch (matchingMode) {
+        case FIRST_MATCH:
+            // only the first row can be returned, the next ones are only counted
+            slotCounts[slot]++;
+            break;
+        case ALL_MATCHES:
+            address = writeRecord(value);
+            setNextAddress(slotTails[slot], address);
+            slotTails[slot] = address;
+            slotCounts[slot]++;
+            size++;
+            break;
+        default:
+            // UNIQUE_MATCH and LAST_MATCH keep only the last row
+            wastedBytes += recordLength(slotHeads[slot]);
+            address = writeRecord(value);
+            slotHeads[slot] = address;
+            slotTails[slot] = address;
+            slotCounts[slot]++;
+            break;
+        }
+        return null;
+    }
+
+    @Override
+    public void endPut() {
+        keysObjectOutStream = null;
+        keysBuffer = null;
+        valuesObjectOutStream = null;
+        valuesDataOutStream = null;
+        valuesBuffer = null;
+    }
+
+    @Override
+    public void initGet() {
+
+    }
+
+    @Override
+    public void lookup(V key) {
+        hasResult = false;
+        listResult = null;
+        if (matchingMode == MATCHING_MODE.ALL_ROWS) {
+            cursor = firstAddress;
+        } else if (key == null || size == 0) {
+            cursor = NULL_ADDRESS;
+        } else {
+            cursor = slotHeads[findSlot(key, key.hashCode())];
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (listResult != null) {
+            return listIndex < listResult.size();
+        }
+        return cursor != NULL_ADDRESS;
+    }
+
+    @Override
+    public V next() {
+        if (listResult != null) {
+            if (listIndex >= listResult.size()) {
+                throw new NoSuchElementException();
+            }
+            hasResult = true;
+            return listResult.get(listIndex++);
+        }
+        if (cursor == NULL_ADDRESS) {
+            throw new NoSuchElementException();
+        }
+        V row = rowCreator.createRowInstance();
+        readRecord(cursor, row, true);
+        if (matchingMode == MATCHING_MODE.ALL_MATCHES || matchingMode == MATCHING_MODE.ALL_ROWS) {
+            cursor = getNextAddress(cursor);
+        } else {
+            cursor = NULL_ADDRESS;
+        }
+        hasResult = true;
+        return row;
+    }
+
+    @Override
+    public void endGet() {
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        slabs = new ArrayList<ByteBuffer>();
+        writeSlab = null;
+        slabViews = null;
+        readBuffer = null;
+        if (matchingMode != MATCHING_MODE.ALL_ROWS) {
+            allocateIndex(INITIAL_CAPACITY);
+        }
+        usedSlots = 0;
+        firstAddress = NULL_ADDRESS;
+        lastAddress = NULL_ADDRESS;
+        cursor = NULL_ADDRESS;
+        listResult = null;
+        size = 0;
+        usedBytes = 0;
+        wastedBytes = 0;
+    }
+
+    @Override
+    public boolean hasResult() {
+        return hasResult;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int getCount(V key) {
+        if (key == null || size == 0) {
+            return ZERO;
+        }
+        if (matchingMode == MATCHING_MODE.ALL_ROWS) {
+            V row = rowCreator.createRowInstance();
+            for (long address = firstAddress; address != NULL_ADDRESS; address = getNextAddress(address)) {
+                readRecord(address, row, true);
+                if (key.equals(row)) {
+                    return ONE;
+                }
+            }
+            return ZERO;
+        }
+        int slot = findSlot(key, key.hashCode());
+        if (slotHeads[slot] == NULL_ADDRESS) {
+            return ZERO;
+        }
+        return matchingMode == MATCHING_MODE.UNIQUE_MATCH ? ONE : slotCounts[slot];
+    }
+
+    @Override
+    public boolean isUseHashKeys() {
+        return matchingMode != MATCHING_MODE.ALL_ROWS;
+    }
+
+    @Override
+    public boolean isCountValuesForEachKey() {
+        return false;
+    }
+
+    @Override
+    public boolean isKeepAllValues() {
+        return false;
+    }
+
+    @Override
+    public boolean isUniqueMatch() {
+        return matchingMode == MATCHING_MODE.UNIQUE_MATCH;
+    }
+
+    @Override
+    public boolean isOnlyOneMatchResult() {
+        return matchingMode == MATCHING_MODE.UNIQUE_MATCH || matchingMode == MATCHING_MODE.FIRST_MATCH
+                || matchingMode == MATCHING_MODE.LAST_MATCH;
+    }
+
+    @Override
+    public MATCHING_MODE getMatchingMode() {
+        return matchingMode;
+    }
+
+    /**
+     * The rows are not kept as objects, the results are read again from the slabs in new lists.
+     */
+    @Override
+    public Object[] getResultArray() {
+        return getResultList().toArray();
+    }
+
+    /**
+     * @return the rows of the last lookup which are not returned by next() yet
+     */
+    @Override
+    public List<V> getResultList() {
+        if (listResult != null) {
+            return new ArrayList<V>(listResult.subList(listIndex, listResult.size()));
+        }
+        List<V> rows = new ArrayList<V>();
+        boolean allRows = matchingMode == MATCHING_MODE.ALL_MATCHES || matchingMode == MATCHING_MODE.ALL_ROWS;
+        for (long address = cursor; address != NULL_ADDRESS; address = allRows ? getNextAddress(address) : NULL_ADDRESS) {
+            rows.add(readRow(address));
+        }
+        return rows;
+    }
+
+    /**
+     * As {@link AdvancedMemoryLookup#getList()}, the rows are only listed in the ALL_ROWS matching mode.
+     */
+    @Override
+    public List<V> getList() {
+        List<V> rows = new ArrayList<V>();
+        if (matchingMode == MATCHING_MODE.ALL_ROWS) {
+            for (long address = firstAddress; address != NULL_ADDRESS; address = getNextAddress(address)) {
+                rows.add(readRow(address));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Looks up all the stored rows, the rows with the same keys follow each other.
+     */
+    @Override
+    public void lookup() {
+        List<V> rows = new ArrayList<V>();
+        if (matchingMode == MATCHING_MODE.ALL_ROWS) {
+            for (long address = firstAddress; address != NULL_ADDRESS; address = getNextAddress(address)) {
+                rows.add(readRow(address));
+            }
+        } else if (size > 0) {
+            for (long head : slotHeads) {
+                for (long address = head; address != NULL_ADDRESS; address = matchingMode == MATCHING_MODE.ALL_MATCHES
+                        ? getNextAddress(address) : NULL_ADDRESS) {
+                    rows.add(readRow(address));
+                }
+            }
+        }
+        hasResult = false;
+        cursor = NULL_ADDRESS;
+        listResult = rows;
+        listIndex = 0;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        OffHeapMemoryLookup<V> clone = (OffHeapMemoryLookup<V>) super.clone();
+        clone.slabViews = null;
+        clone.readBuffer = null;
+        clone.keysInstance = null;
+        clone.cursor = NULL_ADDRESS;
+        clone.listResult = null;
+        clone.hasResult = false;
+        return clone;
+    }
+
+    /**
+     * Getter for the number of stored rows.
+     *
+     * @return the number of rows which can be returned by the lookup
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for the number of bytes written in the slabs, including the records replaced by a later row with the same
+     * keys.
+     *
+     * @return the used bytes
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Getter for the number of bytes of the records replaced by a later row with the same keys.
+     *
+     * @return the wasted bytes
+     */
+    public long getWastedBytes() {
+        return wastedBytes;
+    }
+
+    /**
+     * Getter for the total memory reserved by the lookup: off-heap slabs plus the primitive arrays of the index.
+     *
+     * @return the allocated bytes
+     */
+    public long getAllocatedBytes() {
+        long allocated = getIndexBytes();
+        for (ByteBuffer slab : slabs) {
+            allocated += slab.capacity();
+        }
+        return allocated;
+    }
+
+    /**
+     * Getter for the average cost of a row, index entry included.
+     *
+     * @return the bytes per row, 0 if the lookup is empty
+     */
+    public double getBytesPerRow() {
+        if (size == 0) {
+            return 0d;
+        }
+        return (double) (usedBytes + getIndexBytes()) / size;
+    }
+
+    /**
+     * Getter for the load factor of the index.
+     *
+     * @return the ratio of used slots, 0 for the ALL_ROWS matching mode which does not use an index
+     */
+    public double getLoadFactor() {
+        if (slotHeads == null) {
+            return 0d;
+        }
+        return (double) usedSlots / slotHeads.length;
+    }
+
+    private long getIndexBytes() {
+        if (slotHeads == null) {
+            return 0L;
+        }
+        // hash (int) + head (long) + tail (long) + count (int)
+        return (long) slotHeads.length * 24L;
+    }
+
+    private void allocateIndex(int capacity) {
+        slotHashes = new int[capacity];
+        slotHeads = new long[capacity];
+        slotTails = new long[capacity];
+        slotCounts = new int[capacity];
+        Arrays.fill(slotHeads, NULL_ADDRESS);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldHashes = slotHashes;
+        long[] oldHeads = slotHeads;
+        long[] oldTails = slotTails;
+        int[] oldCounts = slotCounts;
+        allocateIndex(newCapacity);
+        for (int i = 0; i < oldHeads.length; i++) {
+            if (oldHeads[i] != NULL_ADDRESS) {
+                int slot = spread(oldHashes[i]) & mask;
+                while (slotHeads[slot] != NULL_ADDRESS) {
+                    slot = (slot + 1) & mask;
+                }
+                slotHashes[slot] = oldHashes[i];
+                slotHeads[slot] = oldHeads[i];
+                slotTails[slot] = oldTails[i];
+                slotCounts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    /**
+     * Linear probing, the keys of a stored record are deserialized only when the hashes are identical.
+     *
+     * @return the slot of the given keys, or the free slot where they have to be inserted
+     */
+    private int findSlot(V key, int hash) {
+        int slot = spread(hash) & mask;
+        while (slotHeads[slot] != NULL_ADDRESS) {
+            if (slotHashes[slot] == hash) {
+                if (keysInstance == null) {
+                    keysInstance = rowCreator.createRowInstance();
+                }
+                readRecord(slotHeads[slot], keysInstance, false);
+                if (key.equals(keysInstance)) {
+                    return slot;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private long writeRecord(V value) {
+        try {
+            value.writeKeysData(keysObjectOutStream);
+            keysObjectOutStream.flush();
+            value.writeValuesData(valuesDataOutStream, valuesObjectOutStream);
+            valuesObjectOutStream.flush();
+
+            int keysLength = keysBuffer.size();
+            int valuesLength = valuesBuffer.size();
+            int recordLength = RECORD_HEADER_SIZE + keysLength + valuesLength;
+            if (writeSlab == null || writeSlab.remaining() < recordLength) {
+                writeSlab = ByteBuffer.allocateDirect(Math.max(slabSize, recordLength));
+                slabs.add(writeSlab);
+            }
+            int offset = writeSlab.position();
+            writeSlab.putLong(NULL_ADDRESS);
+            writeSlab.putInt(keysLength);
+            writeSlab.putInt(valuesLength);
+            writeSlab.put(keysBuffer.getBuffer(), 0, keysLength);
+            writeSlab.put(valuesBuffer.getBuffer(), 0, valuesLength);
+            usedBytes += recordLength;
+
+            // each record must be readable alone, the handles and the pending reset markers are dropped
+            keysObjectOutStream.reset();
+            keysBuffer.reset();
+            valuesObjectOutStream.reset();
+            valuesBuffer.reset();
+
+            return ((long) (slabs.size() - 1) << 32) | offset;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private V readRow(long address) {
+        V row = rowCreator.createRowInstance();
+        readRecord(address, row, true);
+        return row;
+    }
+
+    private void readRecord(long address, V row, boolean withValues) {
+        ByteBuffer view = getSlabView((int) (address >>> 32));
+        int offset = (int) address;
+        int keysLength = view.getInt(offset + KEYS_LENGTH_OFFSET);
+        int valuesLength = view.getInt(offset + VALUES_LENGTH_OFFSET);
+        int headerLength = streamHeader.length;
+        int maxLength = headerLength + Math.max(keysLength, valuesLength);
+        if (readBuffer == null || readBuffer.length < maxLength) {
+            readBuffer = new byte[Math.max(maxLength, 1024)];
+            System.arraycopy(streamHeader, 0, readBuffer, 0, headerLength);
+        }
+        try {
+            view.position(offset + RECORD_HEADER_SIZE);
+            view.get(readBuffer, headerLength, keysLength);
+            row.readKeysData(new CompactObjectInputStream(new ByteArrayInputStream(readBuffer, 0, headerLength + keysLength)));
+            if (withValues) {
+                view.get(readBuffer, headerLength, valuesLength);
+                DataInputStream valuesDataInStream = new DataInputStream(new ByteArrayInputStream(readBuffer, 0, headerLength
+                        + valuesLength));
+                row.readValuesData(valuesDataInStream, new CompactObjectInputStream(valuesDataInStream));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ByteBuffer getSlabView(int slabIndex) {
+        if (slabViews == null || slabViews.length < slabs.size()) {
+            ByteBuffer[] views = new ByteBuffer[slabs.size()];
+            for (int i = 0; i < views.length; i++) {
+                views[i] = slabViews != null && i < slabViews.length ? slabViews[i] : slabs.get(i).duplicate();
+            }
+            slabViews = views;
+        }
+        return slabViews[slabIndex];
+    }
+
+    private long getNextAddress(long address) {
+        return getSlabView((int) (address >>> 32)).getLong((int) address);
+    }
+
+    private void setNextAddress(long address, long nextAddress) {
+        slabs.get((int) (address >>> 32)).putLong((int) address, nextAddress);
+    }
+
+    private int recordLength(long address) {
+        ByteBuffer slab = slabs.get((int) (address >>> 32));
+        int offset = (int) address;
+        return RECORD_HEADER_SIZE + slab.getInt(offset + KEYS_LENGTH_OFFSET) + slab.getInt(offset + VALUES_LENGTH_OFFSET);
+    }
+
+    /**
+     * Gives access to the internal buffer to avoid a copy for each written record.
+     */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+}
@@ -0,0 +1,417 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * In memory lookup whose rows are inserted by several threads.
+ *
+ * The rows are still read by the single flow of the lookup subjob, only the inserts are parallel: the rows are
+ * partitioned on the hash of their keys, each partition is an {@link AdvancedMemoryLookup} filled by its own loader
+ * thread, so the hashing and the inserts run concurrently while the lookup flow keeps reading its input.
+ * All the rows with the same keys go to the same partition in their arrival order, the results are then the same as
+ * with a single {@link AdvancedMemoryLookup}. {@link #endPut()} is the barrier: it returns once every loader has
+ * inserted its rows, {@link #abortPut()} stops the loaders when the lookup subjob ends before.
+ *
+ * The ALL_ROWS matching mode keeps the insertion order of all the rows, it is loaded in a single partition without
+ * loader thread.
+ *
+ * @param <V> value
+ */
+public class PartitionedMemoryLookup<V> extends AdvancedMemoryLookup<V> implements IMemoryLookup<V, V>, Cloneable {
+
+    public static final int DEFAULT_LOADERS_NUMBER = 4;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int QUEUE_CAPACITY = 4;
+
+    private static final Object[] END_OF_DATA = new Object[0];
+
+    private MATCHING_MODE matchingMode;
+
+    private AdvancedMemoryLookup<V>[] partitions;
+
+    private int partitionsNumber;
+
+    private Thread[] loaders;
+
+    private BlockingQueue<Object[]>[] queues;
+
+    private Object[][] batches;
+
+    private int[] batchSizes;
+
+    private volatile Throwable loaderError;
+
+    private AdvancedMemoryLookup<V> currentPartition;
+
+    // values of all the partitions read by lookup(), instead of the current partition
+    private List<V> listResult;
+
+    private int listIndex;
+
+    public PartitionedMemoryLookup(MATCHING_MODE matchingMode, int loadersNumber) {
+        super();
+        this.matchingMode = matchingMode == null ? MATCHING_MODE.UNIQUE_MATCH : matchingMode;
+        this.partitionsNumber = this.matchingMode == MATCHING_MODE.ALL_ROWS || loadersNumber < 1 ? 1 : loadersNumber;
+        this.partitions = new AdvancedMemoryLookup[partitionsNumber];
+        for (int i = 0; i < partitionsNumber; i++) {
+            partitions[i] = AdvancedMemoryLookup.<V> getLookup(this.matchingMode);
+        }
+        this.currentPartition = partitions[0];
+    }
+
+    public static <V> PartitionedMemoryLookup<V> getLookup(MATCHING_MODE matchingMode, int loadersNumber) {
+        return new PartitionedMemoryLookup<V>(matchingMode, loadersNumber);
+    }
+
+    @Override
+    public void initPut() {
+        if (loaders != null || partitionsNumber == 1) {
+            return;
+        }
+        loaderError = null;
+        loaders = new Thread[partitionsNumber];
+        queues = new BlockingQueue[partitionsNumber];
+        batches = new Object[partitionsNumber][];
+        batchSizes = new int[partitionsNumber];
+        for (int i = 0; i < partitionsNumber; i++) {
+            final AdvancedMemoryLookup<V> partition = partitions[i];
+            final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<Object[]>(QUEUE_CAPACITY);
+            queues[i] = queue;
+            batches[i] = new Object[BATCH_SIZE];
+            loaders[i] = new Thread("tHash_Lookup_loader_" + i) {
+
+                @Override
+                public void run() {
+                    try {
+                        Object[] batch;
+                        while ((batch = queue.take()) != END_OF_DATA) {
+                            if (loaderError != null) {
+                                // keep draining the queue, the producer must not be blocked
+                                continue;
+                            }
+                            try {
+                                for (Object value : batch) {
+                                    if (value == null) {
+                                        break;
+                                    }
+                                    partition.put((V) value);
+                                }
+                            } catch (Throwable e) {
+                                loaderError = e;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        loaderError = e;
+                    }
+                }
+            };
+            loaders[i].setDaemon(true);
+            loaders[i].start();
+        }
+    }
+
+    @Override
+    public V put(V value) {
+        if (value == null) {
+            return null;
+        }
+        if (partitionsNumber == 1) {
+            return partitions[0].put(value);
+        }
+        if (loaders == null) {
+            initPut();
+        }
+        checkLoaderError();
+        int index = getPartitionIndex(value);
+        batches[index][batchSizes[index]++] = value;
+        if (batchSizes[index] == BATCH_SIZE) {
+            sendBatch(index, batches[index]);
+            batches[index] = new Object[BATCH_SIZE];
+            batchSizes[index] = 0;
+        }
+        // the previous value is owned by the loader thread
+        return null;
+    }
+
+    @Override
+    public void endPut() {
+        if (loaders == null) {
+            return;
+        }
+        for (int i = 0; i < partitionsNumber; i++) {
+            if (batchSizes[i] > 0) {
+                sendBatch(i, batches[i]);
+            }
+            sendBatch(i, END_OF_DATA);
+        }
+        try {
+            for (Thread loader : loaders) {
+                loader.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            loaders = null;
+            queues = null;
+            batches = null;
+            batchSizes = null;
+        }
+        checkLoaderError();
+    }
+
+    /**
+     * Stops the loader threads if {@link #endPut()} was not called, when the lookup subjob fails or stops. The rows
+     * already put are dropped.
+     */
+    public void abortPut() {
+        Thread[] currentLoaders = loaders;
+        if (currentLoaders == null) {
+            return;
+        }
+        loaders = null;
+        queues = null;
+        batches = null;
+        batchSizes = null;
+        // the queues may be full, the loaders are interrupted instead of waiting for END_OF_DATA
+        for (Thread loader : currentLoaders) {
+            loader.interrupt();
+        }
+        try {
+            for (Thread loader : currentLoaders) {
+                loader.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        clear();
+    }
+
+    @Override
+    public void initGet() {
+
+    }
+
+    @Override
+    public void lookup(V key) {
+        listResult = null;
+        currentPartition = key == null ? partitions[0] : partitions[getPartitionIndex(key)];
+        currentPartition.lookup(key);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (listResult != null) {
+            return listIndex < listResult.size();
+        }
+        return currentPartition.hasNext();
+    }
+
+    @Override
+    public V next() {
+        if (listResult != null) {
+            if (listIndex >= listResult.size()) {
+                throw new NoSuchElementException();
+            }
+            return listResult.get(listIndex++);
+        }
+        return currentPartition.next();
+    }
+
+    @Override
+    public void endGet() {
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        listResult = null;
+        for (AdvancedMemoryLookup<V> partition : partitions) {
+            partition.clear();
+        }
+    }
+
+    @Override
+    public boolean hasResult() {
+        if (listResult != null) {
+            return listIndex > 0;
+        }
+        return currentPartition.hasResult();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (AdvancedMemoryLookup<V> partition : partitions) {
+            if (!partition.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getCount(V key) {
+        return key == null ? partitions[0].getCount(key) : partitions[getPartitionIndex(key)].getCount(key);
+    }
+
+    @Override
+    public Object[] getResultArray() {
+        if (listResult != null) {
+            return listResult.toArray();
+        }
+        return currentPartition.getResultArray();
+    }
+
+    @Override
+    public List<V> getResultList() {
+        if (listResult != null) {
+            return listResult;
+        }
+        return currentPartition.getResultList();
+    }
+
+    @Override
+    public V getResultObject() {
+        if (listResult != null) {
+            return null;
+        }
+        return currentPartition.getResultObject();
+    }
+
+    @Override
+    public boolean resultIsObject() {
+        if (listResult != null) {
+            return false;
+        }
+        return currentPartition.resultIsObject();
+    }
+
+    @Override
+    public boolean resultIsList() {
+        if (listResult != null) {
+            return true;
+        }
+        return currentPartition.resultIsList();
+    }
+
+    @Override
+    public boolean isUniqueMatch() {
+        return matchingMode == MATCHING_MODE.UNIQUE_MATCH;
+    }
+
+    @Override
+    public boolean isUseHashKeys() {
+        return matchingMode != MATCHING_MODE.ALL_ROWS;
+    }
+
+    @Override
+    public boolean isOnlyOneMatchResult() {
+        return matchingMode == MATCHING_MODE.UNIQUE_MATCH || matchingMode == MATCHING_MODE.FIRST_MATCH
+                || matchingMode == MATCHING_MODE.LAST_MATCH;
+    }
+
+    @Override
+    public MATCHING_MODE getMatchingMode() {
+        return matchingMode;
+    }
+
+    /**
+     * Looks up the values of all the partitions, one partition after the other.
+     */
+    @Override
+    public void lookup() {
+        if (partitionsNumber == 1) {
+            listResult = null;
+            currentPartition = partitions[0];
+            currentPartition.lookup();
+            return;
+        }
+        List<V> values = new ArrayList<V>();
+        for (AdvancedMemoryLookup<V> partition : partitions) {
+            partition.lookup();
+            values.addAll(partition.getResultList());
+        }
+        listResult = values;
+        listIndex = 0;
+    }
+
+    @Override
+    public List<V> getList() {
+        if (partitionsNumber == 1) {
+            return partitions[0].getList();
+        }
+        List<V> values = new ArrayList<V>();
+        for (AdvancedMemoryLookup<V> partition : partitions) {
+            values.addAll(partition.getList());
+        }
+        return values;
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        PartitionedMemoryLookup<V> clone = (PartitionedMemoryLookup<V>) super.clone();
+        clone.partitions = new AdvancedMemoryLookup[partitionsNumber];
+        for (int i = 0; i < partitionsNumber; i++) {
+            clone.partitions[i] = (AdvancedMemoryLookup<V>) partitions[i].clone();
+        }
+        clone.currentPartition = clone.partitions[0];
+        clone.listResult = null;
+        return clone;
+    }
+
+    /**
+     * Getter for partitionsNumber.
+     *
+     * @return the number of partitions, which is also the number of loader threads
+     */
+    public int getPartitionsNumber() {
+        return partitionsNumber;
+    }
+
+    private int getPartitionIndex(V value) {
+        int h = value.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % partitionsNumber;
+    }
+
+    private void sendBatch(int index, Object[] batch) {
+        try {
+            queues[index].put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkLoaderError() {
+        Throwable error = loaderError;
+        if (error != null) {
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new RuntimeException(error);
+        }
+    }
+
+}
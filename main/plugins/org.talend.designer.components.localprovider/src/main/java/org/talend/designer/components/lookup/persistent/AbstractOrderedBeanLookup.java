@@ -15,7 +15,6 @@ package org.talend.designer.components.lookup.persistent;
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 
@@ -25,6 +24,8 @@ import org.jboss.marshalling.MarshallingConfiguration;
 import org.jboss.marshalling.Unmarshaller;
 import org.talend.designer.components.lookup.common.ILookupManagerUnit;
 import org.talend.designer.components.persistent.IRowProvider;
+import org.talend.designer.components.persistent.utils.BlockCompressedInputStream;
+import org.talend.designer.components.persistent.utils.CompactObjectInputStream;
 
 import routines.system.IPersistableLookupRow;
 
@@ -121,6 +122,9 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
 
     private boolean skipBytesEnabled;
 
+    // the runs of the lookup manager are written with JBoss Marshalling
+    private boolean useJbossImplementation;
+
     Unmarshaller keysUnmarshaller;
 
     Unmarshaller valuesUnmarshaller;
@@ -135,32 +139,34 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
      * @param valuesFilePath
      * @param fileIndex
      * @param skipBytesEnabled
+     * @param useJbossImplementation
      * @param internalKeyInstance
      * @param keys_management
      * @throws IOException
      */
     public AbstractOrderedBeanLookup(String keysFilePath, String valuesFilePath, int fileIndex, IRowProvider<B> rowProvider,
-            boolean skipBytesEnabled) throws IOException {
+            boolean skipBytesEnabled, boolean useJbossImplementation) throws IOException {
         File keysDataFile = new File(keysFilePath);
         this.length = keysDataFile.length();
 
         this.fileIndex = fileIndex;
 
-        this.keysBufferedInStream = new BufferedInputStream(new FileInputStream(keysDataFile));
+        this.useJbossImplementation = useJbossImplementation;
+        this.keysBufferedInStream = BlockCompressedInputStream.open(keysDataFile);
         final MarshallerFactory marshallerFactory = Marshalling.getProvidedMarshallerFactory("river");
         final MarshallingConfiguration configuration = new MarshallingConfiguration();
-        if (PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+        if (useJbossImplementation) {
             keysUnmarshaller = marshallerFactory.createUnmarshaller(configuration);
             keysUnmarshaller.start(Marshalling.createByteInput(keysBufferedInStream));
         } else {
-            this.keysObjectInStream = new ObjectInputStream(keysBufferedInStream);
+            this.keysObjectInStream = new CompactObjectInputStream(keysBufferedInStream);
         }
-        this.valuesDataInStream = new DataInputStream(new BufferedInputStream(new FileInputStream(valuesFilePath)));
-        if (PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+        this.valuesDataInStream = new DataInputStream(BlockCompressedInputStream.open(new File(valuesFilePath)));
+        if (useJbossImplementation) {
             valuesUnmarshaller = marshallerFactory.createUnmarshaller(configuration);
             valuesUnmarshaller.start(Marshalling.createByteInput(valuesDataInStream));
         } else {
-            this.valuesObjectInStream = new ObjectInputStream(valuesDataInStream);
+            this.valuesObjectInStream = new CompactObjectInputStream(valuesDataInStream);
         }
         this.lookupInstance = rowProvider.createInstance();
         this.previousAskedKey = rowProvider.createInstance();
@@ -208,7 +214,7 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
     protected void loadDataKeys(B lookupInstance) throws IOException {
         atLeastOneLoadkeys = true;
 
-        if (PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+        if (useJbossImplementation) {
             lookupInstance.readKeysData(keysUnmarshaller);
             currentValuesSize = keysUnmarshaller.readInt();
         } else {
@@ -219,7 +225,7 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
     }
 
     protected boolean isEndOfKeysFile() throws IOException {
-    	if(PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+    	if(useJbossImplementation) {
     		 return !(keysUnmarshaller.available() > 1 || keysBufferedInStream.available() > 0);
     	}else {
     		return !(keysObjectInStream.available() > 0  || keysBufferedInStream
@@ -232,7 +238,7 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
 			skipValuesSize += remainingSkip;
 			if (skipBytesEnabled) {
 				int currentSkipped = 0;
-				if (PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+				if (useJbossImplementation) {
 					while (skipValuesSize != (currentSkipped += valuesUnmarshaller
 							.skip(skipValuesSize - currentSkipped)))
 						;
@@ -245,7 +251,7 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
 			} else {
 				for (long i = 0; i < countBeansToSkip; i++) {
 
-					if (PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+					if (useJbossImplementation) {
 						lookupInstance.readValuesData(valuesDataInStream, valuesUnmarshaller);
 					} else {
 						lookupInstance.readValuesData(valuesDataInStream, valuesObjectInStream);
@@ -258,7 +264,7 @@ public abstract class AbstractOrderedBeanLookup<B extends Comparable<B> & IPersi
 			skipValuesSize = 0;
 			countBeansToSkip = 0;
 		}
-		if (PersistentSortedLookupManager.USE_JBOSS_IMPLEMENTATION) {
+		if (useJbossImplementation) {
 			lookupInstance.readValuesData(valuesDataInStream, valuesUnmarshaller);
 		} else {
 			lookupInstance.readValuesData(valuesDataInStream, valuesObjectInStream);
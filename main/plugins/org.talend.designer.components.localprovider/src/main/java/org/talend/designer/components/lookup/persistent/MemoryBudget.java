@@ -0,0 +1,292 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.persistent;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+
+import routines.system.IPersistableLookupRow;
+import routines.system.IPersistableRow;
+
+/**
+ *
+ * Memory budget of a buffer which is spilled to disk.
+ *
+ * The size of the rows is estimated from the serialized size of a sample of them, the buffer has to be written when
+ * its estimated size reaches the budget. The heap pools are also watched: when the used memory stays above
+ * <code>1 - MARGIN_MAX</code> of the heap after a garbage collection, all the buffers are asked to spill once, whatever
+ * their budget. When the JVM does not send the memory notifications, the free memory is polled instead.
+ *
+ * A budget of 0 keeps the fixed row count of the buffer: the buffer is never spilled before being full. It is shared
+ * by the lookups of tMap, the keys of tUniqRow, the groups of tAggregateRow and the external sort of tSortRow.
+ */
+public class MemoryBudget {
+
+    public static final float DEFAULT_BUDGET_RATIO = 0.25f;
+
+    private static final float MARGIN_MAX = 0.35f;
+
+    private static final int FIRST_SAMPLES = 16;
+
+    private static final int SAMPLING_INTERVAL = 1024;
+
+    /** Minimal number of rows in a buffer to spill it on a memory notification. */
+    private static final int MIN_SPILLED_ROWS = 1000;
+
+    /** Header and references of a row object, its fields are estimated to twice their serialized size. */
+    private static final int ROW_OVERHEAD = 64;
+
+    private static final AtomicLong PRESSURE_EVENTS = new AtomicLong();
+
+    private static final boolean NOTIFICATIONS_ENABLED = registerMemoryListener();
+
+    private final long budgetBytes;
+
+    private long rowsCount;
+
+    private long sampledRows;
+
+    private long sampledBytes;
+
+    private long estimatedRowBytes = ROW_OVERHEAD;
+
+    private long pressureEventsSeen = PRESSURE_EVENTS.get();
+
+    private int spillCount;
+
+    private final CountingOutputStream countingStream = new CountingOutputStream();
+
+    /**
+     * @param budgetBytes the budget in bytes, 0 or less to keep the fixed row count of the buffer
+     */
+    public MemoryBudget(long budgetBytes) {
+        this.budgetBytes = Math.max(0L, budgetBytes);
+    }
+
+    /**
+     * Getter for the default budget, for the buffers without a fixed row count.
+     *
+     * @return {@link #DEFAULT_BUDGET_RATIO} of the max memory
+     */
+    public static long defaultBudgetBytes() {
+        return (long) (MemoryHelper.maxMemory() * DEFAULT_BUDGET_RATIO);
+    }
+
+    /**
+     * Converts a budget given in MB by a component.
+     *
+     * @param budgetMB the budget in MB, 0 or less for no budget
+     * @return the budget in bytes
+     */
+    public static long fromMegaBytes(long budgetMB) {
+        return budgetMB > 0 ? budgetMB * 1024L * 1024L : 0L;
+    }
+
+    /**
+     * Counts the row and samples its size when needed.
+     *
+     * @param row a lookup row
+     */
+    public void sample(IPersistableLookupRow<?> row) {
+        if (isSamplingRow()) {
+            try {
+                countingStream.count = 0;
+                ObjectOutputStream oos = new ObjectOutputStream(countingStream);
+                row.writeKeysData(oos);
+                row.writeValuesData(new DataOutputStream(countingStream), oos);
+                oos.flush();
+                addSample(countingStream.count);
+            } catch (IOException e) {
+                // never thrown by the counting stream
+            }
+        }
+    }
+
+    /**
+     * Counts the row and samples its size when needed.
+     *
+     * @param row a flow row
+     */
+    public void sample(IPersistableRow<?> row) {
+        if (isSamplingRow()) {
+            try {
+                countingStream.count = 0;
+                ObjectOutputStream oos = new ObjectOutputStream(countingStream);
+                row.writeData(oos);
+                oos.flush();
+                addSample(countingStream.count);
+            } catch (IOException e) {
+                // never thrown by the counting stream
+            }
+        }
+    }
+
+    /**
+     * Counts an item which is already serialized and samples its size when needed.
+     *
+     * @param serializedBytes the serialized size of the item
+     */
+    public void sample(int serializedBytes) {
+        if (isSamplingRow()) {
+            addSample(serializedBytes);
+        }
+    }
+
+    /**
+     * Checks if a buffer has to be spilled.
+     *
+     * @param bufferedRows the number of rows kept in memory by the buffer
+     * @return true if the buffer reached its budget or if the heap is short of memory, always false without a budget
+     */
+    public boolean isExceeded(int bufferedRows) {
+        if (bufferedRows <= 0 || budgetBytes == 0) {
+            return false;
+        }
+        if (!NOTIFICATIONS_ENABLED && rowsCount % SAMPLING_INTERVAL == 0 && !MemoryHelper.hasFreeMemory(MARGIN_MAX)) {
+            PRESSURE_EVENTS.incrementAndGet();
+        }
+        if (PRESSURE_EVENTS.get() != pressureEventsSeen) {
+            if (bufferedRows >= MIN_SPILLED_ROWS) {
+                return true;
+            }
+            pressureEventsSeen = PRESSURE_EVENTS.get();
+        }
+        return bufferedRows * estimatedRowBytes >= budgetBytes;
+    }
+
+    /**
+     * To call once the buffer has been written.
+     */
+    public void spilled() {
+        spillCount++;
+        pressureEventsSeen = PRESSURE_EVENTS.get();
+    }
+
+    /**
+     * Getter for spillCount.
+     *
+     * @return the number of buffers written because of the budget or of the memory notifications
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Getter for budgetBytes.
+     *
+     * @return the budgetBytes, 0 without a budget
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Getter for estimatedRowBytes.
+     *
+     * @return the estimated size in memory of a row
+     */
+    public long getEstimatedRowBytes() {
+        return estimatedRowBytes;
+    }
+
+    /**
+     * Counts a row, for the rows which are serialized by the caller only when their size is sampled.
+     *
+     * @return true if the size of the row has to be given to {@link #addSample(long)}, never without a budget
+     */
+    public boolean isSamplingRow() {
+        return (rowsCount++ < FIRST_SAMPLES || rowsCount % SAMPLING_INTERVAL == 0) && budgetBytes > 0;
+    }
+
+    /**
+     * Adds the serialized size of a sampled row to the estimated size of the rows.
+     *
+     * @param bytes the serialized size of the row
+     */
+    public void addSample(long bytes) {
+        sampledRows++;
+        sampledBytes += bytes;
+        estimatedRowBytes = 2 * (sampledBytes / sampledRows) + ROW_OVERHEAD;
+    }
+
+    private static boolean registerMemoryListener() {
+        try {
+            boolean thresholdSet = false;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+                    long max = pool.getUsage().getMax();
+                    if (max > 0) {
+                        // keep the threshold of an other listener
+                        if (pool.getCollectionUsageThreshold() == 0) {
+                            pool.setCollectionUsageThreshold((long) (max * (1f - MARGIN_MAX)));
+                        }
+                        thresholdSet = true;
+                    }
+                }
+            }
+            MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+            if (!thresholdSet || !(memoryBean instanceof NotificationEmitter)) {
+                return false;
+            }
+            ((NotificationEmitter) memoryBean).addNotificationListener(new NotificationListener() {
+
+                public void handleNotification(Notification notification, Object handback) {
+                    PRESSURE_EVENTS.incrementAndGet();
+                }
+            }, new NotificationFilter() {
+
+                private static final long serialVersionUID = 1L;
+
+                public boolean isNotificationEnabled(Notification notification) {
+                    return MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType());
+                }
+            }, null);
+            return true;
+        } catch (RuntimeException e) {
+            // SecurityException or unsupported pool, the free memory is polled
+            return false;
+        }
+    }
+
+    /**
+     * Counts the written bytes without storing them.
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+}
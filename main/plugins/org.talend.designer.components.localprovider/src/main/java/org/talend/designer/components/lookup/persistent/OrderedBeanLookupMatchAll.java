@@ -42,12 +42,13 @@ public class OrderedBeanLookupMatchAll<B extends Comparable<B> & IPersistableLoo
      * @param fileIndex
      * @param rowProvider
      * @param skipBytesEnabled
+     * @param useJbossImplementation
      * @param keysManagement
      * @throws IOException
      */
     public OrderedBeanLookupMatchAll(String keysFilePath, String valuesFilePath, int fileIndex, IRowProvider<B> rowProvider,
-            boolean skipBytesEnabled) throws IOException {
-        super(keysFilePath, valuesFilePath, fileIndex, rowProvider, skipBytesEnabled);
+            boolean skipBytesEnabled, boolean useJbossImplementation) throws IOException {
+        super(keysFilePath, valuesFilePath, fileIndex, rowProvider, skipBytesEnabled, useJbossImplementation);
         lookupInstance = rowProvider.getFreeInstance();
     }
 
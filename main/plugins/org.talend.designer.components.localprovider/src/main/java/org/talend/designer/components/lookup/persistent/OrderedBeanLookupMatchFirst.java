@@ -31,9 +31,9 @@ public class OrderedBeanLookupMatchFirst<B extends Comparable<B> & IPersistableL
     private int previousValuesSize;
 
     public OrderedBeanLookupMatchFirst(String keysFilePath, String valuesFilePath, int fileIndex, IRowProvider<B> rowProvider,
-            boolean skipBytesEnabled)
+            boolean skipBytesEnabled, boolean useJbossImplementation)
             throws IOException {
-        super(keysFilePath, valuesFilePath, fileIndex, rowProvider, skipBytesEnabled);
+        super(keysFilePath, valuesFilePath, fileIndex, rowProvider, skipBytesEnabled, useJbossImplementation);
         lookupInstance = rowProvider.createInstance();
         resultLookupInstance = rowProvider.createInstance();
     }
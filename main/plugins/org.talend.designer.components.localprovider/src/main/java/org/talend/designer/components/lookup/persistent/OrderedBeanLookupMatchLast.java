@@ -33,9 +33,9 @@ public class OrderedBeanLookupMatchLast<B extends Comparable<B> & IPersistableLo
     private boolean resultIsObsolete = true;
 
     public OrderedBeanLookupMatchLast(String keysFilePath, String valuesFilePath, int fileIndex, IRowProvider<B> rowProvider,
-            boolean skipBytesEnabled)
+            boolean skipBytesEnabled, boolean useJbossImplementation)
             throws IOException {
-        super(keysFilePath, valuesFilePath, fileIndex, rowProvider, skipBytesEnabled);
+        super(keysFilePath, valuesFilePath, fileIndex, rowProvider, skipBytesEnabled, useJbossImplementation);
         lookupInstance = rowProvider.createInstance();
         previousLookupInstance = rowProvider.createInstance();
         resultLookupInstance = rowProvider.createInstance();
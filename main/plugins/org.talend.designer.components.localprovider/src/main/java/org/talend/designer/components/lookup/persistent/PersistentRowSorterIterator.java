@@ -81,8 +81,6 @@ public abstract class PersistentRowSorterIterator<V extends IPersistableRow> imp
 
     public static boolean USE_JBOSS_IMPLEMENTATION = true;
 
-    private static final float MARGIN_MAX = 0.35f;
-
     int[] bwPositionArray = null;
 
     boolean readonly;
@@ -121,13 +119,9 @@ public abstract class PersistentRowSorterIterator<V extends IPersistableRow> imp
 
     private boolean isFirstNext = true;
 
-    private int bufferMarkLimit = -1;
-
-    private boolean bufferIsMarked;
-
-    private boolean firstUnsifficientMemory = true;
+    private MemoryBudget memoryBudget;
 
-    private boolean waitingHeapException;
+    private long memoryBudgetBytes;
 
     private boolean nextFreeRowCalled;
 
@@ -209,6 +203,7 @@ public abstract class PersistentRowSorterIterator<V extends IPersistableRow> imp
     public void initPut() {
         // System.out.println("bufferSize="+bufferSize +" objects");
         buffer = (V[]) new IPersistableRow[bufferSize];
+        memoryBudget = new MemoryBudget(memoryBudgetBytes);
     }
 
     public void put(V bean) throws IOException {
@@ -216,29 +211,6 @@ public abstract class PersistentRowSorterIterator<V extends IPersistableRow> imp
     		USE_JBOSS_IMPLEMENTATION = bean.supportJboss();
     	}
 
-        if (!MemoryHelper.hasFreeMemory(MARGIN_MAX)) {
-            if (!bufferIsMarked) {
-                if (firstUnsifficientMemory) {
-                    firstUnsifficientMemory = false;
-                    MemoryHelper.gc();
-                    if (bufferBeanIndex == 0) {
-                        waitingHeapException = true;
-                    }
-                }
-                if (!waitingHeapException && !MemoryHelper.hasFreeMemory(MARGIN_MAX)) {
-                    float v10P = ((float) bufferSize) * 0.1f;
-                    if ((float) bufferBeanIndex >= v10P) {
-                        bufferMarkLimit = bufferBeanIndex;
-                    } else {
-                        bufferMarkLimit = (int) v10P;
-                    }
-                    System.out
-                            .println("Warning: to avoid a Memory heap space error the buffer of the flow has been limited to a size of " + bufferMarkLimit + " , try to reduce the advanced parameter \"Max buffer size\" (~100000 or at least less than " + bufferMarkLimit + "), then if needed try to increase the JVM Xmx parameter."); //$NON-NLS-1$
-                    bufferIsMarked = true;
-                }
-            }
-        }
-
         if (nextFreeRowCalled) {
             nextFreeRowCalled = false;
         } else {
@@ -246,14 +218,12 @@ public abstract class PersistentRowSorterIterator<V extends IPersistableRow> imp
         }
 
         buffer[bufferBeanIndex] = bean;
+        memoryBudget.sample(bean);
 
-        if (bufferBeanIndex + 1 == bufferSize || bufferIsMarked && bufferBeanIndex == bufferMarkLimit) {// buffer is
+        if (bufferBeanIndex + 1 == bufferSize || memoryBudget.isExceeded(bufferBeanIndex + 1)) {// buffer is
             /* full do sort and write. */
             writeBuffer();
-            if (!bufferIsMarked) {
-                bufferMarkLimit = bufferBeanIndex;
-                bufferIsMarked = true;
-            }
+            memoryBudget.spilled();
             bufferBeanIndex = INIT_BUFFER_INDEX;
         }
 
@@ -539,4 +509,31 @@ public abstract class PersistentRowSorterIterator<V extends IPersistableRow> imp
         this.sortEnabled = sortEnabled;
     }
 
+    /**
+     * Getter for memoryBudgetBytes.
+     *
+     * @return the memoryBudgetBytes
+     */
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Sets the memory budget of the buffer, before <code>initPut</code>.
+     *
+     * @param memoryBudgetBytes the budget in bytes, 0 to spill only when the buffer is full
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Getter for spillCount.
+     *
+     * @return the number of buffers spilled to disk during the puts
+     */
+    public int getSpillCount() {
+        return memoryBudget != null ? memoryBudget.getSpillCount() : 0;
+    }
+
 }
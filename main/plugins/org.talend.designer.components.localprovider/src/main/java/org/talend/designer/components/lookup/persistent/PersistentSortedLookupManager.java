@@ -13,31 +13,31 @@
 
 package org.talend.designer.components.lookup.persistent;
 
-import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.jboss.marshalling.ByteOutput;
-import org.jboss.marshalling.Marshaller;
-import org.jboss.marshalling.MarshallerFactory;
-import org.jboss.marshalling.Marshalling;
-import org.jboss.marshalling.MarshallingConfiguration;
 import org.talend.designer.components.lookup.common.ICommonLookup.MATCHING_MODE;
 import org.talend.designer.components.lookup.common.ILookupManagerUnit;
 import org.talend.designer.components.persistent.IRowCreator;
@@ -51,6 +51,14 @@ import routines.system.IPersistableLookupRow;
  *
  * JBoss library is used to avoid memory leaks noticed with Sun ObjectInputStream class.
  *
+ * The runs can also be written with the compact codec (ObjectStream writing only the class names, the values of the
+ * skipped beans are then skipped by bytes instead of being read) and compressed by blocks. With the background sort
+ * the full buffer is sorted on the fork-join pool and written by another thread while the next buffer is filled,
+ * which needs twice the buffer memory. When more than <code>maxSortedRuns</code> runs have been written, they are
+ * merged at the end of the puts so each lookup reads only a few files; by default the runs are never merged.
+ *
+ * The buffer is also spilled before being full when its estimated size reaches its {@link MemoryBudget}.
+ *
  * @see http://www.talendforge.org/bugs/view.php?id=6780#bugnotes
  *
  * @param <B> bean
@@ -70,7 +78,7 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
 
     private static final Class<?>[] CUSTOM_SERIALIZATION_CLASSES = new Class[] { char.class, Character.class, boolean.class,
             Boolean.class, byte.class, Byte.class, byte[].class, short.class, Short.class, int.class, Integer.class, long.class,
-            Long.class, float.class, Float.class, double.class, Double.class, String.class, };
+            Long.class, float.class, Float.class, double.class, Double.class, String.class, java.util.Date.class, };
 
     private static final Set<Class<?>> CUSTOM_SERIALIZATION_CLASSES_SET = new HashSet<Class<?>>(
             Arrays.asList(CUSTOM_SERIALIZATION_CLASSES));
@@ -86,7 +94,28 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
 
     private static final Set<String> FIELDS_TO_OMIT_SET = new HashSet<String>(Arrays.asList(FIELDS_TO_OMIT));
 
-    private static final float MARGIN_MAX = 0.35f;
+    public static final int DEFAULT_MAX_SORTED_RUNS = 0;
+
+    private static final Comparator<IPersistableLookupRow> NATURAL_ORDER = new Comparator<IPersistableLookupRow>() {
+
+        public int compare(IPersistableLookupRow o1, IPersistableLookupRow o2) {
+            return ((Comparable) o1).compareTo(o2);
+        }
+    };
+
+    /**
+     * Serialization used to write the sorted runs.
+     */
+    public enum RUN_CODEC {
+        /**
+         * JBoss Marshalling, when the bean supports it.
+         */
+        MARSHALLING,
+        /**
+         * ObjectStream with the class names only.
+         */
+        COMPACT,
+    }
 
     private String container;
 
@@ -126,19 +155,15 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
 
     private boolean previousResultRetrieved;
 
-    private int bufferMarkLimit = -1;
-
-    private boolean bufferIsMarked;
+    private MemoryBudget memoryBudget;
 
-    private boolean firstUnsifficientMemory = true;
-
-    private boolean waitingHeapException;
+    private long memoryBudgetBytes;
 
     private boolean sortEnabled = true;
 
     private boolean skipBytesEnabled = true;
 
-    public static boolean USE_JBOSS_IMPLEMENTATION = true;
+    private boolean useJbossImplementation = true;
     
     private boolean init = false;
 
@@ -146,6 +171,22 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
 
     private Map<String, Object> objectsToWriteAtBeginningOfValuesFile = new HashMap<String, Object>();
 
+    private RUN_CODEC runCodec = RUN_CODEC.MARSHALLING;
+
+    private boolean compressRuns;
+
+    private boolean backgroundSort;
+
+    private int maxSortedRuns = DEFAULT_MAX_SORTED_RUNS;
+
+    private IPersistableLookupRow<B>[] spareBuffer;
+
+    private ExecutorService writeExecutor;
+
+    private Future<Void> pendingWrite;
+
+    private int spareBufferRows;
+
     public PersistentSortedLookupManager(MATCHING_MODE matchingMode, String filePath, IRowCreator<B> rowCreator)
             throws IOException {
         this.matchingMode = matchingMode;
@@ -164,52 +205,29 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
     public void initPut() throws IOException {
         buffer = new IPersistableLookupRow[bufferSize];
         bufferBeanIndex = 0;
+        memoryBudget = new MemoryBudget(memoryBudgetBytes);
     }
 
     public void put(B bean) throws IOException {
     	if(!init) {
-    		USE_JBOSS_IMPLEMENTATION = bean.supportMarshaller();
-    		skipBytesEnabled = ! USE_JBOSS_IMPLEMENTATION;
+    		useJbossImplementation = runCodec == RUN_CODEC.MARSHALLING && bean.supportMarshaller();
+    		skipBytesEnabled = ! useJbossImplementation;
+    		if (skipBytesEnabled) {
+    		    // the objects written by the ObjectStream may be referenced by the next beans, they can't be skipped
+    		    checkClassOfBeanPropertiesInit(bean);
+    		}
     		init = true;
     	}
 
-        if (!MemoryHelper.hasFreeMemory(MARGIN_MAX)) {
-            if (!bufferIsMarked) {
-                if (firstUnsifficientMemory) {
-                    firstUnsifficientMemory = false;
-                    MemoryHelper.gc();
-                    if (bufferBeanIndex == 0) {
-                        waitingHeapException = true;
-                    }
-                }
-                if (!waitingHeapException && !MemoryHelper.hasFreeMemory(MARGIN_MAX)) {
-                    float v10P = ((float) bufferSize) * 0.1f;
-                    if ((float) bufferBeanIndex >= v10P) {
-                        bufferMarkLimit = bufferBeanIndex;
-                    } else {
-                        bufferMarkLimit = (int) v10P;
-                    }
-                    System.out.println(
-                            "Warning: to avoid a Memory heap space error the buffer of the lookup has been limited to a size of " //$NON-NLS-1$
-                                    + bufferMarkLimit
-                                    + " , try to reduce the advanced parameter \"Max buffer size\" (~100000 or at least less than "
-                                    + bufferMarkLimit + "), then if needed try to increase the JVM Xmx parameter.");
-                    bufferIsMarked = true;
-                }
-            }
-        }
+        // the bean is stored first, the next free row is then never shared by two slots of the buffer
+        buffer[bufferBeanIndex++] = bean;
+        memoryBudget.sample(bean);
 
-        if (bufferBeanIndex == bufferSize || bufferIsMarked && bufferBeanIndex == bufferMarkLimit) {
+        if (bufferBeanIndex == bufferSize || memoryBudget.isExceeded(bufferBeanIndex + spareBufferRows)) {
             writeBuffer();
-            if (!bufferIsMarked) {
-                bufferMarkLimit = bufferBeanIndex;
-                // System.out.println("Buffer marked at index (2-Lookup) " + bufferMarkLimit);
-                bufferIsMarked = true;
-            }
+            memoryBudget.spilled();
             bufferBeanIndex = 0;
         }
-
-        buffer[bufferBeanIndex++] = bean;
     }
 
     private void checkClassOfBeanPropertiesInit(B bean) {
@@ -219,7 +237,7 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
         for (int i = 0; i < declaredFields.length; i++) {
             Field propertyDescriptor = declaredFields[i];
             int fieldModifier = propertyDescriptor.getModifiers();
-            if (Modifier.isPublic(fieldModifier)) {
+            if (Modifier.isPublic(fieldModifier) && !Modifier.isStatic(fieldModifier)) {
                 Class<?> clazzOfBeanProperty = propertyDescriptor.getType();
                 String propertyName = propertyDescriptor.getName();
                 if (!FIELDS_TO_OMIT_SET.contains(propertyName)
@@ -231,8 +249,6 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
             }
         }
 
-        System.out.println("skipBytesEnabled=" + skipBytesEnabled);
-
     }
 
     private void checkClassOfBeanProperties(B bean) {
@@ -282,86 +298,193 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
 
     public void endPut() throws IOException {
 
-        if (bufferBeanIndex > 0) {
-            writeBuffer();
+        try {
+            waitPendingWrite();
+            if (bufferBeanIndex > 0) {
+                sortAndWriteRun(buffer, bufferBeanIndex, fileIndex++);
+            }
+        } finally {
+            if (writeExecutor != null) {
+                writeExecutor.shutdown();
+                writeExecutor = null;
+            }
         }
 
         buffer = null;
+        spareBuffer = null;
+
+        if (maxSortedRuns > 0 && fileIndex > maxSortedRuns) {
+            mergeRuns();
+        }
 
     }
 
-	private void writeBuffer() throws IOException {
-		if (this.sortEnabled) {
-			Arrays.sort(buffer, 0, bufferBeanIndex);
-		}
-		File keysDataFile = new File(buildKeysFilePath(fileIndex));
-		keysDataFile.deleteOnExit();
-
-		File valuesDataFile = new File(buildValuesFilePath(fileIndex));
-		valuesDataFile.deleteOnExit();
-		final MarshallerFactory marshallerFactory = Marshalling.getProvidedMarshallerFactory("river");
-		final MarshallingConfiguration configuration = new MarshallingConfiguration();
-
-		BufferedOutputStream keysBufferedOutputStream = new BufferedOutputStream(new FileOutputStream(keysDataFile));
-		ObjectOutputStream keysDataOutputStream = null;
-		Marshaller keysDataMarshaller = null;
-		if (USE_JBOSS_IMPLEMENTATION) {
-			keysDataMarshaller = marshallerFactory.createMarshaller(configuration);
-			keysDataMarshaller.start(new LongLengthByteOutput(Marshalling.createByteOutput(keysBufferedOutputStream)));
-		} else {
-			keysDataOutputStream = new ObjectOutputStream(keysBufferedOutputStream);
-		}
-
-		BufferedOutputStream valuesBufferedOutputStream = new BufferedOutputStream(
-				new FileOutputStream(valuesDataFile));
-		final LongLengthOutputStream valuesLongOutputStream = new LongLengthOutputStream(valuesBufferedOutputStream);
-		DataOutputStream valuesDataOutputStream = new DataOutputStream(valuesLongOutputStream);
-		ObjectOutputStream valuesObjectOutputStream = null;
-		int writtenValuesDataSize = 0;
-		long newSize = 0;
-		if (USE_JBOSS_IMPLEMENTATION) {
-			Marshaller valuesObjectMarshaller = marshallerFactory.createMarshaller(configuration);
-			final LongLengthByteOutput byteOutput = new LongLengthByteOutput(Marshalling.createByteOutput(valuesBufferedOutputStream));
-			valuesObjectMarshaller.start(byteOutput);
-			valuesObjectMarshaller.flush();
-			long previousSize = byteOutput.size();
-
-			for (int i = 0; i < bufferBeanIndex; i++) {
-				IPersistableLookupRow<B> curBean = buffer[i];
-				curBean.writeValuesData(valuesDataOutputStream, valuesObjectMarshaller);
-				valuesObjectMarshaller.flush();
-				newSize = byteOutput.size();
-				writtenValuesDataSize = (int) (newSize - previousSize);
-				curBean.writeKeysData(keysDataMarshaller);
-				keysDataMarshaller.writeInt(writtenValuesDataSize);
-				previousSize = newSize;
-			}
-			keysDataMarshaller.close();
-            keysBufferedOutputStream.close();
-			valuesObjectMarshaller.close();
-            valuesBufferedOutputStream.close();
-		} else {
-			valuesObjectOutputStream = new ObjectOutputStream(valuesDataOutputStream);
-			long previousSize = valuesLongOutputStream.size();
-
-			for (int i = 0; i < bufferBeanIndex; i++) {
-
-				IPersistableLookupRow<B> curBean = buffer[i];
-				curBean.writeValuesData(valuesDataOutputStream, valuesObjectOutputStream);
-				newSize = valuesLongOutputStream.size();
-				writtenValuesDataSize = (int) (newSize - previousSize);
-				curBean.writeKeysData(keysDataOutputStream);
-				keysDataOutputStream.writeInt(writtenValuesDataSize);
-				previousSize = newSize;
-			}
-			keysDataOutputStream.close();
-			valuesObjectOutputStream.close();
-		}
-
-		// System.out.println("Write ended LOOKUP buffer " + fileIndex);
-
-		fileIndex++;
-	}
+    private void writeBuffer() throws IOException {
+        if (!backgroundSort) {
+            sortAndWriteRun(buffer, bufferBeanIndex, fileIndex++);
+            return;
+        }
+        // the previous run must be written before its buffer is filled again
+        waitPendingWrite();
+        final IPersistableLookupRow<B>[] runBuffer = buffer;
+        final int runSize = bufferBeanIndex;
+        final int runIndex = fileIndex++;
+        pendingWrite = getWriteExecutor().submit(new Callable<Void>() {
+
+            public Void call() throws Exception {
+                sortAndWriteRun(runBuffer, runSize, runIndex);
+                return null;
+            }
+        });
+        buffer = spareBuffer != null ? spareBuffer : new IPersistableLookupRow[bufferSize];
+        spareBuffer = runBuffer;
+        // the beans of the spare buffer are kept to be reused
+        spareBufferRows = runSize;
+    }
+
+    private void sortAndWriteRun(IPersistableLookupRow<B>[] runBuffer, int runSize, int runIndex) throws IOException {
+        if (this.sortEnabled) {
+            if (backgroundSort) {
+                Arrays.parallelSort(runBuffer, 0, runSize, NATURAL_ORDER);
+            } else {
+                Arrays.sort(runBuffer, 0, runSize);
+            }
+        }
+        SortedRunWriter<B> writer = new SortedRunWriter<B>(buildKeysFilePath(runIndex), buildValuesFilePath(runIndex),
+                useJbossImplementation, compressRuns);
+        try {
+            for (int i = 0; i < runSize; i++) {
+                writer.write(runBuffer[i]);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void waitPendingWrite() throws IOException {
+        if (pendingWrite != null) {
+            try {
+                pendingWrite.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw toIOException(e);
+            } finally {
+                pendingWrite = null;
+            }
+        }
+    }
+
+    private ExecutorService getWriteExecutor() {
+        if (writeExecutor == null) {
+            writeExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("tHash_Lookup_writer_")); //$NON-NLS-1$
+        }
+        return writeExecutor;
+    }
+
+    /**
+     * Merge the sorted runs when there are more than <code>maxSortedRuns</code>, so each lookup has only a few files to
+     * read. The runs are split in consecutive groups merged in parallel, the order of the beans with equal keys is kept.
+     */
+    private void mergeRuns() throws IOException {
+        int groupsNumber = Math.max(1, Math.min(maxSortedRuns, Runtime.getRuntime().availableProcessors()));
+        final int runsByGroup = (fileIndex + groupsNumber - 1) / groupsNumber;
+        groupsNumber = (fileIndex + runsByGroup - 1) / runsByGroup;
+
+        ExecutorService mergeExecutor = Executors.newFixedThreadPool(groupsNumber, new DaemonThreadFactory(
+                "tHash_Lookup_merger_")); //$NON-NLS-1$
+        List<Future<Long>> merges = new ArrayList<Future<Long>>(groupsNumber);
+        try {
+            for (int i = 0; i < groupsNumber; i++) {
+                final int group = i;
+                final int firstRun = group * runsByGroup;
+                final int lastRun = Math.min(fileIndex, firstRun + runsByGroup) - 1;
+                merges.add(mergeExecutor.submit(new Callable<Long>() {
+
+                    public Long call() throws Exception {
+                        return mergeGroup(firstRun, lastRun, group);
+                    }
+                }));
+            }
+            for (Future<Long> merge : merges) {
+                merge.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw toIOException(e);
+        } finally {
+            mergeExecutor.shutdownNow();
+        }
+
+        clear();
+        for (int i = 0; i < groupsNumber; i++) {
+            renameFile(buildMergedKeysFilePath(i), buildKeysFilePath(i));
+            renameFile(buildMergedValuesFilePath(i), buildValuesFilePath(i));
+        }
+        fileIndex = groupsNumber;
+    }
+
+    private long mergeGroup(int firstRun, int lastRun, int group) throws IOException {
+        if (firstRun == lastRun) {
+            renameFile(buildKeysFilePath(firstRun), buildMergedKeysFilePath(group));
+            renameFile(buildValuesFilePath(firstRun), buildMergedValuesFilePath(group));
+            return 0;
+        }
+        SortedRunReader<B>[] runs = new SortedRunReader[lastRun - firstRun + 1];
+        try {
+            for (int i = 0; i < runs.length; i++) {
+                runs[i] = new SortedRunReader<B>(buildKeysFilePath(firstRun + i), buildValuesFilePath(firstRun + i),
+                        rowCreator.createRowInstance(), useJbossImplementation);
+            }
+            SortedRunWriter<B> writer = new SortedRunWriter<B>(buildMergedKeysFilePath(group),
+                    buildMergedValuesFilePath(group), useJbossImplementation, compressRuns);
+            try {
+                return new SortedRunsMerger<B>(runs).merge(writer);
+            } finally {
+                writer.close();
+            }
+        } finally {
+            for (SortedRunReader<B> run : runs) {
+                if (run != null) {
+                    run.close();
+                }
+            }
+        }
+    }
+
+    private static void renameFile(String fromPath, String toPath) throws IOException {
+        File toFile = new File(toPath);
+        toFile.delete();
+        if (!new File(fromPath).renameTo(toFile)) {
+            throw new IOException("Unable to rename '" + fromPath + "' to '" + toPath + "'"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        toFile.deleteOnExit();
+    }
+
+    private static IOException toIOException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private String buildMergedValuesFilePath(int i) {
+        return container + "ValuesData_merged_" + i + ".bin"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private String buildMergedKeysFilePath(int i) {
+        return container + "KeysData_merged_" + i + ".bin"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
 
     private String buildValuesFilePath(int i) {
         return container + "ValuesData_" + i + ".bin"; //$NON-NLS-1$ //$NON-NLS-2$
@@ -400,16 +523,19 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
             RowProvider<B> rowProvider, MATCHING_MODE keysManagement) throws IOException {
         switch (keysManagement) {
         case FIRST_MATCH:
-            return new OrderedBeanLookupMatchFirst<B>(keysFilePath, valuesFilePath, i, rowProvider, skipBytesEnabled);
+            return new OrderedBeanLookupMatchFirst<B>(keysFilePath, valuesFilePath, i, rowProvider, skipBytesEnabled,
+                    useJbossImplementation);
 
         case LAST_MATCH:
         case UNIQUE_MATCH:
 
-            return new OrderedBeanLookupMatchLast<B>(keysFilePath, valuesFilePath, i, rowProvider, skipBytesEnabled);
+            return new OrderedBeanLookupMatchLast<B>(keysFilePath, valuesFilePath, i, rowProvider, skipBytesEnabled,
+                    useJbossImplementation);
 
         case ALL_MATCHES:
 
-            return new OrderedBeanLookupMatchAll<B>(keysFilePath, valuesFilePath, i, rowProvider, skipBytesEnabled);
+            return new OrderedBeanLookupMatchAll<B>(keysFilePath, valuesFilePath, i, rowProvider, skipBytesEnabled,
+                    useJbossImplementation);
 
         case ALL_ROWS:
 
@@ -585,94 +711,119 @@ public class PersistentSortedLookupManager<B extends IPersistableComparableLooku
         this.sortEnabled = sortEnabled;
     }
 
-    private static class LongLengthOutputStream extends OutputStream {
-
-        private long size = 0;
-
-        private final OutputStream out;
-
-        public LongLengthOutputStream(OutputStream out) {
-            this.out = out;
-        }
-
-        @Override
-        public void write(int b) throws IOException {
-            out.write(b);
-            incLength(1);
-        }
+    /**
+     * Getter for runCodec.
+     *
+     * @return the runCodec
+     */
+    public RUN_CODEC getRunCodec() {
+        return runCodec;
+    }
 
-        private void incLength(int length) {
-            long tempLength = this.size + length;
-            if (tempLength < 0) {
-                tempLength = Long.MAX_VALUE;
-            }
-            this.size = tempLength;
-        }
+    /**
+     * Sets the runCodec, before the first put.
+     *
+     * @param runCodec the runCodec to set
+     */
+    public void setRunCodec(RUN_CODEC runCodec) {
+        this.runCodec = runCodec;
+    }
 
-        public long size() {
-            return size;
-        }
+    /**
+     * Getter for compressRuns.
+     *
+     * @return the compressRuns
+     */
+    public boolean isCompressRuns() {
+        return compressRuns;
+    }
 
-        public void close() throws IOException {
-            out.close();
-            size = 0;
-        }
+    /**
+     * Sets the compressRuns.
+     *
+     * @param compressRuns the compressRuns to set
+     */
+    public void setCompressRuns(boolean compressRuns) {
+        this.compressRuns = compressRuns;
+    }
 
-		@Override
-		public void flush() throws IOException {
-			super.flush();
-		}
+    /**
+     * Getter for backgroundSort.
+     *
+     * @return the backgroundSort
+     */
+    public boolean isBackgroundSort() {
+        return backgroundSort;
     }
-    
-    private class LongLengthByteOutput implements ByteOutput {
 
-        private long size = 0;
+    /**
+     * Sets the backgroundSort.
+     *
+     * @param backgroundSort the backgroundSort to set
+     */
+    public void setBackgroundSort(boolean backgroundSort) {
+        this.backgroundSort = backgroundSort;
+    }
 
-        private final ByteOutput out;
+    /**
+     * Getter for maxSortedRuns.
+     *
+     * @return the maxSortedRuns
+     */
+    public int getMaxSortedRuns() {
+        return maxSortedRuns;
+    }
 
-        public LongLengthByteOutput(ByteOutput out) {
-            this.out = out;
-        }
+    /**
+     * Sets the maxSortedRuns, 0 to never merge the runs.
+     *
+     * @param maxSortedRuns the maxSortedRuns to set
+     */
+    public void setMaxSortedRuns(int maxSortedRuns) {
+        this.maxSortedRuns = maxSortedRuns;
+    }
 
-        @Override
-        public void write(int b) throws IOException {
-            out.write(b);
-            incLength(1);
-        }
+    /**
+     * Getter for memoryBudgetBytes.
+     *
+     * @return the memoryBudgetBytes
+     */
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
 
-        @Override
-        public void write(byte[] b) throws IOException {
-            out.write(b);
-            incLength(b.length);
+    /**
+     * Sets the memory budget of the buffer, before <code>initPut</code>.
+     *
+     * @param memoryBudgetBytes the budget in bytes, 0 to spill only when the buffer is full
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
 
-        }
+    /**
+     * Getter for spillCount.
+     *
+     * @return the number of buffers spilled to disk during the puts
+     */
+    public int getSpillCount() {
+        return memoryBudget != null ? memoryBudget.getSpillCount() : 0;
+    }
 
-        @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            out.write(b,off,len);
-            incLength(len);
-        }
+    private static class DaemonThreadFactory implements ThreadFactory {
 
-        private void incLength(int length) {
-            long tempLength = this.size + length;
-            if (tempLength < 0) {
-                tempLength = Long.MAX_VALUE;
-            }
-            this.size = tempLength;
-        }
+        private final String namePrefix;
 
-        public long size() {
-            return size;
-        }
+        private final AtomicInteger threadNumber = new AtomicInteger();
 
-        public void close() throws IOException {
-            out.close();
-            size = 0;
+        public DaemonThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
         }
 
-        @Override
-        public void flush() throws IOException {
-            out.flush();
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 
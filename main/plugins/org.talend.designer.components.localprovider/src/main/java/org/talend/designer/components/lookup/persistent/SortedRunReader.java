@@ -0,0 +1,112 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.persistent;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+
+import org.jboss.marshalling.MarshallerFactory;
+import org.jboss.marshalling.Marshalling;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.jboss.marshalling.Unmarshaller;
+import org.talend.designer.components.persistent.utils.BlockCompressedInputStream;
+import org.talend.designer.components.persistent.utils.CompactObjectInputStream;
+
+import routines.system.IPersistableLookupRow;
+
+/**
+ * Reads sequentially all the beans of a run written by {@link SortedRunWriter}.
+ *
+ * @param <B> bean
+ */
+public class SortedRunReader<B extends IPersistableLookupRow<B>> {
+
+    private final boolean useMarshaller;
+
+    private final B bean;
+
+    private BufferedInputStream keysBufferedInStream;
+
+    private ObjectInputStream keysObjectInStream;
+
+    private Unmarshaller keysUnmarshaller;
+
+    private DataInputStream valuesDataInStream;
+
+    private ObjectInputStream valuesObjectInStream;
+
+    private Unmarshaller valuesUnmarshaller;
+
+    public SortedRunReader(String keysFilePath, String valuesFilePath, B bean, boolean useMarshaller) throws IOException {
+        this.bean = bean;
+        this.useMarshaller = useMarshaller;
+        keysBufferedInStream = BlockCompressedInputStream.open(new File(keysFilePath));
+        valuesDataInStream = new DataInputStream(BlockCompressedInputStream.open(new File(valuesFilePath)));
+        if (useMarshaller) {
+            final MarshallerFactory marshallerFactory = Marshalling.getProvidedMarshallerFactory("river"); //$NON-NLS-1$
+            final MarshallingConfiguration configuration = new MarshallingConfiguration();
+            keysUnmarshaller = marshallerFactory.createUnmarshaller(configuration);
+            keysUnmarshaller.start(Marshalling.createByteInput(keysBufferedInStream));
+            valuesUnmarshaller = marshallerFactory.createUnmarshaller(configuration);
+            valuesUnmarshaller.start(Marshalling.createByteInput(valuesDataInStream));
+        } else {
+            keysObjectInStream = new CompactObjectInputStream(keysBufferedInStream);
+            valuesObjectInStream = new CompactObjectInputStream(valuesDataInStream);
+        }
+    }
+
+    /**
+     * Read the next bean of the run.
+     *
+     * @return false if the end of the run has been reached
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        if (useMarshaller) {
+            if (!(keysUnmarshaller.available() > 1 || keysBufferedInStream.available() > 0)) {
+                return false;
+            }
+            bean.readKeysData(keysUnmarshaller);
+            keysUnmarshaller.readInt();
+            bean.readValuesData(valuesDataInStream, valuesUnmarshaller);
+        } else {
+            if (!(keysObjectInStream.available() > 0 || keysBufferedInStream.available() > 0)) {
+                return false;
+            }
+            bean.readKeysData(keysObjectInStream);
+            keysObjectInStream.readInt();
+            bean.readValuesData(valuesDataInStream, valuesObjectInStream);
+        }
+        return true;
+    }
+
+    public B getBean() {
+        return bean;
+    }
+
+    public void close() throws IOException {
+        if (useMarshaller) {
+            keysUnmarshaller.close();
+            valuesUnmarshaller.close();
+        } else {
+            keysObjectInStream.close();
+            valuesObjectInStream.close();
+        }
+        keysBufferedInStream.close();
+        valuesDataInStream.close();
+    }
+
+}
@@ -0,0 +1,218 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.persistent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import org.jboss.marshalling.ByteOutput;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.MarshallerFactory;
+import org.jboss.marshalling.Marshalling;
+import org.jboss.marshalling.MarshallingConfiguration;
+import org.talend.designer.components.persistent.utils.BlockCompressedOutputStream;
+import org.talend.designer.components.persistent.utils.CompactObjectOutputStream;
+
+import routines.system.IPersistableLookupRow;
+
+/**
+ * Writes one sorted run of {@link PersistentSortedLookupManager}: the keys file contains the keys of each bean followed
+ * by the size of its values, the values file contains the values of each bean.
+ *
+ * @param <B> bean
+ */
+public class SortedRunWriter<B> {
+
+    private final boolean useMarshaller;
+
+    private OutputStream keysOutputStream;
+
+    private ObjectOutputStream keysObjectOutputStream;
+
+    private Marshaller keysMarshaller;
+
+    private OutputStream valuesOutputStream;
+
+    private LongLengthOutputStream valuesLongOutputStream;
+
+    private DataOutputStream valuesDataOutputStream;
+
+    private ObjectOutputStream valuesObjectOutputStream;
+
+    private Marshaller valuesMarshaller;
+
+    private LongLengthByteOutput valuesByteOutput;
+
+    private long previousSize;
+
+    public SortedRunWriter(String keysFilePath, String valuesFilePath, boolean useMarshaller, boolean compress)
+            throws IOException {
+        this.useMarshaller = useMarshaller;
+
+        File keysDataFile = new File(keysFilePath);
+        keysDataFile.deleteOnExit();
+        File valuesDataFile = new File(valuesFilePath);
+        valuesDataFile.deleteOnExit();
+
+        keysOutputStream = new BufferedOutputStream(new FileOutputStream(keysDataFile));
+        valuesOutputStream = new BufferedOutputStream(new FileOutputStream(valuesDataFile));
+        if (compress) {
+            keysOutputStream = new BlockCompressedOutputStream(keysOutputStream);
+            valuesOutputStream = new BlockCompressedOutputStream(valuesOutputStream);
+        }
+        valuesLongOutputStream = new LongLengthOutputStream(valuesOutputStream);
+        valuesDataOutputStream = new DataOutputStream(valuesLongOutputStream);
+
+        if (useMarshaller) {
+            final MarshallerFactory marshallerFactory = Marshalling.getProvidedMarshallerFactory("river"); //$NON-NLS-1$
+            final MarshallingConfiguration configuration = new MarshallingConfiguration();
+            keysMarshaller = marshallerFactory.createMarshaller(configuration);
+            keysMarshaller.start(new LongLengthByteOutput(Marshalling.createByteOutput(keysOutputStream)));
+            valuesMarshaller = marshallerFactory.createMarshaller(configuration);
+            valuesByteOutput = new LongLengthByteOutput(Marshalling.createByteOutput(valuesOutputStream));
+            valuesMarshaller.start(valuesByteOutput);
+            valuesMarshaller.flush();
+            previousSize = valuesByteOutput.size();
+        } else {
+            keysObjectOutputStream = new CompactObjectOutputStream(keysOutputStream);
+            valuesObjectOutputStream = new CompactObjectOutputStream(valuesDataOutputStream);
+            previousSize = valuesLongOutputStream.size();
+        }
+    }
+
+    public void write(IPersistableLookupRow<B> bean) throws IOException {
+        long newSize;
+        if (useMarshaller) {
+            bean.writeValuesData(valuesDataOutputStream, valuesMarshaller);
+            valuesMarshaller.flush();
+            newSize = valuesByteOutput.size();
+            bean.writeKeysData(keysMarshaller);
+            keysMarshaller.writeInt((int) (newSize - previousSize));
+        } else {
+            bean.writeValuesData(valuesDataOutputStream, valuesObjectOutputStream);
+            newSize = valuesLongOutputStream.size();
+            bean.writeKeysData(keysObjectOutputStream);
+            keysObjectOutputStream.writeInt((int) (newSize - previousSize));
+        }
+        previousSize = newSize;
+    }
+
+    public void close() throws IOException {
+        if (useMarshaller) {
+            keysMarshaller.close();
+            keysOutputStream.close();
+            valuesMarshaller.close();
+            valuesOutputStream.close();
+        } else {
+            keysObjectOutputStream.close();
+            valuesObjectOutputStream.close();
+        }
+    }
+
+    private static class LongLengthOutputStream extends OutputStream {
+
+        private long size = 0;
+
+        private final OutputStream out;
+
+        public LongLengthOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            incLength(1);
+        }
+
+        private void incLength(int length) {
+            long tempLength = this.size + length;
+            if (tempLength < 0) {
+                tempLength = Long.MAX_VALUE;
+            }
+            this.size = tempLength;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public void close() throws IOException {
+            out.close();
+            size = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            super.flush();
+        }
+    }
+
+    private static class LongLengthByteOutput implements ByteOutput {
+
+        private long size = 0;
+
+        private final ByteOutput out;
+
+        public LongLengthByteOutput(ByteOutput out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            incLength(1);
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            out.write(b);
+            incLength(b.length);
+
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            incLength(len);
+        }
+
+        private void incLength(int length) {
+            long tempLength = this.size + length;
+            if (tempLength < 0) {
+                tempLength = Long.MAX_VALUE;
+            }
+            this.size = tempLength;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public void close() throws IOException {
+            out.close();
+            size = 0;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.persistent;
+
+import java.io.IOException;
+
+import routines.system.IPersistableComparableLookupRow;
+
+/**
+ * K-way merge of sorted runs with a loser tree.
+ *
+ * Each internal node of the tree keeps the loser of the comparison between its two sub trees and the winner goes up,
+ * so a new bean of the winning run is compared only with the log2(k) losers on its path to the root. Beans with equal
+ * keys are taken in the order of the runs, the merged run keeps then the order of the original puts.
+ *
+ * @param <B> bean
+ */
+public class SortedRunsMerger<B extends IPersistableComparableLookupRow<B>> {
+
+    private static final int MIN_KEY = -1;
+
+    private final SortedRunReader<B>[] runs;
+
+    private final boolean[] exhausted;
+
+    private final int[] tree;
+
+    private final int k;
+
+    public SortedRunsMerger(SortedRunReader<B>[] runs) {
+        this.runs = runs;
+        this.k = runs.length;
+        this.exhausted = new boolean[k];
+        this.tree = new int[k];
+    }
+
+    /**
+     * Merge all the runs into the given writer.
+     *
+     * @param writer
+     * @return the count of merged beans
+     * @throws IOException
+     */
+    public long merge(SortedRunWriter<B> writer) throws IOException {
+        for (int i = 0; i < k; i++) {
+            exhausted[i] = !runs[i].next();
+            tree[i] = MIN_KEY;
+        }
+        for (int i = k - 1; i >= 0; i--) {
+            adjust(i);
+        }
+        long count = 0;
+        int winner;
+        while (!exhausted[winner = tree[0]]) {
+            writer.write(runs[winner].getBean());
+            count++;
+            exhausted[winner] = !runs[winner].next();
+            adjust(winner);
+        }
+        return count;
+    }
+
+    private void adjust(int run) {
+        int winner = run;
+        for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+            if (beats(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    /**
+     * @return true if the current bean of run1 has to be written before the one of run2
+     */
+    private boolean beats(int run1, int run2) {
+        if (run1 == MIN_KEY) {
+            return true;
+        }
+        if (run2 == MIN_KEY) {
+            return false;
+        }
+        if (exhausted[run1]) {
+            return false;
+        }
+        if (exhausted[run2]) {
+            return true;
+        }
+        int compareResult = runs[run1].getBean().compareTo(runs[run2].getBean());
+        return compareResult < 0 || compareResult == 0 && run1 < run2;
+    }
+
+}
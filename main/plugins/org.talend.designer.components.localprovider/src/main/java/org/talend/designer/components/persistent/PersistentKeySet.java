@@ -0,0 +1,597 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+import org.talend.designer.components.lookup.persistent.MemoryBudget;
+import org.talend.designer.components.persistent.utils.FileUtils;
+
+/**
+ *
+ * Set of serialized keys which are written to disk when their memory budget is exceeded, used to find the duplicated
+ * rows of a large flow.
+ *
+ * A bloom filter is checked first: a key which has never been added is added without reading the disk, only the
+ * candidates are probed in the store. The new keys are kept in memory until the budget is exceeded, then they are
+ * written to the partitions chosen from the first bits of their hash. A partition file is a run of keys sorted by hash
+ * with a sparse index kept in memory, so a probe reads one block of each run of the partition of the key. The runs of
+ * a partition are merged by levels: when {@link #MERGE_FACTOR} runs of the same level follow each other, they are
+ * merged in one run of the next level, so a key is only rewritten once by level and the number of runs stays
+ * logarithmic.
+ */
+public class PersistentKeySet {
+
+    public static final long DEFAULT_EXPECTED_KEYS = 1000000L;
+
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01d;
+
+    private static final int PARTITION_BITS = 4;
+
+    private static final int MERGE_FACTOR = 4;
+
+    /** Number of keys of a run between two entries of its sparse index. */
+    private static final int INDEX_INTERVAL = 64;
+
+    private static final int BLOCK_SIZE = 4 * 1024;
+
+    private static final int MERGE_BUFFER_SIZE = 256 * 1024;
+
+    private static final Comparator<Key> HASH_ORDER = new Comparator<Key>() {
+
+        public int compare(Key key1, Key key2) {
+            return key1.hash < key2.hash ? -1 : (key1.hash == key2.hash ? 0 : 1);
+        }
+    };
+
+    private final String container;
+
+    private long memoryBudgetBytes;
+
+    private long expectedKeys = DEFAULT_EXPECTED_KEYS;
+
+    private double falsePositiveProbability = DEFAULT_FALSE_POSITIVE_PROBABILITY;
+
+    private MemoryBudget memoryBudget;
+
+    private ScalableBloomFilter bloomFilter;
+
+    private HashSet<Key> memoryKeys = new HashSet<Key>();
+
+    private Partition[] partitions;
+
+    private ByteBuffer probeBuffer;
+
+    private int fileIndex;
+
+    private long size;
+
+    private long probesCount;
+
+    private long falsePositiveProbesCount;
+
+    /**
+     * @param container the prefix of the partition files
+     */
+    public PersistentKeySet(String container) {
+        this.container = container;
+    }
+
+    /**
+     * Adds a key if it is not in the set.
+     *
+     * @param key the serialized key, equal keys must have the same bytes
+     * @return true if the key has been added, false if it was already in the set
+     * @throws IOException
+     */
+    public boolean add(byte[] key) throws IOException {
+        if (bloomFilter == null) {
+            bloomFilter = new ScalableBloomFilter(expectedKeys, falsePositiveProbability);
+            memoryBudget = new MemoryBudget(memoryBudgetBytes > 0 ? memoryBudgetBytes : MemoryBudget.defaultBudgetBytes());
+        }
+        Key newKey = new Key(key, hash(key));
+        if (bloomFilter.mightContain(newKey.hash)) {
+            probesCount++;
+            if (memoryKeys.contains(newKey) || isInPartition(newKey)) {
+                return false;
+            }
+            falsePositiveProbesCount++;
+        }
+        bloomFilter.add(newKey.hash);
+        memoryKeys.add(newKey);
+        size++;
+        memoryBudget.sample(key.length);
+        if (memoryBudget.isExceeded(memoryKeys.size())) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Getter for size.
+     *
+     * @return the number of keys of the set
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Getter for probesCount.
+     *
+     * @return the number of keys which passed the bloom filter and were searched in the set
+     */
+    public long getProbesCount() {
+        return probesCount;
+    }
+
+    /**
+     * Getter for falsePositiveProbesCount.
+     *
+     * @return the number of keys which passed the bloom filter but were not in the set
+     */
+    public long getFalsePositiveProbesCount() {
+        return falsePositiveProbesCount;
+    }
+
+    /**
+     * Getter for spillCount.
+     *
+     * @return the number of times the keys in memory have been written to disk
+     */
+    public int getSpillCount() {
+        return memoryBudget != null ? memoryBudget.getSpillCount() : 0;
+    }
+
+    /**
+     * Sets the memory budget of the keys, before the first key. The bloom filter is not part of the budget, it takes
+     * about 10 bits by key for a probability of 1%.
+     *
+     * @param memoryBudgetBytes the budget in bytes, 0 for {@link MemoryBudget#DEFAULT_BUDGET_RATIO} of the heap
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    /**
+     * Sets the number of keys of the first bloom filter, before the first key. The filter grows when more keys are
+     * added.
+     *
+     * @param expectedKeys the expected number of keys
+     */
+    public void setExpectedKeys(long expectedKeys) {
+        this.expectedKeys = expectedKeys > 0 ? expectedKeys : DEFAULT_EXPECTED_KEYS;
+    }
+
+    /**
+     * Sets the false positive probability of the bloom filter, before the first key.
+     *
+     * @param falsePositiveProbability the probability, between 0 and 1
+     */
+    public void setFalsePositiveProbability(double falsePositiveProbability) {
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Closes and deletes all the partition files.
+     */
+    public void close() {
+        if (partitions != null) {
+            for (Partition partition : partitions) {
+                if (partition != null) {
+                    for (Run run : partition.runs) {
+                        run.delete();
+                    }
+                    partition.runs.clear();
+                }
+            }
+            partitions = null;
+        }
+        memoryKeys = new HashSet<Key>();
+        bloomFilter = null;
+    }
+
+    private boolean isInPartition(Key key) throws IOException {
+        if (partitions == null) {
+            return false;
+        }
+        Partition partition = partitions[getPartitionIndex(key.hash)];
+        if (partition == null) {
+            return false;
+        }
+        if (probeBuffer == null) {
+            probeBuffer = ByteBuffer.allocate(BLOCK_SIZE);
+        }
+        // the most recent runs first
+        for (int i = partition.runs.size() - 1; i >= 0; i--) {
+            if (partition.runs.get(i).contains(key, probeBuffer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the keys in memory to their partitions.
+     */
+    private void flush() throws IOException {
+        Key[] keys = memoryKeys.toArray(new Key[memoryKeys.size()]);
+        memoryKeys = new HashSet<Key>();
+        Arrays.sort(keys, HASH_ORDER);
+        if (partitions == null) {
+            partitions = new Partition[1 << PARTITION_BITS];
+        }
+        // the partition is given by the first bits of the hash, so the keys of a partition are contiguous
+        int from = 0;
+        while (from < keys.length) {
+            int index = getPartitionIndex(keys[from].hash);
+            int to = from + 1;
+            while (to < keys.length && getPartitionIndex(keys[to].hash) == index) {
+                to++;
+            }
+            Partition partition = partitions[index];
+            if (partition == null) {
+                partition = new Partition();
+                partitions[index] = partition;
+            }
+            RunWriter writer = new RunWriter(nextFile());
+            for (int i = from; i < to; i++) {
+                writer.write(keys[i].hash, keys[i].bytes);
+                keys[i] = null;
+            }
+            partition.add(writer.close(0));
+            from = to;
+        }
+        memoryBudget.spilled();
+    }
+
+    private File nextFile() throws IOException {
+        File file = new File(container + "_Keys_" + fileIndex++ + ".bin"); //$NON-NLS-1$ //$NON-NLS-2$
+        FileUtils.createParentFolderIfNotExists(file.getPath());
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static int getPartitionIndex(long hash) {
+        return (int) (hash >>> (Long.SIZE - PARTITION_BITS));
+    }
+
+    /**
+     * 64 bits hash of the bytes, in the way of MurmurHash3.
+     */
+    static long hash(byte[] bytes) {
+        long h = 0x9E3779B97F4A7C15L ^ (bytes.length * 0xC2B2AE3D27D4EB4FL);
+        int i = 0;
+        for (; i + 8 <= bytes.length; i += 8) {
+            long k = (bytes[i] & 0xFFL) | (bytes[i + 1] & 0xFFL) << 8 | (bytes[i + 2] & 0xFFL) << 16
+                    | (bytes[i + 3] & 0xFFL) << 24 | (bytes[i + 4] & 0xFFL) << 32 | (bytes[i + 5] & 0xFFL) << 40
+                    | (bytes[i + 6] & 0xFFL) << 48 | (bytes[i + 7] & 0xFFL) << 56;
+            h ^= Long.rotateLeft(k * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+            h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+        }
+        long k = 0;
+        for (int shift = 0; i < bytes.length; i++, shift += 8) {
+            k |= (bytes[i] & 0xFFL) << shift;
+        }
+        h ^= Long.rotateLeft(k * 0x87C37B91114253D5L, 31) * 0x4CF5AD432745937FL;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Key in memory.
+     */
+    private static class Key {
+
+        private final byte[] bytes;
+
+        private final long hash;
+
+        public Key(byte[] bytes, long hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && Arrays.equals(bytes, other.bytes);
+        }
+    }
+
+    /**
+     * Runs of a partition.
+     */
+    private class Partition {
+
+        // from the oldest to the most recent run, the levels never increase
+        private final List<Run> runs = new ArrayList<Run>();
+
+        /**
+         * Adds a new run, then merges the last runs while {@link #MERGE_FACTOR} of them have the same level.
+         */
+        public void add(Run run) throws IOException {
+            runs.add(run);
+            while (runs.size() >= MERGE_FACTOR) {
+                int last = runs.size() - 1;
+                int level = runs.get(last).level;
+                int from = last;
+                while (from > 0 && runs.get(from - 1).level == level) {
+                    from--;
+                }
+                if (last - from + 1 < MERGE_FACTOR) {
+                    break;
+                }
+                merge(from, level + 1);
+            }
+        }
+
+        /**
+         * Merges the runs from an index to the end in one, a key is only in one run.
+         */
+        private void merge(int from, int level) throws IOException {
+            List<Run> merging = runs.subList(from, runs.size());
+            RunReader[] readers = new RunReader[merging.size()];
+            RunWriter writer = new RunWriter(nextFile());
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = new RunReader(merging.get(i), ByteBuffer.allocate(MERGE_BUFFER_SIZE));
+                readers[i].next();
+            }
+            while (true) {
+                RunReader min = null;
+                for (RunReader reader : readers) {
+                    if (reader.bytes != null && (min == null || reader.hash < min.hash)) {
+                        min = reader;
+                    }
+                }
+                if (min == null) {
+                    break;
+                }
+                writer.write(min.hash, min.bytes);
+                min.next();
+            }
+            Run merged = writer.close(level);
+            for (Run run : merging) {
+                run.delete();
+            }
+            merging.clear();
+            runs.add(merged);
+        }
+    }
+
+    /**
+     * Run file of keys sorted by hash, each key is written as <code>[hash, length, bytes]</code>.
+     */
+    private static class Run {
+
+        private final File file;
+
+        private final long length;
+
+        // number of merges of the keys of the run
+        private final int level;
+
+        private final long[] indexHashes;
+
+        private final long[] indexOffsets;
+
+        private RandomAccessFile input;
+
+        public Run(File file, long length, int level, long[] indexHashes, long[] indexOffsets) {
+            this.file = file;
+            this.length = length;
+            this.level = level;
+            this.indexHashes = indexHashes;
+            this.indexOffsets = indexOffsets;
+        }
+
+        public boolean contains(Key key, ByteBuffer buffer) throws IOException {
+            if (length == 0) {
+                return false;
+            }
+            // last block starting before the hash, the keys with the same hash may be at the end of a block
+            int low = 0;
+            int high = indexHashes.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (indexHashes[middle] < key.hash) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            if (input == null) {
+                input = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+            }
+            RunReader reader = new RunReader(this, input.getChannel(), indexOffsets[low], buffer);
+            while (reader.next()) {
+                if (reader.hash > key.hash) {
+                    return false;
+                }
+                if (reader.hash == key.hash && Arrays.equals(reader.bytes, key.bytes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void delete() {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // the file is deleted anyway
+                }
+                input = null;
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * Writes a run and its sparse index.
+     */
+    private static class RunWriter {
+
+        private final File file;
+
+        private final DataOutputStream output;
+
+        private long offset;
+
+        private int count;
+
+        private long[] indexHashes = new long[16];
+
+        private long[] indexOffsets = new long[16];
+
+        private int indexSize;
+
+        public RunWriter(File file) throws IOException {
+            this.file = file;
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), MERGE_BUFFER_SIZE));
+        }
+
+        public void write(long hash, byte[] bytes) throws IOException {
+            if (count++ % INDEX_INTERVAL == 0) {
+                if (indexSize == indexHashes.length) {
+                    indexHashes = Arrays.copyOf(indexHashes, indexSize * 2);
+                    indexOffsets = Arrays.copyOf(indexOffsets, indexSize * 2);
+                }
+                indexHashes[indexSize] = hash;
+                indexOffsets[indexSize++] = offset;
+            }
+            output.writeLong(hash);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+            offset += 12 + bytes.length;
+        }
+
+        public Run close(int level) throws IOException {
+            output.close();
+            return new Run(file, offset, level, Arrays.copyOf(indexHashes, indexSize),
+                    Arrays.copyOf(indexOffsets, indexSize));
+        }
+    }
+
+    /**
+     * Reads the keys of a run from a position.
+     */
+    private static class RunReader {
+
+        private final Run run;
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer;
+
+        private final boolean ownChannel;
+
+        private long position;
+
+        private long hash;
+
+        private byte[] bytes;
+
+        /**
+         * Sequential reader of a whole run.
+         */
+        public RunReader(Run run, ByteBuffer buffer) throws IOException {
+            this(run, new RandomAccessFile(run.file, "r").getChannel(), 0L, buffer, true); //$NON-NLS-1$
+        }
+
+        public RunReader(Run run, FileChannel channel, long position, ByteBuffer buffer) {
+            this(run, channel, position, buffer, false);
+        }
+
+        private RunReader(Run run, FileChannel channel, long position, ByteBuffer buffer, boolean ownChannel) {
+            this.run = run;
+            this.channel = channel;
+            this.position = position;
+            this.buffer = buffer;
+            this.ownChannel = ownChannel;
+            buffer.clear();
+            buffer.flip();
+        }
+
+        /**
+         * @return false at the end of the run
+         */
+        public boolean next() throws IOException {
+            if (!fill(12)) {
+                bytes = null;
+                if (ownChannel) {
+                    channel.close();
+                }
+                return false;
+            }
+            hash = buffer.getLong();
+            bytes = new byte[buffer.getInt()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!fill(1)) {
+                    throw new EOFException();
+                }
+                int read = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.get(bytes, offset, read);
+                offset += read;
+            }
+            return true;
+        }
+
+        private boolean fill(int needed) throws IOException {
+            if (buffer.remaining() >= needed) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < needed && position < run.length) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                position += read;
+            }
+            buffer.flip();
+            return buffer.remaining() >= needed;
+        }
+    }
+
+}
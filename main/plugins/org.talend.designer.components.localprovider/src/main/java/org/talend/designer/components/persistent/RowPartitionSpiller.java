@@ -0,0 +1,291 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.LinkedList;
+
+import org.talend.designer.components.lookup.persistent.MemoryBudget;
+import org.talend.designer.components.persistent.utils.FileUtils;
+
+import routines.system.IPersistableRow;
+
+/**
+ *
+ * Partitions to disk the rows of a hash aggregation when its memory budget is exceeded.
+ *
+ * Once the budget is exceeded, the rows of the groups already in memory are still aggregated in memory, the rows of
+ * the new groups are written to one of the partition files chosen from the hash of their group. Each partition is then
+ * aggregated again once the groups in memory have been sent, which may partition it again with an other hash
+ * function. All the rows of a group are then aggregated together and in their arrival order, so all the aggregate
+ * functions give the same results as the in memory aggregation.
+ *
+ * @param <R> row
+ */
+public class RowPartitionSpiller<R extends IPersistableRow<R>> {
+
+    private static final int PARTITIONS_NUMBER = 16;
+
+    private static final int PARTITION_BITS = 4;
+
+    private final String container;
+
+    private final boolean rowsKeptInGroups;
+
+    private long memoryBudgetBytes;
+
+    private MemoryBudget memoryBudget;
+
+    private boolean spilling;
+
+    private int aggregatedRows;
+
+    private int spillCount;
+
+    private int fileIndex;
+
+    private int level;
+
+    private Partition[] partitions;
+
+    private final LinkedList<Partition> pendingPartitions = new LinkedList<Partition>();
+
+    private Partition currentPartition;
+
+    private ObjectInputStream currentInput;
+
+    private long remainingRows;
+
+    /**
+     * @param container the prefix of the partition files
+     * @param rowsKeptInGroups true if the groups keep the aggregated values (list, distinct...), their size is then
+     * the number of aggregated rows and not the number of groups
+     */
+    public RowPartitionSpiller(String container, boolean rowsKeptInGroups) {
+        this.container = container;
+        this.rowsKeptInGroups = rowsKeptInGroups;
+    }
+
+    /**
+     * To call once the row has been aggregated in memory.
+     *
+     * @param row the aggregated row
+     * @param groupsCount the number of groups in memory
+     */
+    public void aggregated(R row, int groupsCount) {
+        if (memoryBudget == null) {
+            memoryBudget = new MemoryBudget(memoryBudgetBytes > 0 ? memoryBudgetBytes : MemoryBudget.defaultBudgetBytes());
+        }
+        memoryBudget.sample(row);
+        aggregatedRows++;
+        if (!spilling && memoryBudget.isExceeded(rowsKeptInGroups ? aggregatedRows : groupsCount)) {
+            spilling = true;
+            spillCount++;
+            memoryBudget.spilled();
+        }
+    }
+
+    /**
+     * Getter for spilling.
+     *
+     * @return true if the rows of the new groups have to be spilled
+     */
+    public boolean isSpilling() {
+        return spilling;
+    }
+
+    /**
+     * Writes the row of a group which is not in memory.
+     *
+     * @param row the row to write
+     * @param groupHashCode the hash code of the group of the row
+     * @throws IOException
+     */
+    public void spill(R row, int groupHashCode) throws IOException {
+        if (partitions == null) {
+            partitions = new Partition[PARTITIONS_NUMBER];
+        }
+        int index = getPartitionIndex(groupHashCode, level + 1);
+        Partition partition = partitions[index];
+        if (partition == null) {
+            partition = new Partition(new File(container + "_Partition_" + fileIndex++ + ".bin"), level + 1); //$NON-NLS-1$ //$NON-NLS-2$
+            partitions[index] = partition;
+        }
+        partition.write(row);
+    }
+
+    /**
+     * Moves to the next partition to aggregate, the groups in memory must have been sent and cleared.
+     *
+     * @return false if all the partitions have been aggregated
+     * @throws IOException
+     */
+    public boolean nextPartition() throws IOException {
+        closeCurrentPartition();
+        if (partitions != null) {
+            for (Partition partition : partitions) {
+                if (partition != null) {
+                    partition.closeOutput();
+                    pendingPartitions.add(partition);
+                }
+            }
+            partitions = null;
+        }
+        spilling = false;
+        aggregatedRows = 0;
+        if (pendingPartitions.isEmpty()) {
+            return false;
+        }
+        currentPartition = pendingPartitions.removeFirst();
+        currentInput = new ObjectInputStream(new BufferedInputStream(new FileInputStream(currentPartition.file)));
+        remainingRows = currentPartition.rowsCount;
+        level = currentPartition.level;
+        return true;
+    }
+
+    /**
+     * Reads the next row of the current partition.
+     *
+     * @param row the row to fill
+     * @return false if all the rows of the partition have been read
+     */
+    public boolean readRow(R row) {
+        if (remainingRows == 0) {
+            return false;
+        }
+        row.readData(currentInput);
+        remainingRows--;
+        return true;
+    }
+
+    /**
+     * Closes and deletes all the partition files.
+     */
+    public void close() {
+        closeCurrentPartition();
+        if (partitions != null) {
+            for (Partition partition : partitions) {
+                if (partition != null) {
+                    pendingPartitions.add(partition);
+                }
+            }
+            partitions = null;
+        }
+        for (Partition partition : pendingPartitions) {
+            partition.closeOutput();
+            partition.file.delete();
+        }
+        pendingPartitions.clear();
+    }
+
+    /**
+     * Getter for spillCount.
+     *
+     * @return the number of times the new groups have been partitioned to disk
+     */
+    public int getSpillCount() {
+        return spillCount;
+    }
+
+    /**
+     * Getter for memoryBudgetBytes.
+     *
+     * @return the memoryBudgetBytes
+     */
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Sets the memory budget of the groups, before the first row.
+     *
+     * @param memoryBudgetBytes the budget in bytes, 0 for {@link MemoryBudget#DEFAULT_BUDGET_RATIO} of the heap
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    private void closeCurrentPartition() {
+        if (currentPartition != null) {
+            try {
+                currentInput.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            currentPartition.file.delete();
+            currentPartition = null;
+            currentInput = null;
+        }
+    }
+
+    /**
+     * The rows of a partition have the same index for its level, each level uses other bits of the hash to split them.
+     */
+    private static int getPartitionIndex(int hashCode, int partitionLevel) {
+        int levelsByHash = Integer.SIZE / PARTITION_BITS;
+        int h = (hashCode + (partitionLevel / levelsByHash) * 0x61C88647) * 0x9E3779B9;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h >>> ((partitionLevel % levelsByHash) * PARTITION_BITS)) & (PARTITIONS_NUMBER - 1);
+    }
+
+    /**
+     * Partition file.
+     */
+    private static class Partition {
+
+        private final File file;
+
+        private final int level;
+
+        private long rowsCount;
+
+        private ObjectOutputStream output;
+
+        public Partition(File file, int level) {
+            this.file = file;
+            this.level = level;
+        }
+
+        public void write(IPersistableRow<?> row) throws IOException {
+            if (output == null) {
+                FileUtils.createParentFolderIfNotExists(file.getPath());
+                file.deleteOnExit();
+                output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            }
+            row.writeData(output);
+            output.reset();
+            rowsCount++;
+        }
+
+        public void closeOutput() {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                output = null;
+            }
+        }
+    }
+
+}
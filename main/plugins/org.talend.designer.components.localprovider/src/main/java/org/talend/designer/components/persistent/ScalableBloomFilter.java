@@ -0,0 +1,135 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Bloom filter which grows with the number of added hashes.
+ *
+ * When a filter is full, a new filter twice as large and with half the false positive probability is added, so the
+ * false positive probability of all the filters stays under the requested one whatever the number of hashes. The bits
+ * of a hash are chosen by double hashing of its two halves.
+ */
+public class ScalableBloomFilter {
+
+    private static final double LN2 = Math.log(2d);
+
+    private final List<Filter> filters = new ArrayList<Filter>();
+
+    private long nextCapacity;
+
+    private double nextProbability;
+
+    private Filter current;
+
+    /**
+     * @param expectedHashes the number of hashes of the first filter
+     * @param falsePositiveProbability the false positive probability of all the filters
+     */
+    public ScalableBloomFilter(long expectedHashes, double falsePositiveProbability) {
+        if (!(falsePositiveProbability > 0d && falsePositiveProbability < 1d)) {
+            throw new IllegalArgumentException("The false positive probability must be between 0 and 1: " //$NON-NLS-1$
+                    + falsePositiveProbability);
+        }
+        this.nextCapacity = Math.max(1024L, expectedHashes);
+        // p/2 + p/4 + ... < p
+        this.nextProbability = falsePositiveProbability / 2d;
+    }
+
+    /**
+     * @param hash a 64 bits hash of the value
+     * @return false if the hash has never been added, true if it may have been added
+     */
+    public boolean mightContain(long hash) {
+        for (int i = filters.size() - 1; i >= 0; i--) {
+            if (filters.get(i).mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(long hash) {
+        if (current == null || current.count >= current.capacity) {
+            current = new Filter(nextCapacity, nextProbability);
+            filters.add(current);
+            nextCapacity *= 2;
+            nextProbability /= 2d;
+        }
+        current.add(hash);
+    }
+
+    /**
+     * @return the size of the bits of all the filters, in bytes
+     */
+    public long getSizeInBytes() {
+        long size = 0;
+        for (Filter filter : filters) {
+            size += filter.bits.length * 8L;
+        }
+        return size;
+    }
+
+    /**
+     * One fixed size filter.
+     */
+    private static class Filter {
+
+        private final long[] bits;
+
+        private final long bitsCount;
+
+        private final int hashesCount;
+
+        private final long capacity;
+
+        private long count;
+
+        public Filter(long capacity, double probability) {
+            long wantedBits = (long) Math.ceil(-capacity * Math.log(probability) / (LN2 * LN2));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1L, (wantedBits + 63) >>> 6));
+            this.bits = new long[words];
+            this.bitsCount = words * 64L;
+            this.hashesCount = Math.max(1, (int) Math.round((double) bitsCount / capacity * LN2));
+            this.capacity = capacity;
+        }
+
+        public void add(long hash) {
+            long combined = hash;
+            long step = Long.rotateLeft(hash, 32) | 1L;
+            for (int i = 0; i < hashesCount; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitsCount;
+                bits[(int) (index >>> 6)] |= 1L << index;
+                combined += step;
+            }
+            count++;
+        }
+
+        public boolean mightContain(long hash) {
+            long combined = hash;
+            long step = Long.rotateLeft(hash, 32) | 1L;
+            for (int i = 0; i < hashesCount; i++) {
+                long index = (combined & Long.MAX_VALUE) % bitsCount;
+                if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                    return false;
+                }
+                combined += step;
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the blocks written by {@link BlockCompressedOutputStream}.
+ *
+ * {@link #available()} only returns 0 when the last block has been read, so the readers testing the end of the data
+ * with <code>available()</code> work the same way as with an uncompressed file.
+ */
+public class BlockCompressedInputStream extends FilterInputStream {
+
+    private final DataInputStream dataIn;
+
+    private final Inflater inflater = new Inflater(true);
+
+    private byte[] block = new byte[BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE];
+
+    private byte[] compressedBlock = new byte[BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    /**
+     * The magic number must have already been read from the given stream.
+     *
+     * @param in
+     */
+    public BlockCompressedInputStream(InputStream in) {
+        super(in);
+        this.dataIn = new DataInputStream(in);
+    }
+
+    /**
+     * Open a file written either directly or through a {@link BlockCompressedOutputStream}.
+     *
+     * @param file
+     * @return a buffered stream of the uncompressed data
+     * @throws IOException
+     */
+    public static BufferedInputStream open(File file) throws IOException {
+        BufferedInputStream fileIn = new BufferedInputStream(new FileInputStream(file));
+        fileIn.mark(4);
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = fileIn.read();
+            if (b < 0) {
+                magic = 0;
+                break;
+            }
+            magic = (magic << 8) | b;
+        }
+        if (magic == BlockCompressedOutputStream.MAGIC) {
+            return new BufferedInputStream(new BlockCompressedInputStream(fileIn));
+        }
+        fileIn.reset();
+        return fileIn;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        int length = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, length);
+        position += length;
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            if (position == limit && !readBlock()) {
+                break;
+            }
+            int length = (int) Math.min(n - skipped, limit - position);
+            position += length;
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (position < limit) {
+            return limit - position;
+        }
+        // blocks are never empty
+        return in.available() > 0 ? 1 : 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        super.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        int length;
+        try {
+            length = dataIn.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        int storedLength = dataIn.readInt();
+        if (block.length < length) {
+            block = new byte[length];
+        }
+        if (storedLength == length) {
+            dataIn.readFully(block, 0, length);
+        } else {
+            if (compressedBlock.length < storedLength) {
+                compressedBlock = new byte[storedLength];
+            }
+            dataIn.readFully(compressedBlock, 0, storedLength);
+            inflater.reset();
+            inflater.setInput(compressedBlock, 0, storedLength);
+            try {
+                int inflated = 0;
+                while (inflated < length) {
+                    int n = inflater.inflate(block, inflated, length - inflated);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                        break;
+                    }
+                    inflated += n;
+                }
+                if (inflated != length) {
+                    throw new IOException("Corrupted compressed block"); //$NON-NLS-1$
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+        position = 0;
+        limit = length;
+        return true;
+    }
+
+}
@@ -0,0 +1,128 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent.utils;
+
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream compressing the data by independent blocks.
+ *
+ * The stream starts with {@link #MAGIC}, then each block is written as its uncompressed length (int), its stored
+ * length (int) and the stored bytes. A block is deflated with the fastest level and kept as is when the compressed
+ * data would not be smaller.
+ *
+ * {@link #flush()} does not end the current block, the blocks are only written when they are full or when the stream
+ * is closed, so the callers flushing after each record do not break the compression.
+ */
+public class BlockCompressedOutputStream extends FilterOutputStream {
+
+    public static final int MAGIC = 0x544C4231;
+
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final DataOutputStream dataOut;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+    private final byte[] block;
+
+    private byte[] compressedBlock;
+
+    private int count;
+
+    private boolean closed;
+
+    public BlockCompressedOutputStream(OutputStream out) throws IOException {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    public BlockCompressedOutputStream(OutputStream out, int blockSize) throws IOException {
+        super(out);
+        this.dataOut = new DataOutputStream(out);
+        this.block = new byte[blockSize];
+        this.compressedBlock = new byte[blockSize];
+        dataOut.writeInt(MAGIC);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == block.length) {
+            writeBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == block.length) {
+                writeBlock();
+            }
+            int length = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, length);
+            count += length;
+            off += length;
+            len -= length;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // the current block is written when it is full or on close
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                writeBlock();
+            }
+            dataOut.flush();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, count);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished() && compressedLength < count) {
+            compressedLength += deflater.deflate(compressedBlock, compressedLength, compressedBlock.length - compressedLength);
+            if (compressedLength == compressedBlock.length && !deflater.finished()) {
+                // incompressible data, stored as is
+                compressedLength = count;
+            }
+        }
+        dataOut.writeInt(count);
+        if (compressedLength < count) {
+            dataOut.writeInt(compressedLength);
+            dataOut.write(compressedBlock, 0, compressedLength);
+        } else {
+            dataOut.writeInt(count);
+            dataOut.write(block, 0, count);
+        }
+        count = 0;
+    }
+
+}
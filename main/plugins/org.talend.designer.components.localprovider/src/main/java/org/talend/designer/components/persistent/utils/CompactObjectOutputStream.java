@@ -0,0 +1,36 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent.utils;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+
+/**
+ * ObjectOutputStream writing only the class name instead of the full class descriptor.
+ *
+ * The data are read back in the same JVM by {@link CompactObjectInputStream}, which resolves the descriptor from the
+ * local class.
+ */
+public class CompactObjectOutputStream extends ObjectOutputStream {
+
+    public CompactObjectOutputStream(OutputStream out) throws IOException {
+        super(out);
+    }
+
+    @Override
+    protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+        writeUTF(desc.getName());
+    }
+}
@@ -14,8 +14,14 @@ package org.talend.designer.core.model.components;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 
 import org.apache.commons.lang.ArrayUtils;
@@ -50,6 +56,8 @@ import org.talend.hadoop.distribution.spark.SparkVersionUtil;
  * ((VAR1 == 'value1' and VAR2 == 'value2') or (VAR3 != 'value3')) or (VAR4 == 'value4') <br>
  * With VAR1, VAR2, VAR3 & VAR4 as the name of differents parameters and 'value1'.. the values to test. (values must be
  * between quotes)<br>
+ * The expressions are parsed once, the tree of an expression is kept with the names of the parameters it reads, so it
+ * can be evaluated again without parsing it.<br>
  *
  * $Id$
  *
@@ -64,7 +72,17 @@ public final class Expression {
 
     private String expressionString;
 
-    private boolean valid;
+    private Boolean constant;
+
+    private SimpleComparison comparison;
+
+    private boolean unparsable;
+
+    private Set<String> dependencies; // null if the names of the parameters can't be found
+
+    private static final int MAX_COMPILED_EXPRESSIONS = 20000;
+
+    private static final Map<String, Expression> compiledExpressions = new ConcurrentHashMap<String, Expression>();
 
     private static final String AND = "and"; //$NON-NLS-1$
 
@@ -119,68 +137,120 @@ public final class Expression {
         this.expressionString = expressionString;
     }
 
-    private String getExpressionString() {
-        return this.expressionString;
-    }
-
-    private void setExpressionString(String value) {
-        this.expressionString = value;
-    }
-
-    private String getCondition() {
-        return this.condition;
-    }
-
-    private void setCondition(String condition) {
-        this.condition = condition;
+    public static boolean evaluate(final String string, List<? extends IElementParameter> listParam) {
+        return evaluate(string, listParam, null);
     }
 
-    private Expression getLeftExpression() {
-        return this.leftExpression;
+    public static boolean evaluate(final String string, List<? extends IElementParameter> listParam, ElementParameter curParam) {
+        return compile(string).isValid(listParam, curParam);
     }
 
-    private void setLeftExpression(Expression leftExpression) {
-        this.leftExpression = leftExpression;
+    /**
+     * Tells if the value of a parameter can change the result of an expression, so only the expressions reading the
+     * parameter are evaluated again when it changes.
+     *
+     * @param string the expression
+     * @param paramName the name of the parameter
+     * @return true if the expression reads the parameter, or if it contains the name when the expression reads other
+     * elements (#LINK@NODE, isShow[]...)
+     */
+    public static boolean isDependentOn(final String string, String paramName) {
+        if (string == null || paramName == null) {
+            return false;
+        }
+        Set<String> paramNames;
+        try {
+            paramNames = compile(string).dependencies;
+        } catch (RuntimeException e) {
+            paramNames = null;
+        }
+        if (paramNames == null) {
+            return string.contains(paramName);
+        }
+        return paramNames.contains(paramName);
     }
 
-    private Expression getRightExpression() {
-        return this.rightExpression;
+    private static Expression compile(final String string) {
+        Expression expression = compiledExpressions.get(string);
+        if (expression == null) {
+            expression = parse(string);
+            if (compiledExpressions.size() >= MAX_COMPILED_EXPRESSIONS) {
+                compiledExpressions.clear();
+            }
+            compiledExpressions.put(string, expression);
+        }
+        return expression;
     }
 
-    private void setRightExpression(Expression rightExpression) {
-        this.rightExpression = rightExpression;
+    private static Expression parse(final String string) {
+        if (string.contains("(") //$NON-NLS-1$
+                && (isThereCondition(string, AND) || isThereCondition(string, OR))) {
+            return parseExpression(string);
+        }
+        if (Boolean.FALSE.toString().equals(string)) {
+            return constant(false);
+        }
+        if (Boolean.TRUE.toString().equals(string)) {
+            return constant(true);
+        }
+        String newValue; // remove brackets
+        newValue = string.replace("(", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        newValue = newValue.replace(")", ""); //$NON-NLS-1$ //$NON-NLS-2$
+        return simple(newValue);
     }
 
-    private boolean isValid() {
-        return this.valid;
+    private static Expression constant(boolean value) {
+        Expression expression = new Expression(String.valueOf(value));
+        expression.constant = value;
+        expression.dependencies = Collections.emptySet();
+        return expression;
     }
 
-    private void setValid(boolean value) {
-        this.valid = value;
+    private static Expression simple(String simpleExpression) {
+        Expression expression = new Expression(simpleExpression);
+        expression.comparison = SimpleComparison.parse(simpleExpression);
+        if (expression.comparison != null) {
+            expression.dependencies = expression.comparison.getParamNames();
+        }
+        return expression;
     }
 
-    public static boolean evaluate(final String string, List<? extends IElementParameter> listParam) {
-        return evaluate(string, listParam, null);
+    private static Expression condition(String condition, Expression leftExpression, Expression rightExpression) {
+        Expression expression = new Expression(null);
+        expression.condition = condition;
+        expression.leftExpression = leftExpression;
+        expression.rightExpression = rightExpression;
+        if (leftExpression.dependencies != null && rightExpression.dependencies != null) {
+            Set<String> paramNames = new HashSet<String>(leftExpression.dependencies);
+            paramNames.addAll(rightExpression.dependencies);
+            expression.dependencies = paramNames;
+        }
+        return expression;
     }
 
-    public static boolean evaluate(final String string, List<? extends IElementParameter> listParam, ElementParameter curParam) {
-    	String newValue; // remove brackets
-    	if (string.contains("(") //$NON-NLS-1$
-                && (isThereCondition(string, AND) || isThereCondition(string, OR))) {
-            return evaluateExpression(new Expression(string), listParam, curParam).isValid();
-        } else {
-            newValue = string.replace("(", ""); //$NON-NLS-1$ //$NON-NLS-2$
-            newValue = newValue.replace(")", ""); //$NON-NLS-1$ //$NON-NLS-2$
+    private boolean isValid(List<? extends IElementParameter> listParam, ElementParameter currentParam) {
+        if (constant != null) {
+            return constant;
         }
-    	
-    	if (Boolean.FALSE.toString().equals(string)) {
-            return false;
+        if (unparsable) {
+            // fails as the expression did before, only when it's evaluated
+            return parseExpression(expressionString).isValid(listParam, currentParam);
         }
-        if (Boolean.TRUE.toString().equals(string)) {
+        if (condition == null) {
+            if (comparison != null) {
+                return comparison.evaluate(expressionString, listParam, currentParam);
+            }
+            return evaluateSimpleExpression(expressionString, listParam, currentParam);
+        }
+        boolean leftValid = leftExpression.isValid(listParam, currentParam);
+        if (AND.equals(condition) && !leftValid) {
+            // if left expression is already false, then needn't continue to validate right expression
+            return false;
+        } else if (OR.equals(condition) && leftValid) {
+            // if left expression is already true, then need't continue to validate right expression
             return true;
         }
-        
-        return evaluateSimpleExpression(newValue, listParam, curParam);
+        return rightExpression.isValid(listParam, currentParam);
     }
 
     protected static boolean isThereCondition(String expression, String condition) {
@@ -1000,16 +1070,17 @@ public final class Expression {
         }
     }
 
-    private static Expression evaluateExpression(Expression expression, List<? extends IElementParameter> listParam,
-            ElementParameter currentParam) {
+    private static Expression parseExpression(String string) {
         int indexBegining = 0, indexEnd;
         int expressionLevel = 0;
-        String string = expression.getExpressionString();
-        boolean conditionFound = false;
+        boolean withCondition = isThereCondition(string, AND) || isThereCondition(string, OR);
+        Expression leftExpression = null;
+        Expression expression = null;
+        String condition = null;
 
         // if there's no braket then there should be only simple expression
         // or only one expression.
-        for (int i = 0; i < string.length() && !conditionFound; i++) {
+        for (int i = 0; i < string.length() && condition == null; i++) {
             if (string.charAt(i) == '(') {
                 if (expressionLevel == 0) {
                     indexBegining = i + 1;
@@ -1020,102 +1091,65 @@ public final class Expression {
                 indexEnd = i;
 
                 if (expressionLevel == 0) {
-                    if (isThereCondition(string, AND) || isThereCondition(string, OR)) {
+                    if (withCondition) {
                         String leftString = string.substring(indexBegining, indexEnd).trim();
                         if (isThereCondition(leftString, AND) || isThereCondition(leftString, OR)) {
-                            Expression leftExpression = new Expression(leftString);
-                            expression.setLeftExpression(leftExpression);
-                            evaluateExpression(leftExpression, listParam, currentParam);
+                            leftExpression = parseExpression(leftString);
                         } else {
-                            Expression leftExpression = new Expression(leftString);
-                            expression.setLeftExpression(leftExpression);
-                            leftExpression.setValid(evaluateSimpleExpression(leftString, listParam, currentParam));
-                            // debug: System.out.println(leftString + " => " +
-                            // leftExpression.isValid());
+                            leftExpression = simple(leftString);
                         }
                     } else {
                         String newValue; // remove brackets
                         newValue = string.replace("(", ""); //$NON-NLS-1$ //$NON-NLS-2$
                         newValue = newValue.replace(")", ""); //$NON-NLS-1$ //$NON-NLS-2$
-                        expression.setExpressionString(newValue);
-                        expression.setValid(evaluateSimpleExpression(newValue, listParam, currentParam));
+                        expression = simple(newValue);
                     }
                 }
             } else if (expressionLevel == 0) {
                 if (string.indexOf(AND, i) == i || string.indexOf(AND.toUpperCase(), i) == i) {
                     String subStr = string.substring(i - 3, i + 5);
                     if (isThereCondition(subStr, AND)) {
-                        expression.setCondition(AND);
-                        conditionFound = true;
+                        condition = AND;
                     }
                 } else if (string.indexOf(OR, i) == i || string.indexOf(OR.toUpperCase(), i) == i) {
                     String subStr = string.substring(i - 3, i + 5);
                     if (isThereCondition(subStr, OR)) {
-                        expression.setCondition(OR);
-                        conditionFound = true;
+                        condition = OR;
                     }
                 }
             }
-            if (conditionFound) {
-                if (expression.getLeftExpression() == null) { // no bracket ==
-                    // evaluate
-                    // expression
-                    String leftString = string.substring(0, i - 1).trim();
-                    Expression leftExpression = new Expression(leftString);
-                    expression.setLeftExpression(leftExpression);
-                    leftExpression.setValid(evaluateSimpleExpression(leftString, listParam, currentParam));
-                    // debug: System.out.println(leftString + " => " +
-                    // leftExpression.isValid());
+            if (condition != null) {
+                if (leftExpression == null) { // no bracket == simple expression
+                    leftExpression = simple(string.substring(0, i - 1).trim());
                 }
 
-                boolean needValidRightExpression = true;
-                if (expression.getCondition().equals(AND) && !expression.getLeftExpression().isValid()) {
-                    // if left expression is already false, then needn't continue to validate right expression
-                    expression.setValid(false);
-                    needValidRightExpression = false;
-                } else if (expression.getCondition().equals(OR) && expression.getLeftExpression().isValid()) {
-                    // if left expression is already true, then need't continue to validate right expression
-                    expression.setValid(true);
-                    needValidRightExpression = false;
-                }
-
-                if (needValidRightExpression) {
-                    String rightString = string.substring(i + 3, string.length()).trim();
-                    Expression rightExpression = new Expression(rightString);
-                    expression.setRightExpression(rightExpression);
-                    if (rightString.contains("(") //$NON-NLS-1$
-                            || isThereCondition(rightString, AND) || isThereCondition(rightString, OR)) {
-                        evaluateExpression(rightExpression, listParam, currentParam);
-                    } else { // no bracket == evaluate expression
-                        rightExpression.setValid(evaluateSimpleExpression(rightString, listParam, currentParam));
-                        // debug: System.out.println(rightString + " => " +
-                        // rightExpression.isValid());
-                    }
-                    if (expression.getCondition().equals(AND)) {
-                        if (expression.getLeftExpression().isValid() && expression.getRightExpression().isValid()) {
-                            expression.setValid(true);
-                        } else {
-                            expression.setValid(false);
-                        }
-                    } else if (expression.getCondition().equals(OR)) {
-                        if (expression.getLeftExpression().isValid() || expression.getRightExpression().isValid()) {
-                            expression.setValid(true);
-                        } else {
-                            expression.setValid(false);
-                        }
+                String rightString = string.substring(i + 3, string.length()).trim();
+                Expression rightExpression;
+                if (rightString.contains("(") //$NON-NLS-1$
+                        || isThereCondition(rightString, AND) || isThereCondition(rightString, OR)) {
+                    try {
+                        rightExpression = parseExpression(rightString);
+                    } catch (RuntimeException e) {
+                        // the right expression is maybe never evaluated as the left one decides
+                        rightExpression = new Expression(rightString);
+                        rightExpression.unparsable = true;
                     }
+                } else { // no bracket == simple expression
+                    rightExpression = simple(rightString);
                 }
+                return condition(condition, leftExpression, rightExpression);
             }
         }
         // if after an expression between bracket there's no other expression,
         // then the validation of the expression
         // will depends on the "left" expression.
-        if (expression.getRightExpression() == null && expression.getLeftExpression() != null) {
-            expression.setValid(expression.getLeftExpression().isValid());
+        if (leftExpression != null) {
+            return leftExpression;
         }
-        // debug: System.out.println(expression.getExpressionString() + " => " +
-        // expression.isValid());
-        return expression;
+        if (expression != null) {
+            return expression;
+        }
+        return constant(false);
     }
 
     /*
@@ -1182,4 +1216,154 @@ public final class Expression {
     	return result;
     }
 
+    /**
+     * A simple expression comparing the value of a parameter, as VAR1 == 'value1'. The parameter is searched at its
+     * index in the last list of parameters first, the lists of the elements of a component have the same order.
+     */
+    private static final class SimpleComparison {
+
+        private final String test;
+
+        private final String variableName;
+
+        private final String variableValue;
+
+        private final Set<String> paramNames;
+
+        private final boolean direct; // the value of the parameter is compared directly, without the other elements
+
+        private volatile int paramIndex = -1;
+
+        private SimpleComparison(String test, String variableName, String variableValue, String[] varNames,
+                boolean direct) {
+            this.test = test;
+            this.variableName = variableName;
+            this.variableValue = variableValue;
+            this.paramNames = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(varNames)));
+            this.direct = direct;
+        }
+
+        /**
+         * @return the comparison read as {@link Expression#evaluateSimpleExpression} does, null if the expression is not
+         * a comparison of a parameter of the element
+         */
+        static SimpleComparison parse(String simpleExpression) {
+            if (simpleExpression.contains(IS_DIJOB) || simpleExpression.contains("SPARK_MODE") //$NON-NLS-1$
+                    || simpleExpression.contains(" IN") || simpleExpression.contains("IS_JOBLET") //$NON-NLS-1$ //$NON-NLS-2$
+                    || simpleExpression.contains("DISTRIB[") || simpleExpression.contains("SPARK_VERSION[") //$NON-NLS-1$ //$NON-NLS-2$
+                    || simpleExpression.contains(IS_CONTEXT) || simpleExpression.contains(CONTAINS)
+                    || simpleExpression.contains(IS_PLUGIN_LOADED) || simpleExpression.contains(isShowPrefix)
+                    || simpleExpression.contains("#")) { //$NON-NLS-1$
+                return null;
+            }
+            String test = null;
+            if (simpleExpression.contains(EQUALS)) {
+                test = EQUALS;
+            } else if (simpleExpression.contains(NOT_EQUALS)) {
+                test = NOT_EQUALS;
+            } else {
+                return null;
+            }
+            String variableName = null, variableValue = null;
+            for (String string2 : simpleExpression.split(test)) {
+                String string = string2.trim();
+                if (string.contains("'")) { // value //$NON-NLS-1$
+                    int end = string.lastIndexOf("'"); //$NON-NLS-1$
+                    if (end < 1) {
+                        return null;
+                    }
+                    variableValue = string.substring(1, end);
+                } else {
+                    variableName = string;
+                }
+            }
+            if (variableName == null || variableValue == null) {
+                return null;
+            }
+            String[] varNames = StringUtils.split(variableName, '.');
+            if (varNames.length == 0) {
+                return null;
+            }
+            boolean direct = varNames.length == 1 && !EParameterName.CURRENT_OS.getName().equals(variableName)
+                    && !"IS_STUDIO_EE_VERSION".equals(variableName) && !"IS_STUDIO_IPAAS_VERSION".equals(variableName) //$NON-NLS-1$ //$NON-NLS-2$
+                    && !"INCOMING_LINK_TYPE".equals(variableName); //$NON-NLS-1$
+            return new SimpleComparison(test, variableName, variableValue, varNames, direct);
+        }
+
+        Set<String> getParamNames() {
+            return paramNames;
+        }
+
+        boolean evaluate(String simpleExpression, List<? extends IElementParameter> listParam, ElementParameter currentParam) {
+            if (!direct) {
+                return evaluateSimpleExpression(simpleExpression, listParam, currentParam);
+            }
+            if (listParam == null) {
+                return false;
+            }
+            IElementParameter param = findParameter(listParam);
+            if (param == null) {
+                return false;
+            }
+            EParameterFieldType fieldType = param.getFieldType();
+            if (EParameterFieldType.TABLE.equals(fieldType) || EParameterFieldType.PROPERTY_TYPE.equals(fieldType)
+                    || EParameterFieldType.SCHEMA_TYPE.equals(fieldType)
+                    || EParameterFieldType.SCHEMA_REFERENCE.equals(fieldType)
+                    || EParameterFieldType.QUERYSTORE_TYPE.equals(fieldType)
+                    || EParameterFieldType.ENCODING_TYPE.equals(fieldType)) {
+                return evaluateSimpleExpression(simpleExpression, listParam, currentParam);
+            }
+
+            boolean found = false;
+            Object value = param.getValue();
+            if (value instanceof Integer) {
+                if ((Integer) value < param.getListItemsValue().length) {
+                    value = param.getListItemsValue()[(Integer) value];
+                }
+            }
+            if (value instanceof String) {
+                if (variableValue.equals(value)) {
+                    found = true;
+                } else if (param.getListItemsValue() instanceof Object[]) {
+                    Object[] values = param.getListItemsValue();
+                    for (int i = 0; i < values.length && !found; i++) {
+                        if (value.equals(values[i])) {
+                            String[] listItemsDisplayCodeName = param.getListItemsDisplayCodeName();
+                            if (listItemsDisplayCodeName != null) {
+                                String variableCode = listItemsDisplayCodeName[i];
+                                if (variableCode.equals(variableValue)) {
+                                    found = true;
+                                }
+                            }
+                        }
+                    }
+                }
+            } else if (value instanceof Boolean) {
+                if (Boolean.valueOf(variableValue).equals(value)) {
+                    found = true;
+                }
+            }
+            return found ? EQUALS.equals(test) : NOT_EQUALS.equals(test);
+        }
+
+        private IElementParameter findParameter(List<? extends IElementParameter> listParam) {
+            int index = paramIndex;
+            if (index >= 0 && index < listParam.size() && listParam instanceof RandomAccess) {
+                IElementParameter param = listParam.get(index);
+                if (variableName.equals(param.getName())) {
+                    return param;
+                }
+            }
+            index = 0;
+            for (Iterator<? extends IElementParameter> iterator = listParam.iterator(); iterator.hasNext(); index++) {
+                IElementParameter param = iterator.next();
+                if (variableName.equals(param.getName())) {
+                    paramIndex = index;
+                    return param;
+                }
+            }
+            return null;
+        }
+    }
+
 }
@@ -612,12 +612,12 @@ public class PropertyChangeCommand extends Command {
             String notShowIf = testedParam.getNotShowIf();
 
             if (showIf != null) {
-                if (showIf.contains(currentParam.getName())) {
+                if (Expression.isDependentOn(showIf, currentParam.getName())) {
                     toUpdate = true;
                 }
             } else {
                 if (notShowIf != null) {
-                    if (notShowIf.contains(currentParam.getName())) {
+                    if (Expression.isDependentOn(notShowIf, currentParam.getName())) {
                         toUpdate = true;
                     }
                 }
@@ -625,7 +625,7 @@ public class PropertyChangeCommand extends Command {
             String[] listItemsShowIf = testedParam.getListItemsShowIf();
             if (listItemsShowIf != null && listItemsShowIf.length > 0) {
                 for (String itemShowIf : listItemsShowIf) {
-                    if (itemShowIf != null && itemShowIf.contains(currentParam.getName())) {
+                    if (itemShowIf != null && Expression.isDependentOn(itemShowIf, currentParam.getName())) {
                         toUpdate = true;
                         break;
                     }
@@ -634,7 +634,7 @@ public class PropertyChangeCommand extends Command {
             String[] listItemsNotShowIf = testedParam.getListItemsNotShowIf();
             if (listItemsNotShowIf != null && listItemsNotShowIf.length > 0) {
                 for (String itemNotShowIf : listItemsNotShowIf) {
-                    if (itemNotShowIf != null && itemNotShowIf.contains(currentParam.getName())) {
+                    if (itemNotShowIf != null && Expression.isDependentOn(itemNotShowIf, currentParam.getName())) {
                         toUpdate = true;
                         break;
                     }
@@ -644,7 +644,7 @@ public class PropertyChangeCommand extends Command {
                 String[] tmpShowIfs = testedParam.getListItemsShowIf();
                 if (tmpShowIfs != null) {
                     for (String show : tmpShowIfs) {
-                        if (show != null && show.contains(currentParam.getName())) {
+                        if (show != null && Expression.isDependentOn(show, currentParam.getName())) {
                             toUpdate = true;
                         }
                     }
@@ -652,7 +652,7 @@ public class PropertyChangeCommand extends Command {
                 tmpShowIfs = testedParam.getListItemsNotShowIf();
                 if (tmpShowIfs != null) {
                     for (String show : tmpShowIfs) {
-                        if (show != null && show.contains(currentParam.getName())) {
+                        if (show != null && Expression.isDependentOn(show, currentParam.getName())) {
                             toUpdate = true;
                         }
                     }
@@ -673,12 +673,12 @@ public class PropertyChangeCommand extends Command {
                         showIf = testedParam.getListItemsShowIf()[j];
                         notShowIf = testedParam.getListItemsNotShowIf()[j];
                         if (showIf != null) {
-                            if (showIf.contains(currentParam.getName())) {
+                            if (Expression.isDependentOn(showIf, currentParam.getName())) {
                                 toUpdate = true;
                             }
                         } else {
                             if (notShowIf != null) {
-                                if (notShowIf.contains(currentParam.getName())) {
+                                if (Expression.isDependentOn(notShowIf, currentParam.getName())) {
                                     toUpdate = true;
                                 }
                             }
@@ -731,13 +731,13 @@ public class PropertyChangeCommand extends Command {
         // zli
         for (IElementParameterDefaultValue value : testedParam.getDefaultValues()) {
             if (value.getIfCondition() != null) {
-                if (value.getIfCondition().contains(currentParam.getName())) {
+                if (Expression.isDependentOn(value.getIfCondition(), currentParam.getName())) {
                     contains = true;
                     break;
                 }
             }
             if (value.getNotIfCondition() != null) {
-                if (value.getNotIfCondition().contains(currentParam.getName())) {
+                if (Expression.isDependentOn(value.getNotIfCondition(), currentParam.getName())) {
                     contains = true;
                     break;
                 }
@@ -768,7 +768,7 @@ public class PropertyChangeCommand extends Command {
             }
             if (!isCurrentComboValid && testedParam.getListItemsShowIf() != null) {
                 for (String condition : testedParam.getListItemsShowIf()) {
-                    if (condition != null && condition.contains(currentParam.getName())) {
+                    if (condition != null && Expression.isDependentOn(condition, currentParam.getName())) {
                         boolean isValid = Expression.evaluate(condition, elementParameters);
                         if (isValid) {
                             int index = ArrayUtils.indexOf(testedParam.getListItemsShowIf(), condition);
@@ -781,7 +781,7 @@ public class PropertyChangeCommand extends Command {
             }
             if (!isCurrentComboValid && !contains && testedParam.getListItemsNotShowIf() != null) {
                 for (String condition : testedParam.getListItemsNotShowIf()) {
-                    if (condition != null && condition.contains(currentParam.getName())) {
+                    if (condition != null && Expression.isDependentOn(condition, currentParam.getName())) {
                         boolean isValid = !Expression.evaluate(condition, elementParameters);
                         if (isValid) {
                             int index = ArrayUtils.indexOf(testedParam.getListItemsNotShowIf(), condition);
@@ -75,7 +75,7 @@ public final class UpdateParameterUtils {
                 }
                 if (!isCurrentComboValid && testedParam.getListItemsShowIf() != null) {
                     for (String condition : testedParam.getListItemsShowIf()) {
-                        if (condition != null && condition.contains(currentParam.getName())) {
+                        if (condition != null && Expression.isDependentOn(condition, currentParam.getName())) {
                             boolean isValid = Expression.evaluate(condition, elementParameters);
                             if (isValid) {
                                 int index = ArrayUtils.indexOf(testedParam.getListItemsShowIf(), condition);
@@ -88,7 +88,7 @@ public final class UpdateParameterUtils {
                 }
                 if (!isCurrentComboValid && !contains && testedParam.getListItemsNotShowIf() != null) {
                     for (String condition : testedParam.getListItemsNotShowIf()) {
-                        if (condition != null && condition.contains(currentParam.getName())) {
+                        if (condition != null && Expression.isDependentOn(condition, currentParam.getName())) {
                             boolean isValid = !Expression.evaluate(condition, elementParameters);
                             if (isValid) {
                                 int index = ArrayUtils.indexOf(testedParam.getListItemsNotShowIf(), condition);
@@ -26,6 +26,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -1163,10 +1164,14 @@ public class RunProcessContext {
      */
     public class PerformanceMonitor implements Runnable {
 
+        private static final int MAX_UPDATES = 1000;
+
         private volatile boolean stopThread;
 
         private String lastData;
 
+        private String preData;
+
         private Set<IPerformance> performanceDataSet = new HashSet<IPerformance>();
 
         public PerformanceMonitor() {
@@ -1202,59 +1207,9 @@ public class RunProcessContext {
                 }
             } while (processSocket == null && !stopThread);
 
-            String preData = null;
             if (processSocket != null && !stopThread) {
                 try {
-                    InputStream in = processSocket.getInputStream();
-                    LineNumberReader reader = new LineNumberReader(new InputStreamReader(in));
-                    while (!stopThread) {
-                        String line = reader.readLine();
-                        showMapReduceData(line);
-                        showSparkStreamingData(line);
-                        if (LanguageManager.getCurrentLanguage() == ECodeLanguage.JAVA) {
-                            if (line != null) {
-                                if (line.startsWith("0")) { //$NON-NLS-1$
-                                    if (isEndData(line)) {
-                                        lastData = preData;
-                                    }
-                                    // 0 = job information
-                                    // 1 = connection information
-                                    continue;
-                                }
-                                String[] infos = line.split("\\|"); //$NON-NLS-1$
-                                if (infos.length < 5 || !infos[1].equals(infos[2]) || !infos[1].equals(infos[3])) {
-                                    // we only take actually informations for the main jobs, other informations won't be
-                                    // used.
-                                    continue;
-                                }
-
-                                // "0|GnqOsQ|GnqOsQ|GnqOsQ|iterate1|exec1" -->"iterate1|exec1"
-                                if (line.trim().length() > 22) {
-                                    String temp = line.substring(line.indexOf("|") + 1); // remove the 0| //$NON-NLS-1$
-                                    temp = temp.substring(temp.indexOf("|") + 1); // remove the first //$NON-NLS-1$
-                                                                                  // GnqOsQ|
-                                    temp = temp.substring(temp.indexOf("|") + 1); // remove the second //$NON-NLS-1$
-                                                                                  // GnqOsQ|
-                                    temp = temp.substring(temp.indexOf("|") + 1); // remove the third //$NON-NLS-1$
-                                                                                  // GnqOsQ|
-                                    line = temp;
-                                }
-                            }
-                        }
-                        preData = line;
-                        final String data = line;
-                        if (data == null) {
-                            stopThread = true;
-                        } else {
-                            final PerformanceData perfData = new PerformanceData(data);
-                            String connectionId = perfData.getConnectionId();
-                            // handle connectionId as row1.1 and row1
-                            connectionId = connectionId.split("\\.")[0]; //$NON-NLS-1$
-                            final IConnection conn = traceConnectionsManager.finConnectionByUniqueName(connectionId);
-
-                            processPerformances(data, perfData, conn);
-                        }
-                    }
+                    readTextStatistics(processSocket.getInputStream());
                 } catch (Exception e) {
                     // Do nothing : process is ended
                 } finally {
@@ -1267,49 +1222,170 @@ public class RunProcessContext {
             }
         }
 
+        /**
+         * Reads the statistics line by line, the lines already received are shown together.
+         */
+        private void readTextStatistics(InputStream in) throws IOException {
+            LineNumberReader reader = new LineNumberReader(new InputStreamReader(in));
+            List<PerformanceUpdate> updates = new ArrayList<PerformanceUpdate>();
+            try {
+                while (!stopThread) {
+                    if (!updates.isEmpty() && (updates.size() >= MAX_UPDATES || !reader.ready())) {
+                        showPerformances(updates);
+                        updates.clear();
+                    }
+                    String line = reader.readLine();
+                    if (line == null) {
+                        stopThread = true;
+                    } else {
+                        String data = getPerformanceData(line);
+                        if (data != null) {
+                            addPerformances(updates, data);
+                        }
+                    }
+                }
+            } finally {
+                showPerformances(updates);
+            }
+        }
+
+        /**
+         * @param line a line of the statistics
+         * @return the data of the connection, as "row1|nbLine|duration", or null if the line is not the statistics of a
+         * connection of the main job
+         */
+        private String getPerformanceData(String line) {
+            showMapReduceData(line);
+            showSparkStreamingData(line);
+            if (LanguageManager.getCurrentLanguage() == ECodeLanguage.JAVA) {
+                if (line.startsWith("0")) { //$NON-NLS-1$
+                    if (isEndData(line)) {
+                        lastData = preData;
+                    }
+                    // 0 = job information
+                    // 1 = connection information
+                    return null;
+                }
+                // "1|GnqOsQ|GnqOsQ|GnqOsQ|row1|..." : the pids of the root, father and current jobs
+                int first = line.indexOf('|');
+                int second = first < 0 ? -1 : line.indexOf('|', first + 1);
+                int third = second < 0 ? -1 : line.indexOf('|', second + 1);
+                int fourth = third < 0 ? -1 : line.indexOf('|', third + 1);
+                if (fourth < 0 || !hasValue(line, fourth + 1) || !isSameValue(line, first, second, third)
+                        || !isSameValue(line, second, third, fourth)) {
+                    // we only take actually informations for the main jobs, other informations won't be
+                    // used.
+                    return null;
+                }
+
+                // "0|GnqOsQ|GnqOsQ|GnqOsQ|iterate1|exec1" -->"iterate1|exec1"
+                if (line.trim().length() > 22) {
+                    line = line.substring(fourth + 1);
+                }
+            }
+            preData = line;
+            return line;
+        }
+
+        private boolean hasValue(String line, int from) {
+            for (int i = from; i < line.length(); i++) {
+                if (line.charAt(i) != '|') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isSameValue(String line, int begin1, int begin2, int end2) {
+            int length = end2 - begin2 - 1;
+            return begin2 - begin1 - 1 == length && line.regionMatches(begin1 + 1, line, begin2 + 1, length);
+        }
+
+        private void addPerformances(List<PerformanceUpdate> updates, String data) {
+            PerformanceData perfData = new PerformanceData(data);
+            String connectionId = perfData.getConnectionId();
+            // handle connectionId as row1.1 and row1
+            int dot = connectionId.indexOf('.');
+            if (dot >= 0) {
+                connectionId = connectionId.substring(0, dot);
+            }
+            IConnection conn = traceConnectionsManager.finConnectionByUniqueName(connectionId);
+            addPerformances(updates, data, perfData, conn);
+        }
+
         protected void processPerformances(final String data, final PerformanceData perfData, final IConnection conn) {
+            List<PerformanceUpdate> updates = new ArrayList<PerformanceUpdate>(1);
+            addPerformances(updates, data, perfData, conn);
+            showPerformances(updates);
+        }
+
+        private void addPerformances(List<PerformanceUpdate> updates, String data, PerformanceData perfData,
+                IConnection conn) {
             if (conn == null) {
                 return;
             }
-            processPerformanceForConnection(data, perfData, conn);
+            addPerformanceForConnection(updates, data, perfData, conn);
             String uniqueName = ConnectionUtil.getConnectionUnifiedName(conn);
             IConnection[] shadowConnections = traceConnectionsManager.getShadowConnenctions(uniqueName);
             if (shadowConnections != null) {
                 for (IConnection shadowConn : shadowConnections) {
-                    processPerformanceForConnection(data, perfData, shadowConn);
+                    addPerformanceForConnection(updates, data, perfData, shadowConn);
                 }
             }
         }
 
-        private void processPerformanceForConnection(final String data, final PerformanceData perfData,
-                final IConnection conn) {
+        private void addPerformanceForConnection(List<PerformanceUpdate> updates, String data, PerformanceData perfData,
+                IConnection conn) {
             if (conn != null && conn instanceof IPerformance) {
-                final IPerformance performance = (IPerformance) conn;
+                IPerformance performance = (IPerformance) conn;
                 if (!performanceDataSet.contains(performance)) {
                     performance.resetStatus();
                 }
                 performanceDataSet.add(performance);
+                updates.add(new PerformanceUpdate(performance, data, perfData));
+            }
+        }
 
-                Display.getDefault().asyncExec(new Runnable() {
+        /**
+         * Shows the updates in a single call to the display, only the last data of a connection is shown when there's
+         * no clear command after it.
+         */
+        private void showPerformances(List<PerformanceUpdate> updates) {
+            if (updates.isEmpty()) {
+                return;
+            }
+            final List<PerformanceUpdate> toShow = new ArrayList<PerformanceUpdate>(updates.size());
+            Set<IPerformance> shown = new HashSet<IPerformance>();
+            for (int i = updates.size() - 1; i >= 0; i--) {
+                PerformanceUpdate update = updates.get(i);
+                if (update.perfData.isClearCommand()) {
+                    shown.remove(update.performance);
+                } else if (!shown.add(update.performance) && !update.data.equals(lastData)) {
+                    continue;
+                }
+                toShow.add(update);
+            }
+            Collections.reverse(toShow);
 
-                    @Override
-                    public void run() {
-                        if (data != null) {
-                            if (perfData.isClearCommand()) {
-                                performance.clearPerformanceDataOnUI();
-                            } else {
-                                performance.setPerformanceData(data);
-                            }
-                            // clear status when run to the last data.
-                            if (data.equals(lastData)) {
-                                for (IPerformance p : performanceDataSet) {
-                                    p.resetStatus();
-                                }
+            Display.getDefault().asyncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (PerformanceUpdate update : toShow) {
+                        if (update.perfData.isClearCommand()) {
+                            update.performance.clearPerformanceDataOnUI();
+                        } else {
+                            update.performance.setPerformanceData(update.data);
+                        }
+                        // clear status when run to the last data.
+                        if (update.data.equals(lastData)) {
+                            for (IPerformance p : performanceDataSet) {
+                                p.resetStatus();
                             }
                         }
                     }
-                });
-            }
+                }
+            });
         }
 
         public void stopThread() {
@@ -1321,6 +1397,24 @@ public class RunProcessContext {
 
     }
 
+    /**
+     * Data of a connection to show.
+     */
+    private static final class PerformanceUpdate {
+
+        private final IPerformance performance;
+
+        private final String data;
+
+        private final PerformanceData perfData;
+
+        PerformanceUpdate(IPerformance performance, String data, PerformanceData perfData) {
+            this.performance = performance;
+            this.data = data;
+            this.perfData = perfData;
+        }
+    }
+
     /**
      * JMX Performance Monitor for ESB Route running in ESB Runtime
      */
@@ -0,0 +1,162 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.codegen.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talend.core.model.components.IComponent;
+import org.talend.core.model.process.EParameterFieldType;
+import org.talend.core.model.process.IElementParameter;
+import org.talend.core.model.process.INode;
+import org.talend.core.model.process.IProcess;
+
+public class SubTreeCodeCacheTest {
+
+    private static final int MEGA = 1024 * 1024;
+
+    @Before
+    public void setUp() {
+        SubTreeCodeCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        SubTreeCodeCache.clear();
+    }
+
+    private static String code(int length, char c) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static IElementParameter parameter(String name, Object value, EParameterFieldType fieldType) {
+        IElementParameter parameter = mock(IElementParameter.class);
+        when(parameter.getName()).thenReturn(name);
+        when(parameter.getValue()).thenReturn(value);
+        when(parameter.getFieldType()).thenReturn(fieldType);
+        return parameter;
+    }
+
+    private static INode node(String uniqueName, IElementParameter... parameters) {
+        IComponent component = mock(IComponent.class);
+        when(component.getName()).thenReturn(uniqueName.substring(0, uniqueName.lastIndexOf('_')));
+        when(component.getVersion()).thenReturn("0.102");
+        INode node = mock(INode.class);
+        when(node.getUniqueName()).thenReturn(uniqueName);
+        when(node.getComponent()).thenReturn(component);
+        when(node.isActivate()).thenReturn(true);
+        doReturn(Arrays.asList(parameters)).when(node).getElementParameters();
+        return node;
+    }
+
+    private static IProcess process(INode... nodes) {
+        IProcess process = mock(IProcess.class);
+        doReturn(Collections.singletonList(parameter("JOB_NAME", "job", EParameterFieldType.TEXT))).when(process)
+                .getElementParameters();
+        doReturn(Arrays.asList(nodes)).when(process).getGeneratingNodes();
+        return process;
+    }
+
+    private static NodesSubTree subTree(INode... nodes) {
+        NodesSubTree subTree = mock(NodesSubTree.class);
+        when(subTree.getName()).thenReturn(nodes[0].getUniqueName());
+        when(subTree.getRootNode()).thenReturn(nodes[0]);
+        when(subTree.getNodes()).thenReturn(new ArrayList<INode>(Arrays.asList(nodes)));
+        return subTree;
+    }
+
+    /**
+     * A subjob tFileInputDelimited_1 -> tLogRow_1, whose tLogRow_1 reads tFileOutputDelimited_1 of another subjob.
+     */
+    private static String key(String settings, String fileName, String logMode, String otherFileName) {
+        INode input = node("tFileInputDelimited_1", parameter("FILENAME", fileName, EParameterFieldType.FILE));
+        INode log = node("tLogRow_1", parameter("BASIC_MODE", logMode, EParameterFieldType.CHECK),
+                parameter("OTHER", "tFileOutputDelimited_1", EParameterFieldType.COMPONENT_LIST));
+        INode other = node("tFileOutputDelimited_1", parameter("FILENAME", otherFileName, EParameterFieldType.FILE));
+        INode unrelated = node("tJava_1", parameter("CODE", otherFileName, EParameterFieldType.MEMO_JAVA));
+        return SubTreeCodeCache.computeKey(settings, process(input, log, other, unrelated), subTree(input, log));
+    }
+
+    @Test
+    public void testKeyOfSameSubjob() {
+        String key = key("stats=false", "in.csv", "true", "out.csv");
+        assertEquals(32, key.length());
+        // the key is computed from the values, not from the instances
+        assertEquals(key, key("stats=false", "in.csv", "true", "out.csv"));
+    }
+
+    @Test
+    public void testKeyChangesWithWhatTheTemplatesRead() {
+        String key = key("stats=false", "in.csv", "true", "out.csv");
+        assertNotEquals(key, key("stats=true", "in.csv", "true", "out.csv"));
+        assertNotEquals(key, key("stats=false", "other.csv", "true", "out.csv"));
+        assertNotEquals(key, key("stats=false", "in.csv", "false", "out.csv"));
+        // the node selected in a component list of the subjob
+        assertNotEquals(key, key("stats=false", "in.csv", "true", "other.csv"));
+    }
+
+    @Test
+    public void testKeyIgnoresTheOtherSubjobs() {
+        INode input = node("tFileInputDelimited_1", parameter("FILENAME", "in.csv", EParameterFieldType.FILE));
+        INode java1 = node("tJava_1", parameter("CODE", "a", EParameterFieldType.MEMO_JAVA));
+        INode java2 = node("tJava_1", parameter("CODE", "b", EParameterFieldType.MEMO_JAVA));
+        assertEquals(SubTreeCodeCache.computeKey("", process(input, java1), subTree(input)),
+                SubTreeCodeCache.computeKey("", process(input, java2), subTree(input)));
+    }
+
+    @Test
+    public void testGetPutAndClear() {
+        assertNull(SubTreeCodeCache.get("a"));
+        SubTreeCodeCache.put("a", "code a");
+        assertEquals("code a", SubTreeCodeCache.get("a"));
+        SubTreeCodeCache.put("a", "code a2");
+        assertEquals("code a2", SubTreeCodeCache.get("a"));
+        SubTreeCodeCache.clear();
+        assertNull(SubTreeCodeCache.get("a"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedCodeEvicted() {
+        // 4 codes of 7M chars are under the limit of 32M chars
+        for (String key : new String[] { "a", "b", "c", "d" }) {
+            SubTreeCodeCache.put(key, code(7 * MEGA, key.charAt(0)));
+        }
+        SubTreeCodeCache.get("a");
+        SubTreeCodeCache.put("e", code(7 * MEGA, 'e'));
+        assertNull(SubTreeCodeCache.get("b"));
+        for (String key : new String[] { "a", "c", "d", "e" }) {
+            assertEquals(7 * MEGA, SubTreeCodeCache.get(key).length());
+        }
+    }
+
+    @Test
+    public void testLargeCodeNotCached() {
+        SubTreeCodeCache.put("small", "code");
+        SubTreeCodeCache.put("large", code(8 * MEGA + 1, 'x'));
+        assertNull(SubTreeCodeCache.get("large"));
+        assertEquals("code", SubTreeCodeCache.get("small"));
+    }
+}
@@ -0,0 +1,142 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.codegen.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplateContentHashTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("TemplateContentHashTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(folder);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private String write(String path, String content) throws IOException {
+        File file = new File(folder, path);
+        file.getParentFile().mkdirs();
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            output.close();
+        }
+        return file.getPath();
+    }
+
+    /**
+     * A template with a skeleton, which includes a file which includes another one.
+     */
+    private String writeTemplate() throws IOException {
+        write("tTest_java.skeleton", "skeleton");
+        write("include/first.javajet", "<%@ include file=\"second.javajet\" %>\nfirst");
+        write("include/second.javajet", "second");
+        return write("tTest_begin.javajet", "<%@ jet\n imports=\"java.util.List\"\n skeleton=\"tTest_java.skeleton\"\n"
+                + "%>\n<%@ include file=\"include/first.javajet\"%>\nbegin");
+    }
+
+    @Test
+    public void testSameContentSameHash() throws IOException {
+        String template = writeTemplate();
+        long hash = new TemplateContentHash().computeHash(template);
+        assertNotEquals(0, hash);
+        assertEquals(hash, new TemplateContentHash().computeHash(template));
+    }
+
+    @Test
+    public void testReferencedFilesChangeTheHash() throws IOException {
+        String template = writeTemplate();
+        long hash = new TemplateContentHash().computeHash(template);
+
+        // an include of an include
+        write("include/second.javajet", "second changed");
+        long includeHash = new TemplateContentHash().computeHash(template);
+        assertNotEquals(hash, includeHash);
+
+        // the skeleton of the jet directive
+        write("tTest_java.skeleton", "skeleton changed");
+        long skeletonHash = new TemplateContentHash().computeHash(template);
+        assertNotEquals(includeHash, skeletonHash);
+        assertNotEquals(hash, skeletonHash);
+    }
+
+    @Test
+    public void testFilesReadOncePerInstance() throws IOException {
+        String template = writeTemplate();
+        TemplateContentHash contentHash = new TemplateContentHash();
+        long hash = contentHash.computeHash(template);
+        write("include/second.javajet", "second changed");
+        // the instance keeps the content read for the first template
+        assertEquals(hash, contentHash.computeHash(template));
+        assertNotEquals(hash, new TemplateContentHash().computeHash(template));
+    }
+
+    @Test
+    public void testCyclicIncludes() throws IOException {
+        write("b.javajet", "<%@ include file=\"a.javajet\"%>");
+        String template = write("a.javajet", "<%@ include file=\"b.javajet\"%><%@ include file=\"a.javajet\"%>");
+        assertNotEquals(0, new TemplateContentHash().computeHash(template));
+    }
+
+    @Test
+    public void testMissingFiles() throws IOException {
+        assertEquals(0, new TemplateContentHash().computeHash(new File(folder, "missing.javajet").getPath()));
+
+        String template = write("a.javajet", "<%@ include file=\"b.javajet\"%>");
+        long missingIncludeHash = new TemplateContentHash().computeHash(template);
+        // the missing include is reported by the compilation of the template, it still has a hash
+        assertNotEquals(0, missingIncludeHash);
+        write("b.javajet", "b");
+        long hash = new TemplateContentHash().computeHash(template);
+        assertNotEquals(missingIncludeHash, hash);
+    }
+
+    @Test
+    public void testOnlyDirectivesAreReferences() throws IOException {
+        write("b.javajet", "b");
+        // a file attribute out of a directive is a part of the generated code
+        String template = write("a.javajet", "String s = \"<% file=\\\"b.javajet\\\" %>\";");
+        long hash = new TemplateContentHash().computeHash(template);
+        write("b.javajet", "b changed");
+        assertEquals(hash, new TemplateContentHash().computeHash(template));
+    }
+}
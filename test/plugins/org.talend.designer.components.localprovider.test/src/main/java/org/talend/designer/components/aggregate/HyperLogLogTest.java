@@ -0,0 +1,91 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.aggregate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testSmallCardinalitiesAreExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.cardinality());
+        for (int i = 0; i < 3; i++) {
+            for (int value = 0; value < 100; value++) {
+                sketch.offer("value" + value);
+            }
+        }
+        assertEquals(100, sketch.cardinality());
+    }
+
+    @Test
+    public void testLargeCardinalityWithinError() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 1000000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.offer((long) i);
+            sketch.offer((long) i);
+        }
+        // the standard error is 0.8% with the default precision
+        double error = Math.abs(sketch.cardinality() - distinct) / (double) distinct;
+        assertTrue("error " + error, error < 0.03d);
+    }
+
+    @Test
+    public void testLowPrecision() {
+        HyperLogLog sketch = new HyperLogLog(HyperLogLog.MIN_PRECISION);
+        for (int i = 0; i < 10000; i++) {
+            sketch.offer(i * 0.5d);
+        }
+        double error = Math.abs(sketch.cardinality() - 10000) / 10000d;
+        assertTrue("error " + error, error < 0.8d);
+    }
+
+    @Test
+    public void testEqualValuesHaveSameHash() {
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.offer(0d);
+        sketch.offer(-0d);
+        sketch.offer(new StringBuilder("a").toString());
+        sketch.offer("a");
+        sketch.offer(new BigDecimal("1.50"));
+        sketch.offer(new BigDecimal("1.50"));
+        sketch.offer((Object) null);
+        sketch.offer((Object) null);
+        sketch.offer(true);
+        sketch.offer(true);
+        assertEquals(5, sketch.cardinality());
+    }
+
+    @Test
+    public void testClear() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100000; i++) {
+            sketch.offer((long) i);
+        }
+        sketch.clear();
+        assertEquals(0, sketch.cardinality());
+        sketch.offer("value");
+        assertEquals(1, sketch.cardinality());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrecision() {
+        new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+    }
+}
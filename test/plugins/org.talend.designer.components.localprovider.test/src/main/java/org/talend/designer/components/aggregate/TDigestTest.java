@@ -0,0 +1,85 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.aggregate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TDigestTest {
+
+    @Test
+    public void testUniformQuantiles() {
+        TDigest digest = new TDigest();
+        Random random = new Random(42);
+        int size = 100000;
+        for (int i = 0; i < size; i++) {
+            digest.add(random.nextDouble());
+        }
+        assertEquals(size, digest.size());
+        assertEquals(0.5d, digest.quantile(0.5d), 0.01d);
+        assertEquals(0.1d, digest.quantile(0.1d), 0.01d);
+        // the extreme quantiles are the most accurate
+        assertEquals(0.99d, digest.quantile(0.99d), 0.002d);
+        assertEquals(0.001d, digest.quantile(0.001d), 0.001d);
+    }
+
+    @Test
+    public void testExtremes() {
+        TDigest digest = new TDigest();
+        for (int i = 1000; i >= 1; i--) {
+            digest.add(i);
+        }
+        assertEquals(1d, digest.quantile(0d), 0d);
+        assertEquals(1000d, digest.quantile(1d), 0d);
+        assertEquals(500.5d, digest.quantile(0.5d), 5d);
+    }
+
+    @Test
+    public void testSmallGroups() {
+        TDigest digest = new TDigest();
+        assertTrue(Double.isNaN(digest.quantile(0.5d)));
+        digest.add(3d);
+        assertEquals(3d, digest.quantile(0.5d), 0d);
+        digest.add((Number) null);
+        digest.add(Integer.valueOf(5));
+        assertEquals(2, digest.size());
+        assertEquals(4d, digest.quantile(0.5d), 0.001d);
+    }
+
+    @Test
+    public void testClear() {
+        TDigest digest = new TDigest();
+        for (int i = 0; i < 10000; i++) {
+            digest.add(i);
+        }
+        digest.clear();
+        assertEquals(0, digest.size());
+        assertTrue(Double.isNaN(digest.quantile(0.5d)));
+        digest.add(7d);
+        assertEquals(7d, digest.quantile(0.9d), 0d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidQuantile() {
+        new TDigest().quantile(1.5d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCompression() {
+        new TDigest(5d);
+    }
+}
@@ -0,0 +1,198 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.fuzzy;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LevenshteinIndexTest {
+
+    private static final int[][] BOUNDS = { { 0, 0 }, { 0, 1 }, { 1, 1 }, { 1, 2 }, { 0, 3 }, { 2, 4 }, { 0, 100 },
+            { 3, 1 }, { 0, -1 } };
+
+    private static int distance(String s, String t) {
+        int[][] d = new int[s.length() + 1][t.length() + 1];
+        for (int i = 0; i <= s.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= t.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s.length(); i++) {
+            for (int j = 1; j <= t.length(); j++) {
+                int cost = s.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s.length()][t.length()];
+    }
+
+    /**
+     * The scan of all the values done by tFuzzyMatch without index.
+     */
+    private static List<String> scan(List<String> values, String key, int min, int max, boolean unique) {
+        List<String> matches = new ArrayList<String>();
+        int closest = -1;
+        for (String value : values) {
+            int distance = distance(key, value);
+            if (min <= distance && distance <= max) {
+                if (!unique) {
+                    matches.add(value + "=" + distance);
+                } else if (closest == -1 || distance < closest) {
+                    closest = distance;
+                    matches.clear();
+                    matches.add(value + "=" + distance);
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static List<String> search(LevenshteinIndex index, String key, int min, int max, boolean unique)
+            throws InterruptedException {
+        LevenshteinIndex.Matches matches = index.search(key, min, max, unique);
+        List<String> found = new ArrayList<String>();
+        for (int i = 0; i < matches.size(); i++) {
+            found.add(matches.getValue(i) + "=" + matches.getDistance(i));
+        }
+        return found;
+    }
+
+    private static String randomValue(Random random) {
+        // a small alphabet, many values are close to each other
+        char[] chars = new char[random.nextInt(9)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "abcd".charAt(random.nextInt(4));
+        }
+        return new String(chars);
+    }
+
+    private static void assertSameAsScan(List<String> values, List<String> keys, int threads, int qGramSize)
+            throws InterruptedException {
+        LevenshteinIndex index = new LevenshteinIndex();
+        index.setThreads(threads);
+        index.setQGramSize(qGramSize);
+        for (String value : values) {
+            index.add(value, value);
+        }
+        index.build();
+        try {
+            assertEquals(values.size(), index.size());
+            for (String key : keys) {
+                for (int[] bounds : BOUNDS) {
+                    for (boolean unique : new boolean[] { false, true }) {
+                        String message = "'" + key + "' [" + bounds[0] + ", " + bounds[1] + "]"
+                                + (unique ? " unique" : "") + ", " + threads + " threads, q-grams " + qGramSize;
+                        assertEquals(message, scan(values, key, bounds[0], bounds[1], unique),
+                                search(index, key, bounds[0], bounds[1], unique));
+                    }
+                }
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testSameAsScan() throws InterruptedException {
+        Random random = new Random(42);
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < 400; i++) {
+            values.add(randomValue(random));
+        }
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 30; i++) {
+            keys.add(randomValue(random));
+        }
+        // longer values, the q-gram filter is used
+        for (int i = 0; i < 100; i++) {
+            values.add(randomValue(random) + randomValue(random) + randomValue(random));
+        }
+        for (int i = 0; i < 20; i++) {
+            keys.add(randomValue(random) + randomValue(random) + randomValue(random));
+        }
+        for (int threads : new int[] { 1, 3 }) {
+            for (int qGramSize : new int[] { 0, 1, 2, 3 }) {
+                assertSameAsScan(values, keys, threads, qGramSize);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyAndNullValues() throws InterruptedException {
+        List<String> values = new ArrayList<String>();
+        // tFuzzyMatch searches "" + value, a null value is "null"
+        for (String value : new String[] { "", "null", "nul", "", "a", "null", "nulls", "ab" }) {
+            values.add(value);
+        }
+        List<String> keys = new ArrayList<String>();
+        for (String key : new String[] { "", "null", "a", "nu", "xyz" }) {
+            keys.add(key);
+        }
+        for (int threads : new int[] { 1, 2, 4, 20 }) {
+            for (int qGramSize : new int[] { 0, 2 }) {
+                assertSameAsScan(values, keys, threads, qGramSize);
+            }
+        }
+    }
+
+    @Test
+    public void testDuplicateValues() throws InterruptedException {
+        // the same value several times, the BK-tree nodes at distance 0
+        List<String> values = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            values.add(i % 3 == 0 ? "smith" : i % 3 == 1 ? "smyth" : "smithe");
+        }
+        List<String> keys = new ArrayList<String>();
+        keys.add("smith");
+        keys.add("smit");
+        for (int threads : new int[] { 1, 3 }) {
+            for (int qGramSize : new int[] { 0, 2 }) {
+                assertSameAsScan(values, keys, threads, qGramSize);
+            }
+        }
+    }
+
+    @Test
+    public void testNoValue() throws InterruptedException {
+        List<String> keys = new ArrayList<String>();
+        keys.add("");
+        keys.add("abc");
+        assertSameAsScan(new ArrayList<String>(), keys, 1, 0);
+        assertSameAsScan(new ArrayList<String>(), keys, 4, 2);
+    }
+
+    @Test
+    public void testReturnedValueNotKey() throws InterruptedException {
+        // the keys are lower cased when the matching is not case sensitive, the values are returned as they are
+        LevenshteinIndex index = new LevenshteinIndex();
+        index.add("smith", "Smith");
+        index.add("smyth", "SMYTH");
+        index.build();
+        try {
+            LevenshteinIndex.Matches matches = index.search("smith", 0, 1, false);
+            assertEquals(2, matches.size());
+            assertEquals("Smith", matches.getValue(0));
+            assertEquals(0, matches.getDistance(0));
+            assertEquals("SMYTH", matches.getValue(1));
+            assertEquals(1, matches.getDistance(1));
+        } finally {
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.memory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.talend.designer.components.persistent.IRowCreator;
+
+import routines.system.IPersistableComparableLookupRow;
+
+/**
+ * Lookup row with the key id and the value name, written as a generated row struct of a tMap lookup.
+ */
+public class LookupTestRow implements IPersistableComparableLookupRow<LookupTestRow> {
+
+    public static final IRowCreator<LookupTestRow> CREATOR = new IRowCreator<LookupTestRow>() {
+
+        public LookupTestRow createRowInstance() {
+            return new LookupTestRow();
+        }
+    };
+
+    public int id;
+
+    public String name;
+
+    public static LookupTestRow row(int id, String name) {
+        LookupTestRow row = new LookupTestRow();
+        row.id = id;
+        row.name = name;
+        return row;
+    }
+
+    public static LookupTestRow key(int id) {
+        return row(id, null);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 + id;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof LookupTestRow && ((LookupTestRow) obj).id == id;
+    }
+
+    public int compareTo(LookupTestRow other) {
+        return id < other.id ? -1 : id == other.id ? 0 : 1;
+    }
+
+    public void copyDataTo(LookupTestRow other) {
+        other.id = id;
+        other.name = name;
+    }
+
+    public void copyKeysDataTo(LookupTestRow other) {
+        other.id = id;
+    }
+
+    public void writeKeysData(ObjectOutputStream out) {
+        try {
+            out.writeInt(id);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void readKeysData(ObjectInputStream in) {
+        try {
+            id = in.readInt();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeValuesData(DataOutputStream dataOut, ObjectOutputStream objectOut) {
+        try {
+            objectOut.writeObject(name);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void readValuesData(DataInputStream dataIn, ObjectInputStream objectIn) {
+        try {
+            name = (String) objectIn.readObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeKeysData(org.jboss.marshalling.Marshaller out) {
+        try {
+            out.writeInt(id);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void readKeysData(org.jboss.marshalling.Unmarshaller in) {
+        try {
+            id = in.readInt();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void writeValuesData(DataOutputStream dataOut, org.jboss.marshalling.Marshaller objectOut) {
+        try {
+            objectOut.writeObject(name);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void readValuesData(DataInputStream dataIn, org.jboss.marshalling.Unmarshaller objectIn) {
+        try {
+            name = (String) objectIn.readObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public boolean supportMarshaller() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return id + ":" + name;
+    }
+}
@@ -0,0 +1,179 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.talend.designer.components.lookup.memory.LookupTestRow.key;
+import static org.talend.designer.components.lookup.memory.LookupTestRow.row;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.talend.designer.components.lookup.common.ICommonLookup.MATCHING_MODE;
+
+public class OffHeapMemoryLookupTest {
+
+    private static OffHeapMemoryLookup<LookupTestRow> load(MATCHING_MODE matchingMode, long slabSize, LookupTestRow... rows) {
+        OffHeapMemoryLookup<LookupTestRow> lookup = OffHeapMemoryLookup.getLookup(matchingMode, LookupTestRow.CREATOR,
+                slabSize);
+        lookup.initPut();
+        for (LookupTestRow row : rows) {
+            lookup.put(row);
+        }
+        lookup.endPut();
+        lookup.initGet();
+        return lookup;
+    }
+
+    private static List<String> names(OffHeapMemoryLookup<LookupTestRow> lookup) {
+        List<String> names = new ArrayList<String>();
+        while (lookup.hasNext()) {
+            names.add(lookup.next().name);
+        }
+        return names;
+    }
+
+    private static List<String> names(List<LookupTestRow> rows) {
+        List<String> names = new ArrayList<String>();
+        for (LookupTestRow row : rows) {
+            names.add(row.name);
+        }
+        return names;
+    }
+
+    private static LookupTestRow[] sample() {
+        return new LookupTestRow[] { row(1, "a"), row(2, "b"), row(1, "c"), row(3, "d"), row(1, "e") };
+    }
+
+    @Test
+    public void testLookupByMatchingMode() {
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.FIRST_MATCH, 1024, sample());
+        lookup.lookup(key(1));
+        assertEquals(Arrays.asList("a"), names(lookup));
+        assertEquals(3, lookup.getCount(key(1)));
+
+        lookup = load(MATCHING_MODE.LAST_MATCH, 1024, sample());
+        lookup.lookup(key(1));
+        assertEquals(Arrays.asList("e"), names(lookup));
+
+        lookup = load(MATCHING_MODE.UNIQUE_MATCH, 1024, sample());
+        lookup.lookup(key(1));
+        assertEquals(Arrays.asList("e"), names(lookup));
+        assertEquals(1, lookup.getCount(key(1)));
+
+        lookup = load(MATCHING_MODE.ALL_MATCHES, 1024, sample());
+        lookup.lookup(key(1));
+        assertEquals(Arrays.asList("a", "c", "e"), names(lookup));
+        lookup.lookup(key(4));
+        assertFalse(lookup.hasNext());
+
+        lookup = load(MATCHING_MODE.ALL_ROWS, 1024, sample());
+        lookup.lookup(key(4));
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), names(lookup));
+    }
+
+    @Test
+    public void testRowsInSeveralSlabs() {
+        List<LookupTestRow> rows = new ArrayList<LookupTestRow>();
+        for (int i = 0; i < 10000; i++) {
+            rows.add(row(i % 1000, "name" + i));
+        }
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_MATCHES, 256,
+                rows.toArray(new LookupTestRow[rows.size()]));
+        assertEquals(10000, lookup.getSize());
+        assertTrue(lookup.getAllocatedBytes() > 256);
+        for (int i = 0; i < 1000; i++) {
+            lookup.lookup(key(i));
+            List<String> names = names(lookup);
+            assertEquals(10, names.size());
+            for (int j = 0; j < 10; j++) {
+                assertEquals("name" + (i + j * 1000), names.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testResultListAfterNext() {
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_MATCHES, 1024, sample());
+        lookup.lookup(key(1));
+        assertEquals(Arrays.asList("a", "c", "e"), names(lookup.getResultList()));
+        assertEquals(3, lookup.getResultArray().length);
+        assertEquals("a", lookup.next().name);
+        assertEquals(Arrays.asList("c", "e"), names(lookup.getResultList()));
+
+        lookup = load(MATCHING_MODE.UNIQUE_MATCH, 1024, sample());
+        lookup.lookup(key(2));
+        assertEquals(Arrays.asList("b"), names(lookup.getResultList()));
+        lookup.lookup(key(4));
+        assertTrue(lookup.getResultList().isEmpty());
+    }
+
+    @Test
+    public void testLookupAllRows() {
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_MATCHES, 1024, sample());
+        lookup.lookup();
+        List<String> names = names(lookup);
+        assertEquals(5, names.size());
+        // the rows with the same key follow each other
+        int first = names.indexOf("a");
+        assertEquals(Arrays.asList("a", "c", "e"), names.subList(first, first + 3));
+        assertTrue(lookup.hasResult());
+
+        lookup = load(MATCHING_MODE.UNIQUE_MATCH, 1024, sample());
+        lookup.lookup();
+        names = names(lookup);
+        assertEquals(3, names.size());
+        assertTrue(names.containsAll(Arrays.asList("b", "d", "e")));
+
+        // a lookup by key reads again from the slabs
+        lookup.lookup(key(3));
+        assertEquals(Arrays.asList("d"), names(lookup));
+    }
+
+    @Test
+    public void testGetList() {
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_ROWS, 1024, sample());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), names(lookup.getList()));
+
+        lookup = load(MATCHING_MODE.ALL_MATCHES, 1024, sample());
+        assertTrue(lookup.getList().isEmpty());
+    }
+
+    @Test
+    public void testClone() throws Exception {
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_MATCHES, 1024, sample());
+        lookup.lookup();
+        lookup.next();
+        @SuppressWarnings("unchecked")
+        OffHeapMemoryLookup<LookupTestRow> clone = (OffHeapMemoryLookup<LookupTestRow>) lookup.clone();
+        assertFalse(clone.hasNext());
+        clone.lookup(key(1));
+        assertEquals(Arrays.asList("a", "c", "e"), names(clone));
+        assertEquals(4, names(lookup).size());
+    }
+
+    @Test
+    public void testClear() {
+        OffHeapMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_MATCHES, 1024, sample());
+        lookup.lookup();
+        lookup.clear();
+        assertFalse(lookup.hasNext());
+        assertTrue(lookup.isEmpty());
+        lookup.lookup(key(1));
+        assertFalse(lookup.hasNext());
+    }
+}
@@ -0,0 +1,142 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.talend.designer.components.lookup.memory.LookupTestRow.key;
+import static org.talend.designer.components.lookup.memory.LookupTestRow.row;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.talend.designer.components.lookup.common.ICommonLookup.MATCHING_MODE;
+
+public class PartitionedMemoryLookupTest {
+
+    private static final int KEYS = 500;
+
+    private static final int ROWS = 10000;
+
+    private static PartitionedMemoryLookup<LookupTestRow> load(MATCHING_MODE matchingMode, int threads) {
+        PartitionedMemoryLookup<LookupTestRow> lookup = PartitionedMemoryLookup.getLookup(matchingMode, threads);
+        lookup.initPut();
+        for (int i = 0; i < ROWS; i++) {
+            lookup.put(row(i % KEYS, "name" + i));
+        }
+        lookup.endPut();
+        lookup.initGet();
+        return lookup;
+    }
+
+    private static List<String> names(IMemoryLookup<LookupTestRow, LookupTestRow> lookup) {
+        List<String> names = new ArrayList<String>();
+        while (lookup.hasNext()) {
+            names.add(lookup.next().name);
+        }
+        return names;
+    }
+
+    @Test
+    public void testSameResultsAsSingleLookup() {
+        for (MATCHING_MODE matchingMode : new MATCHING_MODE[] { MATCHING_MODE.UNIQUE_MATCH, MATCHING_MODE.FIRST_MATCH,
+                MATCHING_MODE.LAST_MATCH, MATCHING_MODE.ALL_MATCHES }) {
+            PartitionedMemoryLookup<LookupTestRow> lookup = load(matchingMode, 4);
+            assertEquals(4, lookup.getPartitionsNumber());
+            AdvancedMemoryLookup<LookupTestRow> single = AdvancedMemoryLookup.getLookup(matchingMode);
+            for (int i = 0; i < ROWS; i++) {
+                single.put(row(i % KEYS, "name" + i));
+            }
+            for (int id = 0; id <= KEYS; id++) {
+                lookup.lookup(key(id));
+                single.lookup(key(id));
+                assertEquals(matchingMode + " " + id, names(single), names(lookup));
+                assertEquals(single.getCount(key(id)), lookup.getCount(key(id)));
+            }
+        }
+    }
+
+    @Test
+    public void testKeyOrderKeptInPartition() {
+        PartitionedMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_MATCHES, 3);
+        lookup.lookup(key(7));
+        List<String> names = names(lookup);
+        assertEquals(ROWS / KEYS, names.size());
+        for (int j = 0; j < names.size(); j++) {
+            assertEquals("name" + (7 + j * KEYS), names.get(j));
+        }
+    }
+
+    @Test
+    public void testLookupAllValues() {
+        PartitionedMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.UNIQUE_MATCH, 4);
+        lookup.lookup();
+        assertTrue(lookup.resultIsList());
+        assertEquals(KEYS, lookup.getResultList().size());
+        assertEquals(KEYS, lookup.getResultArray().length);
+        Set<String> names = new HashSet<String>(names(lookup));
+        assertEquals(KEYS, names.size());
+        for (int id = 0; id < KEYS; id++) {
+            // the last row of each key is kept
+            assertTrue(names.contains("name" + (ROWS - KEYS + id)));
+        }
+        assertTrue(lookup.hasResult());
+
+        // a lookup by key goes back to the partition of the key
+        lookup.lookup(key(3));
+        assertEquals(1, names(lookup).size());
+    }
+
+    @Test
+    public void testGetList() {
+        PartitionedMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.ALL_ROWS, 4);
+        assertEquals(1, lookup.getPartitionsNumber());
+        assertEquals(ROWS, lookup.getList().size());
+        assertEquals("name0", lookup.getList().get(0).name);
+
+        lookup = load(MATCHING_MODE.ALL_MATCHES, 4);
+        // as with a single lookup, the rows are only listed in ALL_ROWS
+        assertTrue(lookup.getList().isEmpty());
+    }
+
+    @Test(timeout = 60000)
+    public void testAbortPut() {
+        PartitionedMemoryLookup<LookupTestRow> lookup = PartitionedMemoryLookup.getLookup(MATCHING_MODE.ALL_MATCHES, 4);
+        lookup.initPut();
+        for (int i = 0; i < ROWS; i++) {
+            lookup.put(row(i % KEYS, "name" + i));
+        }
+        // the lookup subjob stops before endPut
+        lookup.abortPut();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertFalse(thread.getName().startsWith("tHash_Lookup_loader_") && thread.isAlive());
+        }
+        assertTrue(lookup.isEmpty());
+        // nothing to stop once the rows are put
+        lookup.abortPut();
+        lookup.endPut();
+    }
+
+    @Test
+    public void testClear() {
+        PartitionedMemoryLookup<LookupTestRow> lookup = load(MATCHING_MODE.UNIQUE_MATCH, 2);
+        lookup.lookup();
+        lookup.clear();
+        assertFalse(lookup.hasNext());
+        assertTrue(lookup.isEmpty());
+    }
+}
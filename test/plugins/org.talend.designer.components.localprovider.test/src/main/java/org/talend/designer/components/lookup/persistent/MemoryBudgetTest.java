@@ -0,0 +1,151 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.talend.designer.components.lookup.memory.LookupTestRow.row;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talend.designer.components.lookup.common.ICommonLookup.MATCHING_MODE;
+import org.talend.designer.components.lookup.memory.LookupTestRow;
+
+public class MemoryBudgetTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("MemoryBudgetTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static String text(int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    @Test
+    public void testFromMegaBytes() {
+        assertEquals(0, MemoryBudget.fromMegaBytes(0));
+        assertEquals(0, MemoryBudget.fromMegaBytes(-1));
+        assertEquals(3L * 1024 * 1024, MemoryBudget.fromMegaBytes(3));
+        assertTrue(MemoryBudget.defaultBudgetBytes() > 0);
+    }
+
+    @Test
+    public void testSpillThreshold() {
+        MemoryBudget budget = new MemoryBudget(10000);
+        assertEquals(10000, budget.getBudgetBytes());
+        for (int i = 0; i < 16; i++) {
+            budget.sample(100);
+        }
+        // twice the serialized size and the overhead of the row object
+        assertEquals(2 * 100 + 64, budget.getEstimatedRowBytes());
+        assertFalse(budget.isExceeded(0));
+        assertFalse(budget.isExceeded(10000 / 264));
+        assertTrue(budget.isExceeded(10000 / 264 + 1));
+
+        budget.spilled();
+        assertEquals(1, budget.getSpillCount());
+        assertFalse(budget.isExceeded(1));
+    }
+
+    @Test
+    public void testSamplingInterval() {
+        MemoryBudget budget = new MemoryBudget(1000000);
+        for (int i = 0; i < 16; i++) {
+            budget.sample(100);
+        }
+        // only one row out of 1024 is sampled after the first rows
+        for (int i = 16; i < 1023; i++) {
+            budget.sample(10000);
+        }
+        assertEquals(264, budget.getEstimatedRowBytes());
+        budget.sample(1700);
+        assertEquals(2 * (16 * 100 + 1700) / 17 + 64, budget.getEstimatedRowBytes());
+    }
+
+    @Test
+    public void testSampleLookupRow() {
+        MemoryBudget narrow = new MemoryBudget(1000000);
+        MemoryBudget wide = new MemoryBudget(1000000);
+        for (int i = 0; i < 16; i++) {
+            narrow.sample(row(i, "a"));
+            wide.sample(row(i, text(1000)));
+        }
+        assertTrue(narrow.getEstimatedRowBytes() > 64);
+        assertTrue(wide.getEstimatedRowBytes() > narrow.getEstimatedRowBytes() + 2 * 900);
+    }
+
+    @Test
+    public void testNoBudget() {
+        // budget 0 keeps the fixed row count of the buffer
+        MemoryBudget budget = new MemoryBudget(MemoryBudget.fromMegaBytes(0));
+        assertEquals(0, budget.getBudgetBytes());
+        for (int i = 0; i < 5000; i++) {
+            budget.sample(row(i, text(1000)));
+            assertFalse(budget.isExceeded(i + 1));
+        }
+        // the rows are not serialized
+        assertEquals(64, budget.getEstimatedRowBytes());
+        assertFalse(budget.isSamplingRow());
+        assertFalse(budget.isExceeded(Integer.MAX_VALUE));
+    }
+
+    private int spillCount(long memoryBudgetBytes) throws IOException {
+        PersistentSortedLookupManager<LookupTestRow> manager = new PersistentSortedLookupManager<LookupTestRow>(
+                MATCHING_MODE.ALL_ROWS, new File(folder, "lookup").getPath(), LookupTestRow.CREATOR, 1000);
+        manager.setMemoryBudgetBytes(memoryBudgetBytes);
+        manager.initPut();
+        try {
+            for (int i = 0; i < 4500; i++) {
+                manager.put(row(i, text(1000)));
+            }
+            manager.endPut();
+            return manager.getSpillCount();
+        } finally {
+            manager.clear();
+        }
+    }
+
+    @Test
+    public void testLookupBufferSpills() throws IOException {
+        // without a budget, only the full buffers of 1000 rows are written
+        assertEquals(4, spillCount(0));
+        // about 2 KB by row in memory, about 50 rows by buffer
+        int spillCount = spillCount(100000);
+        assertTrue("spills: " + spillCount, spillCount > 4500 / 60);
+        assertTrue("spills: " + spillCount, spillCount <= 4500 / 40);
+    }
+}
@@ -0,0 +1,179 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.lookup.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.talend.designer.components.lookup.memory.LookupTestRow.row;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talend.designer.components.lookup.memory.LookupTestRow;
+import org.talend.designer.components.lookup.persistent.PersistentSortedLookupManager.RUN_CODEC;
+
+public class SortedRunsTest {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("SortedRunsTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private String keysPath(String run) {
+        return new File(folder, run + "_keys.bin").getPath();
+    }
+
+    private String valuesPath(String run) {
+        return new File(folder, run + "_values.bin").getPath();
+    }
+
+    private SortedRunWriter<LookupTestRow> writer(String run, boolean useMarshaller, boolean compress)
+            throws IOException {
+        return new SortedRunWriter<LookupTestRow>(keysPath(run), valuesPath(run), useMarshaller, compress);
+    }
+
+    private SortedRunReader<LookupTestRow> reader(String run, boolean useMarshaller) throws IOException {
+        return new SortedRunReader<LookupTestRow>(keysPath(run), valuesPath(run), new LookupTestRow(), useMarshaller);
+    }
+
+    private void write(String run, List<LookupTestRow> rows, boolean useMarshaller, boolean compress)
+            throws IOException {
+        SortedRunWriter<LookupTestRow> writer = writer(run, useMarshaller, compress);
+        try {
+            for (LookupTestRow row : rows) {
+                writer.write(row);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<String> read(String run, boolean useMarshaller) throws IOException {
+        List<String> rows = new ArrayList<String>();
+        SortedRunReader<LookupTestRow> reader = reader(run, useMarshaller);
+        try {
+            while (reader.next()) {
+                rows.add(reader.getBean().toString());
+            }
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+        return rows;
+    }
+
+    private static List<String> toStrings(List<LookupTestRow> rows) {
+        List<String> strings = new ArrayList<String>();
+        for (LookupTestRow row : rows) {
+            strings.add(row.toString());
+        }
+        return strings;
+    }
+
+    @Test
+    public void testRoundTripOfEachCodec() throws IOException {
+        List<LookupTestRow> rows = new ArrayList<LookupTestRow>();
+        // more than a compressed block of 64 KB
+        for (int i = 0; i < 20000; i++) {
+            rows.add(row(i, i % 10 == 0 ? null : "name é中 " + i));
+        }
+        for (RUN_CODEC codec : RUN_CODEC.values()) {
+            boolean useMarshaller = codec == RUN_CODEC.MARSHALLING;
+            for (boolean compress : new boolean[] { false, true }) {
+                String run = codec + "_" + compress;
+                write(run, rows, useMarshaller, compress);
+                assertEquals(run, toStrings(rows), read(run, useMarshaller));
+
+                write(run + "_empty", Collections.<LookupTestRow> emptyList(), useMarshaller, compress);
+                assertEquals(run, Collections.emptyList(), read(run + "_empty", useMarshaller));
+            }
+        }
+    }
+
+    @Test
+    public void testMergeWithDuplicateKeys() throws IOException {
+        for (boolean compress : new boolean[] { false, true }) {
+            Random random = new Random(42);
+            // 5 runs, not a power of 2, one of them empty
+            int[] runSizes = { 3000, 0, 1, 2500, 4000 };
+            List<LookupTestRow> allRows = new ArrayList<LookupTestRow>();
+            SortedRunReader<LookupTestRow>[] runs = new SortedRunReader[runSizes.length];
+            for (int r = 0; r < runSizes.length; r++) {
+                List<LookupTestRow> rows = new ArrayList<LookupTestRow>();
+                for (int i = 0; i < runSizes[r]; i++) {
+                    // few keys, each key is in several runs and several times in a run
+                    rows.add(row(random.nextInt(500), "run" + r + "_" + i));
+                }
+                // the sort is stable, the rows with the same key keep the order of their puts
+                Collections.sort(rows);
+                allRows.addAll(rows);
+                write("run" + r, rows, false, compress);
+                runs[r] = reader("run" + r, false);
+            }
+            SortedRunWriter<LookupTestRow> writer = writer("merged", false, compress);
+            long count;
+            try {
+                count = new SortedRunsMerger<LookupTestRow>(runs).merge(writer);
+            } finally {
+                writer.close();
+                for (SortedRunReader<LookupTestRow> run : runs) {
+                    run.close();
+                }
+            }
+            Collections.sort(allRows);
+            assertEquals(allRows.size(), count);
+            // the rows with the same key are in the order of the runs
+            assertEquals(toStrings(allRows), read("merged", false));
+        }
+    }
+
+    @Test
+    public void testMergeSingleRun() throws IOException {
+        List<LookupTestRow> rows = new ArrayList<LookupTestRow>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(row(i / 3, "name" + i));
+        }
+        write("run", rows, false, false);
+        SortedRunReader<LookupTestRow>[] runs = new SortedRunReader[] { reader("run", false) };
+        SortedRunWriter<LookupTestRow> writer = writer("merged", false, false);
+        try {
+            assertEquals(10, new SortedRunsMerger<LookupTestRow>(runs).merge(writer));
+        } finally {
+            writer.close();
+            runs[0].close();
+        }
+        assertEquals(toStrings(rows), read("merged", false));
+    }
+}
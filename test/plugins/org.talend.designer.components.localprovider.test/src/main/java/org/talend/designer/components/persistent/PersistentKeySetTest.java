@@ -0,0 +1,144 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PersistentKeySetTest {
+
+    private static final int KEYS = 50000;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File folder;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("PersistentKeySetTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static byte[] key(int index) {
+        return ("key" + index).getBytes(UTF8);
+    }
+
+    private PersistentKeySet newKeySet(long memoryBudgetBytes) {
+        PersistentKeySet keySet = new PersistentKeySet(folder.getPath() + "/uniq");
+        keySet.setMemoryBudgetBytes(memoryBudgetBytes);
+        keySet.setExpectedKeys(KEYS);
+        return keySet;
+    }
+
+    @Test
+    public void testDuplicatesFoundAfterSpillsAndMerges() throws IOException {
+        PersistentKeySet keySet = newKeySet(4000);
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(keySet.add(key(i)));
+        }
+        // enough spills for the runs of each partition to be merged several times
+        assertTrue(keySet.getSpillCount() > 64);
+        assertEquals(KEYS, keySet.size());
+
+        // the keys are found in the memory, in the runs written by a spill and in the merged runs
+        for (int i = KEYS - 1; i >= 0; i--) {
+            assertFalse(keySet.add(key(i)));
+        }
+        assertEquals(KEYS, keySet.getProbesCount() - keySet.getFalsePositiveProbesCount());
+        for (int i = KEYS; i < KEYS + 1000; i++) {
+            assertTrue(keySet.add(key(i)));
+        }
+        assertEquals(KEYS + 1000, keySet.size());
+        keySet.close();
+        assertEquals(0, folder.listFiles().length);
+    }
+
+    @Test
+    public void testRunsStayFewWithManySpills() throws IOException {
+        PersistentKeySet keySet = newKeySet(2000);
+        for (int i = 0; i < KEYS; i++) {
+            keySet.add(key(i));
+        }
+        int spillCount = keySet.getSpillCount();
+        assertTrue(spillCount > 200);
+        // the runs are merged by levels, there are far less runs than spills in each partition
+        int runs = folder.listFiles().length;
+        assertTrue("runs: " + runs + ", spills: " + spillCount, runs < 16 * 3 * 5);
+        keySet.close();
+    }
+
+    @Test
+    public void testKeysLargerThanBlock() throws IOException {
+        PersistentKeySet keySet = newKeySet(20000);
+        byte[][] keys = new byte[200][];
+        for (int i = 0; i < keys.length; i++) {
+            // a key of a run may be read across several blocks
+            keys[i] = new byte[i * 97];
+            Arrays.fill(keys[i], (byte) i);
+            assertTrue(keySet.add(keys[i]));
+        }
+        assertTrue(keySet.getSpillCount() > 0);
+        for (byte[] key : keys) {
+            assertFalse(keySet.add(key.clone()));
+        }
+        keySet.close();
+    }
+
+    @Test
+    public void testNoSpillUnderBudget() throws IOException {
+        PersistentKeySet keySet = newKeySet(64L * 1024 * 1024);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(keySet.add(key(i)));
+            assertFalse(keySet.add(key(i)));
+        }
+        assertEquals(0, keySet.getSpillCount());
+        assertEquals(0, folder.listFiles().length);
+        keySet.close();
+    }
+
+    @Test
+    public void testCloseDeletesFiles() throws IOException {
+        PersistentKeySet keySet = newKeySet(4000);
+        for (int i = 0; i < 5000; i++) {
+            keySet.add(key(i));
+        }
+        assertFalse(keySet.add(key(0)));
+        assertTrue(folder.listFiles().length > 0);
+        // as the finally part of tUniqRow after an error
+        keySet.close();
+        assertEquals(0, folder.listFiles().length);
+        keySet.close();
+    }
+}
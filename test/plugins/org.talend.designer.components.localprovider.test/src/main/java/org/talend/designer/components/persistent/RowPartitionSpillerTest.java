@@ -0,0 +1,201 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import routines.system.IPersistableRow;
+
+public class RowPartitionSpillerTest {
+
+    private static final int GROUPS = 2000;
+
+    private static final int ROWS = 20000;
+
+    private File folder;
+
+    /**
+     * Row of the aggregated flow, written as a generated row struct.
+     */
+    public static class AggregatedRow implements IPersistableRow<AggregatedRow> {
+
+        public int group;
+
+        public int value;
+
+        public void writeData(ObjectOutputStream out) {
+            try {
+                out.writeInt(group);
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void readData(ObjectInputStream in) {
+            try {
+                group = in.readInt();
+                value = in.readInt();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void writeData(org.jboss.marshalling.Marshaller out) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void readData(org.jboss.marshalling.Unmarshaller in) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean supportJboss() {
+            return false;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        folder = File.createTempFile("RowPartitionSpillerTest", "");
+        folder.delete();
+        folder.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    private static AggregatedRow row(int index) {
+        AggregatedRow row = new AggregatedRow();
+        // the groups are spread over the whole flow
+        row.group = (index * 7919) % GROUPS;
+        row.value = index;
+        return row;
+    }
+
+    /**
+     * Aggregates the row as the code of tAggregateOut: the rows of the new groups are spilled once the budget is
+     * exceeded.
+     */
+    private static void aggregate(RowPartitionSpiller<AggregatedRow> spiller, Map<Integer, List<Integer>> groups,
+            AggregatedRow row) throws IOException {
+        List<Integer> values = groups.get(row.group);
+        if (values == null && spiller.isSpilling()) {
+            spiller.spill(row, Integer.valueOf(row.group).hashCode());
+            return;
+        }
+        if (values == null) {
+            values = new ArrayList<Integer>();
+            groups.put(row.group, values);
+        }
+        values.add(row.value);
+        spiller.aggregated(row, groups.size());
+    }
+
+    @Test
+    public void testSpillAndAggregatePartitions() throws IOException {
+        RowPartitionSpiller<AggregatedRow> spiller = new RowPartitionSpiller<AggregatedRow>(folder.getPath() + "/agg", true);
+        spiller.setMemoryBudgetBytes(20000);
+        Map<Integer, List<Integer>> groups = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < ROWS; i++) {
+            aggregate(spiller, groups, row(i));
+        }
+        assertTrue(spiller.isSpilling());
+
+        Map<Integer, List<Integer>> results = new LinkedHashMap<Integer, List<Integer>>();
+        boolean nextPartition;
+        do {
+            for (Map.Entry<Integer, List<Integer>> group : groups.entrySet()) {
+                // each group is sent once, with all its rows
+                assertFalse(results.containsKey(group.getKey()));
+                results.put(group.getKey(), group.getValue());
+            }
+            groups.clear();
+            nextPartition = spiller.nextPartition();
+            if (nextPartition) {
+                AggregatedRow row = new AggregatedRow();
+                while (spiller.readRow(row)) {
+                    aggregate(spiller, groups, row);
+                }
+            }
+        } while (nextPartition);
+        spiller.close();
+
+        assertTrue(spiller.getSpillCount() > 1);
+        assertEquals(GROUPS, results.size());
+        for (Map.Entry<Integer, List<Integer>> group : results.entrySet()) {
+            List<Integer> values = group.getValue();
+            assertEquals(ROWS / GROUPS, values.size());
+            for (int i = 0; i < values.size(); i++) {
+                // the rows of a group keep their arrival order
+                assertEquals(group.getKey().intValue(), row(values.get(i)).group);
+                assertTrue(i == 0 || values.get(i - 1) < values.get(i));
+            }
+        }
+        assertEquals(0, folder.listFiles().length);
+    }
+
+    @Test
+    public void testNoSpillUnderBudget() throws IOException {
+        RowPartitionSpiller<AggregatedRow> spiller = new RowPartitionSpiller<AggregatedRow>(folder.getPath() + "/agg", false);
+        spiller.setMemoryBudgetBytes(64L * 1024 * 1024);
+        Map<Integer, List<Integer>> groups = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < ROWS; i++) {
+            aggregate(spiller, groups, row(i));
+        }
+        assertFalse(spiller.isSpilling());
+        assertFalse(spiller.nextPartition());
+        assertEquals(0, spiller.getSpillCount());
+        assertEquals(GROUPS, groups.size());
+    }
+
+    @Test
+    public void testCloseDeletesPartitions() throws IOException {
+        RowPartitionSpiller<AggregatedRow> spiller = new RowPartitionSpiller<AggregatedRow>(folder.getPath() + "/agg", true);
+        spiller.setMemoryBudgetBytes(20000);
+        Map<Integer, List<Integer>> groups = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < ROWS; i++) {
+            aggregate(spiller, groups, row(i));
+        }
+        groups.clear();
+        assertTrue(spiller.nextPartition());
+        assertTrue(folder.listFiles().length > 0);
+        // as the finally part of tAggregateOut after an error
+        spiller.close();
+        assertEquals(0, folder.listFiles().length);
+        spiller.close();
+    }
+}
@@ -0,0 +1,180 @@
+// ============================================================================
+//
+// Copyright (C) 2006-2021 Talend Inc. - www.talend.com
+//
+// This source code is available under agreement available at
+// %InstallDIR%\features\org.talend.rcp.branding.%PRODUCTNAME%\%PRODUCTNAME%license.txt
+//
+// You should have received a copy of the agreement
+// along with this program; if not, write to Talend SA
+// 9 rue Pages 92150 Suresnes, France
+//
+// ============================================================================
+package org.talend.designer.components.persistent.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockCompressedStreamTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("BlockCompressedStreamTest", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static byte[] text(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + i % 7);
+        }
+        return data;
+    }
+
+    private void write(byte[] data, int blockSize, int chunkSize) throws IOException {
+        OutputStream out = new BlockCompressedOutputStream(new FileOutputStream(file), blockSize);
+        try {
+            for (int off = 0; off < data.length; off += chunkSize) {
+                int length = Math.min(chunkSize, data.length - off);
+                if (length == 1) {
+                    out.write(data[off]);
+                } else {
+                    out.write(data, off, length);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private byte[] read() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = BlockCompressedInputStream.open(file);
+        try {
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testBlockBoundaries() throws IOException {
+        int blockSize = 16;
+        for (int length : new int[] { 0, 1, 15, 16, 17, 32, 33, 1000 }) {
+            for (int chunkSize : new int[] { 1, 7, 16, 100 }) {
+                byte[] data = text(length);
+                write(data, blockSize, chunkSize);
+                assertArrayEquals(length + " by " + chunkSize, data, read());
+            }
+        }
+    }
+
+    @Test
+    public void testDefaultBlockSize() throws IOException {
+        int blockSize = BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE;
+        for (int length : new int[] { blockSize, blockSize + 1, 3 * blockSize - 1 }) {
+            byte[] data = text(length);
+            write(data, blockSize, 4096);
+            assertArrayEquals(data, read());
+            assertTrue(file.length() < length);
+        }
+    }
+
+    @Test
+    public void testBlocksLargerThanTheReaderBuffer() throws IOException {
+        // the reader starts with buffers of the default block size
+        byte[] data = text(3 * BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE + 5);
+        write(data, 2 * BlockCompressedOutputStream.DEFAULT_BLOCK_SIZE, 50000);
+        assertArrayEquals(data, read());
+    }
+
+    @Test
+    public void testIncompressibleBlocksStored() throws IOException {
+        byte[] data = new byte[100000];
+        new Random(42).nextBytes(data);
+        write(data, 1024, 3000);
+        assertArrayEquals(data, read());
+        // the magic number, then the two lengths of each block
+        assertEquals(4 + data.length + 98 * 8, file.length());
+    }
+
+    @Test
+    public void testFlushDoesNotEndTheBlock() throws IOException {
+        byte[] data = text(1000);
+        OutputStream out = new BlockCompressedOutputStream(new FileOutputStream(file), 256);
+        try {
+            for (byte b : data) {
+                out.write(b);
+                out.flush();
+            }
+        } finally {
+            out.close();
+        }
+        long flushedLength = file.length();
+        write(data, 256, 1000);
+        assertEquals(file.length(), flushedLength);
+        assertArrayEquals(data, read());
+    }
+
+    @Test
+    public void testAvailableAndSkip() throws IOException {
+        byte[] data = text(100);
+        write(data, 16, 100);
+        DataInputStream fileIn = new DataInputStream(new FileInputStream(file));
+        assertEquals(BlockCompressedOutputStream.MAGIC, fileIn.readInt());
+        InputStream in = new BlockCompressedInputStream(fileIn);
+        try {
+            assertEquals(data[0], in.read());
+            // across several blocks
+            assertEquals(40, in.skip(40));
+            assertEquals(data[41], in.read());
+            while (in.available() > 0) {
+                assertTrue(in.read() >= 0);
+            }
+            assertEquals(-1, in.read());
+            assertEquals(0, in.skip(10));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testOpenUncompressedFile() throws IOException {
+        for (int length : new int[] { 0, 3, 4, 100 }) {
+            byte[] data = text(length);
+            OutputStream out = new FileOutputStream(file);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            assertArrayEquals(data, read());
+        }
+    }
+}
@@ -17,12 +17,16 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -153,6 +157,14 @@ public class ExpressionTest {
         return param;
     }
 
+    private ElementParameter createMockCheckParameter(String paraName, boolean value) {
+        ElementParameter param = mock(ElementParameter.class);
+        when(param.getName()).thenReturn(paraName);
+        when(param.getFieldType()).thenReturn(EParameterFieldType.CHECK);
+        when(param.getValue()).thenReturn(value);
+        return param;
+    }
+
     private ElementParameter createMockParameterWithNodeElement(String paraName) {
         ElementParameter param = mock(ElementParameter.class);
         IElement testElement = mock(INode.class);
@@ -329,4 +341,90 @@ public class ExpressionTest {
         assertTrue(errorMessage, StatsAndLogsConstants.CODE_LIST[1].length == StatsAndLogsConstants.DISPLAY_DBNAMES[1].length);
         assertTrue(errorMessage, StatsAndLogsConstants.CODE_LIST[1].length == JobSettingsConstants.DB_INPUT_COMPONENTS[1].length);
     }
+
+    @Test
+    public void testAndOrShortCircuit() {
+        List<IElementParameter> parameters = new ArrayList<IElementParameter>();
+        ElementParameter paramA = createMockParameter("A", "x");
+        ElementParameter paramB = createMockParameter("B", "y");
+        updateParameters(parameters, paramA, paramB);
+
+        // the right expression is not evaluated when the left one gives the result
+        assertFalse(Expression.evaluate("(A == 'z') AND (B == 'y')", parameters));
+        assertTrue(Expression.evaluate("(A == 'x') OR (B == 'z')", parameters));
+        verify(paramB, never()).getValue();
+
+        assertTrue(Expression.evaluate("(A == 'x') AND (B == 'y')", parameters));
+        assertFalse(Expression.evaluate("(A == 'z') OR (B == 'z')", parameters));
+        verify(paramB, times(2)).getValue();
+    }
+
+    @Test
+    public void testEvaluateFallbackToSimpleExpression() {
+        List<IElementParameter> parameters = new ArrayList<IElementParameter>();
+        Map<String, IElementParameter> childParameters = new LinkedHashMap<String, IElementParameter>();
+        childParameters.put("PROPERTY_TYPE", createMockParameter("PROPERTY_TYPE", "REPOSITORY"));
+        childParameters.put("REPOSITORY_PROPERTY_TYPE", createMockParameter("REPOSITORY_PROPERTY_TYPE", "_id"));
+        ElementParameter property = mock(ElementParameter.class);
+        when(property.getName()).thenReturn("PROPERTY");
+        when(property.getFieldType()).thenReturn(EParameterFieldType.PROPERTY_TYPE);
+        when(property.getChildParameters()).thenReturn(childParameters);
+        ElementParameter param1 = createMockParameter("PARA1", true, null);
+        updateParameters(parameters, param1, property);
+
+        // the value of a property type is the one of its child parameter, not the value of the parameter
+        assertTrue(Expression.evaluate("PROPERTY == 'REPOSITORY'", parameters));
+        assertFalse(Expression.evaluate("PROPERTY != 'REPOSITORY'", parameters));
+        assertTrue(Expression.evaluate("PROPERTY.REPOSITORY_PROPERTY_TYPE == '_id'", parameters));
+        assertFalse(Expression.evaluate("PROPERTY.REPOSITORY_PROPERTY_TYPE == 'other'", parameters));
+        // a function in a condition
+        assertTrue(Expression.evaluate("(isShow[PARA1]) AND (PROPERTY == 'REPOSITORY')", parameters, property));
+        assertFalse(Expression.evaluate("(isShow[PARA1]) AND (PROPERTY == 'BUILT_IN')", parameters, property));
+    }
+
+    @Test
+    public void testCompiledExpressionEvaluatedWithEachParameters() {
+        String expression = "(A == 'x') OR (B == 'true')";
+        List<IElementParameter> parameters = new ArrayList<IElementParameter>();
+        updateParameters(parameters, createMockParameter("A", "x"));
+        assertTrue(Expression.evaluate(expression, parameters));
+        // the compiled expression keeps no value
+        updateParameters(parameters, createMockParameter("A", "y"));
+        assertFalse(Expression.evaluate(expression, parameters));
+        // the parameters at other indexes than the ones found before
+        updateParameters(parameters, createMockParameter("C", "y"), createMockParameter("A", "x"));
+        assertTrue(Expression.evaluate(expression, parameters));
+        updateParameters(parameters, createMockCheckParameter("B", true), createMockParameter("A", "y"));
+        assertTrue(Expression.evaluate(expression, parameters));
+        updateParameters(parameters, createMockParameter("A", "y"), createMockCheckParameter("B", false));
+        assertFalse(Expression.evaluate(expression, parameters));
+        // a list without random access
+        List<IElementParameter> linkedParameters = new LinkedList<IElementParameter>();
+        updateParameters(linkedParameters, createMockParameter("C", "y"), createMockCheckParameter("B", true));
+        assertTrue(Expression.evaluate(expression, linkedParameters));
+        // a list without the parameters
+        updateParameters(parameters, createMockParameter("C", "x"));
+        assertFalse(Expression.evaluate(expression, parameters));
+        assertFalse(Expression.evaluate(expression, null));
+    }
+
+    @Test
+    public void testIsDependentOn() {
+        String expression = "(DB_TYPE == 'MYSQL') AND (USE_EXISTING_CONNECTION != 'true')";
+        assertTrue(Expression.isDependentOn(expression, "DB_TYPE"));
+        assertTrue(Expression.isDependentOn(expression, "USE_EXISTING_CONNECTION"));
+        // a name in the name of a parameter, or in a value
+        assertFalse(Expression.isDependentOn(expression, "TYPE"));
+        assertFalse(Expression.isDependentOn(expression, "MYSQL"));
+        assertTrue(Expression.isDependentOn("PROPERTY.REPOSITORY_PROPERTY_TYPE == '_id'", "PROPERTY"));
+        assertFalse(Expression.isDependentOn("true", "PROPERTY"));
+
+        // the names of the parameters read by the functions and the links are not known
+        assertTrue(Expression.isDependentOn("isShow[DB_TYPE]", "TYPE"));
+        assertTrue(Expression.isDependentOn("(DB_TYPE == 'MYSQL') AND (#LINK@NODE.CONNECTION.TYPE == 'x')", "TYPE"));
+        assertFalse(Expression.isDependentOn("isShow[DB_TYPE]", "USE_EXISTING_CONNECTION"));
+
+        assertFalse(Expression.isDependentOn(null, "DB_TYPE"));
+        assertFalse(Expression.isDependentOn(expression, null));
+    }
 }